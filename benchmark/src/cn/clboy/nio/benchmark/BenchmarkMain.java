@@ -0,0 +1,21 @@
+package cn.clboy.nio.benchmark;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午4:05
+ * @Since 1.0.0
+ * <p>
+ * JMH 基准测试入口。
+ * 基准测试是单独的 benchmark 模块，依赖主工程以及 jmh-core，编译时注解处理器 jmh-generator-annprocess 生成基准测试代码。
+ * 在仓库根目录运行，参数与 JMH 命令行一致，例如：
+ * <pre>
+ * gradle :benchmark:jmh -Pargs='BufferBenchmark -p size=1024 -f 1'
+ * </pre>
+ * 不要再用 System.currentTimeMillis() 手工计时：单次运行的结果主要取决于 JIT 预热和页缓存的状态
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,114 @@
+package cn.clboy.nio.benchmark;
+
+import cn.clboy.nio.buffer.BufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午4:10
+ * @Since 1.0.0
+ * <p>
+ * 非直接缓冲区与直接缓冲区的 put/get（对应 BufferTest、BufferTypesTest），以及分配与池化的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferBenchmark {
+
+    @Param({"heap", "direct"})
+    public String type;
+
+    @Param({"64", "1024", "65536"})
+    public int size;
+
+    private ByteBuffer buffer;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        buffer = "direct".equals(type) ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        bytes = new byte[size];
+    }
+
+    /**
+     * 逐个字节 put 再逐个 get
+     */
+    @Benchmark
+    public long putGetByte() {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) buffer.position());
+        }
+        buffer.flip();
+        long sum = 0;
+        while (buffer.hasRemaining()) {
+            sum += buffer.get();
+        }
+        return sum;
+    }
+
+    /**
+     * 按 long 读写
+     */
+    @Benchmark
+    public long putGetLong() {
+        buffer.clear();
+        while (buffer.remaining() >= 8) {
+            buffer.putLong(buffer.position());
+        }
+        buffer.flip();
+        long sum = 0;
+        while (buffer.remaining() >= 8) {
+            sum += buffer.getLong();
+        }
+        return sum;
+    }
+
+    /**
+     * 与 byte[] 之间批量拷贝
+     */
+    @Benchmark
+    public void bulkPutGet(Blackhole blackhole) {
+        buffer.clear();
+        buffer.put(bytes);
+        buffer.flip();
+        buffer.get(bytes);
+        blackhole.consume(bytes);
+    }
+
+    /**
+     * 每次都分配新的缓冲区
+     */
+    @Benchmark
+    public ByteBuffer allocate() {
+        return "direct".equals(type) ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * 从缓冲区池申请并归还
+     */
+    @Benchmark
+    public int pooled() {
+        ByteBuffer pooled = BufferPool.DEFAULT.acquire(size);
+        int capacity = pooled.capacity();
+        BufferPool.DEFAULT.release(pooled);
+        return capacity;
+    }
+}
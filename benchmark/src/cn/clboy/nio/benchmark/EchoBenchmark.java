@@ -0,0 +1,139 @@
+package cn.clboy.nio.benchmark;
+
+import cn.clboy.nio.reactor.EchoHandler;
+import cn.clboy.nio.reactor.ReactorServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午4:55
+ * @Since 1.0.0
+ * <p>
+ * 回环地址上 TCP（ReactorServer + EchoHandler）与 UDP 回显的吞吐量和延迟分布。
+ * 使用 -bm sample 可以得到延迟百分位，多个 -t 线程时每个线程一条连接
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EchoBenchmark {
+
+    private static final int TCP_PORT = 7101;
+    private static final int UDP_PORT = 7102;
+
+    /**
+     * 服务端，所有基准线程共享
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"1", "4"})
+        public int workers;
+
+        private ReactorServer tcpServer;
+        private DatagramChannel udpServer;
+        private Thread udpThread;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            tcpServer = new ReactorServer(TCP_PORT, workers, new EchoHandler());
+            tcpServer.start();
+
+            udpServer = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", UDP_PORT));
+            udpThread = new Thread(() -> {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+                try {
+                    while (true) {
+                        buffer.clear();
+                        SocketAddress from = udpServer.receive(buffer);
+                        buffer.flip();
+                        udpServer.send(buffer, from);
+                    }
+                } catch (IOException ignored) {
+                }
+            }, "udp-echo");
+            udpThread.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws Exception {
+            tcpServer.close();
+            udpServer.close();
+            udpThread.join();
+        }
+    }
+
+    /**
+     * 每个基准线程自己的连接
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        @Param({"64", "1024", "16384"})
+        public int messageSize;
+
+        private SocketChannel tcp;
+        private DatagramChannel udp;
+        private ByteBuffer out;
+        private ByteBuffer in;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws IOException {
+            tcp = SocketChannel.open(new InetSocketAddress("127.0.0.1", TCP_PORT));
+            udp = DatagramChannel.open().connect(new InetSocketAddress("127.0.0.1", UDP_PORT));
+            out = ByteBuffer.allocateDirect(messageSize);
+            in = ByteBuffer.allocateDirect(messageSize);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            tcp.close();
+            udp.close();
+        }
+    }
+
+    @Benchmark
+    public int tcpEcho(Client client) throws IOException {
+        client.out.clear();
+        while (client.out.hasRemaining()) {
+            client.tcp.write(client.out);
+        }
+        client.in.clear();
+        while (client.in.hasRemaining()) {
+            if (client.tcp.read(client.in) == -1) {
+                throw new EOFException();
+            }
+        }
+        return client.in.position();
+    }
+
+    @Benchmark
+    public int udpEcho(Client client) throws IOException {
+        client.out.clear();
+        client.udp.write(client.out);
+        client.in.clear();
+        return client.udp.read(client.in);
+    }
+}
@@ -0,0 +1,86 @@
+package cn.clboy.nio.benchmark;
+
+import cn.clboy.nio.file.FileCopier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午4:25
+ * @Since 1.0.0
+ * <p>
+ * ChannelTest 中的复制方式（堆缓冲区、内存映射、transferTo）以及直接缓冲区，在不同文件大小下的耗时。
+ * 源文件在每轮试验前生成，第一次迭代之后处于页缓存中，测得的是内存带宽而不是磁盘带宽
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileCopyBenchmark {
+
+    @Param({"HEAP", "DIRECT", "MAPPED", "TRANSFER"})
+    public FileCopier.Strategy strategy;
+
+    @Param({"65536", "16777216", "268435456"})
+    public long fileSize;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private final FileCopier copier = new FileCopier();
+    private Path source;
+    private Path target;
+
+    @Setup
+    public void setup() throws IOException {
+        source = Files.createTempFile("bench-source", ".bin");
+        target = Files.createTempFile("bench-target", ".bin");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+            long remaining = fileSize;
+            while (remaining > 0) {
+                buffer.clear();
+                while (buffer.remaining() >= 8) {
+                    buffer.putLong(ThreadLocalRandom.current().nextLong());
+                }
+                buffer.flip();
+                if (remaining < buffer.limit()) {
+                    buffer.limit((int) remaining);
+                }
+                remaining -= channel.write(buffer);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+    }
+
+    @Benchmark
+    public void copy() throws IOException {
+        copier.copy(source, target, strategy, parallel);
+    }
+}
@@ -0,0 +1,111 @@
+package cn.clboy.nio.benchmark;
+
+import cn.clboy.nio.pipe.RingPipe;
+import cn.clboy.nio.pipe.WaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午4:40
+ * @Since 1.0.0
+ * <p>
+ * PipeTest 中两个线程通过 Pipe 传递数据的吞吐量：后台线程不停地写，基准线程读取。
+ * 同时对比进程内的 {@link RingPipe} 在各种等待策略下的表现
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipeBenchmark {
+
+    /**
+     * 每次写入的字节数
+     */
+    @Param({"16", "1024", "65536"})
+    public int chunkSize;
+
+    /**
+     * PIPE 为 java.nio.channels.Pipe，其余为对应等待策略的 RingPipe
+     */
+    @Param({"PIPE", "BUSY_SPIN", "YIELD", "PARK"})
+    public String impl;
+
+    private static final int CHUNKS_PER_INVOCATION = 100;
+
+    private WritableByteChannel sink;
+    private ReadableByteChannel source;
+    private Thread writer;
+    private ByteBuffer readBuffer;
+    private volatile boolean running;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("PIPE".equals(impl)) {
+            Pipe pipe = Pipe.open();
+            sink = pipe.sink();
+            source = pipe.source();
+        } else {
+            RingPipe pipe = RingPipe.open(64 * 1024, false, WaitStrategy.valueOf(impl));
+            sink = pipe.sink();
+            source = pipe.source();
+        }
+        readBuffer = ByteBuffer.allocateDirect(chunkSize * CHUNKS_PER_INVOCATION);
+        running = true;
+        writer = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+            try {
+                while (running) {
+                    buffer.clear();
+                    while (buffer.hasRemaining()) {
+                        sink.write(buffer);
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }, "pipe-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        running = false;
+        source.close();
+        sink.close();
+        writer.join(1000);
+    }
+
+    /**
+     * 读取 CHUNKS_PER_INVOCATION 次写入的数据量
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS_PER_INVOCATION)
+    public int transfer() throws IOException {
+        readBuffer.clear();
+        while (readBuffer.hasRemaining()) {
+            source.read(readBuffer);
+        }
+        return readBuffer.position();
+    }
+}
@@ -0,0 +1,163 @@
+package cn.clboy.nio.benchmark;
+
+import cn.clboy.nio.reactor.ReactorServer;
+import cn.clboy.nio.transfer.AsyncFileTransferServer;
+import cn.clboy.nio.transfer.FileTransferChannelHandler;
+import cn.clboy.nio.transfer.FileTransferClient;
+import cn.clboy.nio.transfer.FileTransferServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/22 下午4:30
+ * @Since 1.0.0
+ * <p>
+ * 同一个文件传输协议的四种服务端实现：平台线程池、虚拟线程、选择器、NIO.2 异步通道，
+ * 比较上传和下载的耗时。多个 -t 线程时每个线程一条连接，例如：
+ * <pre>
+ * TransferBenchmark -t 8 -p fileSize=65536
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final int PORT = 7103;
+
+    public enum Engine {
+        THREAD_POOL, VIRTUAL_THREADS, SELECTOR, ASYNC
+    }
+
+    /**
+     * 服务端和待上传的文件，所有基准线程共享
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"THREAD_POOL", "VIRTUAL_THREADS", "SELECTOR", "ASYNC"})
+        public Engine engine;
+
+        @Param({"65536", "16777216"})
+        public int fileSize;
+
+        private Closeable server;
+        private Path root;
+        private Path payload;
+        private final AtomicInteger clients = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            root = Files.createTempDirectory("bench-transfer");
+            payload = Files.createTempFile("bench-payload", ".bin");
+            byte[] bytes = new byte[fileSize];
+            ThreadLocalRandom.current().nextBytes(bytes);
+            Files.write(payload, bytes);
+
+            int threads = Runtime.getRuntime().availableProcessors();
+            switch (engine) {
+                case THREAD_POOL:
+                    FileTransferServer pool = new FileTransferServer(PORT, root, 64);
+                    pool.start();
+                    server = pool;
+                    break;
+                case VIRTUAL_THREADS:
+                    FileTransferServer virtual = FileTransferServer.withVirtualThreads(PORT, root);
+                    virtual.start();
+                    server = virtual;
+                    break;
+                case SELECTOR:
+                    ReactorServer reactor = new ReactorServer(PORT, threads, new FileTransferChannelHandler(root));
+                    reactor.start();
+                    server = reactor;
+                    break;
+                default:
+                    AsyncFileTransferServer async = new AsyncFileTransferServer(PORT, root);
+                    async.start();
+                    server = async;
+            }
+        }
+
+        /**
+         * 每个 trial 生成的文件都删掉，否则 4 种模式 × 2 种大小每跑一轮就在临时目录留下几百 MB
+         */
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            server.close();
+            Files.deleteIfExists(payload);
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * 每个基准线程自己的连接和文件名
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private FileTransferClient client;
+        private String name;
+        private Path downloaded;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws IOException {
+            client = new FileTransferClient(new InetSocketAddress("127.0.0.1", PORT));
+            name = "client-" + server.clients.getAndIncrement();
+            downloaded = Files.createTempFile("bench-download", ".bin");
+            //download 之前先保证服务端有这个文件
+            client.upload(server.payload, name);
+        }
+
+        /**
+         * 每次都从头上传/下载，否则断点续传会跳过已有的部分
+         */
+        @Setup(Level.Invocation)
+        public void reset(Server server) throws IOException {
+            Files.deleteIfExists(server.root.resolve(name + ".up"));
+            Files.write(downloaded, new byte[0]);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            client.close();
+            Files.deleteIfExists(downloaded);
+        }
+    }
+
+    @Benchmark
+    public void upload(Server server, Client client) throws IOException {
+        client.client.upload(server.payload, client.name + ".up");
+    }
+
+    @Benchmark
+    public void download(Client client) throws IOException {
+        client.client.download(client.name, client.downloaded);
+    }
+}
@@ -83,10 +83,8 @@ public class ChannelTest {
         MappedByteBuffer inMapBuffer = inChannel.map(FileChannel.MapMode.READ_ONLY, 0, inChannel.size());
         MappedByteBuffer outMapBuffer = outChannel.map(FileChannel.MapMode.READ_WRITE, 0, inChannel.size());
 
-        //直接对缓存区进行读写操作,不需要通过通道操作
-        byte[] bytes = new byte[inMapBuffer.limit()];
-        inMapBuffer.get(bytes);
-        outMapBuffer.put(bytes);
+        //直接对缓存区进行读写操作,不需要通过通道操作，也不需要先拷贝到堆上的 byte[]
+        outMapBuffer.put(inMapBuffer);
 
         outChannel.close();
         inChannel.close();
@@ -0,0 +1,305 @@
+package cn.clboy.nio.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午8:05
+ * @Since 1.0.0
+ * <p>
+ * 直接缓冲区池：
+ * 1. 一次 allocateDirect() 一块大的 slab，再按规格（512B、1KB ... 64KB）切成多个 slice()，
+ * 避免频繁申请/回收堆外内存
+ * 2. 调用了 {@link #enableThreadCache()} 的线程（事件循环线程）拥有自己的本地缓存，热路径上不需要加锁
+ * 3. 用完后必须调用 {@link #release(ByteBuffer)} 归还
+ * 4. 开启泄漏检测（-Dcn.clboy.nio.buffer.leakDetection=true）后会记录每个未归还缓冲区的申请位置
+ * 5. 申请/归还次数、slab 占用的内存用 LongAdder 计数，可以随时查看池的占用情况
+ */
+public class BufferPool {
+
+    public static final BufferPool DEFAULT = new BufferPool(1 << 20, 64,
+            Boolean.getBoolean("cn.clboy.nio.buffer.leakDetection"));
+
+    private static final int MIN_SIZE_SHIFT = 9;
+    private static final int MAX_SIZE_SHIFT = 16;
+    private static final int SIZE_CLASSES = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+
+    public static final int MIN_SIZE = 1 << MIN_SIZE_SHIFT;
+    public static final int MAX_SIZE = 1 << MAX_SIZE_SHIFT;
+
+    private final int slabSize;
+    private final int threadCacheSize;
+    private final SizeClass[] sizeClasses = new SizeClass[SIZE_CLASSES];
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<>();
+
+    /**
+     * 泄漏检测：缓冲区 -> 申请位置。ByteBuffer 的 equals/hashCode 基于内容，所以必须用 IdentityHashMap
+     */
+    private final Map<ByteBuffer, Throwable> outstanding;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder unpooled = new LongAdder();
+    private final LongAdder slabBytes = new LongAdder();
+
+    /**
+     * @param slabSize        每块 slab 的大小，不能小于 {@link #MAX_SIZE}
+     * @param threadCacheSize 每个线程每种规格最多缓存的缓冲区数量，至少为 1
+     * @param leakDetection   是否开启泄漏检测（有额外开销，只用于调试）
+     */
+    public BufferPool(int slabSize, int threadCacheSize, boolean leakDetection) {
+        if (slabSize < MAX_SIZE) {
+            throw new IllegalArgumentException("slabSize: " + slabSize);
+        }
+        if (threadCacheSize < 1) {
+            throw new IllegalArgumentException("threadCacheSize: " + threadCacheSize);
+        }
+        this.slabSize = slabSize;
+        this.threadCacheSize = threadCacheSize;
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            sizeClasses[i] = new SizeClass(1 << (MIN_SIZE_SHIFT + i));
+        }
+        this.outstanding = leakDetection ? Collections.synchronizedMap(new IdentityHashMap<>()) : null;
+    }
+
+    /**
+     * 获取一个容量不小于 size 的直接缓冲区，position=0，limit=capacity。
+     * 超过 {@link #MAX_SIZE} 的请求不做池化
+     */
+    public ByteBuffer acquire(int size) {
+        int index = sizeClassIndex(size);
+        ByteBuffer buffer;
+        if (index < 0) {
+            buffer = ByteBuffer.allocateDirect(size);
+            unpooled.increment();
+        } else {
+            ThreadCache cache = threadCache.get();
+            buffer = cache != null ? cache.pop(index) : sizeClasses[index].pop();
+        }
+        if (outstanding != null) {
+            outstanding.put(buffer, new Throwable("buffer acquired here, capacity " + buffer.capacity()));
+        }
+        acquired.increment();
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区，归还后调用方不能再使用它；堆缓冲区不可能来自这个池，直接拒绝，
+     * 否则之后的 acquire 可能把它当作直接缓冲区返回
+     */
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("not a direct buffer: " + buffer);
+        }
+        if (outstanding != null && outstanding.remove(buffer) == null) {
+            throw new IllegalStateException("buffer released twice or not acquired from this pool");
+        }
+        released.increment();
+        int index = sizeClassIndex(buffer.capacity());
+        if (index < 0 || sizeClasses[index].size != buffer.capacity()) {
+            //未池化的大缓冲区交给 GC
+            return;
+        }
+        buffer.clear();
+        ThreadCache cache = threadCache.get();
+        if (cache != null) {
+            cache.push(index, buffer);
+        } else {
+            sizeClasses[index].push(buffer);
+        }
+    }
+
+    /**
+     * 为当前线程开启本地缓存，一般由事件循环线程在启动时调用
+     */
+    public void enableThreadCache() {
+        if (threadCache.get() == null) {
+            threadCache.set(new ThreadCache());
+        }
+    }
+
+    /**
+     * 关闭当前线程的本地缓存，并把缓存的缓冲区还给全局池
+     */
+    public void disableThreadCache() {
+        ThreadCache cache = threadCache.get();
+        if (cache != null) {
+            cache.drainAll();
+            threadCache.remove();
+        }
+    }
+
+    /**
+     * 泄漏检测开启时，返回所有未归还缓冲区的申请位置
+     */
+    public List<Throwable> leaks() {
+        if (outstanding == null) {
+            return Collections.emptyList();
+        }
+        synchronized (outstanding) {
+            return new ArrayList<>(outstanding.values());
+        }
+    }
+
+    /**
+     * 累计申请次数（包括不池化的大缓冲区）
+     */
+    public long acquired() {
+        return acquired.sum();
+    }
+
+    public long released() {
+        return released.sum();
+    }
+
+    /**
+     * 已申请未归还的缓冲区数量
+     */
+    public long inUse() {
+        return acquired.sum() - released.sum();
+    }
+
+    /**
+     * 所有 slab 占用的直接内存字节数
+     */
+    public long slabBytes() {
+        return slabBytes.sum();
+    }
+
+    /**
+     * 超过 {@link #MAX_SIZE} 而直接分配的次数
+     */
+    public long unpooledAllocations() {
+        return unpooled.sum();
+    }
+
+    public void reportLeaks() {
+        for (Throwable leak : leaks()) {
+            System.err.println("LEAK: ByteBuffer was not released");
+            leak.printStackTrace();
+        }
+    }
+
+    private static int sizeClassIndex(int size) {
+        if (size > MAX_SIZE) {
+            return -1;
+        }
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        //向上取整到 2 的幂
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return shift - MIN_SIZE_SHIFT;
+    }
+
+    /**
+     * 一种规格的全局空闲栈，只有本地缓存为空/满时才会批量访问
+     */
+    private final class SizeClass {
+
+        private final int size;
+        private ByteBuffer[] free = new ByteBuffer[16];
+        private int count;
+
+        SizeClass(int size) {
+            this.size = size;
+        }
+
+        synchronized ByteBuffer pop() {
+            if (count == 0) {
+                carveSlab();
+            }
+            ByteBuffer buffer = free[--count];
+            free[count] = null;
+            return buffer;
+        }
+
+        synchronized void push(ByteBuffer buffer) {
+            if (count == free.length) {
+                ByteBuffer[] grown = new ByteBuffer[free.length << 1];
+                System.arraycopy(free, 0, grown, 0, count);
+                free = grown;
+            }
+            free[count++] = buffer;
+        }
+
+        /**
+         * 批量取出最多 max 个，返回实际取出的数量
+         */
+        synchronized int popBatch(ByteBuffer[] dst, int offset, int max) {
+            if (count == 0) {
+                carveSlab();
+            }
+            int n = Math.min(max, count);
+            for (int i = 0; i < n; i++) {
+                dst[offset + i] = free[--count];
+                free[count] = null;
+            }
+            return n;
+        }
+
+        synchronized void pushBatch(ByteBuffer[] src, int offset, int n) {
+            for (int i = 0; i < n; i++) {
+                push(src[offset + i]);
+                src[offset + i] = null;
+            }
+        }
+
+        /**
+         * 申请一块 slab 并切分成当前规格的缓冲区
+         */
+        private void carveSlab() {
+            ByteBuffer slab = ByteBuffer.allocateDirect(slabSize);
+            slabBytes.add(slabSize);
+            for (int position = 0; position + size <= slabSize; position += size) {
+                slab.limit(position + size).position(position);
+                push(slab.slice());
+            }
+        }
+    }
+
+    /**
+     * 线程本地缓存，每种规格一个定长数组栈
+     */
+    private final class ThreadCache {
+
+        private final ByteBuffer[][] stacks = new ByteBuffer[SIZE_CLASSES][threadCacheSize];
+        private final int[] counts = new int[SIZE_CLASSES];
+
+        ByteBuffer pop(int index) {
+            ByteBuffer[] stack = stacks[index];
+            if (counts[index] == 0) {
+                //一次从全局池取半个缓存的量
+                counts[index] = sizeClasses[index].popBatch(stack, 0, Math.max(1, threadCacheSize >> 1));
+            }
+            int top = --counts[index];
+            ByteBuffer buffer = stack[top];
+            stack[top] = null;
+            return buffer;
+        }
+
+        void push(int index, ByteBuffer buffer) {
+            ByteBuffer[] stack = stacks[index];
+            if (counts[index] == stack.length) {
+                //满了把上半部分还给全局池
+                int half = stack.length >> 1;
+                sizeClasses[index].pushBatch(stack, half, stack.length - half);
+                counts[index] = half;
+            }
+            stack[counts[index]++] = buffer;
+        }
+
+        void drainAll() {
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                sizeClasses[i].pushBatch(stacks[i], 0, counts[i]);
+                counts[i] = 0;
+            }
+        }
+    }
+}
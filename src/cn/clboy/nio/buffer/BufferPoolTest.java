@@ -0,0 +1,76 @@
+package cn.clboy.nio.buffer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午8:40
+ * @Since 1.0.0
+ * <p>
+ * 池化的直接缓冲区：申请 -> 使用 -> 归还，稳定状态下不再产生新的缓冲区对象
+ */
+public class BufferPoolTest {
+
+    /**
+     * 按规格向上取整，归还后再次申请拿到的是同一个缓冲区
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test01() throws Exception {
+        BufferPool pool = new BufferPool(1 << 20, 64, false);
+        pool.enableThreadCache();
+
+        ByteBuffer buffer = pool.acquire(1000);
+        System.out.println(buffer.isDirect());
+        System.out.println("capacity：" + buffer.capacity());
+        pool.release(buffer);
+
+        ByteBuffer again = pool.acquire(1024);
+        System.out.println(buffer == again);
+        pool.release(again);
+        pool.disableThreadCache();
+    }
+
+    /**
+     * 泄漏检测：未归还的缓冲区会打印申请位置，重复归还会抛出异常
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test02() throws Exception {
+        BufferPool pool = new BufferPool(1 << 20, 64, true);
+        ByteBuffer leaked = pool.acquire(512);
+        pool.reportLeaks();
+
+        pool.release(leaked);
+        try {
+            pool.release(leaked);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * 不合法的参数：线程缓存大小为 0，归还堆缓冲区
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test03() throws Exception {
+        try {
+            new BufferPool(1 << 20, 0, false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+        BufferPool pool = new BufferPool(1 << 20, 64, false);
+        try {
+            pool.release(ByteBuffer.allocate(512));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+        System.out.println("512B 规格拿到直接缓冲区：" + pool.acquire(512).isDirect());
+    }
+}
@@ -0,0 +1,409 @@
+package cn.clboy.nio.buffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 下午7:10
+ * @Since 1.0.0
+ * <p>
+ * 组合缓冲区：把多个 ByteBuffer（例如单独编码的消息头和池化的消息体）当作一段连续的只读数据，
+ * 不需要拷贝到一个大缓冲区中：
+ * <p>
+ * 1. 绝对位置的 getByte/getShort/getInt/getLong 和从读指针开始的相对读取，可以跨越组件边界（大端序）
+ * <p>
+ * 2. {@link #nioBuffers(ByteBuffer[], int, int)} 直接把组件交给聚集写入 write(ByteBuffer[])，
+ * {@link #write(GatheringByteChannel)} 写出后推进读指针。两者都会修改组件视图的 position/limit 和读指针，
+ * 同一份数据要同时写到多个通道时，每个通道用自己的 {@link #slice(int, int)}
+ * （{@link cn.clboy.nio.reactor.Connection#write(CompositeBuffer)} 会自己切片）
+ * <p>
+ * 3. 引用计数：创建时为 1，{@link #retain()} 加一，{@link #release()} 减一，减到 0 时把组件归还到各自的池。
+ * {@link #slice(int, int)} 与原缓冲区共享组件和引用计数
+ * <p>
+ * 读写操作不是线程安全的，引用计数是
+ */
+public class CompositeBuffer {
+
+    /**
+     * 组件原本的缓冲区，归还到池时必须用这个对象（池按对象身份识别缓冲区）
+     */
+    private ByteBuffer[] owned;
+    private BufferPool[] pools;
+    /**
+     * 组件的视图，字节序固定为大端；position 只在聚集写入时使用
+     */
+    private ByteBuffer[] views;
+    /**
+     * 每个组件的数据在视图中的起始位置
+     */
+    private int[] starts;
+    /**
+     * 每个组件第一个字节的逻辑下标，最后一个元素之后是总长度
+     */
+    private int[] offsets;
+    private int count;
+    private int length;
+    private int readerIndex;
+    /**
+     * 最近访问的组件，顺序读取时不用每次二分查找
+     */
+    private int lastComponent;
+
+    private final CompositeBuffer root;
+    private final AtomicInteger refCnt;
+
+    public CompositeBuffer() {
+        this(4);
+    }
+
+    public CompositeBuffer(int initialComponents) {
+        int n = Math.max(1, initialComponents);
+        this.owned = new ByteBuffer[n];
+        this.pools = new BufferPool[n];
+        this.views = new ByteBuffer[n];
+        this.starts = new int[n];
+        this.offsets = new int[n + 1];
+        this.root = null;
+        this.refCnt = new AtomicInteger(1);
+    }
+
+    private CompositeBuffer(CompositeBuffer root, int initialComponents) {
+        int n = Math.max(1, initialComponents);
+        this.views = new ByteBuffer[n];
+        this.starts = new int[n];
+        this.offsets = new int[n + 1];
+        this.root = root;
+        this.refCnt = root.refCnt;
+    }
+
+    /**
+     * 追加一个不需要归还的组件
+     */
+    public CompositeBuffer addComponent(ByteBuffer buffer) {
+        return addComponent(buffer, null);
+    }
+
+    /**
+     * 追加一个组件，内容是 buffer 的 [position, limit)。组件归本缓冲区所有，
+     * 调用方之后不能再修改它；pool 不为 null 时引用计数归零后归还到 pool
+     */
+    public CompositeBuffer addComponent(ByteBuffer buffer, BufferPool pool) {
+        ensureAccessible();
+        if (root != null) {
+            throw new UnsupportedOperationException("slice is read-only");
+        }
+        ensureCapacity();
+        owned[count] = buffer;
+        pools[count] = pool;
+        append(buffer.duplicate(), buffer.position(), buffer.remaining());
+        return this;
+    }
+
+    private void append(ByteBuffer view, int start, int size) {
+        ensureCapacity();
+        views[count] = view;
+        starts[count] = start;
+        offsets[count] = length;
+        length += size;
+        count++;
+        offsets[count] = length;
+    }
+
+    private void ensureCapacity() {
+        if (count < views.length) {
+            return;
+        }
+        int n = views.length * 2;
+        if (owned != null) {
+            owned = Arrays.copyOf(owned, n);
+            pools = Arrays.copyOf(pools, n);
+        }
+        views = Arrays.copyOf(views, n);
+        starts = Arrays.copyOf(starts, n);
+        offsets = Arrays.copyOf(offsets, n + 1);
+    }
+
+    public int numComponents() {
+        return count;
+    }
+
+    /**
+     * 总长度（包括已经读过的部分）
+     */
+    public int length() {
+        return length;
+    }
+
+    public int readerIndex() {
+        return readerIndex;
+    }
+
+    public CompositeBuffer readerIndex(int readerIndex) {
+        if (readerIndex < 0 || readerIndex > length) {
+            throw new IndexOutOfBoundsException("readerIndex: " + readerIndex + ", length: " + length);
+        }
+        this.readerIndex = readerIndex;
+        return this;
+    }
+
+    public int readableBytes() {
+        return length - readerIndex;
+    }
+
+    public boolean isReadable() {
+        return readerIndex < length;
+    }
+
+    public CompositeBuffer skip(int n) {
+        return readerIndex(readerIndex + n);
+    }
+
+    /**
+     * 逻辑下标所在的组件
+     */
+    private int componentIndex(int index) {
+        int last = lastComponent;
+        if (index >= offsets[last] && index < offsets[last + 1]) {
+            return last;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (index >= offsets[middle + 1]) {
+                low = middle + 1;
+            } else if (index < offsets[middle]) {
+                high = middle - 1;
+            } else {
+                //空组件的区间为空，不会落到这里
+                lastComponent = middle;
+                return middle;
+            }
+        }
+        throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+    }
+
+    private void checkIndex(int index, int size) {
+        ensureAccessible();
+        if (index < 0 || size > length - index) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size + ", length: " + length);
+        }
+    }
+
+    public byte getByte(int index) {
+        checkIndex(index, 1);
+        int c = componentIndex(index);
+        return views[c].get(starts[c] + index - offsets[c]);
+    }
+
+    public short getShort(int index) {
+        checkIndex(index, 2);
+        int c = componentIndex(index);
+        if (index + 2 <= offsets[c + 1]) {
+            return views[c].getShort(starts[c] + index - offsets[c]);
+        }
+        return (short) getSlow(index, 2);
+    }
+
+    public int getInt(int index) {
+        checkIndex(index, 4);
+        int c = componentIndex(index);
+        if (index + 4 <= offsets[c + 1]) {
+            return views[c].getInt(starts[c] + index - offsets[c]);
+        }
+        return (int) getSlow(index, 4);
+    }
+
+    public long getLong(int index) {
+        checkIndex(index, 8);
+        int c = componentIndex(index);
+        if (index + 8 <= offsets[c + 1]) {
+            return views[c].getLong(starts[c] + index - offsets[c]);
+        }
+        return getSlow(index, 8);
+    }
+
+    /**
+     * 跨越组件边界时逐字节拼接
+     */
+    private long getSlow(int index, int size) {
+        long value = 0;
+        int c = componentIndex(index);
+        for (int i = 0; i < size; i++, index++) {
+            while (index >= offsets[c + 1]) {
+                c++;
+            }
+            value = value << 8 | (views[c].get(starts[c] + index - offsets[c]) & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 从 index 开始拷贝 dst.remaining() 个字节到 dst
+     */
+    public CompositeBuffer getBytes(int index, ByteBuffer dst) {
+        checkIndex(index, dst.remaining());
+        if (!dst.hasRemaining()) {
+            return this;
+        }
+        int c = componentIndex(index);
+        while (dst.hasRemaining()) {
+            int local = index - offsets[c];
+            int n = Math.min(dst.remaining(), offsets[c + 1] - index);
+            dst.put(dst.position(), views[c], starts[c] + local, n);
+            dst.position(dst.position() + n);
+            index += n;
+            c++;
+        }
+        return this;
+    }
+
+    public byte get() {
+        byte value = getByte(readerIndex);
+        readerIndex += 1;
+        return value;
+    }
+
+    public short getShort() {
+        short value = getShort(readerIndex);
+        readerIndex += 2;
+        return value;
+    }
+
+    public int getInt() {
+        int value = getInt(readerIndex);
+        readerIndex += 4;
+        return value;
+    }
+
+    public long getLong() {
+        long value = getLong(readerIndex);
+        readerIndex += 8;
+        return value;
+    }
+
+    public CompositeBuffer get(ByteBuffer dst) {
+        int n = dst.remaining();
+        getBytes(readerIndex, dst);
+        readerIndex += n;
+        return this;
+    }
+
+    /**
+     * [index, index + length) 的视图，与本缓冲区共享组件和引用计数，读指针独立；
+     * 调用时引用计数加一，用完后要 {@link #release()}
+     */
+    public CompositeBuffer slice(int index, int length) {
+        checkIndex(index, length);
+        CompositeBuffer slice = new CompositeBuffer(root != null ? root : this, 4);
+        int end = index + length;
+        for (int c = length == 0 ? count : componentIndex(index); c < count && offsets[c] < end; c++) {
+            int from = Math.max(index, offsets[c]);
+            int to = Math.min(end, offsets[c + 1]);
+            //独立的视图：原缓冲区和切片可能同时在不同连接上聚集写入，不能共用 position
+            slice.append(views[c].duplicate(), starts[c] + from - offsets[c], to - from);
+        }
+        retain();
+        return slice;
+    }
+
+    /**
+     * 把从读指针开始的组件填入 dst[offset, offset + max)，各视图的 position/limit 已经设置好，
+     * 可以直接传给 write(ByteBuffer[], int, int)；写出后用 {@link #skip(int)} 推进读指针
+     *
+     * @return 填入的个数
+     */
+    public int nioBuffers(ByteBuffer[] dst, int offset, int max) {
+        ensureAccessible();
+        if (!isReadable()) {
+            return 0;
+        }
+        int filled = 0;
+        int c = componentIndex(readerIndex);
+        for (; c < count && filled < max; c++) {
+            int size = offsets[c + 1] - offsets[c];
+            if (size == 0) {
+                continue;
+            }
+            int local = filled == 0 ? readerIndex - offsets[c] : 0;
+            ByteBuffer view = views[c];
+            view.limit(starts[c] + size).position(starts[c] + local);
+            dst[offset + filled++] = view;
+        }
+        return filled;
+    }
+
+    /**
+     * 一次聚集写入，推进读指针
+     *
+     * @return 写出的字节数
+     */
+    public long write(GatheringByteChannel channel) throws IOException {
+        ByteBuffer[] gather = new ByteBuffer[Math.min(count, 1024)];
+        int n = nioBuffers(gather, 0, gather.length);
+        if (n == 0) {
+            return 0;
+        }
+        long written = channel.write(gather, 0, n);
+        readerIndex += (int) written;
+        return written;
+    }
+
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    public CompositeBuffer retain() {
+        for (; ; ) {
+            int current = refCnt.get();
+            if (current <= 0) {
+                throw new IllegalStateException("refCnt: " + current);
+            }
+            if (refCnt.compareAndSet(current, current + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * @return 引用计数是否归零（组件已经归还）
+     */
+    public boolean release() {
+        int current = refCnt.decrementAndGet();
+        if (current < 0) {
+            refCnt.incrementAndGet();
+            throw new IllegalStateException("refCnt: " + current);
+        }
+        if (current > 0) {
+            return false;
+        }
+        (root != null ? root : this).deallocate();
+        return true;
+    }
+
+    private void deallocate() {
+        for (int i = 0; i < count; i++) {
+            if (pools[i] != null) {
+                pools[i].release(owned[i]);
+            }
+            owned[i] = null;
+            views[i] = null;
+        }
+    }
+
+    private void ensureAccessible() {
+        if (refCnt.get() <= 0) {
+            throw new IllegalStateException("buffer already released");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeBuffer(readerIndex=" + readerIndex + ", length=" + length
+                + ", components=" + count + ", refCnt=" + refCnt.get() + ")";
+    }
+}
@@ -0,0 +1,227 @@
+package cn.clboy.nio.buffer;
+
+import cn.clboy.nio.reactor.ChannelHandler;
+import cn.clboy.nio.reactor.Connection;
+import cn.clboy.nio.reactor.ReactorServer;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 下午8:00
+ * @Since 1.0.0
+ * <p>
+ * 组合缓冲区：跨组件读取、切片、引用计数和聚集写入
+ */
+public class CompositeBufferTest {
+
+    /**
+     * 4KB 数据随机切成 0~13 字节的组件，每个位置上的 getShort/getInt/getLong 都与连续的缓冲区一致
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetters() throws Exception {
+        Random random = new Random(1);
+        byte[] data = new byte[4096];
+        random.nextBytes(data);
+        ByteBuffer flat = ByteBuffer.wrap(data);
+
+        CompositeBuffer composite = new CompositeBuffer();
+        for (int offset = 0; offset < data.length; ) {
+            int size = Math.min(random.nextInt(14), data.length - offset);
+            //组件带有前后的无关数据，只有 [position, limit) 属于组合缓冲区
+            ByteBuffer component = ByteBuffer.allocateDirect(size + 6);
+            component.position(3);
+            component.put(data, offset, size).flip().position(3);
+            composite.addComponent(component);
+            offset += size;
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i + 8 <= data.length; i++) {
+            if (composite.getByte(i) != flat.get(i) || composite.getShort(i) != flat.getShort(i)
+                    || composite.getInt(i) != flat.getInt(i) || composite.getLong(i) != flat.getLong(i)) {
+                mismatches++;
+            }
+        }
+        long sum = 0;
+        long expected = 0;
+        while (composite.readableBytes() >= 8) {
+            sum += composite.getLong();
+            expected += flat.getLong();
+        }
+
+        CompositeBuffer slice = composite.slice(1000, 100);
+        ByteBuffer copy = ByteBuffer.allocate(100);
+        slice.get(copy);
+        boolean sliceOk = copy.flip().equals(ByteBuffer.wrap(data, 1000, 100)) && slice.getInt(96) == flat.getInt(1096);
+        slice.release();
+        composite.release();
+
+        System.out.println(composite.numComponents() + " 个组件，不一致的位置：" + mismatches
+                + "，相对读取：" + (sum == expected) + "，切片：" + sliceOk);
+    }
+
+    /**
+     * 组件都来自池：原缓冲区和切片都释放后组件才归还
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRelease() throws Exception {
+        BufferPool pool = new BufferPool(1 << 20, 64, true);
+        CompositeBuffer composite = new CompositeBuffer()
+                .addComponent(pool.acquire(16).putInt(4).flip(), pool)
+                .addComponent(pool.acquire(1024).put(new byte[1024]).flip(), pool);
+        CompositeBuffer slice = composite.slice(2, 100);
+        System.out.println("使用中：" + pool.inUse() + "，refCnt=" + composite.refCnt());
+        composite.release();
+        System.out.println("释放原缓冲区后使用中：" + pool.inUse() + "，refCnt=" + slice.refCnt());
+        slice.release();
+        System.out.println("释放切片后使用中：" + pool.inUse());
+        try {
+            slice.getByte(0);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+        pool.reportLeaks();
+    }
+
+    /**
+     * 服务端给每次读到的数据加上 4 字节长度头后回写：头和数据是两个池化组件，
+     * 一起进入出站队列的聚集写入，不拷贝到一个缓冲区中；所有组件最终都归还到池
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGatherWrite() throws Exception {
+        BufferPool pool = new BufferPool(1 << 20, 64, false);
+        try (ReactorServer server = new ReactorServer(7030, 1, new FramingHandler(pool))) {
+            server.start();
+            Random random = new Random(2);
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7030))) {
+                long sent = 0;
+                long received = 0;
+                int frames = 0;
+                ByteBuffer header = ByteBuffer.allocate(4);
+                ByteBuffer payload = ByteBuffer.allocate(8192);
+                for (int i = 0; i < 1000; i++) {
+                    byte[] message = new byte[1 + random.nextInt(4000)];
+                    random.nextBytes(message);
+                    ByteBuffer out = ByteBuffer.wrap(message);
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                    sent += message.length;
+                    //服务端按读到的块分帧，一条消息可能被拆成多帧
+                    while (received < sent) {
+                        header.clear();
+                        readFully(channel, header);
+                        payload.clear().limit(header.flip().getInt());
+                        readFully(channel, payload);
+                        received += payload.limit();
+                        frames++;
+                    }
+                }
+                System.out.println("发送 " + sent + " 字节，收到 " + frames + " 帧共 " + received + " 字节");
+            }
+            Thread.sleep(200);
+            System.out.println("池中使用中的缓冲区：" + pool.inUse());
+        }
+    }
+
+    /**
+     * 广播：同一个 1MB 的组合缓冲区 retain 后写给两个连接。1MB 超过套接字发送缓冲区，两个连接各自分多次写出，
+     * 每个连接用自己的切片，互不影响读指针和组件的 position，两个客户端都收到完整一致的数据
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFanOut() throws Exception {
+        BufferPool pool = new BufferPool(1 << 20, 64, false);
+        byte[] data = new byte[1024 * 1024];
+        new Random(3).nextBytes(data);
+        List<Connection> connections = new ArrayList<>();
+        ChannelHandler handler = new ChannelHandler() {
+            @Override
+            public void onConnected(Connection connection) {
+                connections.add(connection);
+            }
+
+            @Override
+            public void onRead(Connection connection) throws IOException {
+                ByteBuffer request = ByteBuffer.allocate(1);
+                if (connection.read(request) == -1) {
+                    connection.close();
+                    return;
+                }
+                CompositeBuffer message = new CompositeBuffer(16);
+                for (int offset = 0; offset < data.length; offset += BufferPool.MAX_SIZE) {
+                    message.addComponent(pool.acquire(BufferPool.MAX_SIZE).put(data, offset, BufferPool.MAX_SIZE).flip(), pool);
+                }
+                for (Connection target : connections) {
+                    target.write(message.retain());
+                }
+                message.release();
+            }
+        };
+        try (ReactorServer server = new ReactorServer(7031, 1, handler)) {
+            server.start();
+            try (SocketChannel first = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7031));
+                 SocketChannel second = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7031))) {
+                Thread.sleep(200);
+                first.write(ByteBuffer.wrap(new byte[1]));
+                for (SocketChannel channel : new SocketChannel[]{first, second}) {
+                    ByteBuffer received = ByteBuffer.allocate(data.length);
+                    readFully(channel, received);
+                    System.out.println(channel.getLocalAddress() + " 收到的数据" + (received.flip().equals(ByteBuffer.wrap(data)) ? "一致" : "不一致"));
+                }
+            }
+            Thread.sleep(200);
+            System.out.println("池中使用中的缓冲区：" + pool.inUse());
+        }
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static class FramingHandler implements ChannelHandler {
+
+        private final BufferPool pool;
+
+        FramingHandler(BufferPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void onRead(Connection connection) throws IOException {
+            ByteBuffer payload = pool.acquire(8192);
+            int len = connection.read(payload);
+            if (len <= 0) {
+                pool.release(payload);
+                if (len == -1) {
+                    connection.close();
+                }
+                return;
+            }
+            ByteBuffer header = pool.acquire(4).putInt(len).flip();
+            connection.write(new CompositeBuffer(2)
+                    .addComponent(header, pool)
+                    .addComponent(payload.flip(), pool));
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package cn.clboy.nio.charset;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午7:05
+ * @Since 1.0.0
+ * <p>
+ * 流式字符集转换（例如 GBK -> UTF-8）。
+ * ChannelTest.test05 中的 Charset.decode() 每次都会分配新的 CharBuffer，而且一次只能处理一个缓冲区，
+ * 多字节字符被两次 read 拆开时会解码出乱码。这里复用同一对 CharsetDecoder/CharsetEncoder：
+ * decode() 遇到不完整的字节序列时返回 UNDERFLOW 并把它留在输入缓冲区中，compact() 之后和下一次读到的字节拼起来继续解码。
+ * <p>
+ * 一个实例不是线程安全的，并行模式下每个任务使用自己的实例
+ */
+public class StreamingTranscoder {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Charset from;
+    private final Charset to;
+    private final CodingErrorAction errorAction;
+    private final CharsetDecoder decoder;
+    private final CharsetEncoder encoder;
+    /**
+     * 编码器对堆上的 CharBuffer 有快速路径，所以字符缓冲区放在堆上并一直复用
+     */
+    private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+
+    public StreamingTranscoder(Charset from, Charset to) {
+        this(from, to, CodingErrorAction.REPORT);
+    }
+
+    /**
+     * @param errorAction 遇到非法或无法映射的字符时的处理方式
+     */
+    public StreamingTranscoder(Charset from, Charset to, CodingErrorAction errorAction) {
+        this.from = from;
+        this.to = to;
+        this.errorAction = errorAction;
+        this.decoder = from.newDecoder().onMalformedInput(errorAction).onUnmappableCharacter(errorAction);
+        this.encoder = to.newEncoder().onMalformedInput(errorAction).onUnmappableCharacter(errorAction);
+    }
+
+    /**
+     * 把 in 中的全部字节转换后写入 out
+     *
+     * @return 写出的字节数
+     */
+    public long transcode(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        decoder.reset();
+        encoder.reset();
+        chars.clear();
+        ByteBuffer input = BufferPool.DEFAULT.acquire(CHUNK_SIZE);
+        ByteBuffer output = BufferPool.DEFAULT.acquire(CHUNK_SIZE);
+        try {
+            long written = 0;
+            boolean eof = false;
+            for (; ; ) {
+                if (!eof && input.hasRemaining() && in.read(input) == -1) {
+                    eof = true;
+                }
+                input.flip();
+                CoderResult result = decoder.decode(input, chars, eof);
+                //没解码的尾部字节（被拆开的多字节字符）移到缓冲区开头，等待下一次读取
+                input.compact();
+                check(result);
+                written += encode(output, out, false);
+                if (eof && result.isUnderflow()) {
+                    break;
+                }
+            }
+            while (check(decoder.flush(chars)).isOverflow()) {
+                written += encode(output, out, false);
+            }
+            written += encode(output, out, true);
+            while (check(encoder.flush(output)).isOverflow()) {
+                written += drain(output, out);
+            }
+            written += drain(output, out);
+            return written;
+        } finally {
+            BufferPool.DEFAULT.release(input);
+            BufferPool.DEFAULT.release(output);
+        }
+    }
+
+    /**
+     * 把 chars 中的字符编码写出，末尾不完整的代理对留在 chars 中
+     */
+    private long encode(ByteBuffer output, WritableByteChannel out, boolean endOfInput) throws IOException {
+        long written = 0;
+        chars.flip();
+        for (; ; ) {
+            CoderResult result = check(encoder.encode(chars, output, endOfInput));
+            if (result.isUnderflow()) {
+                break;
+            }
+            written += drain(output, out);
+        }
+        chars.compact();
+        return written;
+    }
+
+    private static long drain(ByteBuffer output, WritableByteChannel out) throws IOException {
+        output.flip();
+        long written = output.remaining();
+        while (output.hasRemaining()) {
+            out.write(output);
+        }
+        output.clear();
+        return written;
+    }
+
+    private static CoderResult check(CoderResult result) throws CharacterCodingException {
+        if (result.isError()) {
+            result.throwException();
+        }
+        return result;
+    }
+
+    /**
+     * 文件转换
+     */
+    public long transcode(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return transcode(in, out);
+        }
+    }
+
+    /**
+     * 并行转换大文件：按换行符把源文件切成若干段，每段在 ForkJoinPool 中转换成一个临时文件，最后用 transferTo 依次拼接。
+     * <p>
+     * 换行符 0x0A 在 GBK、UTF-8 等兼容 ASCII 的字符集中不会出现在多字节字符内部（GBK 的尾字节不小于 0x40），
+     * 所以在它之后切开是安全的；UTF-16 之类的字符集不满足这个条件，会退回串行转换
+     */
+    public long transcodeParallel(Path source, Path target, ForkJoinPool pool) throws IOException {
+        if (!isNewlineSafe(from) || !isNewlineSafe(to)) {
+            return transcode(source, target);
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = in.size();
+            int parts = (int) Math.min(pool.getParallelism() * 4L, Math.max(1, size / (4 * 1024 * 1024)));
+            if (parts <= 1) {
+                return transcode(source, target);
+            }
+            long[] bounds = splitAtNewlines(in, size, parts);
+            List<Path> partFiles = new ArrayList<>();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            try {
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    Path part = Files.createTempFile(target.toAbsolutePath().getParent(), "transcode", ".part");
+                    partFiles.add(part);
+                    long start = bounds[i];
+                    long end = bounds[i + 1];
+                    tasks.add(pool.submit(() -> {
+                        StreamingTranscoder transcoder = new StreamingTranscoder(from, to, errorAction);
+                        try (FileChannel out = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                            transcoder.transcode(new RangeChannel(in, start, end), out);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+                return concat(partFiles, target);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (ForkJoinTask<?> task : tasks) {
+                    task.cancel(false);
+                }
+                for (Path part : partFiles) {
+                    Files.deleteIfExists(part);
+                }
+            }
+        }
+    }
+
+    private static boolean isNewlineSafe(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        ByteBuffer newline = charset.encode("\n");
+        return newline.remaining() == 1 && newline.get(0) == '\n'
+                && charset.encode("a").remaining() == 1;
+    }
+
+    /**
+     * 找到每个切分点之后的第一个换行符，返回各段边界（第一个是 0，最后一个是 size）
+     */
+    private static long[] splitAtNewlines(FileChannel in, long size, int parts) throws IOException {
+        long[] bounds = new long[parts + 1];
+        int count = 1;
+        ByteBuffer probe = BufferPool.DEFAULT.acquire(4096);
+        try {
+            for (int i = 1; i < parts; i++) {
+                long position = Math.max(size / parts * i, bounds[count - 1]);
+                long boundary = size;
+                scan:
+                while (position < size) {
+                    probe.clear();
+                    int len = in.read(probe, position);
+                    if (len <= 0) {
+                        break;
+                    }
+                    for (int j = 0; j < len; j++) {
+                        if (probe.get(j) == '\n') {
+                            boundary = position + j + 1;
+                            break scan;
+                        }
+                    }
+                    position += len;
+                }
+                if (boundary > bounds[count - 1] && boundary < size) {
+                    bounds[count++] = boundary;
+                }
+            }
+        } finally {
+            BufferPool.DEFAULT.release(probe);
+        }
+        bounds[count++] = size;
+        long[] result = new long[count];
+        System.arraycopy(bounds, 0, result, 0, count);
+        return result;
+    }
+
+    private static long concat(List<Path> parts, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path part : parts) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+            return out.size();
+        }
+    }
+
+    /**
+     * 文件中 [position, end) 区间的只读视图，使用定位读取，多个线程可以共享同一个 FileChannel
+     */
+    private static class RangeChannel implements ReadableByteChannel {
+
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RangeChannel(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int limit = dst.limit();
+            if (end - position < dst.remaining()) {
+                dst.limit(dst.position() + (int) (end - position));
+            }
+            try {
+                int len = channel.read(dst, position);
+                if (len > 0) {
+                    position += len;
+                }
+                return len;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cn.clboy.nio.charset;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午7:40
+ * @Since 1.0.0
+ * <p>
+ * 流式字符集转换：GBK -> UTF-8
+ */
+public class StreamingTranscoderTest {
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    /**
+     * 001.txt 的编码为 GBK，转换成 UTF-8 后可以直接输出
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test01() throws Exception {
+        Path target = Files.createTempFile("001", ".txt");
+        new StreamingTranscoder(GBK, StandardCharsets.UTF_8).transcode(Paths.get("resources", "001.txt"), target);
+        System.out.println(new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        Files.delete(target);
+    }
+
+    /**
+     * 大文件：串行与并行转换的耗时，以及结果是否一致
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test02() throws Exception {
+        Path source = Files.createTempFile("gbk", ".txt");
+        Path serial = Files.createTempFile("utf8-serial", ".txt");
+        Path parallel = Files.createTempFile("utf8-parallel", ".txt");
+        //每行长度不同，保证多字节字符会落在读取缓冲区的边界上
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < 500000; i++) {
+                ByteBuffer line = GBK.encode(i + "：我爱你，亲爱的姑娘。。。abc" + "中".repeat(i % 7) + "\n");
+                channel.write(line);
+            }
+        }
+
+        StreamingTranscoder transcoder = new StreamingTranscoder(GBK, StandardCharsets.UTF_8);
+        long start = System.currentTimeMillis();
+        transcoder.transcode(source, serial);
+        long end = System.currentTimeMillis();
+        System.out.println("串行耗费时间：" + (end - start));
+
+        start = System.currentTimeMillis();
+        transcoder.transcodeParallel(source, parallel, ForkJoinPool.commonPool());
+        end = System.currentTimeMillis();
+        System.out.println("并行耗费时间：" + (end - start));
+
+        System.out.println(Files.mismatch(serial, parallel) == -1);
+        System.out.println(new String(Files.readAllBytes(source), GBK).equals(new String(Files.readAllBytes(serial), StandardCharsets.UTF_8)));
+        Files.delete(source);
+        Files.delete(serial);
+        Files.delete(parallel);
+    }
+}
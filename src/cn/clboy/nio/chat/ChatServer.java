@@ -0,0 +1,254 @@
+package cn.clboy.nio.chat;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.codec.LengthFieldFrameDecoder;
+import cn.clboy.nio.codec.LengthFieldFrameEncoder;
+import cn.clboy.nio.log.SegmentLog;
+import cn.clboy.nio.reactor.ChannelHandler;
+import cn.clboy.nio.reactor.Connection;
+import cn.clboy.nio.reactor.EventLoop;
+import cn.clboy.nio.reactor.ReactorServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/21 下午3:10
+ * @Since 1.0.0
+ * <p>
+ * 聊天室服务端：协议与 NonBlockingNIOTest 的客户端相同（4 字节长度前缀 + UTF-8 消息），
+ * 收到的每条消息广播给所有在线的客户端（包括发送者自己）。
+ * <p>
+ * 广播时消息只编码一次，放进一个只读的堆缓冲区，每个接收者的出站队列里放的是它的 duplicate()，
+ * 即共享同一块内存、只有各自的 position/limit，所以一次广播的内存开销与消息大小 × 接收者数量无关。
+ * 每条消息 allocateDirect 的分配和回收远比堆分配慢，写出时 JDK 把堆缓冲区拷进线程缓存的临时直接缓冲区，只是一次小的内存拷贝
+ * <p>
+ * 成员按所属的 EventLoop 分组，每组的列表只在对应的事件循环线程中访问；
+ * 广播时给每个事件循环投递一个任务，由它把消息放进自己负责的连接，发送者所在的事件循环不会被大量接收者拖住。
+ * <p>
+ * 接收者出站队列超过高水位（{@link Connection#isWritable()} 为 false）时按 {@link SlowConsumerPolicy} 处理。
+ * <p>
+ * 设置了 {@link #messageLog(SegmentLog)} 时，每条广播的消息由专门的追加线程按广播顺序写进日志，
+ * 事件循环线程不会被日志的锁和磁盘写入拖住；日志比投递稍晚，服务端关闭时等追加线程写完
+ */
+public class ChatServer implements Closeable {
+
+    /**
+     * 慢接收者的处理方式
+     */
+    public enum SlowConsumerPolicy {
+        /**
+         * 丢弃发给它的这条消息
+         */
+        DROP,
+        /**
+         * 断开它的连接
+         */
+        DISCONNECT
+    }
+
+    private final ReactorServer server;
+    private final SlowConsumerPolicy policy;
+    private final int maxMessageLength;
+
+    /**
+     * EventLoop -> 它负责的成员，列表只在该事件循环线程中读写
+     */
+    private final Map<EventLoop, List<Connection>> members = new IdentityHashMap<>();
+
+    private volatile SegmentLog messageLog;
+    /**
+     * 单线程，保证日志中消息的顺序与广播顺序一致
+     */
+    private final ExecutorService appender = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "chat-log-appender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder logFailures = new LongAdder();
+
+    /**
+     * 每个连接的状态
+     */
+    private static final class Session {
+        final LengthFieldFrameDecoder decoder;
+        /**
+         * 在成员列表中的下标，用于 O(1) 移除
+         */
+        int index;
+
+        Session(int maxMessageLength) {
+            this.decoder = new LengthFieldFrameDecoder(maxMessageLength);
+        }
+    }
+
+    public ChatServer(int port, int workers, SlowConsumerPolicy policy) throws IOException {
+        this(port, workers, policy, 64 * 1024);
+    }
+
+    public ChatServer(int port, int workers, SlowConsumerPolicy policy, int maxMessageLength) throws IOException {
+        this.policy = policy;
+        this.maxMessageLength = maxMessageLength;
+        this.server = new ReactorServer(port, workers, new ChatHandler());
+        for (EventLoop eventLoop : server.workerGroup().eventLoops()) {
+            members.put(eventLoop, new ArrayList<>());
+        }
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public ReactorServer server() {
+        return server;
+    }
+
+    /**
+     * 把广播的消息持久化到日志，日志由调用方在关闭 ChatServer 之后关闭
+     */
+    public ChatServer messageLog(SegmentLog messageLog) {
+        this.messageLog = messageLog;
+        return this;
+    }
+
+    /**
+     * 线程安全：把 payload 编码一次后广播给所有成员，调用返回后 payload 可以重用
+     */
+    public void broadcast(ByteBuffer payload) {
+        ByteBuffer message = ByteBuffer.allocate(LengthFieldFrameEncoder.HEADER_LENGTH + payload.remaining());
+        LengthFieldFrameEncoder.encode(message, payload);
+        message.flip();
+        ByteBuffer shared = message.asReadOnlyBuffer();
+        broadcasts.increment();
+        SegmentLog log = messageLog;
+        if (log != null) {
+            ByteBuffer logged = shared.duplicate().position(LengthFieldFrameEncoder.HEADER_LENGTH);
+            appender.execute(() -> append(log, logged));
+        }
+        for (Map.Entry<EventLoop, List<Connection>> entry : members.entrySet()) {
+            List<Connection> connections = entry.getValue();
+            entry.getKey().execute(() -> deliver(connections, shared));
+        }
+    }
+
+    /**
+     * 在追加线程中把消息写进日志，失败只计数，不影响广播
+     */
+    private void append(SegmentLog log, ByteBuffer payload) {
+        try {
+            log.append(payload);
+        } catch (IOException | RuntimeException e) {
+            logFailures.increment();
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 在事件循环线程中把消息放进每个成员的出站队列
+     */
+    private void deliver(List<Connection> connections, ByteBuffer shared) {
+        int ok = 0;
+        int slow = 0;
+        //倒序遍历：断开连接会把最后一个成员换到当前位置，而它已经处理过了
+        for (int i = connections.size() - 1; i >= 0; i--) {
+            Connection connection = connections.get(i);
+            if (!connection.isWritable()) {
+                slow++;
+                if (policy == SlowConsumerPolicy.DISCONNECT) {
+                    connection.close();
+                }
+                continue;
+            }
+            try {
+                connection.write(shared.duplicate());
+                ok++;
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+        delivered.add(ok);
+        if (slow > 0) {
+            (policy == SlowConsumerPolicy.DROP ? dropped : disconnected).add(slow);
+        }
+    }
+
+    public String stats() {
+        int online = 0;
+        for (EventLoop eventLoop : server.workerGroup().eventLoops()) {
+            online += eventLoop.connectionCount();
+        }
+        return "online=" + online + " broadcasts=" + broadcasts.sum() + " delivered=" + delivered.sum()
+                + " dropped=" + dropped.sum() + " disconnected=" + disconnected.sum() + " logFailures=" + logFailures.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        appender.shutdown();
+        try {
+            appender.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class ChatHandler implements ChannelHandler {
+
+        @Override
+        public void onConnected(Connection connection) {
+            Session session = new Session(maxMessageLength);
+            List<Connection> connections = members.get(connection.eventLoop());
+            session.index = connections.size();
+            connections.add(connection);
+            connection.attach(session);
+        }
+
+        @Override
+        public void onRead(Connection connection) throws IOException {
+            Session session = (Session) connection.attachment();
+            ByteBuffer buffer = BufferPool.DEFAULT.acquire(8192);
+            try {
+                int len = connection.read(buffer);
+                if (len == -1) {
+                    connection.close();
+                    return;
+                }
+                buffer.flip();
+                session.decoder.decode(buffer, ChatServer.this::broadcast);
+            } finally {
+                BufferPool.DEFAULT.release(buffer);
+            }
+        }
+
+        @Override
+        public void onClosed(Connection connection) {
+            Session session = (Session) connection.attachment();
+            if (session == null) {
+                return;
+            }
+            //把最后一个成员换到被移除的位置
+            List<Connection> connections = members.get(connection.eventLoop());
+            Connection last = connections.remove(connections.size() - 1);
+            if (last != connection) {
+                connections.set(session.index, last);
+                ((Session) last.attachment()).index = session.index;
+            }
+            session.decoder.release();
+        }
+    }
+}
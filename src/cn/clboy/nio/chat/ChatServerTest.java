@@ -0,0 +1,222 @@
+package cn.clboy.nio.chat;
+
+import cn.clboy.nio.log.LogReader;
+import cn.clboy.nio.log.SegmentLog;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/21 下午3:50
+ * @Since 1.0.0
+ * <p>
+ * 聊天室广播：消息编码一次，每个接收者只排队一个 duplicate() 视图
+ */
+public class ChatServerTest {
+
+    /**
+     * 聊天室服务端，端口与 NonBlockingNIOTest.testClient 相同，多开几个客户端即可聊天
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServer() throws Exception {
+        try (ChatServer server = new ChatServer(7001, 2, ChatServer.SlowConsumerPolicy.DROP)) {
+            server.start();
+            new CountDownLatch(1).await();
+        }
+    }
+
+    /**
+     * 5000 个客户端（1 万个需要把文件描述符上限调到 2 万以上），广播 100 条 256 字节的消息，
+     * 统计全部送达的耗时，以及 worker 线程每投递一次分配的堆内存
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFanOut() throws Exception {
+        int clients = 5000;
+        int messages = 100;
+        int messageSize = 256;
+        try (ChatServer server = new ChatServer(7010, 2, ChatServer.SlowConsumerPolicy.DROP)) {
+            server.start();
+            Receivers receivers = new Receivers(7010, clients);
+            long expected = (long) clients * messages * (messageSize + 4);
+
+            long allocatedBefore = workerAllocatedBytes();
+            long start = System.nanoTime();
+            ByteBuffer payload = ByteBuffer.allocate(messageSize);
+            for (int i = 0; i < messages; i++) {
+                payload.clear();
+                server.broadcast(payload);
+            }
+            receivers.awaitBytes(expected);
+            long elapsed = System.nanoTime() - start;
+            long allocated = workerAllocatedBytes() - allocatedBefore;
+
+            System.out.println(clients + " 个客户端 × " + messages + " 条消息，耗时 " + elapsed / 1_000_000 + " ms，"
+                    + "worker 每次投递分配 " + allocated / ((long) clients * messages) + " 字节（消息 " + messageSize + " 字节）");
+            System.out.println(server.stats());
+            receivers.close();
+        }
+    }
+
+    /**
+     * 慢接收者：一部分客户端不读数据，分别演示丢弃和断开两种策略
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSlowConsumer() throws Exception {
+        for (ChatServer.SlowConsumerPolicy policy : ChatServer.SlowConsumerPolicy.values()) {
+            try (ChatServer server = new ChatServer(7011, 1, policy)) {
+                server.start();
+                Receivers receivers = new Receivers(7011, 10);
+                List<SocketChannel> slow = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    slow.add(SocketChannel.open(new InetSocketAddress("127.0.0.1", 7011)));
+                }
+                Thread.sleep(200);
+                ByteBuffer payload = ByteBuffer.allocate(4096);
+                for (int i = 0; i < 2000; i++) {
+                    payload.clear();
+                    server.broadcast(payload);
+                }
+                receivers.awaitBytes(10L * 2000 * 4100);
+                System.out.println(policy + "：" + server.stats());
+                receivers.close();
+                for (SocketChannel channel : slow) {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 消息日志：事件循环只把消息交给追加线程，关闭服务端时等日志写完，日志中的消息与广播顺序一致
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMessageLog() throws Exception {
+        Path dir = Files.createTempDirectory("chat");
+        int messages = 10000;
+        try (SegmentLog log = new SegmentLog(dir)) {
+            try (ChatServer server = new ChatServer(7016, 1, ChatServer.SlowConsumerPolicy.DROP).messageLog(log)) {
+                server.start();
+                Receivers receivers = new Receivers(7016, 10);
+                ByteBuffer payload = ByteBuffer.allocate(100);
+                for (int i = 0; i < messages; i++) {
+                    payload.clear();
+                    payload.putInt(0, i);
+                    server.broadcast(payload);
+                }
+                receivers.awaitBytes(10L * messages * 104);
+                receivers.close();
+                System.out.println(server.stats());
+            }
+            LogReader reader = log.reader(0);
+            int count = 0;
+            int outOfOrder = 0;
+            ByteBuffer message;
+            while ((message = reader.next()) != null) {
+                if (message.getInt(0) != count) {
+                    outOfOrder++;
+                }
+                count++;
+            }
+            System.out.println("日志中的消息：" + count + "（广播 " + messages + "），顺序不一致 " + outOfOrder);
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static long workerAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("nio-worker")) {
+                total += threads.getThreadAllocatedBytes(thread.threadId());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 一个选择器线程管理所有接收端连接，只统计收到的字节数
+     */
+    private static class Receivers {
+
+        private final Selector selector = Selector.open();
+        private final AtomicLong received = new AtomicLong();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Receivers(int port, int clients) throws Exception {
+            for (int i = 0; i < clients; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ);
+            }
+            //等服务端把所有连接都注册好
+            Thread.sleep(500);
+            thread = new Thread(this::loop, "chat-receivers");
+            thread.start();
+        }
+
+        private void loop() {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            try {
+                while (running) {
+                    selector.select(100);
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey sk = it.next();
+                        it.remove();
+                        int len;
+                        while ((len = ((SocketChannel) sk.channel()).read(buffer.clear())) > 0) {
+                            received.addAndGet(len);
+                        }
+                        if (len == -1) {
+                            sk.cancel();
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        void awaitBytes(long expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (received.get() < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+
+        void close() throws Exception {
+            running = false;
+            thread.join();
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+}
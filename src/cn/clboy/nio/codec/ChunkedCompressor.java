@@ -0,0 +1,352 @@
+package cn.clboy.nio.codec;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/23 上午10:10
+ * @Since 1.0.0
+ * <p>
+ * 分块压缩：把一段字节流切成最多 {@link #CHUNK_SIZE} 字节的块，每块独立 deflate，写成如下的帧，以 END 帧结束：
+ * <pre>
+ * | type (1) | rawLength (4) | storedLength (4) | stored bytes |
+ * </pre>
+ * - DEFLATE：stored 为 raw deflate（无 zlib 头）的压缩数据
+ * <p>
+ * - STORED：压缩后没有明显变小（例如 jpg、zip），直接存放原始字节。
+ * 连续 {@link #GIVE_UP_AFTER} 块都压不动时，之后的 {@link #SKIP_CHUNKS} 块不再尝试，然后再试一次，不在压不动的数据上白白耗费 CPU
+ * <p>
+ * 输入、输出都是缓冲区池中的直接缓冲区，Deflater 的 ByteBuffer 重载直接读写它们，数据不经过堆上的 byte[]。
+ * <p>
+ * 块之间互不依赖，所以可以交给线程池并行压缩：读取线程按顺序提交，再按提交顺序取回结果写出，输出顺序与输入一致。
+ * 是否跳过某一块在按顺序取回时才决定，与顺序压缩的判断完全相同，所以并行与顺序压缩的输出逐字节一致；
+ * 提交时只在确定会跳过时才不压缩，其余的块先压缩，取回时如果决定跳过就丢掉压缩结果
+ */
+public class ChunkedCompressor implements Closeable {
+
+    public static final int CHUNK_SIZE = BufferPool.MAX_SIZE;
+    public static final int HEADER_LENGTH = 1 + 4 + 4;
+
+    public static final byte TYPE_END = 0;
+    public static final byte TYPE_STORED = 1;
+    public static final byte TYPE_DEFLATE = 2;
+
+    static final int GIVE_UP_AFTER = 4;
+    static final int SKIP_CHUNKS = 16;
+
+    private final int level;
+    private final ExecutorService executor;
+    private final int parallelism;
+    /**
+     * 空闲的 Deflater，并行时每个进行中的任务借用一个
+     */
+    private final BlockingQueue<Deflater> deflaters;
+    private final ByteBuffer header = BufferPool.DEFAULT.acquire(HEADER_LENGTH);
+
+    private int incompressibleRun;
+    private int skip;
+
+    private long rawBytes;
+    private long wireBytes;
+    private long deflatedChunks;
+    private long storedChunks;
+
+    /**
+     * 在调用线程中顺序压缩
+     */
+    public ChunkedCompressor(int level) {
+        this(level, null, 1);
+    }
+
+    /**
+     * @param executor    压缩任务在其中执行，由调用方管理生命周期
+     * @param parallelism 同时进行中的块数
+     */
+    public ChunkedCompressor(int level, ExecutorService executor, int parallelism) {
+        this.level = level;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.deflaters = new ArrayBlockingQueue<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            deflaters.add(new Deflater(level, true));
+        }
+    }
+
+    /**
+     * 从 in 读取 length 个字节，压缩后写到 out，最后写一个 END 帧
+     *
+     * @return 写到 out 的字节数
+     */
+    public long compress(ReadableByteChannel in, long length, WritableByteChannel out) throws IOException {
+        long before = wireBytes;
+        if (executor == null) {
+            compressSequential(in, length, out);
+        } else {
+            compressParallel(in, length, out);
+        }
+        header.clear();
+        header.put(TYPE_END).putInt(0).putInt(0).flip();
+        writeFully(out, header);
+        wireBytes += HEADER_LENGTH;
+        return wireBytes - before;
+    }
+
+    private void compressSequential(ReadableByteChannel in, long length, WritableByteChannel out) throws IOException {
+        Deflater deflater = deflaters.poll();
+        Chunk chunk = new Chunk();
+        try {
+            while (length > 0) {
+                length -= chunk.read(in, length);
+                chunk.attempt = shouldAttempt();
+                chunk.compress(deflater);
+                onCompressed(chunk);
+                writeChunk(out, chunk);
+            }
+        } finally {
+            chunk.release();
+            deflaters.add(deflater);
+        }
+    }
+
+    private void compressParallel(ReadableByteChannel in, long length, WritableByteChannel out) throws IOException {
+        //每个块读完就提交，进行中的块达到 parallelism 个时先取回最早的一个写出
+        ArrayDeque<Chunk> inFlight = new ArrayDeque<>(parallelism);
+        try {
+            while (length > 0 || !inFlight.isEmpty()) {
+                if (length > 0 && inFlight.size() < parallelism) {
+                    Chunk chunk = new Chunk();
+                    try {
+                        length -= chunk.read(in, length);
+                    } catch (IOException e) {
+                        chunk.release();
+                        throw e;
+                    }
+                    //取回它之前还要经过 inFlight.size() 块，每块最多让 skip 减一，skip 只会在减到 0 之后才重新设置
+                    chunk.attempt = skip <= inFlight.size();
+                    chunk.future = executor.submit(() -> {
+                        Deflater deflater = deflaters.take();
+                        try {
+                            chunk.compress(deflater);
+                        } finally {
+                            deflaters.add(deflater);
+                        }
+                        return null;
+                    });
+                    inFlight.add(chunk);
+                    continue;
+                }
+                Chunk chunk = inFlight.poll();
+                try {
+                    await(chunk.future);
+                    if (!shouldAttempt()) {
+                        chunk.attempt = false;
+                        chunk.deflated = false;
+                    }
+                    onCompressed(chunk);
+                    writeChunk(out, chunk);
+                } finally {
+                    chunk.release();
+                }
+            }
+        } finally {
+            //出错时等进行中的任务结束再归还它们的缓冲区
+            for (Chunk chunk : inFlight) {
+                awaitUninterruptibly(chunk.future);
+                chunk.release();
+            }
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * 等任务结束，不管它成功与否；被中断时继续等，返回前恢复中断状态，否则任务可能还在使用即将归还的缓冲区
+     */
+    private static void awaitUninterruptibly(Future<?> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 最近连续几块都压不动就跳过一段，之后再试探一次
+     */
+    private boolean shouldAttempt() {
+        if (skip > 0) {
+            skip--;
+            return false;
+        }
+        return true;
+    }
+
+    private void onCompressed(Chunk chunk) {
+        if (!chunk.attempt) {
+            return;
+        }
+        if (chunk.deflated) {
+            incompressibleRun = 0;
+        } else if (++incompressibleRun >= GIVE_UP_AFTER) {
+            skip = SKIP_CHUNKS;
+            incompressibleRun = GIVE_UP_AFTER - 1;
+        }
+    }
+
+    private void writeChunk(WritableByteChannel out, Chunk chunk) throws IOException {
+        ByteBuffer stored = chunk.deflated ? chunk.compressed : chunk.raw;
+        header.clear();
+        header.put(chunk.deflated ? TYPE_DEFLATE : TYPE_STORED).putInt(chunk.raw.limit()).putInt(stored.remaining()).flip();
+        rawBytes += chunk.raw.limit();
+        wireBytes += HEADER_LENGTH + stored.remaining();
+        if (chunk.deflated) {
+            deflatedChunks++;
+        } else {
+            storedChunks++;
+        }
+        if (out instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) out;
+            ByteBuffer[] buffers = {header, stored};
+            while (stored.hasRemaining()) {
+                gathering.write(buffers);
+            }
+        } else {
+            writeFully(out, header);
+            writeFully(out, stored);
+        }
+    }
+
+    static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * 一个块：原始字节和压缩结果
+     */
+    private static class Chunk {
+        final ByteBuffer raw = BufferPool.DEFAULT.acquire(CHUNK_SIZE);
+        final ByteBuffer compressed = BufferPool.DEFAULT.acquire(CHUNK_SIZE);
+        boolean attempt;
+        boolean deflated;
+        /**
+         * 并行压缩时的任务
+         */
+        Future<?> future;
+
+        /**
+         * @return 读到的字节数
+         */
+        int read(ReadableByteChannel in, long remaining) throws IOException {
+            raw.clear();
+            raw.limit((int) Math.min(raw.capacity(), remaining));
+            while (raw.hasRemaining()) {
+                if (in.read(raw) == -1) {
+                    throw new EOFException();
+                }
+            }
+            raw.flip();
+            return raw.limit();
+        }
+
+        /**
+         * 压缩结果放不进与原始数据等大的缓冲区，或者省下的不到 1/32，就按原样存放
+         */
+        void compress(Deflater deflater) {
+            deflated = false;
+            if (!attempt) {
+                return;
+            }
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            compressed.clear();
+            while (!deflater.finished() && compressed.hasRemaining()) {
+                deflater.deflate(compressed);
+            }
+            //setInput 之后 deflate 会移动 raw 的 position
+            raw.position(0);
+            if (deflater.finished() && compressed.position() < raw.limit() - (raw.limit() >> 5)) {
+                compressed.flip();
+                deflated = true;
+            }
+        }
+
+        void release() {
+            BufferPool.DEFAULT.release(raw);
+            BufferPool.DEFAULT.release(compressed);
+        }
+    }
+
+    /**
+     * 累计的原始字节数
+     */
+    public long rawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * 累计写出的字节数（含帧头）
+     */
+    public long wireBytes() {
+        return wireBytes;
+    }
+
+    public long deflatedChunks() {
+        return deflatedChunks;
+    }
+
+    public long storedChunks() {
+        return storedChunks;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("压缩级别 %d，原始 %d 字节 -> %d 字节（%.1f%%），压缩块 %d，原样存放块 %d",
+                level, rawBytes, wireBytes, rawBytes == 0 ? 100.0 : wireBytes * 100.0 / rawBytes, deflatedChunks, storedChunks);
+    }
+
+    @Override
+    public void close() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+        BufferPool.DEFAULT.release(header);
+    }
+}
@@ -0,0 +1,152 @@
+package cn.clboy.nio.codec;
+
+import cn.clboy.nio.buffer.BufferPool;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Deflater;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/23 上午11:20
+ * @Since 1.0.0
+ * <p>
+ * 分块压缩：可压缩的文本、随机数据、jpg 三种输入，顺序压缩与并行压缩
+ */
+public class ChunkedCompressorTest {
+
+    /**
+     * 三种输入各压缩一遍再解压，比较内容
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] random = new byte[8 * 1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(random);
+
+        roundTrip("日志文本", logLines(32 * 1024 * 1024));
+        roundTrip("随机数据", random);
+        roundTrip("1.jpg", Files.readAllBytes(Paths.get("resources", "1.jpg")));
+    }
+
+    private void roundTrip(String name, byte[] data) throws Exception {
+        Path source = Files.createTempFile("chunked", ".bin");
+        Files.write(source, data);
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        try (ChunkedCompressor compressor = new ChunkedCompressor(Deflater.BEST_SPEED);
+             FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long start = System.nanoTime();
+            compressor.compress(in, data.length, Channels.newChannel(wire));
+            System.out.println(name + "：" + compressor + "，耗时 " + (System.nanoTime() - start) / 1000000 + "ms");
+        }
+
+        ByteArrayOutputStream restored = new ByteArrayOutputStream();
+        try (ChunkedDecompressor decompressor = new ChunkedDecompressor()) {
+            decompressor.decompress(Channels.newChannel(new ByteArrayInputStream(wire.toByteArray())), Channels.newChannel(restored));
+        }
+        System.out.println(name + " 解压后一致：" + Arrays.equals(data, restored.toByteArray()));
+        Files.delete(source);
+    }
+
+    /**
+     * 顺序压缩与线程池并行压缩的耗时，输出必须逐字节相同
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParallel() throws Exception {
+        byte[] data = logLines(128 * 1024 * 1024);
+        Path source = Files.createTempFile("chunked", ".bin");
+        Files.write(source, data);
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            byte[] sequential = compress(source, data.length, new ChunkedCompressor(Deflater.BEST_SPEED), "顺序");
+            byte[] parallel = compress(source, data.length,
+                    new ChunkedCompressor(Deflater.BEST_SPEED, executor, threads * 2), threads + " 线程并行");
+            System.out.println("输出相同：" + Arrays.equals(sequential, parallel));
+        } finally {
+            executor.shutdown();
+            Files.delete(source);
+        }
+    }
+
+    /**
+     * 先是随机数据、后是日志文本：压不动的一段触发跳过，之后文本又能压缩。
+     * 跳过哪些块在按顺序取回时决定，并行输出与顺序输出逐字节相同；
+     * 输入比声明的长度短时中途失败，进行中的块的缓冲区都要归还
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMixed() throws Exception {
+        byte[] random = new byte[8 * 1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(random);
+        byte[] text = logLines(8 * 1024 * 1024);
+        Path source = Files.createTempFile("chunked", ".bin");
+        Files.write(source, random);
+        Files.write(source, text, StandardOpenOption.APPEND);
+        long length = random.length + text.length;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            byte[] sequential = compress(source, length, new ChunkedCompressor(Deflater.BEST_SPEED), "顺序");
+            byte[] parallel = compress(source, length, new ChunkedCompressor(Deflater.BEST_SPEED, executor, 8), "8 块并行");
+            System.out.println("输出相同：" + Arrays.equals(sequential, parallel));
+
+            long inUse = BufferPool.DEFAULT.inUse();
+            try {
+                compress(source, length + 1024 * 1024, new ChunkedCompressor(Deflater.BEST_SPEED, executor, 8), "输入不足");
+            } catch (EOFException e) {
+                System.out.println("输入不足：" + e + "，缓冲区池占用 " + inUse + " -> " + BufferPool.DEFAULT.inUse());
+            }
+        } finally {
+            executor.shutdown();
+            Files.delete(source);
+        }
+    }
+
+    private byte[] compress(Path source, long length, ChunkedCompressor compressor, String mode) throws Exception {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        try (compressor; FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long start = System.nanoTime();
+            compressor.compress(in, length, Channels.newChannel(wire));
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%s：%d ms，%.0f MB/s，%s%n", mode, elapsed / 1000000, length / (elapsed / 1e9) / 1024 / 1024, compressor);
+        }
+        return wire.toByteArray();
+    }
+
+    /**
+     * 生成类似访问日志的文本
+     */
+    public static byte[] logLines(int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] paths = {"/index.html", "/api/users", "/api/orders", "/static/app.js", "/favicon.ico"};
+        while (true) {
+            byte[] line = String.format("2026-10-23 11:%02d:%02d 192.168.%d.%d GET %s 200 %d%n",
+                    random.nextInt(60), random.nextInt(60), random.nextInt(256), random.nextInt(256),
+                    paths[random.nextInt(paths.length)], random.nextInt(100000)).getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < line.length) {
+                break;
+            }
+            buffer.put(line);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
@@ -0,0 +1,106 @@
+package cn.clboy.nio.codec;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/23 上午10:40
+ * @Since 1.0.0
+ * <p>
+ * {@link ChunkedCompressor} 的逆过程。每次只从通道中读取一个帧头或一个帧体的确切字节数，
+ * 不会多读，所以 END 帧之后的字节（例如下一个请求头）原样留在通道里
+ */
+public class ChunkedDecompressor implements Closeable {
+
+    private final Inflater inflater = new Inflater(true);
+    private final ByteBuffer header = BufferPool.DEFAULT.acquire(ChunkedCompressor.HEADER_LENGTH);
+    private final ByteBuffer stored = BufferPool.DEFAULT.acquire(ChunkedCompressor.CHUNK_SIZE);
+    private final ByteBuffer raw = BufferPool.DEFAULT.acquire(ChunkedCompressor.CHUNK_SIZE);
+
+    /**
+     * 读取帧直到 END 帧，解压后写到 out
+     *
+     * @return 写到 out 的原始字节数
+     */
+    public long decompress(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        long total = 0;
+        while (true) {
+            //池中的缓冲区容量可能比请求的大，限定只读一个帧头
+            header.clear().limit(ChunkedCompressor.HEADER_LENGTH);
+            readFully(in, header);
+            header.flip();
+            byte type = header.get();
+            int rawLength = header.getInt();
+            int storedLength = header.getInt();
+            if (type == ChunkedCompressor.TYPE_END) {
+                return total;
+            }
+            if (rawLength <= 0 || rawLength > ChunkedCompressor.CHUNK_SIZE
+                    || storedLength <= 0 || storedLength > ChunkedCompressor.CHUNK_SIZE) {
+                throw new IOException("corrupted chunk header: type=" + type + ", raw=" + rawLength + ", stored=" + storedLength);
+            }
+            stored.clear().limit(storedLength);
+            readFully(in, stored);
+            stored.flip();
+            switch (type) {
+                case ChunkedCompressor.TYPE_STORED:
+                    if (storedLength != rawLength) {
+                        throw new IOException("stored chunk length mismatch: " + storedLength + " != " + rawLength);
+                    }
+                    ChunkedCompressor.writeFully(out, stored);
+                    break;
+                case ChunkedCompressor.TYPE_DEFLATE:
+                    inflate(rawLength);
+                    ChunkedCompressor.writeFully(out, raw);
+                    break;
+                default:
+                    throw new IOException("unknown chunk type: " + type);
+            }
+            total += rawLength;
+        }
+    }
+
+    private void inflate(int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(stored);
+        raw.clear().limit(rawLength);
+        try {
+            while (!inflater.finished()) {
+                if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary() || !raw.hasRemaining())) {
+                    throw new IOException("corrupted deflate chunk");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupted deflate chunk", e);
+        }
+        if (raw.hasRemaining()) {
+            throw new IOException("inflated " + raw.position() + " bytes, expected " + rawLength);
+        }
+        raw.flip();
+    }
+
+    private static void readFully(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) == -1) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+        BufferPool.DEFAULT.release(header);
+        BufferPool.DEFAULT.release(stored);
+        BufferPool.DEFAULT.release(raw);
+    }
+}
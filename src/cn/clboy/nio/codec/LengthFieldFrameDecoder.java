@@ -0,0 +1,186 @@
+package cn.clboy.nio.codec;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午9:10
+ * @Since 1.0.0
+ * <p>
+ * 长度前缀帧解码器，每个连接一个实例（作为 SelectionKey 的附件）。
+ * 一次 read() 读到的字节可能是半帧（拆包），也可能是多帧（粘包），
+ * 所以先把字节累积到本连接的缓冲区，凑齐一整帧再交给 {@link FrameHandler}。
+ * <p>
+ * 累积缓冲区中的数据区间为 [readIndex, writeIndex)：
+ * - 帧以视图的形式交出，不拷贝消息体
+ * - 数据全部消费完时只把两个下标归零；只有剩下的半帧放不下时才 compact
+ * - 拿到 4 字节长度就校验上限，不等消息体到齐
+ */
+public class LengthFieldFrameDecoder {
+
+    /**
+     * 帧回调
+     */
+    public interface FrameHandler {
+
+        /**
+         * @param frame 消息体视图（不含长度前缀），只在回调期间有效，需要保留请自行拷贝
+         */
+        void onFrame(ByteBuffer frame) throws IOException;
+    }
+
+    private final BufferPool pool;
+    private final int maxFrameLength;
+    private final int initialCapacity;
+
+    private ByteBuffer cumulation;
+    /**
+     * cumulation 的两个视图：一个给 channel.read() 写入，一个交给 FrameHandler
+     */
+    private ByteBuffer readView;
+    private ByteBuffer frameView;
+    private int readIndex;
+    private int writeIndex;
+
+    public LengthFieldFrameDecoder(int maxFrameLength) {
+        this(BufferPool.DEFAULT, 4096, maxFrameLength);
+    }
+
+    public LengthFieldFrameDecoder(BufferPool pool, int initialCapacity, int maxFrameLength) {
+        this.pool = pool;
+        this.initialCapacity = initialCapacity;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * 从通道读取数据并解码出所有完整的帧
+     *
+     * @return 读取的字节数，对端关闭时返回 -1
+     */
+    public int read(ReadableByteChannel channel, FrameHandler handler) throws IOException {
+        if (cumulation == null) {
+            setCumulation(pool.acquire(initialCapacity));
+        }
+        int total = 0;
+        for (; ; ) {
+            if (writeIndex == cumulation.capacity()) {
+                makeRoom(writeIndex - readIndex + 1);
+            }
+            readView.limit(readView.capacity()).position(writeIndex);
+            int len = channel.read(readView);
+            if (len == -1) {
+                return -1;
+            }
+            if (len == 0) {
+                return total;
+            }
+            writeIndex += len;
+            total += len;
+            decode(handler);
+            if (writeIndex < cumulation.capacity()) {
+                //没有读满说明内核缓冲区已经读空，不必再调用一次 read()
+                return total;
+            }
+        }
+    }
+
+    /**
+     * 解码已累积的字节（也可用于直接喂入数据的场景）
+     */
+    public void decode(ByteBuffer in, FrameHandler handler) throws IOException {
+        if (cumulation == null) {
+            setCumulation(pool.acquire(Math.max(initialCapacity, in.remaining())));
+        }
+        while (in.hasRemaining()) {
+            if (writeIndex == cumulation.capacity()) {
+                makeRoom(writeIndex - readIndex + 1);
+            }
+            int n = Math.min(in.remaining(), cumulation.capacity() - writeIndex);
+            int limit = in.limit();
+            in.limit(in.position() + n);
+            readView.limit(readView.capacity()).position(writeIndex);
+            readView.put(in);
+            in.limit(limit);
+            writeIndex += n;
+            decode(handler);
+        }
+    }
+
+    private void decode(FrameHandler handler) throws IOException {
+        while (writeIndex - readIndex >= LengthFieldFrameEncoder.HEADER_LENGTH) {
+            int length = cumulation.getInt(readIndex);
+            if (length < 0 || length > maxFrameLength) {
+                throw new TooLongFrameException("frame length " + length + " exceeds " + maxFrameLength);
+            }
+            int frameEnd = readIndex + LengthFieldFrameEncoder.HEADER_LENGTH + length;
+            if (frameEnd > writeIndex) {
+                //半帧：剩余空间放不下整帧时才腾挪
+                int frameLength = LengthFieldFrameEncoder.HEADER_LENGTH + length;
+                if (readIndex + frameLength > cumulation.capacity()) {
+                    makeRoom(frameLength);
+                }
+                return;
+            }
+            frameView.limit(frameView.capacity()).position(readIndex + LengthFieldFrameEncoder.HEADER_LENGTH);
+            frameView.limit(frameEnd);
+            readIndex = frameEnd;
+            handler.onFrame(frameView);
+        }
+        if (readIndex == writeIndex) {
+            readIndex = 0;
+            writeIndex = 0;
+        }
+    }
+
+    /**
+     * 保证从 readIndex 开始至少能容纳 required 个字节：容量足够就 compact，否则换一个更大的缓冲区
+     */
+    private void makeRoom(int required) {
+        int readable = writeIndex - readIndex;
+        if (required <= cumulation.capacity()) {
+            if (readIndex > 0) {
+                cumulation.limit(writeIndex).position(readIndex);
+                cumulation.compact();
+            }
+        } else {
+            ByteBuffer bigger = pool.acquire(Math.max(required, cumulation.capacity() << 1));
+            readView.limit(writeIndex).position(readIndex);
+            bigger.put(readView);
+            pool.release(cumulation);
+            setCumulation(bigger);
+        }
+        readIndex = 0;
+        writeIndex = readable;
+    }
+
+    private void setCumulation(ByteBuffer buffer) {
+        cumulation = buffer;
+        readView = buffer.duplicate();
+        frameView = buffer.duplicate();
+    }
+
+    /**
+     * 已累积但还不够一帧的字节数
+     */
+    public int pending() {
+        return writeIndex - readIndex;
+    }
+
+    /**
+     * 连接关闭时归还累积缓冲区
+     */
+    public void release() {
+        if (cumulation != null) {
+            pool.release(cumulation);
+            cumulation = null;
+            readView = null;
+            frameView = null;
+            readIndex = 0;
+            writeIndex = 0;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package cn.clboy.nio.codec;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午9:40
+ * @Since 1.0.0
+ * <p>
+ * 拆包与粘包：长度前缀帧解码
+ */
+public class LengthFieldFrameDecoderTest {
+
+    /**
+     * 两帧粘在一起，且第二帧被拆成了两次到达
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test01() throws Exception {
+        ByteBuffer wire = ByteBuffer.allocate(64);
+        LengthFieldFrameEncoder.encode(wire, "你好".getBytes(StandardCharsets.UTF_8));
+        LengthFieldFrameEncoder.encode(wire, "hello nio".getBytes(StandardCharsets.UTF_8));
+        wire.flip();
+
+        LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(1024);
+        LengthFieldFrameDecoder.FrameHandler printer = frame -> System.out.println(StandardCharsets.UTF_8.decode(frame));
+
+        //第一次只到达了 15 个字节：第一帧完整 + 第二帧的一部分
+        ByteBuffer first = wire.duplicate();
+        first.limit(15);
+        decoder.decode(first, printer);
+        System.out.println("半帧字节数：" + decoder.pending());
+
+        //剩余字节到达
+        wire.position(15);
+        decoder.decode(wire, printer);
+        decoder.release();
+    }
+
+    /**
+     * 超过上限的帧在收到长度字段时就被拒绝
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test02() throws Exception {
+        ByteBuffer wire = ByteBuffer.allocate(4);
+        wire.putInt(10 * 1024 * 1024).flip();
+        LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(1024);
+        try {
+            decoder.decode(wire, frame -> {
+            });
+        } catch (TooLongFrameException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            decoder.release();
+        }
+    }
+
+    /**
+     * 大量小帧的解码速度
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test03() throws Exception {
+        byte[] payload = new byte[32];
+        ByteBuffer wire = ByteBuffer.allocateDirect(64 * 1024);
+        while (wire.remaining() >= payload.length + LengthFieldFrameEncoder.HEADER_LENGTH) {
+            LengthFieldFrameEncoder.encode(wire, payload);
+        }
+        wire.flip();
+
+        LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(1024);
+        long[] frames = {0};
+        LengthFieldFrameDecoder.FrameHandler counter = frame -> frames[0]++;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 20000; i++) {
+            //每次 1000 字节，模拟帧边界随机落在两次 read 之间
+            ByteBuffer in = wire.duplicate();
+            while (in.hasRemaining()) {
+                ByteBuffer chunk = in.duplicate();
+                chunk.limit(Math.min(in.limit(), in.position() + 1000));
+                in.position(chunk.limit());
+                decoder.decode(chunk, counter);
+            }
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("帧数：" + frames[0] + "，耗费时间：" + (end - start) + "ms");
+        decoder.release();
+    }
+}
@@ -0,0 +1,31 @@
+package cn.clboy.nio.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午9:05
+ * @Since 1.0.0
+ * <p>
+ * 长度前缀帧：4 字节大端长度 + 消息体
+ */
+public final class LengthFieldFrameEncoder {
+
+    public static final int HEADER_LENGTH = 4;
+
+    private LengthFieldFrameEncoder() {
+    }
+
+    /**
+     * 把 payload 编码成一帧写入 dst，payload 的 position 会移动到 limit
+     */
+    public static void encode(ByteBuffer dst, ByteBuffer payload) {
+        dst.putInt(payload.remaining());
+        dst.put(payload);
+    }
+
+    public static void encode(ByteBuffer dst, byte[] payload) {
+        dst.putInt(payload.length);
+        dst.put(payload);
+    }
+}
@@ -0,0 +1,19 @@
+package cn.clboy.nio.codec;
+
+import java.io.IOException;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午9:02
+ * @Since 1.0.0
+ * <p>
+ * 帧长度超过上限（或为负数），一般意味着对端有 bug 或恶意，应直接关闭连接
+ */
+public class TooLongFrameException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TooLongFrameException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,457 @@
+package cn.clboy.nio.dedup;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 下午2:40
+ * @Since 1.0.0
+ * <p>
+ * 去重存储：上传的字节流经 {@link FastCdcChunker} 切块，每块按 SHA-256 只保存一份。目录结构：
+ * <pre>
+ * chunks.pack           所有块首尾相接，只追加
+ * chunks.idx            | sha256 (32) | offset (8) | length (4) |，打开时读入内存作为 哈希 -> 位置 的索引
+ * manifests/文件名       | size (8) | count (4) | 之后 count 个 | offset (8) | length (4) |
+ * </pre>
+ * 重新上传相似的文件时，只有新出现的块会写入 pack，其余的块只是在清单中引用已有的位置。
+ * 读取时按清单用定位读（pread）从 pack 中逐块取出，多个读者互不影响。
+ * <p>
+ * 写入顺序是先写块、再写索引、最后原子替换清单，替换前依次 force pack、索引和临时清单，
+ * 所以清单引用的块和索引记录在替换之前已经落盘：中途崩溃时清单要么是旧的要么是新的；
+ * 打开时丢弃指向 pack 末尾之外的索引记录（块没写完），并截掉 pack 中没有索引引用的尾部。
+ * 替换后再 force 清单所在的目录，让重命名本身也落盘（不支持打开目录的平台上跳过）。
+ * <p>
+ * put 中途出错（例如输入流读取失败）时回滚：本次新增的块从内存索引中移除，pack 和索引文件截回开始时的长度，
+ * 否则之后的 put 会引用这些没有索引记录的块，重新打开存储时它们被当作未完成的尾部截掉
+ */
+public class ChunkStore implements Closeable {
+
+    private static final int HASH_LENGTH = 32;
+    private static final int INDEX_RECORD = HASH_LENGTH + 8 + 4;
+    private static final int MANIFEST_HEADER = 8 + 4;
+    private static final int MANIFEST_RECORD = 8 + 4;
+
+    private final Path manifests;
+    private final FileChannel pack;
+    private final FileChannel index;
+    private final FastCdcChunker chunker;
+    private final MessageDigest sha256;
+
+    /**
+     * 哈希 -> (offset << 20 | length)，只在 put 中访问
+     */
+    private final Map<Key, Long> chunks = new HashMap<>();
+    private long packEnd;
+
+    /**
+     * 切块窗口，至少能放下两个最大块
+     */
+    private final ByteBuffer window;
+    private final byte[] hash = new byte[HASH_LENGTH];
+
+    private ChunkStore(Path dir, FastCdcChunker chunker) throws IOException {
+        if (chunker.maxSize() > BufferPool.MAX_SIZE) {
+            //读取时一个块要放进一个池化缓冲区，位置编码也只给长度留了 20 位
+            throw new IllegalArgumentException("max chunk size " + chunker.maxSize() + " > " + BufferPool.MAX_SIZE);
+        }
+        Files.createDirectories(dir);
+        this.manifests = Files.createDirectories(dir.resolve("manifests"));
+        this.chunker = chunker;
+        this.window = ByteBuffer.allocateDirect(chunker.maxSize() * 2);
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.pack = FileChannel.open(dir.resolve("chunks.pack"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        this.index = FileChannel.open(dir.resolve("chunks.idx"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            recover();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static ChunkStore open(Path dir) throws IOException {
+        return new ChunkStore(dir, new FastCdcChunker());
+    }
+
+    public static ChunkStore open(Path dir, FastCdcChunker chunker) throws IOException {
+        return new ChunkStore(dir, chunker);
+    }
+
+    /**
+     * 读入索引；块长度不超过 64KB，与偏移一起编码在一个 long 中
+     */
+    private void recover() throws IOException {
+        long packSize = pack.size();
+        long validIndex = 0;
+        ByteBuffer buffer = BufferPool.DEFAULT.acquire(INDEX_RECORD * 1024);
+        try {
+            long position = 0;
+            long indexSize = index.size() - index.size() % INDEX_RECORD;
+            outer:
+            while (position < indexSize) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity() / INDEX_RECORD * INDEX_RECORD, indexSize - position));
+                while (buffer.hasRemaining()) {
+                    if (index.read(buffer, position + buffer.position()) == -1) {
+                        throw new EOFException();
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    Key key = new Key(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+                    long offset = buffer.getLong();
+                    int length = buffer.getInt();
+                    if (offset + length > packSize) {
+                        //块数据没有完整写入就崩溃了，这条及之后的记录都作废
+                        break outer;
+                    }
+                    chunks.put(key, offset << 20 | length);
+                    packEnd = Math.max(packEnd, offset + length);
+                    validIndex += INDEX_RECORD;
+                }
+                position += buffer.limit();
+            }
+        } finally {
+            BufferPool.DEFAULT.release(buffer);
+        }
+        index.truncate(validIndex);
+        pack.truncate(packEnd);
+    }
+
+    /**
+     * 保存一个文件，同名文件的清单被替换，旧版本引用的块仍然保留
+     */
+    public synchronized PutResult put(String name, ReadableByteChannel in) throws IOException {
+        Path manifest = manifestPath(name);
+        Files.createDirectories(manifest.getParent());
+        Path temp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        ByteBuffer records = BufferPool.DEFAULT.acquire(BufferPool.MAX_SIZE);
+        ByteBuffer indexRecords = BufferPool.DEFAULT.acquire(INDEX_RECORD * 1024);
+        PutResult result = new PutResult();
+        long startPackEnd = packEnd;
+        long startIndexSize = index.size();
+        List<Key> added = new ArrayList<>();
+        boolean done = false;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            records.clear();
+            records.position(MANIFEST_HEADER);
+            indexRecords.clear();
+            window.clear();
+            boolean eof = false;
+            while (true) {
+                while (!eof && window.hasRemaining()) {
+                    if (in.read(window) == -1) {
+                        eof = true;
+                    }
+                }
+                window.flip();
+                while (window.remaining() >= chunker.maxSize() || (eof && window.hasRemaining())) {
+                    int length = chunker.cut(window, eof);
+                    ByteBuffer chunk = window.slice(window.position(), length);
+                    window.position(window.position() + length);
+                    long location = store(chunk, indexRecords, result, added);
+                    if (records.remaining() < MANIFEST_RECORD) {
+                        records.flip();
+                        writeFully(out, records);
+                        records.clear();
+                    }
+                    records.putLong(location >>> 20).putInt(length);
+                    result.size += length;
+                    result.chunks++;
+                }
+                if (eof) {
+                    break;
+                }
+                window.compact();
+            }
+            //块和索引先落盘，清单才能引用它们
+            flushIndex(indexRecords);
+            if (!added.isEmpty()) {
+                pack.force(false);
+                index.force(false);
+            }
+            records.flip();
+            writeFully(out, records);
+            ByteBuffer header = records.clear().putLong(result.size).putInt((int) result.chunks).flip();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.force(false);
+            done = true;
+        } finally {
+            BufferPool.DEFAULT.release(records);
+            BufferPool.DEFAULT.release(indexRecords);
+            if (!done) {
+                rollback(startPackEnd, startIndexSize, added);
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(manifest.getParent());
+        return result;
+    }
+
+    /**
+     * 撤销一次失败的 put 新增的块：本次写入的块和索引记录都没有被任何清单引用
+     */
+    private void rollback(long startPackEnd, long startIndexSize, List<Key> added) throws IOException {
+        for (Key key : added) {
+            chunks.remove(key);
+        }
+        packEnd = startPackEnd;
+        try {
+            index.truncate(startIndexSize);
+        } finally {
+            pack.truncate(startPackEnd);
+        }
+    }
+
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            //例如 Windows 上不能打开目录
+        }
+    }
+
+    /**
+     * 已有的块直接返回位置，新块追加到 pack 末尾并记录索引，键加入 added 以便失败时回滚
+     *
+     * @return offset << 20 | length
+     */
+    private long store(ByteBuffer chunk, ByteBuffer indexRecords, PutResult result, List<Key> added) throws IOException {
+        sha256.update(chunk.duplicate());
+        try {
+            sha256.digest(hash, 0, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer h = ByteBuffer.wrap(hash);
+        Key key = new Key(h.getLong(), h.getLong(), h.getLong(), h.getLong());
+        Long location = chunks.get(key);
+        if (location != null) {
+            return location;
+        }
+        int length = chunk.remaining();
+        long offset = packEnd;
+        while (chunk.hasRemaining()) {
+            pack.write(chunk, offset + chunk.position());
+        }
+        packEnd += length;
+        long encoded = offset << 20 | length;
+        chunks.put(key, encoded);
+        added.add(key);
+        result.newChunks++;
+        result.newBytes += length;
+
+        if (indexRecords.remaining() < INDEX_RECORD) {
+            flushIndex(indexRecords);
+        }
+        indexRecords.putLong(key.a).putLong(key.b).putLong(key.c).putLong(key.d).putLong(offset).putInt(length);
+        return encoded;
+    }
+
+    private void flushIndex(ByteBuffer indexRecords) throws IOException {
+        indexRecords.flip();
+        long position = index.size();
+        while (indexRecords.hasRemaining()) {
+            position += index.write(indexRecords, position);
+        }
+        indexRecords.clear();
+    }
+
+    /**
+     * 按清单逐块定位读取 pack，写到 out
+     *
+     * @return 文件大小
+     */
+    public long get(String name, WritableByteChannel out) throws IOException {
+        Path manifest = manifestPath(name);
+        if (!Files.isRegularFile(manifest)) {
+            throw new FileNotFoundException(name);
+        }
+        ByteBuffer records = BufferPool.DEFAULT.acquire(BufferPool.MAX_SIZE);
+        ByteBuffer data = BufferPool.DEFAULT.acquire(BufferPool.MAX_SIZE);
+        try (FileChannel in = FileChannel.open(manifest, StandardOpenOption.READ)) {
+            records.clear().limit(MANIFEST_HEADER);
+            readFully(in, records);
+            records.flip();
+            long size = records.getLong();
+            int count = records.getInt();
+            records.clear().limit(0);
+            for (int i = 0; i < count; i++) {
+                if (records.remaining() < MANIFEST_RECORD) {
+                    records.compact();
+                    records.limit(Math.min(records.capacity() / MANIFEST_RECORD, count - i) * MANIFEST_RECORD);
+                    readFully(in, records);
+                    records.flip();
+                }
+                long offset = records.getLong();
+                int length = records.getInt();
+                data.clear().limit(length);
+                while (data.hasRemaining()) {
+                    if (pack.read(data, offset + data.position()) == -1) {
+                        throw new EOFException("chunk at " + offset + " is missing");
+                    }
+                }
+                data.flip();
+                writeFully(out, data);
+            }
+            return size;
+        } finally {
+            BufferPool.DEFAULT.release(records);
+            BufferPool.DEFAULT.release(data);
+        }
+    }
+
+    /**
+     * 文件大小，不存在时返回 -1
+     */
+    public long size(String name) throws IOException {
+        Path manifest = manifestPath(name);
+        if (!Files.isRegularFile(manifest)) {
+            return -1;
+        }
+        try (FileChannel in = FileChannel.open(manifest, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            readFully(in, header);
+            return header.getLong(0);
+        }
+    }
+
+    public synchronized int chunkCount() {
+        return chunks.size();
+    }
+
+    public synchronized long packSize() {
+        return packEnd;
+    }
+
+    /**
+     * 文件名只能落在清单目录之内
+     */
+    private Path manifestPath(String name) throws IOException {
+        Path path = manifests.resolve(name).normalize();
+        if (!path.startsWith(manifests) || path.equals(manifests)) {
+            throw new IOException("illegal file name: " + name);
+        }
+        return path;
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) == -1) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            pack.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * 一次 put 的统计
+     */
+    public static class PutResult {
+        long size;
+        long chunks;
+        long newChunks;
+        long newBytes;
+
+        public long size() {
+            return size;
+        }
+
+        public long chunks() {
+            return chunks;
+        }
+
+        public long newChunks() {
+            return newChunks;
+        }
+
+        /**
+         * 实际写入 pack 的字节数
+         */
+        public long newBytes() {
+            return newBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d 字节，%d 块，其中新块 %d 个、%d 字节（%.1f%%）",
+                    size, chunks, newChunks, newBytes, size == 0 ? 0.0 : newBytes * 100.0 / size);
+        }
+    }
+
+    /**
+     * SHA-256 摘要，4 个 long 比 byte[] 做 HashMap 的键更省内存，也不用额外包装
+     */
+    private static final class Key {
+        final long a;
+        final long b;
+        final long c;
+        final long d;
+
+        Key(long a, long b, long c, long d) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.d = d;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return a == k.a && b == k.b && c == k.c && d == k.d;
+        }
+
+        @Override
+        public int hashCode() {
+            //摘要本身已经是均匀分布的
+            return (int) a;
+        }
+    }
+}
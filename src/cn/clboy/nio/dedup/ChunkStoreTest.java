@@ -0,0 +1,197 @@
+package cn.clboy.nio.dedup;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 下午3:30
+ * @Since 1.0.0
+ * <p>
+ * 基于内容的分块和去重存储
+ */
+public class ChunkStoreTest {
+
+    /**
+     * 在数据开头插入几个字节：定长分块之后的块全部错位，基于内容的分块只有第一块不同
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testShift() throws Exception {
+        byte[] data = new byte[16 * 1024 * 1024];
+        new Random(1).nextBytes(data);
+        byte[] shifted = new byte[data.length + 7];
+        System.arraycopy(data, 0, shifted, 7, data.length);
+
+        FastCdcChunker chunker = new FastCdcChunker();
+        Set<Long> original = boundaries(chunker, data, 0);
+        Set<Long> moved = boundaries(chunker, shifted, -7);
+        long shared = original.stream().filter(moved::contains).count();
+        System.out.printf("原始 %d 块，平均 %d 字节；插入 7 字节后 %d 个切分点中 %d 个不变%n",
+                original.size(), data.length / original.size(), moved.size(), shared);
+    }
+
+    /**
+     * 切分点在原始数据中的偏移
+     */
+    private static Set<Long> boundaries(FastCdcChunker chunker, byte[] data, long shift) {
+        Set<Long> cuts = new HashSet<>();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            int length = chunker.cut(buffer, buffer.remaining() < chunker.maxSize());
+            buffer.position(buffer.position() + length);
+            cuts.add(buffer.position() + shift);
+        }
+        return cuts;
+    }
+
+    /**
+     * 64MB 文件上传两次，第二次中间插入 100 字节、改写 1KB：只写入少量新块，两个版本都能完整读回；
+     * 重新打开存储后索引一致，pack 末尾写了一半的块和索引记录被丢弃
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStore() throws Exception {
+        Path dir = Files.createTempDirectory("dedup");
+        Path v1 = dir.resolve("v1.bin");
+        Path v2 = dir.resolve("v2.bin");
+        byte[] data = new byte[64 * 1024 * 1024];
+        Random random = new Random(2);
+        random.nextBytes(data);
+        Files.write(v1, data);
+        try (FileChannel out = FileChannel.open(v2, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            byte[] inserted = new byte[100];
+            random.nextBytes(inserted);
+            for (int i = 40 << 20; i < (40 << 20) + 1024; i++) {
+                data[i] = (byte) ~data[i];
+            }
+            out.write(ByteBuffer.wrap(data, 0, 10 << 20));
+            out.write(ByteBuffer.wrap(inserted));
+            out.write(ByteBuffer.wrap(data, 10 << 20, data.length - (10 << 20)));
+        }
+
+        Path storeDir = dir.resolve("store");
+        long chunks;
+        long packSize;
+        try (ChunkStore store = ChunkStore.open(storeDir)) {
+            for (Path file : new Path[]{v1, v2}) {
+                try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long start = System.nanoTime();
+                    ChunkStore.PutResult result = store.put(file.getFileName().toString(), in);
+                    System.out.printf("%s：%s，%d ms%n", file.getFileName(), result, (System.nanoTime() - start) / 1000000);
+                }
+            }
+            chunks = store.chunkCount();
+            packSize = store.packSize();
+            System.out.printf("两个文件共 %d 字节，pack 文件 %d 字节%n", Files.size(v1) + Files.size(v2), packSize);
+            verify(store, v1);
+            verify(store, v2);
+        }
+
+        //模拟崩溃：pack 末尾多出一段没有索引的数据，索引末尾有一条指向 pack 之外的记录和半条记录
+        try (FileChannel pack = FileChannel.open(storeDir.resolve("chunks.pack"), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileChannel index = FileChannel.open(storeDir.resolve("chunks.idx"), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            pack.write(ByteBuffer.allocate(5000));
+            ByteBuffer record = ByteBuffer.allocate(44 + 20);
+            record.position(32);
+            record.putLong(packSize).putInt(8000).position(record.capacity()).flip();
+            index.write(record);
+        }
+        try (ChunkStore store = ChunkStore.open(storeDir)) {
+            System.out.printf("重新打开：%d 块（之前 %d），pack 文件 %d 字节（之前 %d）%n",
+                    store.chunkCount(), chunks, store.packSize(), packSize);
+            verify(store, v2);
+        }
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * 上传读到一半失败：已经写进 pack 的新块被回滚，之后上传同一个文件时重新写入这些块并记录索引，
+     * 重新打开存储后块数不变、文件完整读回。不回滚时第二次上传直接引用失败时留下的、没有索引记录的块，
+     * 重新打开后这些块被遗忘；如果它们在 pack 末尾，还会被当作未完成的尾部截掉，引用它们的文件随之损坏
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFailedPut() throws Exception {
+        Path dir = Files.createTempDirectory("dedup");
+        Path file = dir.resolve("v.bin");
+        byte[] data = new byte[16 * 1024 * 1024];
+        new Random(3).nextBytes(data);
+        Files.write(file, data);
+
+        Path storeDir = dir.resolve("store");
+        int chunks;
+        try (ChunkStore store = ChunkStore.open(storeDir)) {
+            ReadableByteChannel failing = new ReadableByteChannel() {
+                private int position;
+
+                @Override
+                public int read(ByteBuffer dst) throws IOException {
+                    if (position >= data.length / 2) {
+                        throw new IOException("连接断开");
+                    }
+                    int n = Math.min(dst.remaining(), data.length / 2 - position);
+                    dst.put(data, position, n);
+                    position += n;
+                    return n;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            try {
+                store.put(file.getFileName().toString(), failing);
+            } catch (IOException e) {
+                System.out.printf("上传失败：%s，剩余 %d 块，pack 文件 %d 字节%n", e.getMessage(), store.chunkCount(), store.packSize());
+            }
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                System.out.println("重新上传：" + store.put(file.getFileName().toString(), in));
+            }
+            chunks = store.chunkCount();
+        }
+        try (ChunkStore store = ChunkStore.open(storeDir)) {
+            System.out.printf("重新打开：%d 块（之前 %d）%n", store.chunkCount(), chunks);
+            Assert.assertEquals(chunks, store.chunkCount());
+            verify(store, file);
+        }
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static void verify(ChunkStore store, Path expected) throws Exception {
+        Path restored = Files.createTempFile("restored", ".bin");
+        try (FileChannel out = FileChannel.open(restored, StandardOpenOption.WRITE)) {
+            store.get(expected.getFileName().toString(), out);
+        }
+        long mismatch = Files.mismatch(expected, restored);
+        System.out.println(expected.getFileName() + (mismatch == -1 ? " 读回一致" : " 读回不一致，偏移 " + mismatch));
+        Files.delete(restored);
+    }
+}
@@ -0,0 +1,102 @@
+package cn.clboy.nio.dedup;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 下午2:10
+ * @Since 1.0.0
+ * <p>
+ * 基于内容的分块（FastCDC）：用 Gear 滚动哈希 fp = (fp << 1) + GEAR[b] 扫描字节，fp 的高位满足掩码时切分。
+ * 切分点只取决于附近的内容，文件中间插入或删除几个字节只影响附近的一两个块，之后的块边界又会对齐，
+ * 这是定长分块做不到的。
+ * <p>
+ * FastCDC 的两个优化：
+ * <p>
+ * - 跳过最小块长度之内的字节，不计算哈希
+ * <p>
+ * - 归一化分块：未到平均长度时用 1 位更多的掩码（更难切），超过平均长度后用 1 位更少的掩码（更容易切），
+ * 块长度集中在平均值附近
+ */
+public class FastCdcChunker {
+
+    /**
+     * 固定种子生成的 Gear 表：不同进程、不同时间切出的边界必须一致，否则无法去重
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_CDC0_FA57L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    private final long maskS;
+    private final long maskL;
+
+    /**
+     * 默认最小 2KB、平均 8KB、最大 64KB
+     */
+    public FastCdcChunker() {
+        this(2 * 1024, 8 * 1024, 64 * 1024);
+    }
+
+    /**
+     * @param avgSize 必须是 2 的幂
+     */
+    public FastCdcChunker(int minSize, int avgSize, int maxSize) {
+        if (Integer.bitCount(avgSize) != 1 || minSize <= 0 || minSize >= avgSize || avgSize >= maxSize) {
+            throw new IllegalArgumentException("min=" + minSize + ", avg=" + avgSize + ", max=" + maxSize);
+        }
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        int bits = Integer.numberOfTrailingZeros(avgSize);
+        //左移的哈希中高位受最近 64 个字节影响最充分，所以掩码取最高的若干位
+        this.maskS = -1L << (64 - (bits + 2));
+        this.maskL = -1L << (64 - (bits - 2));
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 从 buffer 的 position 开始找下一个切分点，不改变 buffer 的状态
+     *
+     * @param eof 之后不会再有数据；为 false 时 buffer 中至少要有 {@link #maxSize()} 个字节
+     * @return 这个块的长度
+     */
+    public int cut(ByteBuffer buffer, boolean eof) {
+        int start = buffer.position();
+        int available = buffer.remaining();
+        if (!eof && available < maxSize) {
+            throw new IllegalArgumentException("need " + maxSize + " bytes, got " + available);
+        }
+        if (available <= minSize) {
+            return available;
+        }
+        int n = Math.min(available, maxSize);
+        int normal = Math.min(n, avgSize);
+        long fp = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            fp = (fp << 1) + GEAR[buffer.get(start + i) & 0xFF];
+            if ((fp & maskS) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < n; i++) {
+            fp = (fp << 1) + GEAR[buffer.get(start + i) & 0xFF];
+            if ((fp & maskL) == 0) {
+                return i + 1;
+            }
+        }
+        return n;
+    }
+}
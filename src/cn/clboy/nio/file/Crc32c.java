@@ -0,0 +1,91 @@
+package cn.clboy.nio.file;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 上午9:40
+ * @Since 1.0.0
+ * <p>
+ * CRC32C 工具。java.util.zip.CRC32C 在 x86（SSE4.2）和 ARM 上由 JIT 替换成硬件 CRC 指令，
+ * 直接缓冲区和内存映射缓冲区也不需要先拷贝到 byte[]
+ */
+public final class Crc32c {
+
+    /**
+     * CRC32C（Castagnoli）的反射多项式
+     */
+    private static final int POLY = 0x82F63B78;
+
+    private Crc32c() {
+    }
+
+    /**
+     * 用 buffer 的 [position, limit) 更新校验和，position 保持不变，
+     * 同一个缓冲区随后还要写到通道里，不用为了计算校验和再读一遍
+     */
+    public static void update(Checksum checksum, ByteBuffer buffer) {
+        int position = buffer.position();
+        checksum.update(buffer);
+        buffer.position(position);
+    }
+
+    /**
+     * 已知 A 段的 crc1 和紧随其后的 B 段的 crc2（长度 len2），求 A+B 整体的 CRC，
+     * 不需要再读一遍数据（算法同 zlib 的 crc32_combine，在 GF(2) 上对 crc1 补乘 len2 个零字节）。
+     * 这样大文件可以分段并行计算，再按顺序合并
+     */
+    public static int combine(int crc1, int crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+        int[] even = new int[32];
+        int[] odd = new int[32];
+
+        //odd：移入一个零比特的算子
+        odd[0] = POLY;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        //even：两个零比特，odd：四个零比特
+        square(even, odd);
+        square(odd, even);
+
+        //每一轮把算子平方一次（零字节数翻倍），len2 对应的比特为 1 时作用到 crc1 上
+        do {
+            square(even, odd);
+            if ((len2 & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            len2 >>>= 1;
+            if (len2 == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((len2 & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            len2 >>>= 1;
+        } while (len2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
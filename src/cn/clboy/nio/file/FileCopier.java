@@ -0,0 +1,228 @@
+package cn.clboy.nio.file;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午2:05
+ * @Since 1.0.0
+ * <p>
+ * 文件复制：把 ChannelTest 中的几种复制方式整合起来，按文件大小和文件系统自动选择。
+ * <p>
+ * - 小文件：一个池化的直接缓冲区读写一次就结束，省去 mmap/sendfile 的建立开销
+ * - 中等文件：transferTo()，由内核直接搬运
+ * - 大文件：按区间拆分到 ForkJoinPool 并行复制，每个子任务只做定位读写；
+ * 源和目标在同一个文件系统时用 transferTo()，否则用内存映射，映射按窗口进行，单个窗口不超过 {@link #MAP_WINDOW}
+ * <p>
+ * 所有策略（除了用于对比的 HEAP）都不会把文件内容拷贝到堆上的 byte[]
+ */
+public class FileCopier {
+
+    public enum Strategy {
+        /**
+         * 堆缓冲区读写，仅用于对比
+         */
+        HEAP,
+        /**
+         * 直接缓冲区读写
+         */
+        DIRECT,
+        /**
+         * 内存映射文件
+         */
+        MAPPED,
+        /**
+         * transferTo()
+         */
+        TRANSFER
+    }
+
+    public static final long SMALL_FILE = 256 * 1024;
+    public static final long LARGE_FILE = 64L * 1024 * 1024;
+
+    /**
+     * 并行复制时每个子任务负责的区间大小
+     */
+    static final long SPLIT_SIZE = 32L * 1024 * 1024;
+
+    /**
+     * 单次映射的最大长度，MappedByteBuffer 的容量是 int，超过 2GB 的文件只能分窗口映射
+     */
+    static final long MAP_WINDOW = 1L << 30;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+
+    public FileCopier() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public FileCopier(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 自动选择策略
+     */
+    public Strategy choose(Path source, Path target) throws IOException {
+        long size = Files.size(source);
+        if (size <= SMALL_FILE) {
+            return Strategy.DIRECT;
+        }
+        if (size < LARGE_FILE) {
+            return Strategy.TRANSFER;
+        }
+        Path targetDir = target.toAbsolutePath().getParent();
+        boolean sameStore = Files.getFileStore(source).equals(Files.getFileStore(targetDir));
+        return sameStore ? Strategy.TRANSFER : Strategy.MAPPED;
+    }
+
+    public void copy(Path source, Path target) throws IOException {
+        Strategy strategy = choose(source, target);
+        copy(source, target, strategy, Files.size(source) >= LARGE_FILE);
+    }
+
+    /**
+     * @param parallel 是否把文件拆成多个区间并行复制
+     */
+    public void copy(Path source, Path target, Strategy strategy, boolean parallel) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            if (parallel && size > SPLIT_SIZE) {
+                try {
+                    pool.invoke(new CopyTask(in, target, strategy, 0, size));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            } else {
+                copyRange(in, out, strategy, 0, size);
+            }
+            //目标文件原来更长时截断
+            out.truncate(size);
+        }
+    }
+
+    /**
+     * 复制 [position, end) 区间，只使用定位读写，可以多个线程同时操作同一对文件
+     *
+     * @param out 若使用 TRANSFER 策略，它的当前位置会被修改，所以并行时每个任务要单独打开
+     */
+    static void copyRange(FileChannel in, FileChannel out, Strategy strategy, long position, long end) throws IOException {
+        switch (strategy) {
+            case HEAP:
+                copyWithBuffer(in, out, ByteBuffer.allocate(BUFFER_SIZE), position, end);
+                break;
+            case DIRECT:
+                ByteBuffer buffer = BufferPool.DEFAULT.acquire(BUFFER_SIZE);
+                try {
+                    copyWithBuffer(in, out, buffer, position, end);
+                } finally {
+                    BufferPool.DEFAULT.release(buffer);
+                }
+                break;
+            case MAPPED:
+                copyMapped(in, out, position, end);
+                break;
+            case TRANSFER:
+                //transferTo 写入目标通道的当前位置
+                out.position(position);
+                while (position < end) {
+                    long n = in.transferTo(position, end - position, out);
+                    if (n == 0 && position >= in.size()) {
+                        //复制过程中源文件被截短，transferTo 会一直返回 0
+                        throw new EOFException("file truncated at " + position);
+                    }
+                    position += n;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(strategy.name());
+        }
+    }
+
+    private static void copyWithBuffer(FileChannel in, FileChannel out, ByteBuffer buffer, long position, long end) throws IOException {
+        while (position < end) {
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int) (end - position));
+            }
+            int len = in.read(buffer, position);
+            if (len == -1) {
+                break;
+            }
+            buffer.flip();
+            long writePosition = position;
+            while (buffer.hasRemaining()) {
+                writePosition += out.write(buffer, writePosition);
+            }
+            position += len;
+        }
+    }
+
+    private static void copyMapped(FileChannel in, FileChannel out, long position, long end) throws IOException {
+        while (position < end) {
+            long window = Math.min(MAP_WINDOW, end - position);
+            MappedByteBuffer inMap = in.map(FileChannel.MapMode.READ_ONLY, position, window);
+            MappedByteBuffer outMap = out.map(FileChannel.MapMode.READ_WRITE, position, window);
+            //缓冲区之间直接 put，不经过 byte[]
+            outMap.put(inMap);
+            position += window;
+        }
+    }
+
+    /**
+     * 二分拆分区间，直到不超过 {@link #SPLIT_SIZE}；ForkJoinTask 实现了 Serializable，但任务不会被序列化
+     */
+    @SuppressWarnings("serial")
+    private static class CopyTask extends RecursiveAction {
+
+        private final FileChannel in;
+        private final Path target;
+        private final Strategy strategy;
+        private final long start;
+        private final long end;
+
+        CopyTask(FileChannel in, Path target, Strategy strategy, long start, long end) {
+            this.in = in;
+            this.target = target;
+            this.strategy = strategy;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > SPLIT_SIZE) {
+                //按 SPLIT_SIZE 对齐拆分，让每个叶子任务的区间都是整块
+                long middle = start + ((end - start) / SPLIT_SIZE / 2) * SPLIT_SIZE;
+                if (middle == start) {
+                    middle = start + SPLIT_SIZE;
+                }
+                invokeAll(new CopyTask(in, target, strategy, start, middle),
+                        new CopyTask(in, target, strategy, middle, end));
+                return;
+            }
+            //每个叶子任务单独打开目标文件，拥有独立的文件位置
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                copyRange(in, out, strategy, start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cn.clboy.nio.file;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午2:40
+ * @Since 1.0.0
+ * <p>
+ * 统一的文件复制 API：自动选择堆缓冲区、直接缓冲区、内存映射或 transferTo
+ */
+public class FileCopierTest {
+
+    /**
+     * 自动选择策略
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test01() throws Exception {
+        FileCopier copier = new FileCopier();
+        Path source = Paths.get("resources", "1.jpg");
+        Path target = Paths.get("resources", "1_copy_4.jpg");
+        System.out.println("策略：" + copier.choose(source, target));
+        copier.copy(source, target);
+        System.out.println(Files.mismatch(source, target) == -1);
+    }
+
+    /**
+     * 大文件上对比每种策略（串行与并行）
+     *
+     * @throws Exception
+     */
+    @Test
+    public void test02() throws Exception {
+        Path source = Files.createTempFile("copy-source", ".bin");
+        Path target = Files.createTempFile("copy-target", ".bin");
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+            for (int i = 0; i < 256; i++) {
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    buffer.putLong(i * 31L + buffer.position());
+                }
+                buffer.flip();
+                channel.write(buffer);
+            }
+        }
+
+        FileCopier copier = new FileCopier();
+        for (FileCopier.Strategy strategy : FileCopier.Strategy.values()) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                long start = System.currentTimeMillis();
+                copier.copy(source, target, strategy, parallel);
+                long end = System.currentTimeMillis();
+                System.out.println(strategy + (parallel ? "（并行）" : "") + "耗费时间：" + (end - start)
+                        + "，内容一致：" + (Files.mismatch(source, target) == -1));
+            }
+        }
+        Files.delete(source);
+        Files.delete(target);
+    }
+}
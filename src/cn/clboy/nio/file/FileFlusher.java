@@ -0,0 +1,341 @@
+package cn.clboy.nio.file;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 下午4:30
+ * @Since 1.0.0
+ * <p>
+ * 后台刷盘线程：多个 {@link FileSink} 共用一个，负责把写满的缓冲区写进文件，并按 {@link Durability} 调用 force()。
+ * <p>
+ * 每次从队列中取出当前积压的所有请求作为一批：先按顺序执行所有写入，再处理这一批中的关闭请求。
+ * {@link Durability#PER_FILE} 下刷盘线程不调用 force：文件的写入完成后唤醒等待关闭的上传线程，
+ * 由它自己 force 并关闭通道。并发上传的 fsync 因此同时进行，不会排在这一个线程上互相等待，
+ * 文件系统也可以把同时到达的 fsync 合并到一次日志提交中（group commit）。
+ * <p>
+ * {@link #close()} 之后提交的请求不会再被处理：写入使对应的 {@link FileSink} 失败，关闭请求以异常结束
+ */
+public class FileFlusher implements Closeable {
+
+    /**
+     * 持久化保证
+     */
+    public enum Durability {
+        /**
+         * 不调用 force，数据何时落盘由操作系统决定
+         */
+        NONE,
+        /**
+         * 每隔固定时间 force 一次有写入的文件，崩溃时最多丢失一个间隔内的数据
+         */
+        INTERVAL,
+        /**
+         * {@link FileSink#close()} 返回时文件内容已经落盘
+         */
+        PER_FILE
+    }
+
+    private static final Request STOP = new Request(null, null, 0, null);
+
+    private final Durability durability;
+    private final long intervalNanos;
+    private final int bufferSize;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * 刷盘线程已退出，之后提交的请求直接拒绝，由 this 保护
+     */
+    private boolean stopped;
+
+    /**
+     * 有写入但还没有 force 的文件，只在刷盘线程中访问
+     */
+    private final Set<FileSink> dirty = new LinkedHashSet<>();
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder forces = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * 间隔 100ms，每个文件两块 {@link BufferPool#MAX_SIZE} 大小的缓冲区
+     */
+    public FileFlusher(Durability durability) {
+        this(durability, 100, TimeUnit.MILLISECONDS, BufferPool.MAX_SIZE);
+    }
+
+    /**
+     * @param interval   {@link Durability#INTERVAL} 的刷盘间隔
+     * @param bufferSize 每块缓冲区的大小，按 4KB 向上取整，使每次写入都从页边界开始；
+     *                   缓冲区从 {@link BufferPool#DEFAULT} 申请，不能超过 {@link BufferPool#MAX_SIZE}
+     */
+    public FileFlusher(Durability durability, long interval, TimeUnit unit, int bufferSize) {
+        if (bufferSize <= 0 || bufferSize > BufferPool.MAX_SIZE) {
+            throw new IllegalArgumentException("bufferSize: " + bufferSize);
+        }
+        this.durability = durability;
+        this.intervalNanos = unit.toNanos(interval);
+        this.bufferSize = (bufferSize + FileSink.ALIGNMENT - 1) & -FileSink.ALIGNMENT;
+        this.thread = new Thread(this::run, "file-flusher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 打开（已存在时清空）一个文件用于写入
+     */
+    public FileSink open(Path file) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("flusher closed");
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new FileSink(this, channel, bufferSize);
+    }
+
+    public Durability durability() {
+        return durability;
+    }
+
+    /**
+     * write 系统调用次数
+     */
+    public long writes() {
+        return writes.sum();
+    }
+
+    /**
+     * force 系统调用次数
+     */
+    public long forces() {
+        return forces.sum();
+    }
+
+    void forced() {
+        forces.increment();
+    }
+
+    /**
+     * 处理过的批次数
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    void write(FileSink sink, ByteBuffer buffer, long position) {
+        submit(new Request(sink, buffer, position, null));
+    }
+
+    void close(FileSink sink, CompletableFuture<Void> done) {
+        submit(new Request(sink, null, 0, done));
+    }
+
+    private void submit(Request request) {
+        synchronized (this) {
+            if (!stopped) {
+                queue.add(request);
+                return;
+            }
+        }
+        reject(request);
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        List<Request> closing = new ArrayList<>();
+        long nextForce = System.nanoTime() + intervalNanos;
+        boolean stop = false;
+        while (!stop) {
+            try {
+                Request first;
+                if (durability == Durability.INTERVAL && !dirty.isEmpty()) {
+                    first = queue.poll(nextForce - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } else {
+                    first = queue.take();
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            for (Request request : batch) {
+                if (request == STOP) {
+                    stop = true;
+                } else if (request.buffer != null) {
+                    write(request);
+                } else {
+                    closing.add(request);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.increment();
+            }
+            for (Request request : closing) {
+                finish(request);
+            }
+            batch.clear();
+            closing.clear();
+
+            if (durability == Durability.INTERVAL && (stop || System.nanoTime() - nextForce >= 0)) {
+                for (FileSink sink : dirty) {
+                    force(sink);
+                    if (sink.closeRequested) {
+                        closeChannel(sink);
+                    }
+                }
+                dirty.clear();
+                nextForce = System.nanoTime() + intervalNanos;
+            }
+        }
+
+        synchronized (this) {
+            stopped = true;
+        }
+        List<Request> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (Request request : rest) {
+            if (request != STOP) {
+                reject(request);
+            }
+        }
+    }
+
+    /**
+     * 刷盘线程退出后到达的请求：不再写入，让上传线程的 write / close 抛出异常而不是一直等待
+     */
+    private void reject(Request request) {
+        FileSink sink = request.sink;
+        if (sink.failure == null) {
+            sink.failure = new IOException("flusher closed");
+        }
+        if (request.buffer != null) {
+            sink.recycle(request.buffer);
+        } else {
+            closeChannel(sink);
+            sink.releaseBuffers();
+            request.done.completeExceptionally(sink.failure);
+        }
+    }
+
+    private void write(Request request) {
+        FileSink sink = request.sink;
+        ByteBuffer buffer = request.buffer;
+        try {
+            if (sink.failure == null) {
+                long position = request.position;
+                while (buffer.hasRemaining()) {
+                    position += sink.channel.write(buffer, position);
+                    writes.increment();
+                }
+                if (durability == Durability.INTERVAL) {
+                    dirty.add(sink);
+                }
+            }
+        } catch (IOException e) {
+            sink.failure = e;
+        } finally {
+            sink.recycle(buffer);
+        }
+    }
+
+    /**
+     * 关闭请求之前的写入都已经完成
+     */
+    private void finish(Request request) {
+        FileSink sink = request.sink;
+        if (durability == Durability.PER_FILE) {
+            //上传线程在 FileSink.close() 中自己 force 并关闭通道
+        } else if (durability == Durability.INTERVAL && dirty.contains(sink)) {
+            //等下一次定时 force 之后再关闭通道
+            sink.closeRequested = true;
+        } else {
+            closeChannel(sink);
+        }
+        sink.releaseBuffers();
+        if (sink.failure != null) {
+            request.done.completeExceptionally(sink.failure);
+        } else {
+            request.done.complete(null);
+        }
+    }
+
+    private void force(FileSink sink) {
+        if (sink.failure != null) {
+            return;
+        }
+        try {
+            //只同步数据和读取数据必需的元数据（文件长度），不同步修改时间等
+            sink.channel.force(false);
+            forces.increment();
+        } catch (IOException e) {
+            sink.failure = e;
+        }
+    }
+
+    private void closeChannel(FileSink sink) {
+        try {
+            sink.channel.close();
+        } catch (IOException e) {
+            if (sink.failure == null) {
+                sink.failure = e;
+            }
+        }
+    }
+
+    /**
+     * 处理完已提交的请求后停止刷盘线程；{@link Durability#INTERVAL} 下还没 force 的文件会先 force
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(STOP);
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * buffer 不为 null 时是写入请求，否则是关闭请求
+     */
+    private static class Request {
+        final FileSink sink;
+        final ByteBuffer buffer;
+        final long position;
+        final CompletableFuture<Void> done;
+
+        Request(FileSink sink, ByteBuffer buffer, long position, CompletableFuture<Void> done) {
+            this.sink = sink;
+            this.buffer = buffer;
+            this.position = position;
+            this.done = done;
+        }
+    }
+}
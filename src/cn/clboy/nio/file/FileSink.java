@@ -0,0 +1,179 @@
+package cn.clboy.nio.file;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 下午4:10
+ * @Since 1.0.0
+ * <p>
+ * 合并小块写入的文件通道：网络上每次读到的几 KB 数据先拷贝进一块较大的直接缓冲区，写满后交给
+ * {@link FileFlusher} 在后台写入文件，当前线程换另一块缓冲区继续接收（双缓冲）。
+ * 两块都在写入中时 write 会阻塞，磁盘跟不上时由此对网络产生背压。
+ * <p>
+ * 两块缓冲区从 {@link BufferPool#DEFAULT} 申请，关闭请求处理完后由刷盘线程归还。
+ * 缓冲区大小是 4KB 的整数倍，除最后一次外每次写入的长度和文件偏移都按页对齐。
+ * 后台写入失败时，之后的 write 和 close 会抛出这个异常
+ */
+public class FileSink implements WritableByteChannel {
+
+    static final int ALIGNMENT = 4096;
+
+    private final FileFlusher flusher;
+    final FileChannel channel;
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(2);
+    private ByteBuffer active;
+
+    /**
+     * active 中第一个字节在文件中的偏移
+     */
+    private long position;
+    private boolean open = true;
+
+    volatile IOException failure;
+
+    /**
+     * {@link FileFlusher.Durability#INTERVAL} 下已关闭、等待定时 force 后再关闭通道，只在刷盘线程中访问
+     */
+    boolean closeRequested;
+
+    FileSink(FileFlusher flusher, FileChannel channel, int bufferSize) {
+        this.flusher = flusher;
+        this.channel = channel;
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < 2; i++) {
+            free.add(BufferPool.DEFAULT.acquire(bufferSize).limit(bufferSize));
+        }
+        this.active = free.poll();
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        checkFailure();
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            if (active == null) {
+                //上一块缓冲区提交后还没拿到下一块（例如等待时被中断）
+                active = takeFree();
+            }
+            if (src.remaining() <= active.remaining()) {
+                active.put(src);
+            } else {
+                int limit = src.limit();
+                src.limit(src.position() + active.remaining());
+                active.put(src);
+                src.limit(limit);
+            }
+            if (!active.hasRemaining()) {
+                submit();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 已经写入的字节数（包括还在缓冲区中的）
+     */
+    public long position() {
+        return position + (active == null ? 0 : active.position());
+    }
+
+    private void submit() {
+        active.flip();
+        long at = position;
+        position += active.remaining();
+        flusher.write(this, active, at);
+        active = null;
+    }
+
+    private ByteBuffer takeFree() throws IOException {
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    void recycle(ByteBuffer buffer) {
+        buffer.clear().limit(bufferSize);
+        free.add(buffer);
+    }
+
+    /**
+     * 关闭请求之前的写入都已完成，两块缓冲区都已回到 free 中
+     */
+    void releaseBuffers() {
+        ByteBuffer buffer;
+        while ((buffer = free.poll()) != null) {
+            BufferPool.DEFAULT.release(buffer);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("background write failed", e);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * 写出剩余的数据并关闭文件，等待刷盘线程处理完；
+     * {@link FileFlusher.Durability#PER_FILE} 下由当前线程 force 后关闭通道，返回时数据已经落盘
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (active != null) {
+            if (active.position() > 0) {
+                submit();
+            } else {
+                recycle(active);
+                active = null;
+            }
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        flusher.close(this, done);
+        boolean perFile = flusher.durability() == FileFlusher.Durability.PER_FILE;
+        try {
+            done.get();
+            if (perFile) {
+                //只同步数据和读取数据必需的元数据（文件长度），不同步修改时间等
+                channel.force(false);
+                flusher.forced();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException("background write failed", e.getCause());
+        } finally {
+            if (perFile) {
+                channel.close();
+            }
+        }
+    }
+}
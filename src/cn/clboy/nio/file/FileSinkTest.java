@@ -0,0 +1,184 @@
+package cn.clboy.nio.file;
+
+import cn.clboy.nio.buffer.BufferPool;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 下午5:00
+ * @Since 1.0.0
+ * <p>
+ * 合并写入和刷盘策略
+ */
+public class FileSinkTest {
+
+    /**
+     * 256MB 以 1KB 为单位写入：每次直接 FileChannel.write vs 经过 FileSink 合并，比较 write 系统调用次数和耗时
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCoalescing() throws Exception {
+        Path direct = Files.createTempFile("direct", ".bin");
+        Path coalesced = Files.createTempFile("coalesced", ".bin");
+        ByteBuffer chunk = ByteBuffer.allocateDirect(1024);
+        byte[] bytes = new byte[1024];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        chunk.put(bytes).flip();
+        int count = 256 * 1024;
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(direct, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < count; i++) {
+                chunk.rewind();
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+        }
+        System.out.printf("直接写入：%d 次 write，%d ms%n", count, (System.nanoTime() - start) / 1000000);
+
+        start = System.nanoTime();
+        try (FileFlusher flusher = new FileFlusher(FileFlusher.Durability.NONE)) {
+            try (FileSink sink = flusher.open(coalesced)) {
+                for (int i = 0; i < count; i++) {
+                    chunk.rewind();
+                    sink.write(chunk);
+                }
+            }
+            System.out.printf("合并写入：%d 次 write，%d ms%n", flusher.writes(), (System.nanoTime() - start) / 1000000);
+        }
+
+        System.out.println(new FileVerifier().same(direct, coalesced) ? "内容一致" : "内容不一致");
+        Files.delete(direct);
+        Files.delete(coalesced);
+    }
+
+    /**
+     * 16 个并发上传，每个 16MB、以 1KB 为单位写入，三种持久化策略下的耗时和 force 次数；
+     * PER_FILE 每个文件由上传线程自己 force 一次，并发的 fsync 同时进行；INTERVAL 的 force 次数取决于上传持续了多少个间隔
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDurability() throws Exception {
+        int uploads = 16;
+        int count = 16 * 1024;
+        byte[] bytes = new byte[1024];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        for (FileFlusher.Durability durability : FileFlusher.Durability.values()) {
+            List<Path> files = new ArrayList<>();
+            for (int i = 0; i < uploads; i++) {
+                files.add(Files.createTempFile("upload", ".bin"));
+            }
+            long start = System.nanoTime();
+            long elapsed;
+            FileFlusher flusher = new FileFlusher(durability);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Path file : files) {
+                    futures.add(executor.submit(() -> {
+                        ByteBuffer chunk = ByteBuffer.wrap(bytes);
+                        try (FileSink sink = flusher.open(file)) {
+                            for (int i = 0; i < count; i++) {
+                                chunk.rewind();
+                                sink.write(chunk);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                elapsed = (System.nanoTime() - start) / 1000000;
+            } finally {
+                flusher.close();
+            }
+            System.out.printf("%-8s %d ms，%d 次 write，%d 次 force，%d 批%n",
+                    durability, elapsed, flusher.writes(), flusher.forces(), flusher.batches());
+            long total = 0;
+            for (Path file : files) {
+                total += Files.size(file);
+                Files.delete(file);
+            }
+            System.out.println("  共写入 " + total + " 字节");
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * 刷盘线程关闭后继续写入和关闭文件：write / close 抛出异常而不是一直阻塞，缓冲区都还回池中
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testClosedFlusher() throws Exception {
+        Path file = Files.createTempFile("closed", ".bin");
+        long inUse = BufferPool.DEFAULT.inUse();
+        ByteBuffer chunk = ByteBuffer.allocate(1024);
+        FileFlusher flusher = new FileFlusher(FileFlusher.Durability.PER_FILE);
+        FileSink sink = flusher.open(file);
+        sink.write(chunk);
+        flusher.close();
+        try {
+            for (int i = 0; i < 1024; i++) {
+                chunk.clear();
+                sink.write(chunk);
+            }
+            System.out.println("写入没有失败");
+        } catch (IOException e) {
+            System.out.println("写入失败：" + e.getCause().getMessage());
+        }
+        try {
+            sink.close();
+            System.out.println("关闭没有失败");
+        } catch (IOException e) {
+            System.out.println("关闭失败：" + e.getCause().getMessage());
+        }
+        System.out.printf("缓冲区池占用 %d -> %d%n", inUse, BufferPool.DEFAULT.inUse());
+        Files.delete(file);
+    }
+
+    /**
+     * 等待空闲缓冲区时被中断：write 抛出 InterruptedIOException，之后 close 仍然能关闭文件并归还缓冲区
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInterruptedWrite() throws Exception {
+        Path file = Files.createTempFile("interrupted", ".bin");
+        long inUse = BufferPool.DEFAULT.inUse();
+        try (FileFlusher flusher = new FileFlusher(FileFlusher.Durability.PER_FILE)) {
+            FileSink sink = flusher.open(file);
+            //写满一块缓冲区后还剩 1 字节，需要等下一块
+            ByteBuffer chunk = ByteBuffer.allocate(BufferPool.MAX_SIZE + 1);
+            Thread.currentThread().interrupt();
+            try {
+                sink.write(chunk);
+                System.out.println("写入没有被中断");
+            } catch (InterruptedIOException e) {
+                System.out.println("写入被中断");
+            }
+            Thread.interrupted();
+            sink.close();
+            System.out.printf("关闭后文件 %d 字节，缓冲区池占用 %d -> %d%n", Files.size(file), inUse, BufferPool.DEFAULT.inUse());
+        }
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,137 @@
+package cn.clboy.nio.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32C;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 上午10:10
+ * @Since 1.0.0
+ * <p>
+ * 文件校验工具：把文件按 {@link #SEGMENT_SIZE} 切成段，在 ForkJoinPool 中并行计算每段的 CRC32C，
+ * 每段通过内存映射读取（不经过 read 系统调用和用户态缓冲区），再用 {@link Crc32c#combine} 按顺序合并成整个文件的 CRC32C，
+ * 结果与单线程从头算到尾完全相同。
+ * <p>
+ * 命令行用法：
+ * <pre>
+ * FileVerifier 文件                 输出 CRC32C
+ * FileVerifier 文件1 文件2          比较两个文件的 CRC32C
+ * </pre>
+ */
+public class FileVerifier {
+
+    /**
+     * 每个叶子任务映射并计算的区间大小
+     */
+    static final long SEGMENT_SIZE = 32L * 1024 * 1024;
+
+    private final ForkJoinPool pool;
+
+    public FileVerifier() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public FileVerifier(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 整个文件的 CRC32C
+     */
+    public int crc32c(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return crc32c(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * 文件 [start, end) 区间的 CRC32C
+     */
+    public int crc32c(FileChannel channel, long start, long end) throws IOException {
+        try {
+            return pool.invoke(new SegmentTask(channel, start, end));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 两个文件大小相同且 CRC32C 相同
+     */
+    public boolean same(Path a, Path b) throws IOException {
+        try (FileChannel ca = FileChannel.open(a, StandardOpenOption.READ);
+             FileChannel cb = FileChannel.open(b, StandardOpenOption.READ)) {
+            return ca.size() == cb.size() && crc32c(ca, 0, ca.size()) == crc32c(cb, 0, cb.size());
+        }
+    }
+
+    /**
+     * [start, end) 的 CRC32C：分段并行计算，再用 {@link Crc32c#combine} 按顺序合并
+     */
+    @SuppressWarnings("serial")
+    private static class SegmentTask extends RecursiveTask<Integer> {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        SegmentTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (end - start > SEGMENT_SIZE) {
+                //按 SEGMENT_SIZE 对齐拆分，左半段在当前线程计算，右半段交给其他线程
+                long middle = start + ((end - start) / SEGMENT_SIZE / 2) * SEGMENT_SIZE;
+                if (middle == start) {
+                    middle = start + SEGMENT_SIZE;
+                }
+                SegmentTask right = new SegmentTask(channel, middle, end);
+                right.fork();
+                int left = new SegmentTask(channel, start, middle).compute();
+                return Crc32c.combine(left, right.join(), end - middle);
+            }
+            CRC32C crc = new CRC32C();
+            if (end > start) {
+                try {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    crc.update(mapped);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return (int) crc.getValue();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length > 2) {
+            System.err.println("用法：FileVerifier 文件 [另一个文件]");
+            System.exit(2);
+        }
+        FileVerifier verifier = new FileVerifier();
+        int[] crcs = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            long start = System.nanoTime();
+            crcs[i] = verifier.crc32c(Paths.get(args[i]));
+            System.out.printf("%08x  %s（%d ms）%n", crcs[i], args[i], (System.nanoTime() - start) / 1000000);
+        }
+        if (args.length == 2) {
+            boolean same = crcs[0] == crcs[1] && Files.size(Paths.get(args[0])) == Files.size(Paths.get(args[1]));
+            System.out.println(same ? "一致" : "不一致");
+            System.exit(same ? 0 : 1);
+        }
+    }
+}
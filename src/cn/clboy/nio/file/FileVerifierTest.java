@@ -0,0 +1,92 @@
+package cn.clboy.nio.file;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32C;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/24 上午11:00
+ * @Since 1.0.0
+ * <p>
+ * 分段并行计算 CRC32C 并合并
+ */
+public class FileVerifierTest {
+
+    /**
+     * 任意切分点上 combine(crc(A), crc(B), len(B)) 都等于 crc(A+B)
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCombine() throws Exception {
+        byte[] data = new byte[1 << 20];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        random.nextBytes(data);
+        CRC32C whole = new CRC32C();
+        whole.update(data);
+        int mismatches = 0;
+        for (int i = 0; i < 1000; i++) {
+            int split = random.nextInt(data.length + 1);
+            CRC32C a = new CRC32C();
+            a.update(data, 0, split);
+            CRC32C b = new CRC32C();
+            b.update(data, split, data.length - split);
+            if (Crc32c.combine((int) a.getValue(), (int) b.getValue(), data.length - split) != (int) whole.getValue()) {
+                mismatches++;
+            }
+        }
+        System.out.println("1000 个随机切分点，不一致 " + mismatches + " 个");
+    }
+
+    /**
+     * 1GB 文件：单线程顺序读取计算 vs 内存映射分段并行计算，结果必须相同
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testVerify() throws Exception {
+        Path file = Files.createTempFile("verify", ".bin");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < 1024; i++) {
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    buffer.putLong(ThreadLocalRandom.current().nextLong());
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            CRC32C crc = new CRC32C();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    crc.update(buffer);
+                    buffer.clear();
+                }
+            }
+            System.out.printf("顺序读取：%08x，%d ms%n", crc.getValue(), (System.nanoTime() - start) / 1000000);
+
+            start = System.nanoTime();
+            int parallel = new FileVerifier().crc32c(file);
+            System.out.printf("分段并行：%08x，%d ms（%d 个线程）%n", parallel, (System.nanoTime() - start) / 1000000,
+                    ForkJoinPool.commonPool().getParallelism());
+            System.out.println(parallel == (int) crc.getValue());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
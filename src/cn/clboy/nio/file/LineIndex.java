@@ -0,0 +1,487 @@
+package cn.clboy.nio.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/25 下午4:00
+ * @Since 1.0.0
+ * <p>
+ * 大文本文件的行索引：按 {@link #WINDOW_SIZE} 把文件分成窗口，在 ForkJoinPool 中并行映射并查找换行符，
+ * 每行的起始位置按顺序放进一个 long[]（n 行占 8n 字节），可以保存到 文件名.lidx 下次直接加载。
+ * <p>
+ * 查找换行符用 SWAR（SIMD within a register）：一次 getLong 读 8 个字节，用几次整数运算同时判断 8 个字节中
+ * 哪些是目标字节，比逐字节 get() 少得多的分支和边界检查。
+ * <p>
+ * 有了索引之后：
+ * <p>
+ * - {@link #line(long)} 按行号随机读取一行，一次定位读
+ * <p>
+ * - {@link #grep(byte[])} 按行号把文件切成在换行处对齐的区间并行搜索，返回匹配的行号
+ * <p>
+ * 索引持有一个打开的文件通道，用完后要关闭
+ * <p>
+ * 命令行用法：
+ * <pre>
+ * LineIndex 文件                 建立（或加载）索引，输出行数
+ * LineIndex 文件 -n 行号          输出第 N 行（从 0 开始）
+ * LineIndex 文件 模式             输出包含模式的行数和前 20 行
+ * </pre>
+ */
+public class LineIndex implements Closeable {
+
+    /**
+     * 每个叶子任务映射并扫描的区间大小
+     */
+    static final long WINDOW_SIZE = 16L * 1024 * 1024;
+
+    private static final int MAGIC = 0x4C494458;
+    private static final int HEADER_LENGTH = 4 + 8 + 8 + 8 + 8;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long lastModified;
+    /**
+     * 最后一行的结束位置：文件以换行结尾时是 fileSize - 1
+     */
+    private final long lastLineEnd;
+    /**
+     * 每行的起始位置，第一行从 0 开始；文件以换行结尾时不会多出一个空行
+     */
+    private final long[] starts;
+
+    private LineIndex(Path file, long fileSize, long lastModified, long lastLineEnd, long[] starts) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.lastLineEnd = lastLineEnd;
+        this.starts = starts;
+    }
+
+    /**
+     * 并行扫描整个文件建立索引
+     */
+    public static LineIndex build(Path file) throws IOException {
+        return build(file, ForkJoinPool.commonPool());
+    }
+
+    public static LineIndex build(Path file, ForkJoinPool pool) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            LongList newlines;
+            try {
+                newlines = pool.invoke(new IndexTask(channel, 0, size));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            //每个换行符之后是下一行的开头
+            int count = newlines.size;
+            long lastLineEnd = size;
+            if (count > 0 && newlines.values[count - 1] == size - 1) {
+                count--;
+                lastLineEnd = size - 1;
+            }
+            long[] starts = new long[size == 0 ? 0 : count + 1];
+            for (int i = 0; i < count; i++) {
+                starts[i + 1] = newlines.values[i] + 1;
+            }
+            return new LineIndex(file, size, lastModified, lastLineEnd, starts);
+        }
+    }
+
+    /**
+     * 加载 文件名.lidx；不存在或者文件已被修改（大小或修改时间不同）时重新建立并保存
+     */
+    public static LineIndex loadOrBuild(Path file) throws IOException {
+        Path indexFile = indexPath(file);
+        if (Files.isRegularFile(indexFile)) {
+            LineIndex index = load(file, indexFile);
+            if (index != null) {
+                return index;
+            }
+        }
+        LineIndex index = build(file);
+        index.save(indexFile);
+        return index;
+    }
+
+    public static Path indexPath(Path file) {
+        return file.resolveSibling(file.getFileName() + ".lidx");
+    }
+
+    /**
+     * | magic (4) | 文件大小 (8) | 修改时间 (8) | 最后一行的结束位置 (8) | 行数 (8) | 每行起始位置 (8) ... |
+     *
+     * @return 索引与文件不匹配时返回 null
+     */
+    public static LineIndex load(Path file, Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long size = mapped.getLong(4);
+            long lastModified = mapped.getLong(12);
+            long lastLineEnd = mapped.getLong(20);
+            long count = mapped.getLong(28);
+            if (mapped.getInt(0) != MAGIC || size != Files.size(file)
+                    || lastModified != Files.getLastModifiedTime(file).toMillis()
+                    || channel.size() != HEADER_LENGTH + count * 8) {
+                return null;
+            }
+            long[] starts = new long[(int) count];
+            //批量拷贝，不逐个 getLong
+            mapped.position(HEADER_LENGTH).asLongBuffer().get(starts);
+            return new LineIndex(file, size, lastModified, lastLineEnd, starts);
+        }
+    }
+
+    public void save(Path indexFile) throws IOException {
+        long length = HEADER_LENGTH + starts.length * 8L;
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            mapped.putInt(MAGIC).putLong(fileSize).putLong(lastModified).putLong(lastLineEnd).putLong(starts.length);
+            LongBuffer longs = mapped.asLongBuffer();
+            longs.put(starts);
+            mapped.force();
+        }
+    }
+
+    public long lineCount() {
+        return starts.length;
+    }
+
+    public long fileSize() {
+        return fileSize;
+    }
+
+    /**
+     * 第 n 行的起始位置
+     */
+    public long lineStart(long n) {
+        return starts[Math.toIntExact(n)];
+    }
+
+    /**
+     * 第 n 行的结束位置（不含换行符）
+     */
+    public long lineEnd(long n) {
+        int i = Math.toIntExact(n);
+        return i + 1 < starts.length ? starts[i + 1] - 1 : lastLineEnd;
+    }
+
+    /**
+     * 行号从 0 开始，去掉末尾的 \r
+     */
+    public String line(long n) throws IOException {
+        long start = lineStart(n);
+        int length = Math.toIntExact(lineEnd(n) - start);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) == -1) {
+                throw new IOException("file truncated: " + file);
+            }
+        }
+        if (length > 0 && buffer.get(length - 1) == '\r') {
+            length--;
+        }
+        return new String(buffer.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 位置所在的行号
+     */
+    public long lineOf(long position) {
+        int i = Arrays.binarySearch(starts, position);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * 包含 pattern 的行号，按升序排列
+     */
+    public long[] grep(byte[] pattern) throws IOException {
+        return grep(pattern, ForkJoinPool.commonPool());
+    }
+
+    public long[] grep(byte[] pattern, ForkJoinPool pool) throws IOException {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("empty pattern");
+        }
+        for (byte b : pattern) {
+            if (b == '\n') {
+                throw new IllegalArgumentException("pattern contains a newline");
+            }
+        }
+        if (starts.length == 0) {
+            return new long[0];
+        }
+        try {
+            LongList matches = pool.invoke(new GrepTask(pattern, 0, starts.length));
+            return Arrays.copyOf(matches.values, matches.size);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 8 个字节中等于 target 的字节，对应字节的最高位为 1，其余为 0。
+     * 先把目标字节异或成 0，再用 (x & 0x7F..) + 0x7F.. 判断每个字节的低 7 位是否为 0（不会向相邻字节进位），
+     * 与 x 本身的最高位合起来取反，就是“整个字节为 0”的标记，不会像 (x - 0x01..) & ~x 那样误报
+     */
+    static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW7) + LOW7) | x | LOW7);
+    }
+
+    /**
+     * 把一个字节复制到 long 的 8 个字节中
+     */
+    static long broadcast(byte b) {
+        return (b & 0xFFL) * ONES;
+    }
+
+    private static final long NEWLINES = broadcast((byte) '\n');
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long length) {
+        try {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            //小端序下第 i 个字节在 long 的第 i 个字节，用 numberOfTrailingZeros 就能算出位置
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 在 [start, end) 中查找换行符，按 {@link #WINDOW_SIZE} 对齐拆分；左右两半的结果按顺序拼接
+     */
+    @SuppressWarnings("serial")
+    private static class IndexTask extends RecursiveTask<LongList> {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        IndexTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected LongList compute() {
+            if (end - start > WINDOW_SIZE) {
+                long middle = start + ((end - start) / WINDOW_SIZE / 2) * WINDOW_SIZE;
+                if (middle == start) {
+                    middle = start + WINDOW_SIZE;
+                }
+                IndexTask right = new IndexTask(channel, middle, end);
+                right.fork();
+                LongList left = new IndexTask(channel, start, middle).compute();
+                left.addAll(right.join());
+                return left;
+            }
+            //按平均 64 字节一行预估容量
+            LongList newlines = new LongList((int) ((end - start) >>> 6) + 16);
+            if (end == start) {
+                return newlines;
+            }
+            MappedByteBuffer mapped = map(channel, start, end - start);
+            int limit = mapped.capacity();
+            int i = 0;
+            for (; i + 8 <= limit; i += 8) {
+                long hits = matches(mapped.getLong(i), NEWLINES);
+                while (hits != 0) {
+                    newlines.add(start + i + (Long.numberOfTrailingZeros(hits) >>> 3));
+                    hits &= hits - 1;
+                }
+            }
+            for (; i < limit; i++) {
+                if (mapped.get(i) == '\n') {
+                    newlines.add(start + i);
+                }
+            }
+            return newlines;
+        }
+    }
+
+    /**
+     * 在行 [from, to) 中搜索，区间的起止都是行首，不会把一行拆到两个任务中
+     */
+    @SuppressWarnings("serial")
+    private class GrepTask extends RecursiveTask<LongList> {
+
+        private final byte[] pattern;
+        private final int from;
+        private final int to;
+
+        GrepTask(byte[] pattern, int from, int to) {
+            this.pattern = pattern;
+            this.from = from;
+            this.to = to;
+        }
+
+        private long end() {
+            return to < starts.length ? starts[to] : fileSize;
+        }
+
+        @Override
+        protected LongList compute() {
+            long bytes = end() - starts[from];
+            if (bytes > WINDOW_SIZE && to - from > 1) {
+                //按字节数找中间的行，两半的数据量相近
+                int middle = (int) lineOf(starts[from] + bytes / 2);
+                if (middle <= from) {
+                    middle = from + 1;
+                }
+                GrepTask right = new GrepTask(pattern, middle, to);
+                right.fork();
+                LongList left = new GrepTask(pattern, from, middle).compute();
+                left.addAll(right.join());
+                return left;
+            }
+            LongList result = new LongList(16);
+            if (bytes == 0) {
+                return result;
+            }
+            if (bytes > Integer.MAX_VALUE) {
+                throw new UncheckedIOException(new IOException("line " + from + " is longer than 2GB"));
+            }
+            long base = starts[from];
+            MappedByteBuffer mapped = map(channel, base, bytes);
+            int limit = mapped.capacity();
+            long first = broadcast(pattern[0]);
+            int line = from;
+            int i = 0;
+            while (i + 8 <= limit) {
+                long hits = matches(mapped.getLong(i), first);
+                int next = i + 8;
+                while (hits != 0) {
+                    int candidate = i + (Long.numberOfTrailingZeros(hits) >>> 3);
+                    hits &= hits - 1;
+                    if (matchesAt(mapped, candidate, limit)) {
+                        line = advance(line, base + candidate);
+                        result.add(line);
+                        //一行只记一次，直接跳到下一行的开头
+                        next = (int) (nextLineStart(line) - base);
+                        break;
+                    }
+                }
+                i = next;
+            }
+            while (i < limit) {
+                if (mapped.get(i) == pattern[0] && matchesAt(mapped, i, limit)) {
+                    line = advance(line, base + i);
+                    result.add(line);
+                    i = (int) (nextLineStart(line) - base);
+                } else {
+                    i++;
+                }
+            }
+            return result;
+        }
+
+        private long nextLineStart(int line) {
+            return line + 1 < starts.length ? starts[line + 1] : fileSize;
+        }
+
+        private boolean matchesAt(MappedByteBuffer mapped, int position, int limit) {
+            if (position + pattern.length > limit) {
+                return false;
+            }
+            for (int k = 1; k < pattern.length; k++) {
+                if (mapped.get(position + k) != pattern[k]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 匹配位置单调递增，行号从上一次的位置往后找
+         */
+        private int advance(int line, long position) {
+            while (line + 1 < starts.length && starts[line + 1] <= position) {
+                line++;
+            }
+            return line;
+        }
+    }
+
+    /**
+     * 可增长的 long 数组，避免装箱
+     */
+    static final class LongList {
+        long[] values;
+        int size;
+
+        LongList(int capacity) {
+            values = new long[Math.max(capacity, 16)];
+        }
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length > 3) {
+            System.err.println("用法：LineIndex 文件 [-n 行号 | 模式]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        long start = System.nanoTime();
+        try (LineIndex index = loadOrBuild(file)) {
+            System.out.printf("%d 行，%d 字节（%d ms）%n", index.lineCount(), index.fileSize(), (System.nanoTime() - start) / 1000000);
+            if (args.length == 3 && "-n".equals(args[1])) {
+                System.out.println(index.line(Long.parseLong(args[2])));
+            } else if (args.length == 2) {
+                start = System.nanoTime();
+                long[] lines = index.grep(args[1].getBytes(StandardCharsets.UTF_8));
+                System.out.printf("%d 行匹配（%d ms）%n", lines.length, (System.nanoTime() - start) / 1000000);
+                for (int i = 0; i < Math.min(20, lines.length); i++) {
+                    System.out.println(lines[i] + ": " + index.line(lines[i]));
+                }
+            }
+        }
+    }
+}
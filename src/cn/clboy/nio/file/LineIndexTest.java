@@ -0,0 +1,124 @@
+package cn.clboy.nio.file;
+
+import cn.clboy.nio.codec.ChunkedCompressorTest;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/25 下午5:00
+ * @Since 1.0.0
+ * <p>
+ * 并行建立行索引、保存/加载、按行号读取和 grep
+ */
+public class LineIndexTest {
+
+    /**
+     * SWAR 判断与逐字节比较的结果完全一致，包括目标字节与 0x80 以上的字节相邻的情况
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSwar() throws Exception {
+        Random random = new Random(1);
+        byte[] candidates = {'\n', 0, (byte) 0x80, (byte) 0x8A, 0x0B, 0x09, (byte) 0xFF, 'a'};
+        int mismatches = 0;
+        for (int n = 0; n < 1_000_000; n++) {
+            byte target = candidates[random.nextInt(candidates.length)];
+            long word = 0;
+            long expected = 0;
+            for (int i = 0; i < 8; i++) {
+                byte b = candidates[random.nextInt(candidates.length)];
+                word |= (b & 0xFFL) << (i * 8);
+                if (b == target) {
+                    expected |= 0x80L << (i * 8);
+                }
+            }
+            if (LineIndex.matches(word, LineIndex.broadcast(target)) != expected) {
+                mismatches++;
+            }
+        }
+        System.out.println("100 万个随机 long，不一致 " + mismatches + " 个");
+    }
+
+    /**
+     * 512MB 日志：BufferedReader 逐行读取 vs 并行映射建立索引；再比较保存/加载、随机读取和 grep
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIndex() throws Exception {
+        Path file = Files.createTempFile("lines", ".log");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < 8; i++) {
+                ByteBuffer chunk = ByteBuffer.wrap(ChunkedCompressorTest.logLines(64 * 1024 * 1024));
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+        }
+
+        String pattern = "/api/orders 200 4242";
+        long start = System.nanoTime();
+        List<String> lines = new ArrayList<>();
+        long expectedMatches = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                if (line.contains(pattern)) {
+                    expectedMatches++;
+                }
+            }
+        }
+        System.out.printf("BufferedReader：%d 行，%d 行匹配，%d ms%n", lines.size(), expectedMatches, (System.nanoTime() - start) / 1000000);
+
+        Path indexFile = LineIndex.indexPath(file);
+        start = System.nanoTime();
+        try (LineIndex index = LineIndex.build(file)) {
+            System.out.printf("并行建立索引：%d 行，%d ms%n", index.lineCount(), (System.nanoTime() - start) / 1000000);
+            index.save(indexFile);
+        }
+
+        start = System.nanoTime();
+        try (LineIndex index = LineIndex.loadOrBuild(file)) {
+            System.out.printf("加载索引：%d 行，%d ms（索引文件 %d 字节）%n",
+                    index.lineCount(), (System.nanoTime() - start) / 1000000, Files.size(indexFile));
+
+            Random random = new Random(2);
+            int errors = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < 100000; i++) {
+                int n = random.nextInt(lines.size());
+                if (!index.line(n).equals(lines.get(n))) {
+                    errors++;
+                }
+            }
+            System.out.printf("随机读取 10 万行，%d ms，错误 %d%n", (System.nanoTime() - start) / 1000000, errors);
+
+            start = System.nanoTime();
+            long[] matches = index.grep(pattern.getBytes(StandardCharsets.UTF_8));
+            long elapsed = System.nanoTime() - start;
+            int wrong = 0;
+            for (long n : matches) {
+                if (!lines.get((int) n).contains(pattern)) {
+                    wrong++;
+                }
+            }
+            System.out.printf("grep：%d 行匹配（期望 %d，错误 %d），%d ms，%.0f MB/s%n", matches.length, expectedMatches,
+                    wrong, elapsed / 1000000, index.fileSize() * 1e3 / elapsed);
+        }
+        Files.delete(indexFile);
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,634 @@
+package cn.clboy.nio.loadgen;
+
+import cn.clboy.nio.codec.LengthFieldFrameEncoder;
+import cn.clboy.nio.metrics.Histogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/22 上午10:20
+ * @Since 1.0.0
+ * <p>
+ * 非阻塞压测客户端：少量选择器线程管理成千上万个连接，记录请求/响应延迟并输出吞吐量和 p50/p99/p99.9。
+ * <p>
+ * 两种发送方式：
+ * <p>
+ * - 开环（{@link #rate(long)} > 0）：按固定速率排好每个请求的“预定发送时间”，不管前面的请求有没有响应都照常发出，
+ * 延迟从预定发送时间算起。服务端卡顿期间本该发出却排在后面的请求，其等待时间也计入延迟，这就是协同遗漏（coordinated omission）校正
+ * <p>
+ * - 闭环（rate 为 0）：每个连接保持 {@link #pipeline(int)} 个请求在途，收到一个响应再发下一个。
+ * 服务端卡顿时客户端也跟着停发，测得的延迟偏乐观，报告中另外给出按平均延迟作为期望间隔事后校正的结果
+ * <p>
+ * TCP 请求是 4 字节长度前缀 + messageSize 字节的帧（与 NonBlockingNIOTest 的协议相同），
+ * 回显服务端按原样返回，同一连接上的响应与请求一一按顺序对应，因此只需数收到的字节数，不用解析内容。
+ * UDP 请求的前 16 字节是请求序号和实际发送时间，响应原样带回，按序号找到在途请求。
+ * 每个请求有自己的截止时间（发送时间 + {@link #udpTimeout(long, TimeUnit)}），过了截止时间还没有响应的记为丢失，
+ * 即使同一通道上其他请求的响应还在不断到达。
+ * <p>
+ * 压测只收不回的服务端（NonBlockingNIOTest.testServer、ShardedUdpReceiver）时用 {@link #responses(boolean)} 关闭响应，只统计发送吞吐量
+ */
+public class LoadGenerator {
+
+    public enum Transport {
+        TCP, UDP
+    }
+
+    private static final int UDP_HEADER_LENGTH = 16;
+
+    private final InetSocketAddress target;
+    private final Transport transport;
+    private final int connections;
+    private final int threads;
+
+    private long rate;
+    private int pipeline = 1;
+    private int messageSize = 64;
+    private boolean responses = true;
+    private long drainNanos = TimeUnit.SECONDS.toNanos(2);
+    private long udpTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /**
+     * @param connections 连接数（UDP 为发送端通道数），平均分给各个线程
+     * @param threads     选择器线程数
+     */
+    public LoadGenerator(InetSocketAddress target, Transport transport, int connections, int threads) {
+        if (connections < threads || threads <= 0) {
+            throw new IllegalArgumentException("connections: " + connections + ", threads: " + threads);
+        }
+        this.target = target;
+        this.transport = transport;
+        this.connections = connections;
+        this.threads = threads;
+    }
+
+    /**
+     * 所有连接合计每秒发出的请求数，0 表示闭环
+     */
+    public LoadGenerator rate(long requestsPerSecond) {
+        this.rate = requestsPerSecond;
+        return this;
+    }
+
+    /**
+     * 闭环时每个连接同时在途的请求数
+     */
+    public LoadGenerator pipeline(int pipeline) {
+        this.pipeline = pipeline;
+        return this;
+    }
+
+    /**
+     * 请求消息体的字节数，UDP 至少 16 字节
+     */
+    public LoadGenerator messageSize(int messageSize) {
+        this.messageSize = messageSize;
+        return this;
+    }
+
+    /**
+     * 服务端是否回复，不回复时只统计发送
+     */
+    public LoadGenerator responses(boolean responses) {
+        this.responses = responses;
+        return this;
+    }
+
+    /**
+     * 发送结束后等待在途响应的最长时间
+     */
+    public LoadGenerator drain(long duration, TimeUnit unit) {
+        this.drainNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * UDP 请求多久没有响应算丢失
+     */
+    public LoadGenerator udpTimeout(long duration, TimeUnit unit) {
+        this.udpTimeoutNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * 建立连接，压测 duration，等待在途响应后关闭所有连接
+     */
+    public Report run(long duration, TimeUnit unit) throws IOException, InterruptedException {
+        if (transport == Transport.UDP && messageSize < UDP_HEADER_LENGTH) {
+            throw new IllegalArgumentException("UDP messageSize < " + UDP_HEADER_LENGTH);
+        }
+        if (rate == 0 && !responses) {
+            throw new IllegalArgumentException("闭环压测需要服务端回复");
+        }
+        List<Worker> workers = new ArrayList<>(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                int count = connections / threads + (i < connections % threads ? 1 : 0);
+                workers.add(new Worker(count, (double) rate * count / connections));
+            }
+            //连接都建好之后再统一开始，留出线程启动的时间
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            long end = start + unit.toNanos(duration);
+            List<Thread> running = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                Worker worker = workers.get(i);
+                Thread thread = new Thread(() -> worker.run(start, end), "loadgen-" + i);
+                thread.start();
+                running.add(thread);
+            }
+            for (Thread thread : running) {
+                thread.join();
+            }
+            return new Report(workers, end - start);
+        } finally {
+            for (Worker worker : workers) {
+                worker.close();
+            }
+        }
+    }
+
+    /**
+     * 每个连接的状态，只在所属的 Worker 线程中访问
+     */
+    private static class Conn {
+
+        final SocketChannel tcp;
+        final DatagramChannel udp;
+        SelectionKey key;
+
+        /**
+         * 在途请求的预定发送时间和实际发送时间，环形队列
+         */
+        long[] intended = new long[16];
+        long[] actual = new long[16];
+        /**
+         * UDP：请求是否已经收到响应。响应可能乱序，收到后先打上标记，等它前面的请求都结束了再出队
+         */
+        boolean[] done = new boolean[16];
+        int head;
+        int size;
+        /**
+         * UDP：队头请求的序号，队列中第 k 个请求的序号是 headSeq + k
+         */
+        long headSeq;
+
+        /**
+         * 还没写出去的字节数，以及下一个要写的字节在帧内的偏移
+         */
+        long owed;
+        int frameOffset;
+
+        /**
+         * 已收到但还不够一整帧的字节数
+         */
+        int partial;
+
+        /**
+         * UDP：还没有响应也没有超时的请求数
+         */
+        int outstanding;
+
+        Conn(SocketChannel tcp, DatagramChannel udp) {
+            this.tcp = tcp;
+            this.udp = udp;
+        }
+
+        void push(long intendedTime, long actualTime) {
+            if (size == intended.length) {
+                long[] i2 = new long[size * 2];
+                long[] a2 = new long[size * 2];
+                boolean[] d2 = new boolean[size * 2];
+                for (int k = 0; k < size; k++) {
+                    i2[k] = intended[(head + k) & (size - 1)];
+                    a2[k] = actual[(head + k) & (size - 1)];
+                    d2[k] = done[(head + k) & (size - 1)];
+                }
+                intended = i2;
+                actual = a2;
+                done = d2;
+                head = 0;
+            }
+            int tail = (head + size) & (intended.length - 1);
+            intended[tail] = intendedTime;
+            actual[tail] = actualTime;
+            done[tail] = false;
+            size++;
+        }
+
+        /**
+         * 移除队头的请求
+         */
+        void pop() {
+            head = (head + 1) & (intended.length - 1);
+            size--;
+            headSeq++;
+        }
+
+        void close() {
+            try {
+                if (tcp != null) {
+                    tcp.close();
+                } else {
+                    udp.close();
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 一个选择器线程及其负责的连接
+     */
+    private class Worker {
+
+        final Selector selector = Selector.open();
+        final Conn[] conns;
+        final double intervalNanos;
+        final int frameLength = transport == Transport.TCP ? LengthFieldFrameEncoder.HEADER_LENGTH + messageSize : messageSize;
+
+        /**
+         * TCP 发送模板：重复排列的同一个帧，写的时候只需在上面移动 position/limit
+         */
+        final ByteBuffer template;
+        final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        final Histogram corrected = new Histogram();
+        final Histogram uncorrected = new Histogram();
+        long sent;
+        long completed;
+        long lost;
+        long sendFailures;
+        long errors;
+        long bytesSent;
+
+        Worker(int count, double rate) throws IOException {
+            this.conns = new Conn[count];
+            this.intervalNanos = rate > 0 ? 1e9 / rate : 0;
+            if (transport == Transport.TCP) {
+                int frames = Math.max(1, readBuffer.capacity() / frameLength);
+                template = ByteBuffer.allocateDirect(frames * frameLength);
+                byte[] payload = new byte[messageSize];
+                for (int i = 0; i < frames; i++) {
+                    LengthFieldFrameEncoder.encode(template, payload);
+                }
+            } else {
+                template = ByteBuffer.allocateDirect(messageSize);
+            }
+            try {
+                connect(count);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void connect(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                Conn conn;
+                if (transport == Transport.TCP) {
+                    SocketChannel channel = SocketChannel.open(target);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    channel.configureBlocking(false);
+                    conn = new Conn(channel, null);
+                    conn.key = channel.register(selector, responses ? SelectionKey.OP_READ : 0, conn);
+                } else {
+                    //不 connect：回显可能来自服务端的另一个端口
+                    DatagramChannel channel = DatagramChannel.open();
+                    channel.bind(new InetSocketAddress(target.getAddress(), 0));
+                    channel.configureBlocking(false);
+                    conn = new Conn(null, channel);
+                    conn.key = channel.register(selector, responses ? SelectionKey.OP_READ : 0, conn);
+                }
+                conns[i] = conn;
+            }
+        }
+
+        void run(long start, long end) {
+            try {
+                long now;
+                while ((now = System.nanoTime()) < start) {
+                    Thread.sleep(Math.max(1, (start - now) / 1_000_000));
+                }
+                if (intervalNanos == 0) {
+                    for (Conn conn : conns) {
+                        for (int i = 0; i < pipeline; i++) {
+                            send(conn, start, start);
+                        }
+                    }
+                }
+                //开环：第 seq 个请求的预定时间是 start + seq * interval，依次轮流分给各个连接
+                long seq = 0;
+                long next = start;
+                long nextTimeoutCheck = start;
+                while ((now = System.nanoTime()) < end) {
+                    if (intervalNanos > 0) {
+                        //一轮最多补发 1024 个，落后太多时也要腾出时间读响应
+                        for (int burst = 0; next <= now && burst < 1024; burst++) {
+                            send(conns[(int) (seq % conns.length)], next, now);
+                            seq++;
+                            next = start + (long) (seq * intervalNanos);
+                        }
+                    }
+                    if (transport == Transport.UDP && responses && now >= nextTimeoutCheck) {
+                        checkUdpTimeouts(now, end);
+                        nextTimeoutCheck = now + udpTimeoutNanos / 4;
+                    }
+                    long wait = (intervalNanos > 0 ? Math.min(next, end) : end) - now;
+                    if (wait >= 1_000_000) {
+                        selector.select(Math.min(wait / 1_000_000, 10));
+                    } else {
+                        selector.selectNow();
+                    }
+                    process(end);
+                }
+                //停止发送，等待在途的响应
+                long drainDeadline = end + drainNanos;
+                while (responses && pending() > 0 && (now = System.nanoTime()) < drainDeadline) {
+                    selector.select(Math.max(1, Math.min(10, (drainDeadline - now) / 1_000_000)));
+                    process(end);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                errors++;
+            }
+        }
+
+        /**
+         * 在途请求数
+         */
+        long pending() {
+            long pending = 0;
+            for (Conn conn : conns) {
+                pending += transport == Transport.TCP ? conn.size : conn.outstanding;
+            }
+            return pending;
+        }
+
+        void process(long end) {
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey sk = it.next();
+                it.remove();
+                Conn conn = (Conn) sk.attachment();
+                try {
+                    if (sk.isWritable()) {
+                        flush(conn);
+                    }
+                    if (sk.isValid() && sk.isReadable()) {
+                        if (transport == Transport.TCP) {
+                            readTcp(conn, end);
+                        } else {
+                            readUdp(conn, end);
+                        }
+                    }
+                } catch (IOException e) {
+                    errors++;
+                    sk.cancel();
+                    conn.close();
+                    conn.size = 0;
+                    conn.outstanding = 0;
+                }
+            }
+        }
+
+        void send(Conn conn, long intendedTime, long now) throws IOException {
+            if (!conn.key.isValid()) {
+                return;
+            }
+            sent++;
+            if (transport == Transport.TCP) {
+                if (responses) {
+                    conn.push(intendedTime, now);
+                }
+                conn.owed += frameLength;
+                if ((conn.key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+                    flush(conn);
+                }
+            } else {
+                template.clear();
+                template.putLong(0, conn.headSeq + conn.size).putLong(8, now);
+                if (conn.udp.send(template, target) == 0) {
+                    //发送缓冲区满，这个请求就算丢了
+                    sendFailures++;
+                } else {
+                    bytesSent += messageSize;
+                    if (responses) {
+                        conn.push(intendedTime, now);
+                        conn.outstanding++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 写出欠下的字节，写不完就关注 OP_WRITE，可写时再继续
+         */
+        void flush(Conn conn) throws IOException {
+            ByteBuffer out = template.duplicate();
+            while (conn.owed > 0) {
+                out.limit((int) Math.min(out.capacity(), conn.frameOffset + conn.owed)).position(conn.frameOffset);
+                int len = conn.tcp.write(out);
+                if (len == 0) {
+                    break;
+                }
+                bytesSent += len;
+                conn.owed -= len;
+                conn.frameOffset = (conn.frameOffset + len) % frameLength;
+            }
+            int ops = conn.key.interestOps();
+            int wanted = conn.owed > 0 ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE;
+            if (wanted != ops) {
+                conn.key.interestOps(wanted);
+            }
+        }
+
+        void readTcp(Conn conn, long end) throws IOException {
+            int len;
+            while ((len = conn.tcp.read(readBuffer.clear())) > 0) {
+                long now = System.nanoTime();
+                conn.partial += len;
+                while (conn.partial >= frameLength && conn.size > 0) {
+                    conn.partial -= frameLength;
+                    int index = conn.head;
+                    conn.head = (conn.head + 1) & (conn.intended.length - 1);
+                    conn.size--;
+                    complete(conn, conn.intended[index], conn.actual[index], now, end);
+                }
+            }
+            if (len == -1) {
+                throw new IOException("连接被服务端关闭");
+            }
+        }
+
+        void readUdp(Conn conn, long end) throws IOException {
+            while (conn.udp.receive(readBuffer.clear()) != null) {
+                long now = System.nanoTime();
+                if (readBuffer.position() < UDP_HEADER_LENGTH) {
+                    continue;
+                }
+                //已经超时出队的请求或者重复的响应直接忽略
+                long k = readBuffer.getLong(0) - conn.headSeq;
+                if (k < 0 || k >= conn.size) {
+                    continue;
+                }
+                int index = (int) ((conn.head + k) & (conn.intended.length - 1));
+                if (conn.done[index] || conn.actual[index] != readBuffer.getLong(8)) {
+                    continue;
+                }
+                conn.done[index] = true;
+                conn.outstanding--;
+                long intendedTime = conn.intended[index];
+                long actualTime = conn.actual[index];
+                while (conn.size > 0 && conn.done[conn.head]) {
+                    conn.pop();
+                }
+                complete(conn, intendedTime, actualTime, now, end);
+            }
+        }
+
+        void complete(Conn conn, long intendedTime, long actualTime, long now, long end) throws IOException {
+            completed++;
+            corrected.record(now - intendedTime);
+            uncorrected.record(now - actualTime);
+            if (intervalNanos == 0 && now < end) {
+                send(conn, now, now);
+            }
+        }
+
+        /**
+         * 过了各自截止时间还没有响应的 UDP 请求记为丢失，闭环时每丢一个补发一个。
+         * 请求按发送顺序入队，截止时间也是递增的，只需检查队头
+         */
+        void checkUdpTimeouts(long now, long end) throws IOException {
+            for (Conn conn : conns) {
+                int expired = 0;
+                while (conn.size > 0 && (conn.done[conn.head] || now - conn.actual[conn.head] > udpTimeoutNanos)) {
+                    if (!conn.done[conn.head]) {
+                        expired++;
+                    }
+                    conn.pop();
+                }
+                if (expired == 0) {
+                    continue;
+                }
+                lost += expired;
+                conn.outstanding -= expired;
+                if (intervalNanos == 0 && now < end) {
+                    for (int i = 0; i < expired; i++) {
+                        send(conn, now, now);
+                    }
+                }
+            }
+        }
+
+        void close() {
+            for (Conn conn : conns) {
+                if (conn != null) {
+                    conn.close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 压测结果，延迟单位纳秒
+     */
+    public class Report {
+
+        private final long sent;
+        private final long completed;
+        private final long lost;
+        private final long sendFailures;
+        private final long errors;
+        private final long bytesSent;
+        private final long durationNanos;
+        private final Histogram corrected = new Histogram();
+        private final Histogram uncorrected = new Histogram();
+
+        Report(List<Worker> workers, long durationNanos) {
+            long sent = 0, completed = 0, lost = 0, sendFailures = 0, errors = 0, bytesSent = 0;
+            for (Worker worker : workers) {
+                sent += worker.sent;
+                completed += worker.completed;
+                lost += worker.lost + (responses ? worker.pending() : 0);
+                sendFailures += worker.sendFailures;
+                errors += worker.errors;
+                bytesSent += worker.bytesSent;
+                corrected.add(worker.corrected);
+                uncorrected.add(worker.uncorrected);
+            }
+            this.sent = sent;
+            this.completed = completed;
+            this.lost = lost;
+            this.sendFailures = sendFailures;
+            this.errors = errors;
+            this.bytesSent = bytesSent;
+            this.durationNanos = durationNanos;
+        }
+
+        public long sent() {
+            return sent;
+        }
+
+        public long completed() {
+            return completed;
+        }
+
+        /**
+         * 超时或压测结束时仍未收到响应的请求数
+         */
+        public long lost() {
+            return lost;
+        }
+
+        public double throughput() {
+            return (responses ? completed : sent) * 1e9 / durationNanos;
+        }
+
+        /**
+         * 校正协同遗漏后的延迟：开环从预定发送时间算起，闭环按平均延迟补记被推迟的请求
+         */
+        public Histogram latency() {
+            return rate > 0 ? corrected : uncorrected.copyCorrectedForCoordinatedOmission((long) uncorrected.mean());
+        }
+
+        /**
+         * 从实际发送时间算起的延迟，即不做校正时看到的结果
+         */
+        public Histogram uncorrectedLatency() {
+            return uncorrected;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = durationNanos / 1e9;
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%s %s %d 连接 × %d 线程，%s，%d 字节消息，%.1f 秒%n",
+                    transport, target, connections, threads,
+                    rate > 0 ? "开环 " + rate + " 请求/秒" : "闭环 pipeline=" + pipeline, messageSize, seconds));
+            sb.append(String.format("发送 %d，完成 %d，丢失/未完成 %d，发送失败 %d，错误 %d%n",
+                    sent, completed, lost, sendFailures, errors));
+            sb.append(String.format("吞吐量 %.0f 请求/秒，发送 %.1f MB/s%n", throughput(), bytesSent / seconds / 1024 / 1024));
+            if (responses) {
+                sb.append("延迟（已校正） ").append(latency().summary(1000, "µs")).append(System.lineSeparator());
+                sb.append("延迟（未校正） ").append(uncorrected.summary(1000, "µs"));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package cn.clboy.nio.loadgen;
+
+import cn.clboy.nio.reactor.Connection;
+import cn.clboy.nio.reactor.EchoHandler;
+import cn.clboy.nio.reactor.ReactorServer;
+import cn.clboy.nio.udp.ShardedUdpReceiver;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/22 上午11:30
+ * @Since 1.0.0
+ * <p>
+ * 压测客户端：对回环地址上的回显服务端施压，输出吞吐量和延迟百分位
+ */
+public class LoadGeneratorTest {
+
+    /**
+     * 开环：2000 个连接合计每秒 20000 个请求
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testOpenLoop() throws Exception {
+        try (ReactorServer server = new ReactorServer(7020, 2, new EchoHandler())) {
+            server.start();
+            LoadGenerator.Report report = new LoadGenerator(new InetSocketAddress("127.0.0.1", 7020), LoadGenerator.Transport.TCP, 2000, 2)
+                    .rate(20000)
+                    .run(5, TimeUnit.SECONDS);
+            System.out.println(report);
+        }
+    }
+
+    /**
+     * 闭环：每个连接 4 个请求在途，测服务端能承受的最大吞吐量
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testClosedLoop() throws Exception {
+        try (ReactorServer server = new ReactorServer(7021, 2, new EchoHandler())) {
+            server.start();
+            LoadGenerator.Report report = new LoadGenerator(new InetSocketAddress("127.0.0.1", 7021), LoadGenerator.Transport.TCP, 200, 2)
+                    .pipeline(4)
+                    .run(5, TimeUnit.SECONDS);
+            System.out.println(report);
+        }
+    }
+
+    /**
+     * 服务端第 2 秒时卡顿 1 秒：闭环的未校正结果几乎看不出卡顿，开环从预定发送时间算起的延迟如实反映了卡顿
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCoordinatedOmission() throws Exception {
+        for (long rate : new long[]{0, 10000}) {
+            long stallAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            try (ReactorServer server = new ReactorServer(7022, 1, new StallingEchoHandler(stallAt, 1000))) {
+                server.start();
+                LoadGenerator.Report report = new LoadGenerator(new InetSocketAddress("127.0.0.1", 7022), LoadGenerator.Transport.TCP, 100, 1)
+                        .rate(rate)
+                        .run(5, TimeUnit.SECONDS);
+                System.out.println(report);
+                System.out.println();
+            }
+        }
+    }
+
+    /**
+     * UDP：ShardedUdpReceiver 收到后由另一个通道原样回复，请求前 16 字节带着发送时间
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUdp() throws Exception {
+        try (DatagramChannel reply = DatagramChannel.open();
+             ShardedUdpReceiver receiver = new ShardedUdpReceiver(7023, 1, 64, 2048, (shard, sender, datagram) -> {
+                 try {
+                     reply.send(datagram, sender);
+                 } catch (IOException ignored) {
+                 }
+             })) {
+            receiver.start();
+            LoadGenerator.Report report = new LoadGenerator(new InetSocketAddress("127.0.0.1", 7023), LoadGenerator.Transport.UDP, 100, 1)
+                    .rate(20000)
+                    .run(5, TimeUnit.SECONDS);
+            System.out.println(report);
+        }
+    }
+
+    /**
+     * UDP 丢包：回显端每 10 个请求丢掉 1 个。同一通道上其他请求的响应一直在到达，
+     * 丢掉的请求也要在各自的截止时间到了之后记为丢失并补发，丢失率应当正好是 10%
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUdpLoss() throws Exception {
+        AtomicLong received = new AtomicLong();
+        try (DatagramChannel reply = DatagramChannel.open();
+             ShardedUdpReceiver receiver = new ShardedUdpReceiver(7024, 1, 64, 2048, (shard, sender, datagram) -> {
+                 if (received.incrementAndGet() % 10 == 0) {
+                     return;
+                 }
+                 try {
+                     reply.send(datagram, sender);
+                 } catch (IOException ignored) {
+                 }
+             })) {
+            receiver.start();
+            LoadGenerator.Report report = new LoadGenerator(new InetSocketAddress("127.0.0.1", 7024), LoadGenerator.Transport.UDP, 10, 1)
+                    .pipeline(4)
+                    .udpTimeout(50, TimeUnit.MILLISECONDS)
+                    .run(3, TimeUnit.SECONDS);
+            System.out.println(report);
+            System.out.printf("丢失 %d / 发送 %d = %.1f%%（回显端丢弃 10%%）%n",
+                    report.lost(), report.sent(), report.lost() * 100.0 / report.sent());
+        }
+    }
+
+    /**
+     * 到了指定时间让事件循环线程睡一会儿，模拟 GC 停顿之类的卡顿
+     */
+    private static class StallingEchoHandler extends EchoHandler {
+
+        private final long stallAt;
+        private final long stallMillis;
+        private boolean stalled;
+
+        StallingEchoHandler(long stallAt, long stallMillis) {
+            this.stallAt = stallAt;
+            this.stallMillis = stallMillis;
+        }
+
+        @Override
+        public void onRead(Connection connection) throws IOException {
+            if (!stalled && System.nanoTime() - stallAt >= 0) {
+                stalled = true;
+                try {
+                    Thread.sleep(stallMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.onRead(connection);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package cn.clboy.nio.log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/25 上午11:30
+ * @Since 1.0.0
+ * <p>
+ * 日志的顺序读者：{@link #next()} 返回的是分段映射内存的只读切片，不拷贝数据。
+ * 读到已封存分段的末尾时自动转到下一个分段；追上写入者时返回 null，之后可以再次调用继续读取。
+ * 一个读者只能在一个线程中使用
+ */
+public class LogReader {
+
+    private final SegmentLog log;
+    private Segment segment;
+    private int position;
+    private long offset;
+
+    LogReader(SegmentLog log, long offset) {
+        this.log = log;
+        this.offset = offset;
+    }
+
+    /**
+     * 下一条要读取的消息的 offset
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * @return 下一条消息的内容，只读；没有新消息时返回 null
+     */
+    public ByteBuffer next() {
+        if (segment == null) {
+            Segment found = log.segmentFor(offset);
+            if (found == null) {
+                throw new IllegalArgumentException("offset " + offset + " is before the log start");
+            }
+            int foundPosition = found.position(offset);
+            if (foundPosition < 0) {
+                //还没有写到这个 offset
+                return null;
+            }
+            segment = found;
+            position = foundPosition;
+        }
+        while (position >= segment.end) {
+            if (!segment.sealed) {
+                return null;
+            }
+            //封存之前可能又追加了消息，看到 sealed 之后 end 不会再变，再检查一次
+            if (position < segment.end) {
+                break;
+            }
+            Segment next = log.nextSegment(segment);
+            if (next == null) {
+                return null;
+            }
+            segment = next;
+            position = 0;
+        }
+        int length = segment.log.getInt(position + 8);
+        ByteBuffer payload = segment.log.slice(position + Segment.HEADER_LENGTH, length).asReadOnlyBuffer();
+        position += Segment.HEADER_LENGTH + length;
+        offset++;
+        return payload;
+    }
+}
@@ -0,0 +1,295 @@
+package cn.clboy.nio.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/25 上午10:20
+ * @Since 1.0.0
+ * <p>
+ * 日志的一个分段：以第一条消息的 offset 命名的 .log 和 .idx 两个文件。
+ * <p>
+ * 活动分段预分配到 segmentSize 并整个映射为读写模式，消息直接写进映射内存；
+ * 写满后封存（sealed）：force 后截断到实际长度，不再写入。
+ * 读者只读取 {@link #end} 之前的数据，可以与唯一的写入者并发
+ * <p>
+ * 稀疏索引每隔 indexInterval 字节记录一条 | 相对 offset (4) | 位置 (4) |，同样预分配并映射，
+ * 查找时二分找到不大于目标的最后一条，再从那里顺序扫描
+ */
+final class Segment implements Closeable {
+
+    /**
+     * | offset (8) | length (4) | crc32c (4) | payload |，CRC32C 覆盖除自身以外的所有字段
+     */
+    static final int HEADER_LENGTH = 16;
+    static final int INDEX_ENTRY = 8;
+
+    final long baseOffset;
+    private final Path logPath;
+    private final FileChannel logChannel;
+    private final FileChannel indexChannel;
+    final MappedByteBuffer log;
+    private final MappedByteBuffer index;
+    private final int indexInterval;
+
+    /**
+     * 已提交的字节数，写入者先写数据再更新它，读者只读取它之前的数据
+     */
+    volatile int end;
+    /**
+     * 封存后不会再增长，读者读到 end 就可以转到下一个分段
+     */
+    volatile boolean sealed;
+    long nextOffset;
+    private int indexEntries;
+    private int lastIndexedPosition;
+    /**
+     * 已经 force 过的位置
+     */
+    private int flushedPosition;
+    private int flushedIndexEntries;
+
+    private Segment(long baseOffset, Path logPath, int indexInterval, FileChannel logChannel, FileChannel indexChannel,
+                    MappedByteBuffer log, MappedByteBuffer index) {
+        this.baseOffset = baseOffset;
+        this.logPath = logPath;
+        this.indexInterval = indexInterval;
+        this.logChannel = logChannel;
+        this.indexChannel = indexChannel;
+        this.log = log;
+        this.index = index;
+        this.nextOffset = baseOffset;
+    }
+
+    static String fileName(long baseOffset, String suffix) {
+        return String.format("%020d%s", baseOffset, suffix);
+    }
+
+    /**
+     * 新建或打开最后一个分段作为活动分段（即使崩溃前刚刚封存，重新映射会再次预分配）并恢复：
+     * 从头校验每条消息，遇到 offset 不连续、长度越界或 CRC 不符的记录即视为写了一半的尾部，
+     * 截掉它并按扫描结果重建索引
+     */
+    static Segment recover(Path dir, long baseOffset, int segmentSize, int indexInterval) throws IOException {
+        Segment segment = map(dir, baseOffset, segmentSize, indexInterval, true);
+        segment.scan();
+        return segment;
+    }
+
+    /**
+     * 打开一个已封存的分段：封存前已经落盘，只需要读入索引并从最后一条索引扫描到末尾得到下一个 offset
+     */
+    static Segment load(Path dir, long baseOffset, int segmentSize, int indexInterval) throws IOException {
+        Segment segment = map(dir, baseOffset, segmentSize, indexInterval, false);
+        MappedByteBuffer index = segment.index;
+        int entries = index.capacity() / INDEX_ENTRY;
+        //有效条目的位置至少是 indexInterval，末尾的 0 是封存时没来得及截断的预分配部分
+        while (entries > 0 && index.getInt((entries - 1) * INDEX_ENTRY + 4) == 0) {
+            entries--;
+        }
+        segment.indexEntries = entries;
+        segment.flushedIndexEntries = entries;
+        int position = 0;
+        long offset = baseOffset;
+        if (entries > 0) {
+            offset = baseOffset + index.getInt((entries - 1) * INDEX_ENTRY);
+            position = index.getInt((entries - 1) * INDEX_ENTRY + 4);
+        }
+        MappedByteBuffer log = segment.log;
+        while (log.capacity() - position >= HEADER_LENGTH && log.getLong(position) == offset) {
+            position += HEADER_LENGTH + log.getInt(position + 8);
+            offset++;
+        }
+        segment.end = position;
+        segment.flushedPosition = position;
+        segment.nextOffset = offset;
+        segment.sealed = true;
+        return segment;
+    }
+
+    /**
+     * @param active 活动分段按 segmentSize 映射（读写映射超过文件长度时会扩展文件，预分配就是这样完成的），
+     *               封存的分段按文件实际长度映射
+     */
+    private static Segment map(Path dir, long baseOffset, int segmentSize, int indexInterval, boolean active) throws IOException {
+        Path logPath = dir.resolve(fileName(baseOffset, ".log"));
+        Path indexPath = dir.resolve(fileName(baseOffset, ".idx"));
+        FileChannel logChannel = FileChannel.open(logPath,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        FileChannel indexChannel = FileChannel.open(indexPath,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            long logSize = active ? Math.max(segmentSize, logChannel.size()) : logChannel.size();
+            long indexSize = active ? Math.max((segmentSize / indexInterval + 1L) * INDEX_ENTRY, indexChannel.size())
+                    : indexChannel.size() / INDEX_ENTRY * INDEX_ENTRY;
+            MappedByteBuffer log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, logSize);
+            MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+            return new Segment(baseOffset, logPath, indexInterval, logChannel, indexChannel, log, index);
+        } catch (IOException e) {
+            logChannel.close();
+            indexChannel.close();
+            throw e;
+        }
+    }
+
+    private void scan() {
+        CRC32C crc = new CRC32C();
+        int position = 0;
+        long offset = baseOffset;
+        int capacity = log.capacity();
+        indexEntries = 0;
+        lastIndexedPosition = 0;
+        while (capacity - position >= HEADER_LENGTH) {
+            int length = log.getInt(position + 8);
+            if (log.getLong(position) != offset || length < 0 || length > capacity - position - HEADER_LENGTH) {
+                break;
+            }
+            if (checksum(crc, position, length) != log.getInt(position + 12)) {
+                break;
+            }
+            maybeIndex(offset, position);
+            position += HEADER_LENGTH + length;
+            offset++;
+        }
+        //写了一半的尾部清零，之后的写入不会与残留数据拼出看似有效的记录
+        if (capacity - position >= HEADER_LENGTH && (log.getLong(position) != 0 || log.getLong(position + 8) != 0)) {
+            for (int i = position; i < capacity; i++) {
+                log.put(i, (byte) 0);
+            }
+        }
+        for (int i = indexEntries * INDEX_ENTRY; i < index.capacity(); i++) {
+            index.put(i, (byte) 0);
+        }
+        end = position;
+        flushedPosition = position;
+        nextOffset = offset;
+        flushedIndexEntries = indexEntries;
+    }
+
+    /**
+     * 校验和覆盖 offset、length 和 payload：全零的区域（offset 0、长度 0）不会被当成一条有效的空消息
+     */
+    private int checksum(CRC32C crc, int position, int length) {
+        crc.reset();
+        crc.update(log.slice(position, 12));
+        crc.update(log.slice(position + HEADER_LENGTH, length));
+        return (int) crc.getValue();
+    }
+
+    int remaining() {
+        return log.capacity() - end;
+    }
+
+    /**
+     * 追加一条消息，调用方保证空间足够且只有一个写入者
+     */
+    long append(ByteBuffer payload, CRC32C crc) {
+        int position = end;
+        int length = payload.remaining();
+        long offset = nextOffset;
+        log.putLong(position, offset)
+                .putInt(position + 8, length)
+                .put(position + HEADER_LENGTH, payload, payload.position(), length);
+        log.putInt(position + 12, checksum(crc, position, length));
+        maybeIndex(offset, position);
+        nextOffset = offset + 1;
+        end = position + HEADER_LENGTH + length;
+        return offset;
+    }
+
+    private void maybeIndex(long offset, int position) {
+        if (position - lastIndexedPosition >= indexInterval && (indexEntries + 1) * INDEX_ENTRY <= index.capacity()) {
+            index.putInt(indexEntries * INDEX_ENTRY, (int) (offset - baseOffset))
+                    .putInt(indexEntries * INDEX_ENTRY + 4, position);
+            indexEntries++;
+            lastIndexedPosition = position;
+        }
+    }
+
+    /**
+     * offset 所在记录的位置，offset 不在本分段中时返回 -1
+     */
+    int position(long offset) {
+        int committed = end;
+        if (offset < baseOffset) {
+            return -1;
+        }
+        int relative = (int) (offset - baseOffset);
+        //二分查找相对 offset 不大于目标的最后一条索引
+        int low = 0;
+        int high = indexEntries - 1;
+        int position = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (index.getInt(middle * INDEX_ENTRY) <= relative) {
+                position = index.getInt(middle * INDEX_ENTRY + 4);
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        while (position < committed) {
+            if (log.getLong(position) == offset) {
+                return position;
+            }
+            position += HEADER_LENGTH + log.getInt(position + 8);
+        }
+        return -1;
+    }
+
+    /**
+     * 把 [flushedPosition, end) 和新增的索引条目写回磁盘
+     */
+    void flush() {
+        int position = end;
+        if (position > flushedPosition) {
+            log.force(flushedPosition, position - flushedPosition);
+            flushedPosition = position;
+        }
+        if (indexEntries > flushedIndexEntries) {
+            index.force(flushedIndexEntries * INDEX_ENTRY, (indexEntries - flushedIndexEntries) * INDEX_ENTRY);
+            flushedIndexEntries = indexEntries;
+        }
+    }
+
+    /**
+     * 封存：落盘后截断掉预分配的部分；之后才会创建下一个分段，所以重新打开时除最后一个以外的分段都已封存
+     */
+    void seal() throws IOException {
+        flush();
+        logChannel.truncate(end);
+        indexChannel.truncate((long) indexEntries * INDEX_ENTRY);
+        logChannel.force(true);
+        indexChannel.force(true);
+        sealed = true;
+    }
+
+    /**
+     * 从 position 开始最多 count 字节交给 transferTo，不经过用户态
+     */
+    long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        return logChannel.transferTo(position, count, target);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            logChannel.close();
+        } finally {
+            indexChannel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return logPath.getFileName() + "(" + baseOffset + ".." + nextOffset + ", " + end + " bytes)";
+    }
+}
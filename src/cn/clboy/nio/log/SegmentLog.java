@@ -0,0 +1,246 @@
+package cn.clboy.nio.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/25 上午11:00
+ * @Since 1.0.0
+ * <p>
+ * 基于内存映射的只追加日志：每条消息分配一个递增的 offset，写进当前活动分段的映射内存，
+ * 分段写满后封存并滚动到以下一个 offset 命名的新分段。
+ * <pre>
+ * 00000000000000000000.log   | offset (8) | length (4) | crc32c (4) | payload | ...
+ * 00000000000000000000.idx   稀疏索引 | 相对 offset (4) | 位置 (4) |
+ * 00000000000000052341.log
+ * ...
+ * </pre>
+ * 写入只是一次内存拷贝，什么时候落盘由刷盘策略决定：
+ * {@link #flushEvery(int)} 每 N 条消息 force 一次，{@link #flushInterval(long, TimeUnit)} 由后台线程定时 force，
+ * 都不设置时交给操作系统回写，进程崩溃不丢数据，机器掉电会丢失还在页缓存中的部分。
+ * <p>
+ * 打开时对最后一个分段做崩溃恢复，截掉写了一半的尾部。
+ * 读取有两种方式：{@link #reader(long)} 直接返回映射内存的切片，不拷贝；
+ * {@link #transferTo(long, WritableByteChannel, long)} 把原始记录经 transferTo 发给消费者，不经过用户态。
+ * <p>
+ * 写入是同步的，可以被多个线程调用；读取可以与写入并发
+ */
+public class SegmentLog implements Closeable {
+
+    private final Path dir;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final CRC32C crc = new CRC32C();
+    private volatile Segment active;
+
+    private int flushMessages;
+    private int unflushed;
+    private ScheduledExecutorService flusher;
+    private boolean closed;
+
+    /**
+     * 分段 64MB，每 4KB 一条索引
+     */
+    public SegmentLog(Path dir) throws IOException {
+        this(dir, 64 * 1024 * 1024, 4096);
+    }
+
+    public SegmentLog(Path dir, int segmentSize, int indexInterval) throws IOException {
+        if (segmentSize <= Segment.HEADER_LENGTH || indexInterval <= 0) {
+            throw new IllegalArgumentException("segmentSize: " + segmentSize + ", indexInterval: " + indexInterval);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+
+        List<Long> baseOffsets = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".log"))
+                    .forEach(name -> baseOffsets.add(Long.parseLong(name.substring(0, name.length() - 4))));
+        }
+        baseOffsets.sort(null);
+        try {
+            for (int i = 0; i < baseOffsets.size() - 1; i++) {
+                long base = baseOffsets.get(i);
+                segments.put(base, Segment.load(dir, base, segmentSize, indexInterval));
+            }
+            long last = baseOffsets.isEmpty() ? 0 : baseOffsets.get(baseOffsets.size() - 1);
+            active = Segment.recover(dir, last, segmentSize, indexInterval);
+            segments.put(last, active);
+        } catch (IOException e) {
+            closeSegments();
+            throw e;
+        }
+    }
+
+    /**
+     * 每追加 messages 条消息 force 一次，1 表示每条消息返回前都已落盘；0 表示不按条数刷盘
+     */
+    public synchronized SegmentLog flushEvery(int messages) {
+        this.flushMessages = messages;
+        return this;
+    }
+
+    /**
+     * 后台线程每隔 interval force 一次
+     */
+    public synchronized SegmentLog flushInterval(long interval, TimeUnit unit) {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "log-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, interval, interval, unit);
+        }
+        return this;
+    }
+
+    /**
+     * 追加一条消息（payload 的 [position, limit)，position 不变）
+     *
+     * @return 这条消息的 offset
+     */
+    public synchronized long append(ByteBuffer payload) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("log closed");
+        }
+        int size = Segment.HEADER_LENGTH + payload.remaining();
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("message too large: " + payload.remaining());
+        }
+        if (active.remaining() < size) {
+            roll();
+        }
+        long offset = active.append(payload, crc);
+        if (flushMessages > 0 && ++unflushed >= flushMessages) {
+            active.flush();
+            unflushed = 0;
+        }
+        return offset;
+    }
+
+    /**
+     * 封存当前分段，新建下一个
+     */
+    private void roll() throws IOException {
+        Segment current = active;
+        current.seal();
+        Segment next = Segment.recover(dir, current.nextOffset, segmentSize, indexInterval);
+        segments.put(next.baseOffset, next);
+        active = next;
+        unflushed = 0;
+    }
+
+    /**
+     * 把还没落盘的数据 force 到磁盘
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            active.flush();
+            unflushed = 0;
+        }
+    }
+
+    /**
+     * 下一条消息的 offset
+     */
+    public long nextOffset() {
+        synchronized (this) {
+            return active.nextOffset;
+        }
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 从 offset 开始顺序读取
+     */
+    public LogReader reader(long offset) {
+        return new LogReader(this, offset);
+    }
+
+    /**
+     * offset 所在的分段，offset 超出日志范围时返回 null
+     */
+    Segment segmentFor(long offset) {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        return entry == null ? null : entry.getValue();
+    }
+
+    Segment nextSegment(Segment segment) {
+        Map.Entry<Long, Segment> entry = segments.higherEntry(segment.baseOffset);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * 从 offset 开始把原始记录（含 16 字节的记录头）发给 target，最多 maxBytes 字节、不超过所在分段的末尾，
+     * 数据由内核从页缓存直接拷贝到目标通道。消费者按记录头解析，记住最后一条完整记录的 offset + 1 作为下次的起点
+     *
+     * @return 发送的字节数，offset 还没有写入时返回 0
+     */
+    public long transferTo(long offset, WritableByteChannel target, long maxBytes) throws IOException {
+        Segment segment = segmentFor(offset);
+        if (segment == null) {
+            throw new IllegalArgumentException("offset " + offset + " is before the log start");
+        }
+        int position = segment.position(offset);
+        if (position < 0) {
+            return 0;
+        }
+        long count = Math.min(maxBytes, segment.end - position);
+        return segment.transferTo(position, count, target);
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 落盘后关闭；活动分段保持预分配的长度，下次打开时接着写
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduled;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            active.flush();
+            closed = true;
+            scheduled = flusher;
+        }
+        if (scheduled != null) {
+            scheduled.shutdown();
+        }
+        closeSegments();
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentLog(" + dir + ", segments=" + segments.values() + ")";
+    }
+}
@@ -0,0 +1,221 @@
+package cn.clboy.nio.log;
+
+import cn.clboy.nio.udp.ShardedUdpReceiver;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/25 下午2:00
+ * @Since 1.0.0
+ * <p>
+ * 内存映射的分段日志：追加、顺序读、按 offset 查找、transferTo 和崩溃恢复
+ */
+public class SegmentLogTest {
+
+    /**
+     * 100 万条 100 字节的消息写进 16MB 的分段，再顺序读回并随机查找
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAppendRead() throws Exception {
+        Path dir = Files.createTempDirectory("log");
+        int count = 1_000_000;
+        ByteBuffer message = ByteBuffer.allocate(100);
+        try (SegmentLog log = new SegmentLog(dir, 16 * 1024 * 1024, 4096)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                message.clear();
+                message.putLong(0, i);
+                log.append(message);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("追加 %d 条，%d ms，%.0f 万条/秒，%d 个分段%n",
+                    count, elapsed / 1000000, count * 1e5 / elapsed, log.segmentCount());
+
+            start = System.nanoTime();
+            LogReader reader = log.reader(0);
+            int errors = 0;
+            int read = 0;
+            ByteBuffer payload;
+            while ((payload = reader.next()) != null) {
+                if (payload.getLong(0) != read || payload.remaining() != 100) {
+                    errors++;
+                }
+                read++;
+            }
+            System.out.printf("顺序读取 %d 条，%d ms，错误 %d%n", read, (System.nanoTime() - start) / 1000000, errors);
+
+            Random random = new Random(1);
+            start = System.nanoTime();
+            errors = 0;
+            for (int i = 0; i < 10000; i++) {
+                long offset = random.nextInt(count);
+                if (log.reader(offset).next().getLong(0) != offset) {
+                    errors++;
+                }
+            }
+            System.out.printf("随机查找 10000 次，%d ms，错误 %d%n", (System.nanoTime() - start) / 1000000, errors);
+        }
+        delete(dir);
+    }
+
+    /**
+     * 从任意 offset 开始用 transferTo 把原始记录发给消费者，消费者解析记录头，跨分段继续拉取
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTransferTo() throws Exception {
+        Path dir = Files.createTempDirectory("log");
+        Path out = Files.createTempFile("consumer", ".bin");
+        try (SegmentLog log = new SegmentLog(dir, 1024 * 1024, 4096);
+             FileChannel target = FileChannel.open(out, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Random random = new Random(2);
+            for (int i = 0; i < 100000; i++) {
+                ByteBuffer message = ByteBuffer.allocate(8 + random.nextInt(200));
+                message.putLong(0, i);
+                log.append(message);
+            }
+
+            long offset = 31337;
+            long first = offset;
+            long transferred = 0;
+            long transfers = 0;
+            long n;
+            //每次最多 64KB，末尾可能是半条记录，下次从最后一条完整记录之后开始
+            while ((n = log.transferTo(offset, target, 64 * 1024)) > 0) {
+                transfers++;
+                ByteBuffer chunk = target.map(FileChannel.MapMode.READ_ONLY, transferred, n);
+                int position = 0;
+                int complete = 0;
+                while (n - position >= Segment.HEADER_LENGTH
+                        && n - position - Segment.HEADER_LENGTH >= chunk.getInt(position + 8)) {
+                    if (chunk.getLong(position) != offset || chunk.getLong(position + Segment.HEADER_LENGTH) != offset) {
+                        throw new IllegalStateException("unexpected record at " + offset);
+                    }
+                    position += Segment.HEADER_LENGTH + chunk.getInt(position + 8);
+                    complete = position;
+                    offset++;
+                }
+                transferred += complete;
+                target.truncate(transferred).position(transferred);
+            }
+            System.out.printf("从 %d 开始 %d 次 transferTo，收到 %d 条、%d 字节，下一个 offset %d（日志 %d）%n",
+                    first, transfers, offset - first, transferred, offset, log.nextOffset());
+        }
+        Files.delete(out);
+        delete(dir);
+    }
+
+    /**
+     * 模拟崩溃：活动分段末尾有一条 CRC 不符的记录和一段残留的垃圾，
+     * 重新打开时截掉它们，之后的追加从正确的 offset 接着写
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecovery() throws Exception {
+        Path dir = Files.createTempDirectory("log");
+        long end;
+        try (SegmentLog log = new SegmentLog(dir, 1024 * 1024, 4096)) {
+            for (int i = 0; i < 20000; i++) {
+                log.append(ByteBuffer.allocate(64).putLong(0, i));
+            }
+            end = log.nextOffset();
+            System.out.println("写入后：" + log);
+        }
+        Path active;
+        try (Stream<Path> files = Files.list(dir)) {
+            active = files.filter(path -> path.toString().endsWith(".log")).max(Comparator.naturalOrder()).get();
+        }
+        try (FileChannel channel = FileChannel.open(active, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            long position = 0;
+            //找到末尾：记录头的 offset 为 0 且长度为 0 的位置
+            while (true) {
+                header.clear();
+                channel.read(header, position);
+                if (header.getLong(0) == 0 && header.getInt(8) == 0 && position > 0) {
+                    break;
+                }
+                position += 16 + header.getInt(8);
+            }
+            //写了一半的记录：offset 正确，内容只写了一部分，CRC 对不上
+            ByteBuffer torn = ByteBuffer.allocate(16 + 30);
+            torn.putLong(end).putInt(64).putInt(12345).put(new byte[]{1, 2, 3}).clear();
+            channel.write(torn, position);
+        }
+
+        try (SegmentLog log = new SegmentLog(dir, 1024 * 1024, 4096)) {
+            System.out.println("恢复后：" + log + "，nextOffset=" + log.nextOffset() + "（崩溃前 " + end + "）");
+            long offset = log.append(ByteBuffer.allocate(64).putLong(0, end));
+            LogReader reader = log.reader(end - 1);
+            System.out.println("新消息 offset=" + offset + "，读回：" + reader.next().getLong(0) + ", " + reader.next().getLong(0));
+        }
+        delete(dir);
+    }
+
+    /**
+     * 把收到的数据报写进日志：接收线程只做一次内存拷贝，每 100ms 由后台线程 force 一次
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDatagrams() throws Exception {
+        Path dir = Files.createTempDirectory("log");
+        try (SegmentLog log = new SegmentLog(dir).flushInterval(100, TimeUnit.MILLISECONDS)) {
+            try (ShardedUdpReceiver receiver = new ShardedUdpReceiver(7040, 1, 256, 2048, (shard, sender, datagram) -> {
+                try {
+                    log.append(datagram);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })) {
+                receiver.start();
+                try (DatagramChannel channel = DatagramChannel.open()) {
+                    channel.connect(new InetSocketAddress("127.0.0.1", 7040));
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+                    for (int i = 0; i < 100000; i++) {
+                        buffer.clear();
+                        buffer.putLong(0, i);
+                        channel.write(buffer);
+                        if (i % 1000 == 999) {
+                            //给接收端一点时间，回环上也会因接收缓冲区满而丢包
+                            Thread.sleep(1);
+                        }
+                    }
+                }
+                Thread.sleep(500);
+                System.out.println(receiver.stats());
+            }
+            LogReader reader = log.reader(0);
+            long count = 0;
+            while (reader.next() != null) {
+                count++;
+            }
+            System.out.println("日志中的数据报：" + count + "，" + log);
+        }
+        delete(dir);
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package cn.clboy.nio.metrics;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午3:20
+ * @Since 1.0.0
+ * <p>
+ * 缓冲区池的占用情况，数据来自 {@link BufferPool} 自己的计数器
+ */
+public class BufferPoolMetrics implements BufferPoolMetricsMXBean {
+
+    private final String name;
+    private final BufferPool pool;
+
+    public BufferPoolMetrics(String name, BufferPool pool) {
+        this.name = name;
+        this.pool = pool;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public long getAcquired() {
+        return pool.acquired();
+    }
+
+    @Override
+    public long getReleased() {
+        return pool.released();
+    }
+
+    @Override
+    public long getInUse() {
+        return pool.inUse();
+    }
+
+    @Override
+    public long getSlabBytes() {
+        return pool.slabBytes();
+    }
+
+    @Override
+    public long getUnpooledAllocations() {
+        return pool.unpooledAllocations();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": acquired=" + getAcquired() + " released=" + getReleased() + " inUse=" + getInUse()
+                + " slabBytes=" + getSlabBytes() + " unpooled=" + getUnpooledAllocations();
+    }
+}
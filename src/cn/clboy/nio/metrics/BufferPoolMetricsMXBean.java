@@ -0,0 +1,21 @@
+package cn.clboy.nio.metrics;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午3:15
+ * @Since 1.0.0
+ * <p>
+ * 缓冲区池的 JMX 视图
+ */
+public interface BufferPoolMetricsMXBean {
+
+    long getAcquired();
+
+    long getReleased();
+
+    long getInUse();
+
+    long getSlabBytes();
+
+    long getUnpooledAllocations();
+}
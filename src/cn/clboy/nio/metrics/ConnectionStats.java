@@ -0,0 +1,38 @@
+package cn.clboy.nio.metrics;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午3:25
+ * @Since 1.0.0
+ * <p>
+ * 某一时刻单个连接的读写字节数，JMX 中映射为 CompositeData
+ */
+public class ConnectionStats {
+
+    private final String remoteAddress;
+    private final long bytesRead;
+    private final long bytesWritten;
+
+    public ConnectionStats(String remoteAddress, long bytesRead, long bytesWritten) {
+        this.remoteAddress = remoteAddress;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        return remoteAddress + ": read=" + bytesRead + "B written=" + bytesWritten + "B";
+    }
+}
@@ -0,0 +1,179 @@
+package cn.clboy.nio.metrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午2:50
+ * @Since 1.0.0
+ * <p>
+ * 一个选择器循环的指标：
+ * - 每轮 select() 阻塞的时间和处理就绪键、任务的时间（直方图）
+ * - 每轮处理的就绪键数量
+ * - 读写字节数及速率、执行的任务数
+ * - 每个连接各自的读写字节数（按需快照，不在热路径上汇总）
+ * <p>
+ * 直方图只由循环线程写入；读写字节数用 {@link RateMeter}（LongAdder），任意线程都可以记录
+ */
+public class EventLoopMetrics implements EventLoopMetricsMXBean {
+
+    private static final long MICROS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    private final String name;
+    private final IntSupplier connections;
+    private final Supplier<List<ConnectionStats>> connectionStats;
+
+    private final Histogram selectTime = new Histogram();
+    private final Histogram processTime = new Histogram();
+    private final Histogram keysPerIteration = new Histogram();
+    private final RateMeter bytesRead = new RateMeter();
+    private final RateMeter bytesWritten = new RateMeter();
+    private final RateMeter tasks = new RateMeter();
+
+    /**
+     * @param connections 当前连接数，由循环自己维护
+     */
+    public EventLoopMetrics(String name, IntSupplier connections) {
+        this(name, connections, List::of);
+    }
+
+    /**
+     * @param connectionStats 读取时调用，返回各连接的读写字节数
+     */
+    public EventLoopMetrics(String name, IntSupplier connections, Supplier<List<ConnectionStats>> connectionStats) {
+        this.name = name;
+        this.connections = connections;
+        this.connectionStats = connectionStats;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 每轮循环结束时由循环线程调用
+     *
+     * @param selectNanos  select() 阻塞的时间
+     * @param keys         就绪键数量
+     * @param processNanos 处理就绪键和任务的时间
+     */
+    public void recordIteration(long selectNanos, int keys, long processNanos) {
+        selectTime.record(selectNanos);
+        keysPerIteration.record(keys);
+        processTime.record(processNanos);
+    }
+
+    public void recordRead(long bytes) {
+        bytesRead.mark(bytes);
+    }
+
+    public void recordWritten(long bytes) {
+        bytesWritten.mark(bytes);
+    }
+
+    public void recordTasks(int n) {
+        if (n > 0) {
+            tasks.mark(n);
+        }
+    }
+
+    public Histogram selectTime() {
+        return selectTime;
+    }
+
+    public Histogram processTime() {
+        return processTime;
+    }
+
+    public Histogram keysPerIteration() {
+        return keysPerIteration;
+    }
+
+    @Override
+    public long getIterations() {
+        return processTime.count();
+    }
+
+    @Override
+    public double getSelectTimeMeanMicros() {
+        return selectTime.mean() / MICROS;
+    }
+
+    @Override
+    public long getSelectTimeP99Micros() {
+        return selectTime.percentile(99) / MICROS;
+    }
+
+    @Override
+    public double getProcessTimeMeanMicros() {
+        return processTime.mean() / MICROS;
+    }
+
+    @Override
+    public long getProcessTimeP99Micros() {
+        return processTime.percentile(99) / MICROS;
+    }
+
+    @Override
+    public long getProcessTimeMaxMicros() {
+        return processTime.max() / MICROS;
+    }
+
+    @Override
+    public double getKeysPerIterationMean() {
+        return keysPerIteration.mean();
+    }
+
+    @Override
+    public long getKeysPerIterationMax() {
+        return keysPerIteration.max();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.count();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.count();
+    }
+
+    @Override
+    public double getBytesReadPerSecond() {
+        return bytesRead.rate();
+    }
+
+    @Override
+    public double getBytesWrittenPerSecond() {
+        return bytesWritten.rate();
+    }
+
+    @Override
+    public int getConnections() {
+        return connections.getAsInt();
+    }
+
+    @Override
+    public List<ConnectionStats> getConnectionStats() {
+        return connectionStats.get();
+    }
+
+    @Override
+    public long getTasks() {
+        return tasks.count();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": connections=" + getConnections() + " iterations=" + getIterations() + " tasks=" + getTasks() + "\n"
+                + "  select   " + selectTime.summary(MICROS, "us") + "\n"
+                + "  process  " + processTime.summary(MICROS, "us") + "\n"
+                + "  keys     " + keysPerIteration.summary(1, "") + "\n"
+                + String.format("  read=%dB (%.0fB/s) written=%dB (%.0fB/s)",
+                getBytesRead(), getBytesReadPerSecond(), getBytesWritten(), getBytesWrittenPerSecond());
+    }
+}
@@ -0,0 +1,46 @@
+package cn.clboy.nio.metrics;
+
+import java.util.List;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午2:40
+ * @Since 1.0.0
+ * <p>
+ * 事件循环的 JMX 视图，时间单位均为微秒
+ */
+public interface EventLoopMetricsMXBean {
+
+    long getIterations();
+
+    double getSelectTimeMeanMicros();
+
+    long getSelectTimeP99Micros();
+
+    double getProcessTimeMeanMicros();
+
+    long getProcessTimeP99Micros();
+
+    long getProcessTimeMaxMicros();
+
+    double getKeysPerIterationMean();
+
+    long getKeysPerIterationMax();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    double getBytesReadPerSecond();
+
+    double getBytesWrittenPerSecond();
+
+    int getConnections();
+
+    /**
+     * 当前各连接的读写字节数
+     */
+    List<ConnectionStats> getConnectionStats();
+
+    long getTasks();
+}
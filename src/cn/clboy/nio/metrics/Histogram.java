@@ -0,0 +1,183 @@
+package cn.clboy.nio.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午2:10
+ * @Since 1.0.0
+ * <p>
+ * 对数-线性分桶的直方图（简化版 HdrHistogram），用于记录延迟等非负整数：
+ * <p>
+ * - 小于 16 的值每个值一个桶；之后每个 2 的幂区间 [2^k, 2^(k+1)) 均分成 16 个桶，相对误差不超过 1/16
+ * - 桶的数量固定（约 1000 个），record 只是一次下标计算和一次数组写入，不分配对象
+ * <p>
+ * 单写者：同一时刻只能有一个线程调用 record（例如事件循环线程），其他线程可以随时读取。
+ * 多个线程各自记录时，每个线程一个 Histogram，读取前用 {@link #add(Histogram)} 合并
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个值，负数按 0 处理
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    private void record(long value, long n) {
+        if (value < 0) {
+            value = 0;
+        }
+        int index = bucketIndex(value);
+        //单写者，不需要 CAS，lazySet 保证读线程最终能看到
+        counts.lazySet(index, counts.get(index) + n);
+        count.lazySet(count.get() + n);
+        sum.lazySet(sum.get() + value * n);
+        if (value > max.get()) {
+            max.lazySet(value);
+        }
+    }
+
+    /**
+     * 记录一个值并校正协同遗漏（coordinated omission）：
+     * 闭环压测中一次请求耗时 value 期间，本应每隔 expectedInterval 发出的请求都被推迟了，
+     * 补记 value - expectedInterval、value - 2 * expectedInterval …… 这些本该被观察到的延迟
+     *
+     * @param expectedInterval 期望的请求间隔，小于等于 0 时不校正
+     */
+    public void recordWithExpectedInterval(long value, long expectedInterval) {
+        recordWithExpectedInterval(value, expectedInterval, 1);
+    }
+
+    private void recordWithExpectedInterval(long value, long expectedInterval, long n) {
+        record(value, n);
+        if (expectedInterval <= 0) {
+            return;
+        }
+        for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+            record(missing, n);
+        }
+    }
+
+    /**
+     * 事后校正：按桶的上界重放所有记录，返回校正后的新直方图，本直方图不变
+     *
+     * @see #recordWithExpectedInterval(long, long)
+     */
+    public Histogram copyCorrectedForCoordinatedOmission(long expectedInterval) {
+        Histogram copy = new Histogram();
+        long maxValue = max.get();
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c != 0) {
+                copy.recordWithExpectedInterval(Math.min(bucketUpperBound(i), maxValue), expectedInterval, c);
+            }
+        }
+        return copy;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long lower = (1L << exponent) + (sub << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long c = count.get();
+        return c == 0 ? 0 : (double) sum.get() / c;
+    }
+
+    /**
+     * @param percentile 0 ~ 100，例如 99.9
+     * @return 不小于该百分位的值所在桶的上界，没有数据时返回 0
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * 把 other 的数据累加进来，调用时 other 不应再被写入
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.lazySet(i, counts.get(i) + c);
+            }
+        }
+        count.lazySet(count.get() + other.count.get());
+        sum.lazySet(sum.get() + other.sum.get());
+        max.lazySet(Math.max(max.get(), other.max.get()));
+    }
+
+    /**
+     * 清空，只能由写者线程调用
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.lazySet(i, 0);
+        }
+        count.lazySet(0);
+        sum.lazySet(0);
+        max.lazySet(0);
+    }
+
+    /**
+     * 按 scale 缩放后输出，例如纳秒转微秒传 1000
+     */
+    public String summary(long scale, String unit) {
+        return String.format("count=%d mean=%.1f%s p50=%d%s p99=%d%s p99.9=%d%s max=%d%s",
+                count(), mean() / scale, unit,
+                percentile(50) / scale, unit, percentile(99) / scale, unit,
+                percentile(99.9) / scale, unit, max() / scale, unit);
+    }
+}
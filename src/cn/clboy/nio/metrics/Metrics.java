@@ -0,0 +1,53 @@
+package cn.clboy.nio.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午3:30
+ * @Since 1.0.0
+ * <p>
+ * 把指标注册为平台 MBean，ObjectName 为 cn.clboy.nio:server=服务名,type=类型,name=名称，可以用 jconsole / VisualVM 查看。
+ * 同一进程里可能有多个服务端，它们的事件循环名称相同，所以用服务名区分；名称冲突时注册失败而不是顶替已有的 MBean
+ */
+public final class Metrics {
+
+    public static final String DOMAIN = "cn.clboy.nio";
+
+    private Metrics() {
+    }
+
+    /**
+     * 注册不属于某个服务端的 MBean
+     *
+     * @throws IllegalStateException 同名的 MBean 已存在
+     */
+    public static ObjectName register(String type, String name, Object mbean) {
+        return register(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name), mbean);
+    }
+
+    /**
+     * @param server 服务名，进程内唯一
+     * @throws IllegalStateException 同名的 MBean 已存在
+     */
+    public static ObjectName register(String server, String type, String name, Object mbean) {
+        return register(DOMAIN + ":server=" + ObjectName.quote(server) + ",type=" + type + ",name=" + ObjectName.quote(name), mbean);
+    }
+
+    private static ObjectName register(String objectName, Object mbean) {
+        try {
+            return ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, new ObjectName(objectName)).getObjectName();
+        } catch (JMException e) {
+            throw new IllegalStateException("failed to register " + objectName, e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException ignored) {
+        }
+    }
+}
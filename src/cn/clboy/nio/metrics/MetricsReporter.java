@@ -0,0 +1,48 @@
+package cn.clboy.nio.metrics;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午3:40
+ * @Since 1.0.0
+ * <p>
+ * 定时把指标以文本形式输出，每个指标对象输出它的 toString()
+ */
+public class MetricsReporter implements Closeable {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param sources 每次输出时调用，返回当前要输出的指标对象
+     */
+    public MetricsReporter(long period, TimeUnit unit, PrintStream out, Supplier<List<?>> sources) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            StringBuilder sb = new StringBuilder("=== metrics ").append(FORMATTER.format(LocalTime.now())).append(" ===\n");
+            for (Object source : sources.get()) {
+                sb.append(source).append('\n');
+            }
+            out.print(sb);
+        }, period, period, unit);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
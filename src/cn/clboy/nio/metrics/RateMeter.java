@@ -0,0 +1,49 @@
+package cn.clboy.nio.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午2:30
+ * @Since 1.0.0
+ * <p>
+ * 速率：mark 只累加一个 LongAdder（多线程分段计数，不分配对象），
+ * 读取时用距上一次结算至少 1 秒的增量计算每秒的速率
+ */
+public class RateMeter {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongAdder total = new LongAdder();
+    private long lastCount;
+    private long lastTick = System.nanoTime();
+    private double lastRate;
+
+    public void mark() {
+        total.increment();
+    }
+
+    public void mark(long n) {
+        total.add(n);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * 最近一个窗口（至少 1 秒）内的每秒次数
+     */
+    public synchronized double rate() {
+        long now = System.nanoTime();
+        long elapsed = now - lastTick;
+        if (elapsed >= WINDOW_NANOS) {
+            long current = total.sum();
+            lastRate = (current - lastCount) * (double) WINDOW_NANOS / elapsed;
+            lastCount = current;
+            lastTick = now;
+        }
+        return lastRate;
+    }
+}
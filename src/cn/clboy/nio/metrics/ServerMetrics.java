@@ -0,0 +1,41 @@
+package cn.clboy.nio.metrics;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午3:10
+ * @Since 1.0.0
+ * <p>
+ * 服务端接收连接的数量和速率
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+    private final String name;
+    private final RateMeter accepts = new RateMeter();
+
+    public ServerMetrics(String name) {
+        this.name = name;
+    }
+
+    public void recordAccept() {
+        accepts.mark();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public long getAccepted() {
+        return accepts.count();
+    }
+
+    @Override
+    public double getAcceptsPerSecond() {
+        return accepts.rate();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: accepted=%d (%.1f/s)", name, getAccepted(), getAcceptsPerSecond());
+    }
+}
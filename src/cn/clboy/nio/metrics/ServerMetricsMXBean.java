@@ -0,0 +1,15 @@
+package cn.clboy.nio.metrics;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 下午3:05
+ * @Since 1.0.0
+ * <p>
+ * 服务端（accept 线程）的 JMX 视图
+ */
+public interface ServerMetricsMXBean {
+
+    long getAccepted();
+
+    double getAcceptsPerSecond();
+}
@@ -0,0 +1,371 @@
+package cn.clboy.nio.pipe;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 上午10:30
+ * @Since 1.0.0
+ * <p>
+ * 进程内的无锁环形管道，用法和 {@link java.nio.channels.Pipe} 一样：一端 {@link #sink()} 写，一端 {@link #source()} 读。
+ * Pipe 在 Linux 上每次读写都要经过内核管道和一次系统调用，而这里只是两个线程之间对一块直接内存的拷贝：
+ * <p>
+ * - 写端推进 tail，读端推进 head，都是单调递增的 long，下标为 index & (capacity - 1)
+ * - 各自缓存对方的位置，只有缓存显示满/空时才重新读取对方的 volatile 字段，减少缓存行在两个核之间来回传递
+ * - head、tail 放在各自独立的缓存行中，避免伪共享
+ * - 单生产者（SPSC）下写端直接发布；多生产者（MPSC）下先 CAS 占位，再按占位顺序依次发布
+ * - 发布位置用有序写，之后要检查对端是否挂起时先加一道 full fence：挂起的一方先登记 parked* 再读位置，
+ * 发布的一方先写位置再读 parked*，两边都要有 StoreLoad 屏障，否则可能都读到旧值而丢失唤醒
+ * <p>
+ * 两端都可以切换到非阻塞模式：写满时 write 返回 0，读空时 read 返回 0
+ */
+public class RingPipe {
+
+    private final ByteBuffer ring;
+    private final int mask;
+    private final boolean multiProducer;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * 读端已经读到的位置
+     */
+    private final Sequence head = new Sequence();
+    /**
+     * 写端已经发布的位置
+     */
+    private final Sequence tail = new Sequence();
+    /**
+     * 多生产者时写端已占用的位置，[tail, claim) 是正在写入还没发布的部分
+     */
+    private final AtomicLong claim = new AtomicLong();
+
+    private volatile boolean sinkClosed;
+    private volatile boolean sourceClosed;
+    private volatile Thread parkedReader;
+    private volatile Thread parkedWriter;
+
+    private final SinkChannel sink = new SinkChannel();
+    private final SourceChannel source = new SourceChannel();
+
+    /**
+     * 独占一条缓存行的序号：前后各 7 个 long 的填充。
+     * HotSpot 先排父类的字段再排子类的，所以用三层继承把 value 夹在中间，而不是直接继承 AtomicLong 后在子类里填充
+     */
+    @SuppressWarnings("unused")
+    private static class SequenceLeftPad {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class SequenceValue extends SequenceLeftPad {
+        private static final AtomicLongFieldUpdater<SequenceValue> VALUE =
+                AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+
+        volatile long value;
+
+        long get() {
+            return value;
+        }
+
+        /**
+         * 有序写，不需要 volatile 写的 StoreLoad 屏障
+         */
+        void lazySet(long newValue) {
+            VALUE.lazySet(this, newValue);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Sequence extends SequenceValue {
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+
+    public static RingPipe open() {
+        return open(64 * 1024, false, WaitStrategy.PARK);
+    }
+
+    /**
+     * @param capacity      环的大小，向上取整为 2 的幂
+     * @param multiProducer 是否允许多个线程同时写
+     * @param waitStrategy  满/空时的等待方式
+     */
+    public static RingPipe open(int capacity, boolean multiProducer, WaitStrategy waitStrategy) {
+        return new RingPipe(capacity, multiProducer, waitStrategy);
+    }
+
+    private RingPipe(int capacity, boolean multiProducer, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = ByteBuffer.allocateDirect(size);
+        this.mask = size - 1;
+        this.multiProducer = multiProducer;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public SinkChannel sink() {
+        return sink;
+    }
+
+    public SourceChannel source() {
+        return source;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 当前可读的字节数
+     */
+    public int available() {
+        return (int) (tail.get() - head.get());
+    }
+
+    private static void unpark(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 写端
+     */
+    public class SinkChannel implements WritableByteChannel {
+
+        private volatile boolean blocking = true;
+        /**
+         * 单生产者时写端缓存的 head，只在空间不够时刷新
+         */
+        private long cachedHead;
+
+        public SinkChannel configureBlocking(boolean block) {
+            this.blocking = block;
+            return this;
+        }
+
+        public boolean isBlocking() {
+            return blocking;
+        }
+
+        /**
+         * 阻塞模式下写完 src 中全部数据才返回；非阻塞模式下写入当前能放下的部分，可能返回 0
+         */
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = 0;
+            int round = 0;
+            while (src.hasRemaining()) {
+                if (sinkClosed) {
+                    throw new ClosedChannelException();
+                }
+                if (sourceClosed) {
+                    throw new IOException("Broken pipe");
+                }
+                int n = multiProducer ? offerShared(src) : offer(src);
+                if (n > 0) {
+                    written += n;
+                    round = 0;
+                    //tail 的有序写不能和下面读 parkedReader 重排，见类注释
+                    VarHandle.fullFence();
+                    unpark(parkedReader);
+                    continue;
+                }
+                if (!blocking) {
+                    break;
+                }
+                awaitSpace(round++);
+            }
+            return written;
+        }
+
+        private int offer(ByteBuffer src) {
+            long t = tail.get();
+            int free = (int) (capacity() - (t - cachedHead));
+            if (free < src.remaining()) {
+                cachedHead = head.get();
+                free = (int) (capacity() - (t - cachedHead));
+                if (free == 0) {
+                    return 0;
+                }
+            }
+            int n = Math.min(free, src.remaining());
+            copyIn(t, src, n);
+            //store-release：读端看到新的 tail 时一定能看到前面写入的数据
+            tail.lazySet(t + n);
+            return n;
+        }
+
+        private int offerShared(ByteBuffer src) {
+            long start;
+            int n;
+            do {
+                start = claim.get();
+                int free = (int) (capacity() - (start - head.get()));
+                if (free == 0) {
+                    return 0;
+                }
+                n = Math.min(free, src.remaining());
+            } while (!claim.compareAndSet(start, start + n));
+            copyIn(start, src, n);
+            //前面占位的生产者发布之后才能发布自己的部分，保证 tail 之前的数据都已写好
+            //只需等别的生产者完成一次拷贝，时间很短，不挂起
+            int round = 0;
+            while (tail.get() != start) {
+                if (round++ < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            tail.lazySet(start + n);
+            return n;
+        }
+
+        private void copyIn(long position, ByteBuffer src, int n) {
+            int index = (int) (position & mask);
+            int first = Math.min(n, capacity() - index);
+            ring.put(index, src, src.position(), first);
+            if (first < n) {
+                ring.put(0, src, src.position() + first, n - first);
+            }
+            src.position(src.position() + n);
+        }
+
+        private void awaitSpace(int round) {
+            if (waitStrategy.willPark(round)) {
+                parkedWriter = Thread.currentThread();
+                //登记之后再检查一次，避免读端恰好在登记之前腾出空间而错过唤醒
+                if (tail.get() - head.get() >= capacity() && !sourceClosed) {
+                    waitStrategy.idle(round);
+                }
+                parkedWriter = null;
+            } else {
+                waitStrategy.idle(round);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !sinkClosed;
+        }
+
+        /**
+         * 关闭写端，读端读完剩余数据后返回 -1
+         */
+        @Override
+        public void close() {
+            sinkClosed = true;
+            unpark(parkedReader);
+        }
+    }
+
+    /**
+     * 读端，只能被一个线程使用
+     */
+    public class SourceChannel implements ReadableByteChannel {
+
+        private volatile boolean blocking = true;
+        private long cachedTail;
+
+        public SourceChannel configureBlocking(boolean block) {
+            this.blocking = block;
+            return this;
+        }
+
+        public boolean isBlocking() {
+            return blocking;
+        }
+
+        /**
+         * 阻塞模式下至少读到 1 个字节才返回；写端关闭且数据读完后返回 -1
+         */
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (sourceClosed) {
+                throw new ClosedChannelException();
+            }
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+            int round = 0;
+            for (; ; ) {
+                long h = head.get();
+                if (cachedTail == h) {
+                    cachedTail = tail.get();
+                }
+                int available = (int) (cachedTail - h);
+                if (available > 0) {
+                    int n = Math.min(available, dst.remaining());
+                    copyOut(h, dst, n);
+                    head.lazySet(h + n);
+                    VarHandle.fullFence();
+                    unpark(parkedWriter);
+                    return n;
+                }
+                if (sinkClosed) {
+                    //写端关闭前写入的数据要先读完
+                    if (tail.get() == h) {
+                        return -1;
+                    }
+                    continue;
+                }
+                if (!blocking) {
+                    return 0;
+                }
+                awaitData(round++);
+                if (sourceClosed) {
+                    throw new AsynchronousCloseException();
+                }
+            }
+        }
+
+        private void copyOut(long position, ByteBuffer dst, int n) {
+            int index = (int) (position & mask);
+            int first = Math.min(n, capacity() - index);
+            dst.put(dst.position(), ring, index, first);
+            if (first < n) {
+                dst.put(dst.position() + first, ring, 0, n - first);
+            }
+            dst.position(dst.position() + n);
+        }
+
+        private void awaitData(int round) {
+            if (waitStrategy.willPark(round)) {
+                parkedReader = Thread.currentThread();
+                if (tail.get() == head.get() && !sinkClosed) {
+                    waitStrategy.idle(round);
+                }
+                parkedReader = null;
+            } else {
+                waitStrategy.idle(round);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !sourceClosed;
+        }
+
+        /**
+         * 关闭读端，之后写端的 write 会抛出异常
+         */
+        @Override
+        public void close() {
+            sourceClosed = true;
+            unpark(parkedWriter);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package cn.clboy.nio.pipe;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 上午11:20
+ * @Since 1.0.0
+ * <p>
+ * 进程内环形管道：替换 PipeTest 中的 Pipe，以及小块写入时和 Pipe 的吞吐量对比
+ */
+public class RingPipeTest {
+
+    /**
+     * 和 PipeTest 一样：线程A 写，线程B 读，写端关闭后读端收到 -1
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTransfer() throws Exception {
+        RingPipe pipe = RingPipe.open();
+
+        Thread writer = new Thread(() -> {
+            RingPipe.SinkChannel sinkChannel = pipe.sink();
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+            try {
+                for (int i = 0; i < 10; i++) {
+                    Thread.sleep(100);
+                    buffer.put(formatter.format(LocalDateTime.now()).getBytes());
+                    buffer.flip();
+                    sinkChannel.write(buffer);
+                    buffer.clear();
+                }
+                sinkChannel.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        writer.start();
+
+        RingPipe.SourceChannel sourceChannel = pipe.source();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        while (sourceChannel.read(buffer) != -1) {
+            buffer.flip();
+            System.out.println(StandardCharsets.UTF_8.decode(buffer));
+            buffer.clear();
+        }
+        sourceChannel.close();
+        writer.join();
+    }
+
+    /**
+     * 非阻塞模式：写满返回 0，读空返回 0
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNonBlocking() throws Exception {
+        RingPipe pipe = RingPipe.open(16, false, WaitStrategy.PARK);
+        pipe.sink().configureBlocking(false);
+        pipe.source().configureBlocking(false);
+
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        System.out.println("写入：" + pipe.sink().write(buffer) + "，再写：" + pipe.sink().write(buffer));
+
+        ByteBuffer dst = ByteBuffer.allocate(32);
+        System.out.println("读取：" + pipe.source().read(dst) + "，再读：" + pipe.source().read(dst));
+    }
+
+    /**
+     * 多生产者：4 个线程同时写，读端收到的总字节数和每个线程写入的一致
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMultiProducer() throws Exception {
+        RingPipe pipe = RingPipe.open(4096, true, WaitStrategy.YIELD);
+        int producers = 4;
+        int perProducer = 1_000_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            byte id = (byte) p;
+            threads[p] = new Thread(() -> {
+                ByteBuffer buffer = ByteBuffer.allocate(100);
+                try {
+                    for (int sent = 0; sent < perProducer; sent += buffer.capacity()) {
+                        buffer.clear();
+                        while (buffer.hasRemaining()) {
+                            buffer.put(id);
+                        }
+                        buffer.flip();
+                        pipe.sink().write(buffer);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            threads[p].start();
+        }
+        Thread closer = new Thread(() -> {
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ignored) {
+                }
+            }
+            pipe.sink().close();
+        });
+        closer.start();
+
+        long[] counts = new long[producers];
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (pipe.source().read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                counts[buffer.get()]++;
+            }
+            buffer.clear();
+        }
+        for (int p = 0; p < producers; p++) {
+            System.out.println("生产者 " + p + "：" + counts[p] + (counts[p] == perProducer ? "，一致" : "，不一致"));
+        }
+    }
+
+    /**
+     * 16 字节的小块写入：Pipe 与各等待策略下环形管道的吞吐量
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCompare() throws Exception {
+        int chunkSize = 16;
+        long total = 64L * 1024 * 1024;
+
+        Pipe pipe = Pipe.open();
+        System.out.println("Pipe：" + transfer(pipe.sink(), pipe.source(), chunkSize, total) + " MB/s");
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            RingPipe ringPipe = RingPipe.open(64 * 1024, false, waitStrategy);
+            System.out.println("RingPipe(" + waitStrategy + ")：" + transfer(ringPipe.sink(), ringPipe.source(), chunkSize, total) + " MB/s");
+        }
+    }
+
+    private long transfer(WritableByteChannel sink, ReadableByteChannel source, int chunkSize, long total) throws Exception {
+        Thread writer = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+            try {
+                for (long sent = 0; sent < total; sent += chunkSize) {
+                    buffer.clear();
+                    while (buffer.hasRemaining()) {
+                        sink.write(buffer);
+                    }
+                }
+                sink.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        long start = System.nanoTime();
+        writer.start();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        long received = 0;
+        int len;
+        while (received < total && (len = source.read(buffer)) != -1) {
+            received += len;
+            buffer.clear();
+        }
+        long elapsed = System.nanoTime() - start;
+        writer.join();
+        source.close();
+        return received * 1000 / elapsed;
+    }
+}
@@ -0,0 +1,76 @@
+package cn.clboy.nio.pipe;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/20 上午10:10
+ * @Since 1.0.0
+ * <p>
+ * 环形管道满（写端）或空（读端）时的等待方式：
+ * - BUSY_SPIN：一直自旋，延迟最低，但占满一个核，只适合核数充足且对延迟敏感的场景
+ * - YIELD：先自旋一小会儿，然后 Thread.yield() 让出 CPU
+ * - PARK：自旋、让出之后挂起线程，由对端唤醒，空闲时不占 CPU
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN {
+        @Override
+        void idle(int round) {
+            Thread.onSpinWait();
+        }
+    },
+
+    YIELD {
+        @Override
+        void idle(int round) {
+            if (round < SPIN_ROUNDS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+
+    PARK {
+        @Override
+        void idle(int round) {
+            if (round < SPIN_ROUNDS) {
+                Thread.onSpinWait();
+            } else if (round < SPIN_ROUNDS + YIELD_ROUNDS) {
+                Thread.yield();
+            } else {
+                //对端在发布数据/空间后会 unpark，这里的超时只是兜底
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+
+        @Override
+        boolean parks() {
+            return true;
+        }
+    };
+
+    private static final int SPIN_ROUNDS = 100;
+    private static final int YIELD_ROUNDS = 10;
+    private static final long PARK_NANOS = 100_000;
+
+    /**
+     * 第 round 次等待（从 0 开始，条件满足后重新计数）
+     */
+    abstract void idle(int round);
+
+    /**
+     * 是否会挂起线程，会的话对端需要在状态变化后唤醒它
+     */
+    boolean parks() {
+        return false;
+    }
+
+    /**
+     * 下一次等待会不会挂起
+     */
+    boolean willPark(int round) {
+        return parks() && round >= SPIN_ROUNDS + YIELD_ROUNDS;
+    }
+}
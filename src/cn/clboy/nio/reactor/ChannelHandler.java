@@ -0,0 +1,51 @@
+package cn.clboy.nio.reactor;
+
+import java.io.IOException;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午7:02
+ * @Since 1.0.0
+ * <p>
+ * 连接事件处理器，所有回调都在连接所属的 {@link EventLoop} 线程中执行。
+ * 同一个处理器实例会被所有连接共享，连接私有的状态请放到 {@link Connection#attachment()} 中
+ */
+public interface ChannelHandler {
+
+    /**
+     * 连接已注册到 worker 选择器
+     */
+    default void onConnected(Connection connection) throws IOException {
+    }
+
+    /**
+     * 通道“读就绪”
+     */
+    void onRead(Connection connection) throws IOException;
+
+    /**
+     * 通道“写就绪”，排队的数据已经尝试写出之后回调
+     */
+    default void onWritable(Connection connection) throws IOException {
+    }
+
+    /**
+     * 出站队列越过高水位或回落到低水位，通过 {@link Connection#isWritable()} 查看当前状态
+     */
+    default void onWritabilityChanged(Connection connection) {
+    }
+
+    /**
+     * 连接空闲超时，见 {@link Connection#idleTimeout(long, long, java.util.concurrent.TimeUnit)}。
+     * 默认关闭连接；不关闭时，连接继续空闲会在下一个超时周期再次回调
+     */
+    default void onIdle(Connection connection, IdleState state) throws IOException {
+        connection.close();
+    }
+
+    /**
+     * 连接已关闭，SelectionKey 已取消
+     */
+    default void onClosed(Connection connection) {
+    }
+}
@@ -0,0 +1,332 @@
+package cn.clboy.nio.reactor;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.buffer.CompositeBuffer;
+import cn.clboy.nio.metrics.EventLoopMetrics;
+import cn.clboy.nio.timer.TimerNode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午7:05
+ * @Since 1.0.0
+ * <p>
+ * 一个客户端连接，作为附件挂在 SelectionKey 上。
+ * 除 {@link #eventLoop()} 外，其余方法都只能在所属的 EventLoop 线程中调用，
+ * 其他线程需要写数据时请通过 eventLoop().execute(...) 投递
+ * <p>
+ * 出站数据先进入 {@link WriteQueue}，只有写不完时才关注 OP_WRITE。
+ * 排队字节数超过高水位时暂停读取（不再关注 OP_READ），降到低水位以下再恢复，
+ * 这样对端不读数据时，内存不会无限增长，事件循环也不会被阻塞
+ * <p>
+ * 空闲检测使用事件循环的时间轮：读写时只更新最后一次读/写的时间，
+ * 定时到期时再和最后一次读/写时间比较，没有真正空闲就按新的截止时间重新挂回时间轮（惰性重新调度）
+ */
+public class Connection {
+
+    public static final int DEFAULT_LOW_WATER_MARK = 32 * 1024;
+    public static final int DEFAULT_HIGH_WATER_MARK = 64 * 1024;
+
+    private final EventLoop eventLoop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ChannelHandler handler;
+
+    /**
+     * 处理器自定义的连接状态
+     */
+    private Object attachment;
+
+    private final WriteQueue writeQueue = new WriteQueue();
+    private int lowWaterMark = DEFAULT_LOW_WATER_MARK;
+    private int highWaterMark = DEFAULT_HIGH_WATER_MARK;
+    /**
+     * 排队字节数是否低于高水位
+     */
+    private boolean writable = true;
+    /**
+     * 处理器主动暂停了读取
+     */
+    private boolean autoRead = true;
+
+    private boolean closed;
+
+    /**
+     * 通过 {@link #read(ByteBuffer)} 读到的和写出的字节数
+     */
+    private long bytesRead;
+    private long bytesWritten;
+
+    private final IdleTimeout readIdle = new IdleTimeout(IdleState.READER_IDLE);
+    private final IdleTimeout writeIdle = new IdleTimeout(IdleState.WRITER_IDLE);
+    private long lastReadTime;
+    private long lastWriteTime;
+
+    /**
+     * 时间轮中的空闲检测节点
+     */
+    private final class IdleTimeout extends TimerNode {
+
+        private final IdleState state;
+        private long timeoutNanos;
+
+        IdleTimeout(IdleState state) {
+            this.state = state;
+        }
+
+        void start(long timeoutNanos, long now) {
+            this.timeoutNanos = timeoutNanos;
+            if (timeoutNanos > 0) {
+                eventLoop.timer().schedule(this, now + timeoutNanos);
+            } else {
+                cancel();
+            }
+        }
+
+        @Override
+        protected void expire(long now) {
+            long last = state == IdleState.READER_IDLE ? lastReadTime : lastWriteTime;
+            long deadline = last + timeoutNanos;
+            if (deadline - now > 0) {
+                //期间有过读/写，按新的截止时间重新调度
+                eventLoop.timer().schedule(this, deadline);
+                return;
+            }
+            eventLoop.timer().schedule(this, now + timeoutNanos);
+            try {
+                handler.onIdle(Connection.this, state);
+            } catch (IOException | RuntimeException e) {
+                close();
+            }
+        }
+    }
+
+    Connection(EventLoop eventLoop, SocketChannel channel, SelectionKey key, ChannelHandler handler) {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.key = key;
+        this.handler = handler;
+    }
+
+    public EventLoop eventLoop() {
+        return eventLoop;
+    }
+
+    public SocketChannel channel() {
+        return channel;
+    }
+
+    public SelectionKey key() {
+        return key;
+    }
+
+    public ChannelHandler handler() {
+        return handler;
+    }
+
+    public Object attachment() {
+        return attachment;
+    }
+
+    public void attach(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * 从通道读取数据，并计入本连接和事件循环的读字节数
+     *
+     * @return 读到的字节数，-1 表示对端已关闭
+     */
+    public int read(ByteBuffer dst) throws IOException {
+        int len = channel.read(dst);
+        if (len > 0) {
+            bytesRead += len;
+            lastReadTime = eventLoop.now();
+            EventLoopMetrics metrics = eventLoop.metrics();
+            if (metrics != null) {
+                metrics.recordRead(len);
+            }
+        }
+        return len;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * 开启空闲检测，超时后回调 {@link ChannelHandler#onIdle(Connection, IdleState)}，传 0 表示不检测该类型
+     *
+     * @param readIdle  多久没有读到数据算读空闲
+     * @param writeIdle 多久没有写出数据算写空闲
+     */
+    public void idleTimeout(long readIdle, long writeIdle, TimeUnit unit) {
+        if (closed) {
+            return;
+        }
+        long now = eventLoop.now();
+        lastReadTime = now;
+        lastWriteTime = now;
+        this.readIdle.start(unit.toNanos(readIdle), now);
+        this.writeIdle.start(unit.toNanos(writeIdle), now);
+    }
+
+    /**
+     * 设置出站队列的高低水位
+     */
+    public void writeBufferWaterMark(int low, int high) {
+        if (low < 0 || high < low) {
+            throw new IllegalArgumentException("low: " + low + ", high: " + high);
+        }
+        this.lowWaterMark = low;
+        this.highWaterMark = high;
+    }
+
+    /**
+     * 写入数据，调用方之后不能再修改 buffer
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        write(buffer, null);
+    }
+
+    /**
+     * 写入数据，写完后把 buffer 归还到 pool
+     */
+    public void write(ByteBuffer buffer, BufferPool pool) throws IOException {
+        if (closed) {
+            if (pool != null) {
+                pool.release(buffer);
+            }
+            return;
+        }
+        boolean wasEmpty = writeQueue.isEmpty();
+        writeQueue.add(buffer, pool);
+        //队列原本为空时直接尝试写，大多数情况下一次就能写完，不需要经过 OP_WRITE
+        if (wasEmpty) {
+            flush();
+        } else {
+            updateWritability();
+        }
+    }
+
+    /**
+     * 写入组合缓冲区，各个组件直接参与聚集写入；连接接管调用方持有的一个引用，写完或连接关闭时 release。
+     * 出站队列写的是连接自己的切片（独立的读指针和视图 position），
+     * 所以同一个组合缓冲区 retain() 之后可以同时写给多个连接
+     */
+    public void write(CompositeBuffer buffer) throws IOException {
+        if (closed) {
+            buffer.release();
+            return;
+        }
+        //切片增加一个引用，再释放调用方交过来的那个，总数不变
+        CompositeBuffer own = buffer.slice(buffer.readerIndex(), buffer.readableBytes());
+        buffer.release();
+        boolean wasEmpty = writeQueue.isEmpty();
+        writeQueue.add(own);
+        if (wasEmpty) {
+            flush();
+        } else {
+            updateWritability();
+        }
+    }
+
+    /**
+     * 写出排队的数据，写不完时关注 OP_WRITE
+     */
+    public void flush() throws IOException {
+        long written = writeQueue.flush(channel);
+        if (written > 0) {
+            bytesWritten += written;
+            lastWriteTime = eventLoop.now();
+            EventLoopMetrics metrics = eventLoop.metrics();
+            if (metrics != null) {
+                metrics.recordWritten(written);
+            }
+        }
+        interestOps(SelectionKey.OP_WRITE, !writeQueue.isEmpty());
+        updateWritability();
+    }
+
+    /**
+     * 排队中尚未写出的字节数
+     */
+    public long pendingBytes() {
+        return writeQueue.pendingBytes();
+    }
+
+    /**
+     * 排队字节数是否低于高水位，生产者应据此决定是否继续写
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * 处理器主动暂停/恢复读取
+     */
+    public void autoRead(boolean autoRead) {
+        this.autoRead = autoRead;
+        interestOps(SelectionKey.OP_READ, autoRead && writable);
+    }
+
+    private void updateWritability() {
+        long pending = writeQueue.pendingBytes();
+        if (writable && pending > highWaterMark) {
+            writable = false;
+            interestOps(SelectionKey.OP_READ, false);
+            handler.onWritabilityChanged(this);
+        } else if (!writable && pending < lowWaterMark) {
+            writable = true;
+            interestOps(SelectionKey.OP_READ, autoRead);
+            handler.onWritabilityChanged(this);
+        }
+    }
+
+    /**
+     * 增加或移除关注的事件
+     */
+    public void interestOps(int ops, boolean on) {
+        if (!key.isValid()) {
+            return;
+        }
+        int current = key.interestOps();
+        int next = on ? current | ops : current & ~ops;
+        if (next != current) {
+            key.interestOps(next);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 取消选择键并关闭通道，重复调用无副作用
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        readIdle.cancel();
+        writeIdle.cancel();
+        key.cancel();
+        writeQueue.clear();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        eventLoop.connectionClosed();
+        handler.onClosed(this);
+    }
+}
@@ -0,0 +1,32 @@
+package cn.clboy.nio.reactor;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午7:32
+ * @Since 1.0.0
+ * <p>
+ * 回显处理器：读到什么就写回什么，用于压测。
+ * 读到的缓冲区直接交给出站队列，写完后归还缓冲区池；对端不读时由高低水位暂停读取
+ */
+public class EchoHandler implements ChannelHandler {
+
+    @Override
+    public void onRead(Connection connection) throws IOException {
+        ByteBuffer buffer = BufferPool.DEFAULT.acquire(8192);
+        int len = connection.read(buffer);
+        if (len <= 0) {
+            BufferPool.DEFAULT.release(buffer);
+            if (len == -1) {
+                connection.close();
+            }
+            return;
+        }
+        buffer.flip();
+        connection.write(buffer, BufferPool.DEFAULT);
+    }
+}
@@ -0,0 +1,309 @@
+package cn.clboy.nio.reactor;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.metrics.ConnectionStats;
+import cn.clboy.nio.metrics.EventLoopMetrics;
+import cn.clboy.nio.timer.HashedWheelTimer;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午7:10
+ * @Since 1.0.0
+ * <p>
+ * worker 事件循环：一个线程独占一个 Selector。
+ * 其他线程不能直接调用 channel.register(selector)（会和阻塞中的 select() 抢同一把锁），
+ * 所以注册动作以任务的形式投递到任务队列，再 wakeup() 选择器，由事件循环线程自己完成注册
+ * <p>
+ * 每个事件循环有一个自己的时间轮（{@link #timer()}），select() 的超时时间取到下一个 tick 为止，
+ * 每轮处理完就绪键和任务后推进时间轮
+ */
+public class EventLoop implements Runnable {
+
+    private final String name;
+    private final Selector selector;
+    private final Queue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 避免每次投递任务都调用代价较高的 wakeup()
+     */
+    private final AtomicBoolean wakenUp = new AtomicBoolean();
+
+    /**
+     * 当前负责的连接数，用于“最少连接”分配策略
+     */
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    /**
+     * 指标，未开启时为 null
+     */
+    private EventLoopMetrics metrics;
+
+    /**
+     * 空闲检测等定时任务，tick 为 100ms
+     */
+    private final HashedWheelTimer timer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 512);
+    /**
+     * 本轮 select() 返回时的 System.nanoTime()，读写时用它记录时间，不必每次都取系统时间
+     */
+    private long now = System.nanoTime();
+
+    /**
+     * 新连接默认的读/写空闲超时，0 表示不检测
+     */
+    private volatile long readIdleNanos;
+    private volatile long writeIdleNanos;
+
+    private volatile Thread thread;
+    private volatile boolean running = true;
+
+    public EventLoop(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+    }
+
+    public void start() {
+        thread = new Thread(this, name);
+        thread.start();
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    public int connectionCount() {
+        return connectionCount.get();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 只能在事件循环线程中使用
+     */
+    public HashedWheelTimer timer() {
+        return timer;
+    }
+
+    /**
+     * 本轮循环的时间戳（System.nanoTime()）
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * 之后注册的连接默认开启的空闲检测，0 表示不检测
+     */
+    public void idleTimeout(long readIdle, long writeIdle, TimeUnit unit) {
+        this.readIdleNanos = unit.toNanos(readIdle);
+        this.writeIdleNanos = unit.toNanos(writeIdle);
+    }
+
+    /**
+     * 开启指标统计，需要在 start() 之前调用
+     */
+    public EventLoopMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new EventLoopMetrics(name, this::connectionCount, this::connectionStats);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return 未开启时返回 null
+     */
+    public EventLoopMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * 线程安全：各连接的读写字节数快照。selector.keys() 只能在事件循环线程中遍历，
+     * 所以其他线程调用时投递一个任务并等待结果，循环停止或 1 秒内没有执行时返回空列表
+     */
+    public List<ConnectionStats> connectionStats() {
+        if (inEventLoop()) {
+            List<ConnectionStats> stats = new ArrayList<>();
+            for (SelectionKey key : selector.keys()) {
+                Object attachment = key.attachment();
+                if (attachment instanceof Connection) {
+                    Connection connection = (Connection) attachment;
+                    stats.add(new ConnectionStats(String.valueOf(connection.channel().socket().getRemoteSocketAddress()),
+                            connection.bytesRead(), connection.bytesWritten()));
+                }
+            }
+            return stats;
+        }
+        if (!running) {
+            return List.of();
+        }
+        CompletableFuture<List<ConnectionStats>> future = new CompletableFuture<>();
+        execute(() -> future.complete(connectionStats()));
+        try {
+            return future.get(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (ExecutionException | TimeoutException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * 线程安全：投递一个任务到事件循环线程中执行
+     */
+    public void execute(Runnable task) {
+        taskQueue.offer(task);
+        if (!inEventLoop() && wakenUp.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * 线程安全：把已接收的连接交给当前事件循环
+     */
+    public void register(SocketChannel channel, ChannelHandler handler) {
+        connectionCount.incrementAndGet();
+        execute(() -> {
+            Connection connection = null;
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                connection = new Connection(this, channel, key, handler);
+                key.attach(connection);
+                if (readIdleNanos > 0 || writeIdleNanos > 0) {
+                    connection.idleTimeout(readIdleNanos, writeIdleNanos, TimeUnit.NANOSECONDS);
+                }
+                handler.onConnected(connection);
+            } catch (IOException e) {
+                if (connection != null) {
+                    connection.close();
+                } else {
+                    connectionClosed();
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        });
+    }
+
+    void connectionClosed() {
+        connectionCount.decrementAndGet();
+    }
+
+    @Override
+    public void run() {
+        BufferPool.DEFAULT.enableThreadCache();
+        EventLoopMetrics metrics = this.metrics;
+        while (running) {
+            try {
+                //先复位再检查任务队列，保证在此之后投递的任务一定会唤醒下面的 select()
+                wakenUp.set(false);
+                long selectStart = System.nanoTime();
+                if (taskQueue.isEmpty()) {
+                    //时间轮为空时返回 0，即一直等待
+                    selector.select(timer.nextTickDelayMillis(selectStart));
+                } else {
+                    selector.selectNow();
+                }
+                now = System.nanoTime();
+                int keys = metrics != null ? selector.selectedKeys().size() : 0;
+                processSelectedKeys();
+                int tasks = runAllTasks();
+                timer.advance(now);
+                if (metrics != null) {
+                    metrics.recordTasks(tasks);
+                    metrics.recordIteration(now - selectStart, keys, System.nanoTime() - now);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        closeAll();
+        BufferPool.DEFAULT.disableThreadCache();
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey sk = it.next();
+            it.remove();
+            Connection connection = (Connection) sk.attachment();
+            try {
+                if (sk.isValid() && sk.isReadable()) {
+                    connection.handler().onRead(connection);
+                }
+                if (sk.isValid() && sk.isWritable()) {
+                    connection.flush();
+                    connection.handler().onWritable(connection);
+                }
+            } catch (IOException | RuntimeException e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * @return 执行的任务数
+     */
+    private int runAllTasks() {
+        int count = 0;
+        Runnable task;
+        while ((task = taskQueue.poll()) != null) {
+            count++;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        return count;
+    }
+
+    private void closeAll() {
+        runAllTasks();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof Connection) {
+                ((Connection) attachment).close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 线程安全：停止事件循环并关闭所有连接
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        Thread t = thread;
+        if (t != null) {
+            t.join();
+        }
+    }
+}
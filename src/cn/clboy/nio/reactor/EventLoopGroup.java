@@ -0,0 +1,85 @@
+package cn.clboy.nio.reactor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午7:18
+ * @Since 1.0.0
+ * <p>
+ * 一组 worker 事件循环，负责为新连接挑选一个 EventLoop
+ */
+public class EventLoopGroup {
+
+    /**
+     * 连接分配策略
+     */
+    public enum Chooser {
+        /**
+         * 轮询
+         */
+        ROUND_ROBIN,
+        /**
+         * 当前连接数最少的事件循环
+         */
+        LEAST_LOAD
+    }
+
+    private final EventLoop[] eventLoops;
+    private final Chooser chooser;
+    private final AtomicInteger index = new AtomicInteger();
+
+    public EventLoopGroup(String name, int size, Chooser chooser) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+        this.chooser = chooser;
+        this.eventLoops = new EventLoop[size];
+        for (int i = 0; i < size; i++) {
+            eventLoops[i] = new EventLoop(name + "-" + i);
+        }
+    }
+
+    public void start() {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.start();
+        }
+    }
+
+    public EventLoop next() {
+        if (chooser == Chooser.LEAST_LOAD) {
+            EventLoop min = eventLoops[0];
+            for (int i = 1; i < eventLoops.length; i++) {
+                if (eventLoops[i].connectionCount() < min.connectionCount()) {
+                    min = eventLoops[i];
+                }
+            }
+            return min;
+        }
+        return eventLoops[Math.floorMod(index.getAndIncrement(), eventLoops.length)];
+    }
+
+    /**
+     * 之后注册的连接默认开启的空闲检测，0 表示不检测
+     */
+    public void idleTimeout(long readIdle, long writeIdle, TimeUnit unit) {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.idleTimeout(readIdle, writeIdle, unit);
+        }
+    }
+
+    public EventLoop[] eventLoops() {
+        return eventLoops;
+    }
+
+    public void shutdown() throws InterruptedException {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.awaitTermination();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package cn.clboy.nio.reactor;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/21 上午10:20
+ * @Since 1.0.0
+ * <p>
+ * 连接空闲的类型
+ */
+public enum IdleState {
+    /**
+     * 超过指定时间没有读到数据
+     */
+    READER_IDLE,
+    /**
+     * 超过指定时间没有写出数据
+     */
+    WRITER_IDLE
+}
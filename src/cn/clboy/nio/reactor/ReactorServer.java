@@ -0,0 +1,202 @@
+package cn.clboy.nio.reactor;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.metrics.BufferPoolMetrics;
+import cn.clboy.nio.metrics.Metrics;
+import cn.clboy.nio.metrics.MetricsReporter;
+import cn.clboy.nio.metrics.ServerMetrics;
+
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午7:25
+ * @Since 1.0.0
+ * <p>
+ * 主从 Reactor 服务端：
+ * boss 线程使用一个选择器只负责 accept，接收到的 SocketChannel 交给 {@link EventLoopGroup} 中的某个 worker，
+ * 每个 worker 有自己的选择器和事件循环，负责该连接后续所有的读写
+ * <p>
+ * 调用 {@link #enableMetrics()}（或 -Dcn.clboy.nio.metrics=true，在 start() 时生效）后统计各事件循环、accept 和缓冲区池的指标，
+ * 并注册为 JMX MBean
+ */
+public class ReactorServer implements Closeable {
+
+    /**
+     * 进程内的服务端编号，用于区分各服务端注册的 MBean
+     */
+    private static final AtomicInteger SERVER_IDS = new AtomicInteger();
+
+    private final int port;
+    private final String name;
+    private final EventLoopGroup workerGroup;
+    private final ChannelHandler handler;
+
+    private ServerSocketChannel serverSocketChannel;
+    private Selector bossSelector;
+    private Thread bossThread;
+    private volatile boolean running;
+
+    private ServerMetrics metrics;
+    private BufferPoolMetrics bufferPoolMetrics;
+    private final List<ObjectName> mbeans = new ArrayList<>();
+
+    public ReactorServer(int port, int workers, ChannelHandler handler) throws IOException {
+        this(port, workers, EventLoopGroup.Chooser.ROUND_ROBIN, handler);
+    }
+
+    public ReactorServer(int port, int workers, EventLoopGroup.Chooser chooser, ChannelHandler handler) throws IOException {
+        this.port = port;
+        this.handler = handler;
+        this.name = "server-" + port + "-" + SERVER_IDS.incrementAndGet();
+        this.workerGroup = new EventLoopGroup("nio-worker", workers, chooser);
+    }
+
+    /**
+     * 开启指标统计并注册 MBean，需要在 start() 之前调用。
+     * MBean 挂在 server=服务名 下，同一进程中的多个服务端互不影响
+     *
+     * @throws IllegalStateException MBean 注册失败，已注册的会被注销
+     */
+    public void enableMetrics() {
+        if (metrics != null) {
+            return;
+        }
+        metrics = new ServerMetrics(name);
+        bufferPoolMetrics = new BufferPoolMetrics("buffer-pool", BufferPool.DEFAULT);
+        try {
+            mbeans.add(Metrics.register(name, "Server", metrics.name(), metrics));
+            for (EventLoop eventLoop : workerGroup.eventLoops()) {
+                mbeans.add(Metrics.register(name, "EventLoop", eventLoop.name(), eventLoop.enableMetrics()));
+            }
+            mbeans.add(Metrics.register(name, "BufferPool", bufferPoolMetrics.name(), bufferPoolMetrics));
+        } catch (IllegalStateException e) {
+            unregisterAll();
+            metrics = null;
+            bufferPoolMetrics = null;
+            throw e;
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 当前所有指标对象，未开启时为空，可以交给 {@link MetricsReporter} 定时输出
+     */
+    public List<Object> metrics() {
+        List<Object> all = new ArrayList<>();
+        if (metrics != null) {
+            all.add(metrics);
+            for (EventLoop eventLoop : workerGroup.eventLoops()) {
+                all.add(eventLoop.metrics());
+            }
+            all.add(bufferPoolMetrics);
+        }
+        return all;
+    }
+
+    public void start() throws IOException {
+        if (Boolean.getBoolean("cn.clboy.nio.metrics")) {
+            enableMetrics();
+        }
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverSocketChannel.bind(new InetSocketAddress(port), 1024);
+        serverSocketChannel.configureBlocking(false);
+
+        bossSelector = Selector.open();
+        serverSocketChannel.register(bossSelector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        workerGroup.start();
+        bossThread = new Thread(this::acceptLoop, "nio-boss");
+        bossThread.start();
+    }
+
+    private void acceptLoop() {
+        try {
+            while (running) {
+                bossSelector.select();
+                Iterator<SelectionKey> it = bossSelector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey sk = it.next();
+                    it.remove();
+                    if (sk.isValid() && sk.isAcceptable()) {
+                        accept();
+                    }
+                }
+            }
+        } catch (ClosedSelectorException ignored) {
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 一次就绪尽量把积压的连接全部取出
+     */
+    private void accept() throws IOException {
+        SocketChannel socketChannel;
+        while ((socketChannel = serverSocketChannel.accept()) != null) {
+            socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            if (metrics != null) {
+                metrics.recordAccept();
+            }
+            workerGroup.next().register(socketChannel, handler);
+        }
+    }
+
+    /**
+     * 连接读/写空闲超过指定时间后回调 {@link ChannelHandler#onIdle(Connection, IdleState)}（默认关闭连接），0 表示不检测
+     */
+    public void idleTimeout(long readIdle, long writeIdle, TimeUnit unit) {
+        workerGroup.idleTimeout(readIdle, writeIdle, unit);
+    }
+
+    public EventLoopGroup workerGroup() {
+        return workerGroup;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (bossSelector != null) {
+            bossSelector.close();
+        }
+        if (serverSocketChannel != null) {
+            serverSocketChannel.close();
+        }
+        try {
+            if (bossThread != null) {
+                bossThread.join();
+            }
+            workerGroup.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        unregisterAll();
+    }
+
+    private void unregisterAll() {
+        for (ObjectName mbean : mbeans) {
+            Metrics.unregister(mbean);
+        }
+        mbeans.clear();
+    }
+}
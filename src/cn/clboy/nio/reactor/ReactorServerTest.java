@@ -0,0 +1,278 @@
+package cn.clboy.nio.reactor;
+
+import cn.clboy.nio.buffer.CompositeBuffer;
+import cn.clboy.nio.metrics.Metrics;
+import cn.clboy.nio.metrics.MetricsReporter;
+import cn.clboy.nio.metrics.ServerMetrics;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午7:40
+ * @Since 1.0.0
+ * <p>
+ * 主从 Reactor：一个 boss 选择器负责接收连接，N 个 worker 选择器负责读写
+ */
+public class ReactorServerTest {
+
+    /**
+     * 服务端，worker 数量默认为 CPU 核数
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServer() throws Exception {
+        int workers = Runtime.getRuntime().availableProcessors();
+        try (ReactorServer server = new ReactorServer(7001, workers, EventLoopGroup.Chooser.LEAST_LOAD, new EchoHandler())) {
+            server.start();
+            System.out.println("echo 服务已启动，worker 数量：" + workers);
+            new CountDownLatch(1).await();
+        }
+    }
+
+    /**
+     * 回环地址上的回显压测：worker 数量从 1 增加到 CPU 核数，观察吞吐量是否近似线性增长
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEchoBenchmark() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int workers = 1; workers <= cores; workers *= 2) {
+            try (ReactorServer server = new ReactorServer(7002, workers, new EchoHandler())) {
+                server.start();
+                long ops = runClients(7002, cores * 4, 64, 3000);
+                System.out.println("worker：" + workers + "，吞吐量：" + ops / 3 + " 次/秒");
+            }
+        }
+    }
+
+    /**
+     * 出站背压：客户端只写不读，服务端出站队列越过高水位后暂停读取，
+     * 客户端能写进去的数据量最终被限制在“两端内核缓冲区 + 高水位”附近
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBackpressure() throws Exception {
+        try (ReactorServer server = new ReactorServer(7003, 1, new EchoHandler())) {
+            server.start();
+            SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7003));
+            socketChannel.configureBlocking(false);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            long total = 0;
+            long idleSince = System.currentTimeMillis();
+            while (System.currentTimeMillis() - idleSince < 1000) {
+                buffer.clear();
+                int len = socketChannel.write(buffer);
+                if (len > 0) {
+                    total += len;
+                    idleSince = System.currentTimeMillis();
+                }
+            }
+            System.out.println("服务端暂停读取前客户端写入的字节数：" + total);
+            socketChannel.close();
+        }
+    }
+
+    /**
+     * 空的缓冲区和组合缓冲区：写出 0 字节不代表发送缓冲区已满，应直接出队，
+     * 否则 OP_WRITE 一直保持关注，事件循环不停地回调 onWritable
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEmptyWrite() throws Exception {
+        LongAdder writable = new LongAdder();
+        ChannelHandler handler = new ChannelHandler() {
+            @Override
+            public void onConnected(Connection connection) throws IOException {
+                connection.write(ByteBuffer.allocate(0));
+                connection.write(new CompositeBuffer());
+            }
+
+            @Override
+            public void onRead(Connection connection) throws IOException {
+                int len = connection.read(ByteBuffer.allocate(64));
+                if (len == -1) {
+                    connection.close();
+                } else if (len > 0) {
+                    connection.write(ByteBuffer.wrap("ok".getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+
+            @Override
+            public void onWritable(Connection connection) {
+                writable.increment();
+            }
+        };
+        try (ReactorServer server = new ReactorServer(7013, 1, handler)) {
+            server.start();
+            try (SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7013))) {
+                Thread.sleep(1000);
+                long calls = writable.sum();
+                //之后的正常写出不受影响
+                socketChannel.write(ByteBuffer.wrap(new byte[]{1}));
+                ByteBuffer buffer = ByteBuffer.allocate(2);
+                while (buffer.hasRemaining()) {
+                    socketChannel.read(buffer);
+                }
+                System.out.println("1 秒内 onWritable 回调 " + calls + " 次，之后收到："
+                        + new String(buffer.array(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * 空闲检测：服务端 1 秒读空闲就关闭连接，一个客户端一直发送数据，另一个连上后不再发送
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIdleTimeout() throws Exception {
+        try (ReactorServer server = new ReactorServer(7006, 1, new EchoHandler())) {
+            server.idleTimeout(1, 0, TimeUnit.SECONDS);
+            server.start();
+            SocketChannel active = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7006));
+            SocketChannel idle = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7006));
+            idle.configureBlocking(false);
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            long start = System.currentTimeMillis();
+            while (idle.read(buffer.clear()) != -1) {
+                buffer.clear();
+                active.write(buffer);
+                buffer.clear();
+                active.read(buffer);
+                Thread.sleep(100);
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            active.write(buffer.clear());
+            System.out.println("空闲连接在 " + elapsed + " ms 后被关闭，活跃连接仍可收发："
+                    + (active.read(buffer.clear()) > 0));
+            active.close();
+            idle.close();
+        }
+    }
+
+    /**
+     * 开启指标：每秒输出一次各事件循环的 select/处理耗时分布、每轮就绪键数、读写字节数，以及 accept 速率和缓冲区池占用。
+     * 运行期间也可以用 jconsole 查看 cn.clboy.nio 下的 MBean。
+     * 同时开着的另一个服务端有同名的事件循环，它们的 MBean 挂在各自的 server 下；重复注册同一个名称会失败
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMetrics() throws Exception {
+        try (ReactorServer server = new ReactorServer(7004, 2, new EchoHandler());
+             ReactorServer other = new ReactorServer(7015, 2, new EchoHandler())) {
+            server.enableMetrics();
+            server.start();
+            other.enableMetrics();
+            other.start();
+            try {
+                Metrics.register(server.name(), "Server", server.name(), new ServerMetrics(server.name()));
+                System.out.println("重复注册成功了");
+            } catch (IllegalStateException e) {
+                System.out.println("重复注册：" + e.getMessage());
+            }
+
+            MetricsReporter reporter = new MetricsReporter(1, TimeUnit.SECONDS, System.out, server::metrics);
+            try {
+                runClients(7004, 16, 64, 3000);
+            } finally {
+                reporter.close();
+            }
+
+            //每个连接各自的读写字节数
+            try (SocketChannel first = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7004));
+                 SocketChannel second = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7004))) {
+                echo(first, 100);
+                echo(second, 1000);
+                for (EventLoop eventLoop : server.workerGroup().eventLoops()) {
+                    System.out.println(eventLoop.name() + "：" + eventLoop.metrics().getConnectionStats());
+                }
+            }
+        }
+    }
+
+    private static void echo(SocketChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("closed");
+            }
+        }
+    }
+
+    /**
+     * 指标的开销：同样的压测分别在关闭、开启指标时各跑三轮，取最好的一轮比较
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMetricsOverhead() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long[] best = new long[2];
+        for (int round = 0; round < 6; round++) {
+            int enabled = round % 2;
+            try (ReactorServer server = new ReactorServer(7005, cores, new EchoHandler())) {
+                if (enabled == 1) {
+                    server.enableMetrics();
+                }
+                server.start();
+                best[enabled] = Math.max(best[enabled], runClients(7005, cores * 4, 64, 3000) / 3);
+            }
+        }
+        System.out.println("关闭指标：" + best[0] + " 次/秒，开启指标：" + best[1] + " 次/秒，差异："
+                + String.format("%.2f%%", (best[0] - best[1]) * 100.0 / best[0]));
+    }
+
+    /**
+     * 每个客户端线程一条连接，阻塞式地一问一答
+     */
+    private long runClients(int port, int clients, int messageSize, long millis) throws Exception {
+        LongAdder counter = new LongAdder();
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.currentTimeMillis() + millis;
+        for (int i = 0; i < clients; i++) {
+            new Thread(() -> {
+                try (SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port))) {
+                    ByteBuffer out = ByteBuffer.allocateDirect(messageSize);
+                    ByteBuffer in = ByteBuffer.allocateDirect(messageSize);
+                    while (System.currentTimeMillis() < deadline) {
+                        out.clear();
+                        while (out.hasRemaining()) {
+                            socketChannel.write(out);
+                        }
+                        in.clear();
+                        while (in.hasRemaining()) {
+                            if (socketChannel.read(in) == -1) {
+                                return;
+                            }
+                        }
+                        counter.increment();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await(millis + 5000, TimeUnit.MILLISECONDS);
+        return counter.sum();
+    }
+}
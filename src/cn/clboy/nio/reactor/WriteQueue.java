@@ -0,0 +1,187 @@
+package cn.clboy.nio.reactor;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.buffer.CompositeBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/17 下午10:05
+ * @Since 1.0.0
+ * <p>
+ * 连接的出站队列：待发送的缓冲区先排队，再用一次聚集写入 write(ByteBuffer[]) 尽量全部写出。
+ * {@link CompositeBuffer} 的各个组件直接放进聚集数组，不合并拷贝。
+ * 只在事件循环线程中使用，不需要同步
+ */
+class WriteQueue {
+
+    /**
+     * 一次聚集写入最多携带的缓冲区数量
+     */
+    private static final int MAX_GATHER = 64;
+
+    /**
+     * 一次 flush 最多调用 write 的次数，防止一个连接长期占用事件循环
+     */
+    private static final int WRITE_SPIN_COUNT = 16;
+
+    private static final class Entry {
+        ByteBuffer buffer;
+        /**
+         * 非空时，写完后把缓冲区归还到这个池
+         */
+        BufferPool pool;
+        /**
+         * 非空时这个条目是组合缓冲区（buffer 为 null），写完后 release
+         */
+        CompositeBuffer composite;
+        /**
+         * 还没写出的字节数
+         */
+        long remaining;
+    }
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    /**
+     * 复用 Entry，稳定状态下入队不产生新对象
+     */
+    private final ArrayDeque<Entry> recycled = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private long pendingBytes;
+
+    void add(ByteBuffer buffer, BufferPool pool) {
+        Entry entry = recycled.poll();
+        if (entry == null) {
+            entry = new Entry();
+        }
+        entry.buffer = buffer;
+        entry.pool = pool;
+        entry.remaining = buffer.remaining();
+        entries.add(entry);
+        pendingBytes += entry.remaining;
+    }
+
+    /**
+     * 队列持有 composite 的一个引用，写完或丢弃时释放
+     */
+    void add(CompositeBuffer composite) {
+        Entry entry = recycled.poll();
+        if (entry == null) {
+            entry = new Entry();
+        }
+        entry.composite = composite;
+        entry.remaining = composite.readableBytes();
+        entries.add(entry);
+        pendingBytes += entry.remaining;
+    }
+
+    long pendingBytes() {
+        return pendingBytes;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * 尽量写出队列中的数据
+     *
+     * @return 本次写出的字节数
+     */
+    long flush(GatheringByteChannel channel) throws IOException {
+        long total = 0;
+        for (int spin = 0; spin < WRITE_SPIN_COUNT; spin++) {
+            //队首没有数据可写的条目（空缓冲区、已读完的组合缓冲区）先出队：
+            //否则 write 返回 0 会被当成发送缓冲区已满，OP_WRITE 一直不取消，事件循环空转
+            removeEmpty();
+            if (entries.isEmpty()) {
+                break;
+            }
+            int count = 0;
+            for (Entry entry : entries) {
+                if (entry.composite != null) {
+                    count += entry.composite.nioBuffers(gather, count, MAX_GATHER - count);
+                } else {
+                    gather[count++] = entry.buffer;
+                }
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+            long written = channel.write(gather, 0, count);
+            for (int i = 0; i < count; i++) {
+                gather[i] = null;
+            }
+            if (written == 0) {
+                //内核发送缓冲区已满
+                break;
+            }
+            total += written;
+            pendingBytes -= written;
+            removeCompleted(written);
+        }
+        return total;
+    }
+
+    /**
+     * 按顺序把写出的字节数分摊到各个条目，组合缓冲区据此推进读指针
+     */
+    private void removeCompleted(long written) {
+        Entry entry;
+        while (written > 0 && (entry = entries.peek()) != null) {
+            long n = Math.min(written, entry.remaining);
+            entry.remaining -= n;
+            written -= n;
+            if (entry.composite != null) {
+                entry.composite.skip((int) n);
+            }
+            if (entry.remaining > 0) {
+                break;
+            }
+            entries.poll();
+            recycle(entry);
+        }
+        removeEmpty();
+    }
+
+    /**
+     * 空缓冲区不会被写出任何字节，也要出队
+     */
+    private void removeEmpty() {
+        Entry entry;
+        while ((entry = entries.peek()) != null && entry.remaining == 0) {
+            entries.poll();
+            recycle(entry);
+        }
+    }
+
+    private void recycle(Entry entry) {
+        if (entry.pool != null) {
+            entry.pool.release(entry.buffer);
+        }
+        if (entry.composite != null) {
+            entry.composite.release();
+        }
+        entry.buffer = null;
+        entry.pool = null;
+        entry.composite = null;
+        if (recycled.size() < MAX_GATHER) {
+            recycled.add(entry);
+        }
+    }
+
+    /**
+     * 连接关闭时丢弃所有未发送的数据
+     */
+    void clear() {
+        Entry entry;
+        while ((entry = entries.poll()) != null) {
+            recycle(entry);
+        }
+        pendingBytes = 0;
+    }
+}
@@ -1,5 +1,10 @@
 package cn.clboy.nio.socket;
 
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.dedup.ChunkStore;
+import cn.clboy.nio.file.Crc32c;
+import cn.clboy.nio.file.FileFlusher;
+import cn.clboy.nio.file.FileSink;
 import org.junit.Test;
 
 import java.net.InetSocketAddress;
@@ -8,8 +13,10 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
 
 /**
  * @Author cloudlandboy
@@ -44,17 +51,23 @@ public class BlockingNIOTest {
         //获取读取本地文件的通道
         FileChannel localFileChannel = FileChannel.open(Paths.get("resources", "1.jpg"), StandardOpenOption.READ);
 
-        //分配指定大小的缓冲区
-        ByteBuffer byteBuffer = ByteBuffer.allocate(1024);
+        //从缓冲区池获取直接缓冲区
+        ByteBuffer byteBuffer = BufferPool.DEFAULT.acquire(8192);
 
-        //读取本地文件，并发送到服务端
+        //读取本地文件，并发送到服务端；顺带在同一个缓冲区上计算 CRC32C，与服务端输出的值对照
+        CRC32C crc = new CRC32C();
         while (localFileChannel.read(byteBuffer) != -1) {
             byteBuffer.flip();
-            socketChannel.write(byteBuffer);
+            Crc32c.update(crc, byteBuffer);
+            while (byteBuffer.hasRemaining()) {
+                socketChannel.write(byteBuffer);
+            }
             byteBuffer.clear();
         }
+        System.out.printf("发送完毕，CRC32C=%08x%n", crc.getValue());
 
-        //关闭通道
+        //归还缓冲区，关闭通道
+        BufferPool.DEFAULT.release(byteBuffer);
         localFileChannel.close();
         socketChannel.close();
     }
@@ -72,27 +85,77 @@ public class BlockingNIOTest {
         //绑定端口号
         serverSocketChannel.bind(new InetSocketAddress(7001));
 
-        //获取本地文件存储通道
-        FileChannel localFileChannel = FileChannel.open(
-                Paths.get("resources/server/1.jpg"),
-                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        //获取本地文件存储通道，旧文件先清空，否则旧内容比新文件长时会残留在末尾。
+        //每次网络读取只有几 KB，先在 FileSink 中攒成 64KB 再由后台线程写入；关闭时 force，返回即已落盘
+        FileFlusher flusher = new FileFlusher(FileFlusher.Durability.PER_FILE);
+        FileSink localFileChannel = flusher.open(Paths.get("resources/server/1.jpg"));
 
         //获取客户端连接的通道
         SocketChannel clientSocketChannel = serverSocketChannel.accept();
 
-        //分配指定大小的缓冲区
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        //从缓冲区池获取直接缓冲区
+        ByteBuffer buffer = BufferPool.DEFAULT.acquire(8192);
 
-        //接收客户端的数据，并保存到本地
+        //接收客户端的数据，并保存到本地；这个协议没有回复，只输出 CRC32C 供与客户端对照（也可以用 FileVerifier 比较两个文件）
+        CRC32C crc = new CRC32C();
         while (clientSocketChannel.read(buffer) != -1) {
             buffer.flip();
-            localFileChannel.write(buffer);
+            Crc32c.update(crc, buffer);
+            while (buffer.hasRemaining()) {
+                localFileChannel.write(buffer);
+            }
             buffer.clear();
         }
+        System.out.printf("接收完毕，CRC32C=%08x%n", crc.getValue());
 
-        //关闭通道
+        //归还缓冲区，关闭通道
+        BufferPool.DEFAULT.release(buffer);
         clientSocketChannel.close();
         localFileChannel.close();
+        flusher.close();
         serverSocketChannel.close();
     }
-}
\ No newline at end of file
+
+    /**
+     * 去重存储的服务端：每次上传不再覆盖 resources/server/1.jpg，而是切块后存入 resources/server/store，
+     * 内容相同的块只保存一份。多次运行 testClient，第二次起几乎不写入新数据；
+     * 上传后从存储中读回文件，只计算 CRC32C 与 testServer 的输出对照，不写磁盘
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDedupServer() throws Exception {
+        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(7001));
+        try (ChunkStore store = ChunkStore.open(Paths.get("resources/server/store"))) {
+            //一个连接上传一个文件，依次处理
+            while (true) {
+                try (SocketChannel clientSocketChannel = serverSocketChannel.accept()) {
+                    ChunkStore.PutResult result = store.put("1.jpg", clientSocketChannel);
+                    System.out.println("接收完毕：" + result);
+                    System.out.printf("存储中共 %d 块，pack 文件 %d 字节%n", store.chunkCount(), store.packSize());
+                }
+                CRC32C crc = new CRC32C();
+                long size = store.get("1.jpg", new WritableByteChannel() {
+                    @Override
+                    public int write(ByteBuffer src) {
+                        int n = src.remaining();
+                        Crc32c.update(crc, src);
+                        src.position(src.limit());
+                        return n;
+                    }
+
+                    @Override
+                    public boolean isOpen() {
+                        return true;
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                });
+                System.out.printf("读回 %d 字节，CRC32C=%08x%n", size, crc.getValue());
+            }
+        }
+    }
+}
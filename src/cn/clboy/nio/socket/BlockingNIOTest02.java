@@ -1,24 +1,40 @@
 package cn.clboy.nio.socket;
 
+import cn.clboy.nio.file.Crc32c;
+import cn.clboy.nio.file.FileFlusher;
+import cn.clboy.nio.file.FileSink;
 import org.junit.Test;
 
+import java.io.EOFException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
 
 /**
  * @Author cloudlandboy
  * @Date 2019/12/29 下午9:47
  * @Since 1.0.0
  * 接收服务端的响应
+ * <p>
+ * 协议：客户端发送 | 文件长度 (8) | 文件内容 | CRC32C (4) |，
+ * 服务端边接收边计算 CRC32C，与末尾的校验和比较后回复 | 状态 (1) | UTF-8 消息 |，状态 0 表示成功。
+ * 校验和在读写用的同一个缓冲区上增量计算，不需要再把文件读一遍
  */
 
 public class BlockingNIOTest02 {
 
+    private static final byte STATUS_OK = 0;
+    private static final byte STATUS_CORRUPTED = 1;
+
     /**
      * 客户端
      *
@@ -26,31 +42,67 @@ public class BlockingNIOTest02 {
      */
     @Test
     public void testClient() throws Exception {
+        upload(Paths.get("resources", "1.jpg"), -1);
+    }
+
+    /**
+     * 客户端：传输途中篡改一个字节（校验和按原始内容计算），服务端应当回复校验失败
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testClientCorrupted() throws Exception {
+        upload(Paths.get("resources", "1.jpg"), 1000);
+    }
+
+    /**
+     * @param corruptAt 发送时篡改文件中这个位置的字节，-1 表示不篡改
+     */
+    private void upload(Path file, long corruptAt) throws Exception {
         //获取网络通道
         SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7001));
 
         //获取读取本地文件的通道
-        FileChannel localFileChannel = FileChannel.open(Paths.get("resources", "1.jpg"), StandardOpenOption.READ);
+        FileChannel localFileChannel = FileChannel.open(file, StandardOpenOption.READ);
 
         //分配指定大小的缓冲区
         ByteBuffer byteBuffer = ByteBuffer.allocate(1024);
 
-        //读取本地文件，并发送到服务端
+        //先发送文件长度，服务端据此知道文件内容在哪里结束、校验和从哪里开始
+        byteBuffer.putLong(localFileChannel.size());
+        byteBuffer.flip();
+        writeFully(socketChannel, byteBuffer);
+        byteBuffer.clear();
+
+        //读取本地文件，边计算校验和边发送到服务端
+        CRC32C crc = new CRC32C();
+        long position = 0;
         while (localFileChannel.read(byteBuffer) != -1) {
             byteBuffer.flip();
-            socketChannel.write(byteBuffer);
+            Crc32c.update(crc, byteBuffer);
+            if (corruptAt >= position && corruptAt < position + byteBuffer.limit()) {
+                int index = (int) (corruptAt - position);
+                byteBuffer.put(index, (byte) ~byteBuffer.get(index));
+            }
+            position += byteBuffer.limit();
+            writeFully(socketChannel, byteBuffer);
             byteBuffer.clear();
         }
 
+        //文件内容之后是 4 字节的 CRC32C
+        byteBuffer.putInt((int) crc.getValue());
+        byteBuffer.flip();
+        writeFully(socketChannel, byteBuffer);
+        byteBuffer.clear();
 
         socketChannel.shutdownOutput();
-        //接收服务端的反馈
-        int len = 0;
-        while ((len = socketChannel.read(byteBuffer)) != -1) {
-            byteBuffer.flip();
-            System.out.println(new String(byteBuffer.array(), 0, len));
-            byteBuffer.clear();
+        //接收服务端的反馈：第一个字节是状态，之后是消息
+        while (socketChannel.read(byteBuffer) != -1) {
         }
+        byteBuffer.flip();
+        byte status = byteBuffer.get();
+        String message = StandardCharsets.UTF_8.decode(byteBuffer).toString();
+        System.out.println((status == STATUS_OK ? "成功：" : "失败：") + message);
 
         //关闭通道
         localFileChannel.close();
@@ -70,10 +122,12 @@ public class BlockingNIOTest02 {
         //绑定端口号
         serverSocketChannel.bind(new InetSocketAddress(7001));
 
-        //获取本地文件存储通道
-        FileChannel localFileChannel = FileChannel.open(
-                Paths.get("resources/server/1.jpg"),
-                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        //先接收到同一目录下的临时文件，校验通过后再替换 resources/server/1.jpg，校验失败时原文件不受影响。
+        //1KB 的网络读取在 FileSink 中合并成大块写入；回复成功之前文件必须已经落盘，所以用 PER_FILE
+        Path target = Paths.get("resources/server/1.jpg");
+        Path temp = Files.createTempFile(target.getParent(), "1.jpg", ".part");
+        FileFlusher flusher = new FileFlusher(FileFlusher.Durability.PER_FILE);
+        FileSink localFileChannel = flusher.open(temp);
 
         //获取客户端连接的通道
         SocketChannel clientSocketChannel = serverSocketChannel.accept();
@@ -81,21 +135,67 @@ public class BlockingNIOTest02 {
         //分配指定大小的缓冲区
         ByteBuffer buffer = ByteBuffer.allocate(1024);
 
-        //接收客户端的数据，并保存到本地
-        while (clientSocketChannel.read(buffer) != -1) {
+        //先读 8 字节的文件长度
+        buffer.limit(8);
+        readFully(clientSocketChannel, buffer);
+        buffer.flip();
+        long remaining = buffer.getLong();
+        buffer.clear();
+
+        //接收客户端的数据，边保存到本地边计算校验和；只读到文件末尾，不把后面的校验和读进来
+        CRC32C crc = new CRC32C();
+        while (remaining > 0) {
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            if (clientSocketChannel.read(buffer) == -1) {
+                throw new EOFException("还差 " + remaining + " 字节");
+            }
             buffer.flip();
-            localFileChannel.write(buffer);
+            Crc32c.update(crc, buffer);
+            remaining -= buffer.remaining();
+            while (buffer.hasRemaining()) {
+                localFileChannel.write(buffer);
+            }
             buffer.clear();
         }
 
-        //发送反馈消息给客户端
-        buffer.put("服务端成功接收".getBytes());
+        //最后 4 字节是客户端计算的 CRC32C
+        buffer.limit(4);
+        readFully(clientSocketChannel, buffer);
         buffer.flip();
-        clientSocketChannel.write(buffer);
+        int expected = buffer.getInt();
+        int actual = (int) crc.getValue();
+        buffer.clear();
+        localFileChannel.close();
+        flusher.close();
+
+        //发送反馈消息给客户端：校验通过才算成功接收，否则删除收到的临时文件
+        if (expected == actual) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            buffer.put(STATUS_OK).put(String.format("服务端成功接收，CRC32C=%08x", actual).getBytes(StandardCharsets.UTF_8));
+        } else {
+            Files.delete(temp);
+            buffer.put(STATUS_CORRUPTED).put(String.format("校验失败，期望 %08x，实际 %08x", expected, actual).getBytes(StandardCharsets.UTF_8));
+        }
+        buffer.flip();
+        //一次 write 不保证写完，要循环直到没有剩余
+        writeFully(clientSocketChannel, buffer);
 
         //关闭通道
         clientSocketChannel.close();
-        localFileChannel.close();
         serverSocketChannel.close();
     }
-}
\ No newline at end of file
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,18 +1,33 @@
 package cn.clboy.nio.socket;
 
+import cn.clboy.nio.codec.LengthFieldFrameDecoder;
+import cn.clboy.nio.codec.LengthFieldFrameEncoder;
+import cn.clboy.nio.metrics.EventLoopMetrics;
+import cn.clboy.nio.metrics.Metrics;
+import cn.clboy.nio.metrics.MetricsReporter;
+import cn.clboy.nio.timer.HashedWheelTimer;
+import cn.clboy.nio.timer.TimerNode;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.channels.*;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Author cloudlandboy
@@ -72,6 +87,28 @@ public class NonBlockingNIOTest {
         //分配指定大小的缓冲区
         ByteBuffer buffer = ByteBuffer.allocate(1024);
 
+        //连的是 ChatServer 时会收到所有人的消息：另起一个线程用自己的选择器读取并打印
+        Selector selector = Selector.open();
+        socketChannel.register(selector, SelectionKey.OP_READ);
+        Thread receiver = new Thread(() -> {
+            LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(64 * 1024);
+            FramePrinter printer = new FramePrinter(64 * 1024);
+            try {
+                while (selector.select() >= 0 && selector.isOpen()) {
+                    selector.selectedKeys().clear();
+                    if (decoder.read(socketChannel, printer::print) == -1) {
+                        break;
+                    }
+                }
+            } catch (IOException | ClosedSelectorException ignored) {
+                //通道或选择器已关闭
+            } finally {
+                decoder.release();
+            }
+        }, "chat-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
         //创建标准输入流
         Scanner scanner = new Scanner(System.in);
         System.out.println("键入您的昵称：");
@@ -83,13 +120,23 @@ public class NonBlockingNIOTest {
                 break;
             }
             String msg = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").format(LocalDateTime.now()) + "：\n" + name + "：" + info;
-            buffer.put(msg.getBytes());
+            byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > buffer.capacity() - LengthFieldFrameEncoder.HEADER_LENGTH) {
+                System.out.println("消息过长");
+                continue;
+            }
+            //长度前缀 + 消息体，服务端据此区分每条消息的边界
+            LengthFieldFrameEncoder.encode(buffer, bytes);
             buffer.flip();
-            socketChannel.write(buffer);
+            //非阻塞模式下一次 write 不一定写完
+            while (buffer.hasRemaining()) {
+                socketChannel.write(buffer);
+            }
             buffer.clear();
         }
 
         //关闭通道
+        selector.close();
         socketChannel.close();
     }
 
@@ -113,44 +160,150 @@ public class NonBlockingNIOTest {
         //将通道注册到选择器，并且指定“监听接收事件”
         serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
 
-        //轮询式的获取选择器上已经“准备就绪”的事件
-        while (selector.select() > 0) {
+        //选择器循环的指标：select 耗时、处理耗时、每轮就绪键数、读字节数，注册到 JMX 并每 10 秒输出一次
+        AtomicInteger connections = new AtomicInteger();
+        EventLoopMetrics metrics = new EventLoopMetrics("testServer", connections::get);
+        Metrics.register("EventLoop", metrics.name(), metrics);
+        new MetricsReporter(10, TimeUnit.SECONDS, System.out, () -> List.of(metrics));
+
+        //空闲检测：所有连接共用一个时间轮，超过 IDLE_TIMEOUT 没有发来数据的客户端会被关闭
+        HashedWheelTimer timer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 512);
+
+        //所有连接都在这个线程上打印，共用一个解码器和字符缓冲区
+        FramePrinter printer = new FramePrinter(64 * 1024);
+
+        //轮询式的获取选择器上已经“准备就绪”的事件，select 最多等到时间轮的下一个 tick
+        for (; ; ) {
+            long selectStart = System.nanoTime();
+            selector.select(timer.nextTickDelayMillis(selectStart));
+            long now = System.nanoTime();
             //获取当前选择器中所有注册的“选择键(已就绪的监听事件)”
             Set<SelectionKey> selectionKeys = selector.selectedKeys();
+            int keys = selectionKeys.size();
             Iterator<SelectionKey> it = selectionKeys.iterator();
             while (it.hasNext()) {
                 //获取准备“就绪”的事件
                 SelectionKey sk = it.next();
 
+                //用完之后取消选择键 SelectionKey，不然下一次循环这个已经就绪的SelectionKey还存在
+                it.remove();
+
                 // 判断具体是什么事件准备就绪
                 if (sk.isAcceptable()) {
-                    //若“接收就绪”，获取客户端连接
-                    SocketChannel socketChannel = serverSocketChannel.accept();
-
-                    //切换到非阻模式
-                    socketChannel.configureBlocking(false);
+                    //若“接收就绪”，一次把积压的连接都取出
+                    SocketChannel socketChannel;
+                    while ((socketChannel = serverSocketChannel.accept()) != null) {
+                        //切换到非阻模式
+                        socketChannel.configureBlocking(false);
 
-                    //将该通道注册到选择器上
-                    socketChannel.register(selector, SelectionKey.OP_READ);
+                        //将该通道注册到选择器上，并附加本连接的状态（帧解码器、最后一次读到数据的时间）
+                        Client client = new Client(socketChannel, timer, connections);
+                        client.key = socketChannel.register(selector, SelectionKey.OP_READ, client);
+                        client.lastReadTime = now;
+                        timer.schedule(client, now + IDLE_TIMEOUT);
+                        connections.incrementAndGet();
+                    }
                 } else if (sk.isReadable()) {
                     //获取当前选择器上“读就绪”状态的通道
-                    SocketChannel socketChannel = (SocketChannel) sk.channel();
-
-                    //分配缓冲区
-                    ByteBuffer buffer = ByteBuffer.allocate(1024);
-                    //读取数据,客户端没有关闭，不能判断是否-1,返回的可能是0
-                    while (socketChannel.read(buffer) > 0) {
-                        buffer.flip();
-                        System.out.println(new String(buffer.array(), 0, buffer.limit()));
-                        buffer.clear();
+                    Client client = (Client) sk.attachment();
+                    try {
+                        //一次 read 可能只读到半条消息，也可能读到多条，交给解码器按长度前缀拆分
+                        int len = client.decoder.read(client.channel, printer::print);
+                        if (len == -1) {
+                            //对端已关闭：不关闭的话这个键会一直“读就绪”，选择器空转
+                            client.close();
+                        } else if (len > 0) {
+                            //只记录时间，不动时间轮；到期时再判断是否真的空闲
+                            client.lastReadTime = now;
+                            metrics.recordRead(len);
+                        }
+                    } catch (IOException e) {
+                        //连接被重置或者帧过长
+                        client.close();
                     }
-
                 }
-
-                //用完之后取消选择键 SelectionKey，不然下一次循环这个已经就绪的SelectionKey还存在
-                it.remove();
             } //end while
+
+            timer.advance(now);
+            metrics.recordIteration(now - selectStart, keys, System.nanoTime() - now);
         }
+    }
 
+    /**
+     * 把 UTF-8 帧解码后打印：复用同一个 CharsetDecoder 和 CharBuffer，
+     * 不像 StandardCharsets.UTF_8.decode() 那样每次都分配新的 CharBuffer。只能在一个线程中使用
+     */
+    static final class FramePrinter {
+
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars;
+
+        /**
+         * @param maxFrameLength UTF-8 解码出的字符数不会超过字节数
+         */
+        FramePrinter(int maxFrameLength) {
+            this.chars = CharBuffer.allocate(maxFrameLength);
+        }
+
+        void print(ByteBuffer frame) {
+            chars.clear();
+            decoder.reset();
+            decoder.decode(frame, chars, true);
+            decoder.flush(chars);
+            chars.flip();
+            System.out.println(chars);
+        }
+    }
+
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * 服务端每个连接的状态，同时也是时间轮中的空闲检测节点
+     */
+    private static class Client extends TimerNode {
+
+        final SocketChannel channel;
+        final LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(64 * 1024);
+        final HashedWheelTimer timer;
+        final AtomicInteger connections;
+        SelectionKey key;
+        long lastReadTime;
+
+        Client(SocketChannel channel, HashedWheelTimer timer, AtomicInteger connections) {
+            this.channel = channel;
+            this.timer = timer;
+            this.connections = connections;
+        }
+
+        @Override
+        protected void expire(long now) {
+            long deadline = lastReadTime + IDLE_TIMEOUT;
+            if (deadline - now > 0) {
+                //期间读到过数据，按新的截止时间重新挂回时间轮
+                timer.schedule(this, deadline);
+            } else {
+                System.out.println("空闲超时，关闭连接：" + channel);
+                close();
+            }
+        }
+
+        /**
+         * 取消选择键、关闭通道、归还解码器的缓冲区、移出时间轮
+         */
+        void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            decoder.release();
+            cancel();
+            connections.decrementAndGet();
+        }
     }
-}
\ No newline at end of file
+}
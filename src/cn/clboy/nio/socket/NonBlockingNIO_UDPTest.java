@@ -1,5 +1,6 @@
 package cn.clboy.nio.socket;
 
+import cn.clboy.nio.buffer.BufferPool;
 import org.junit.Test;
 
 import java.net.InetSocketAddress;
@@ -75,19 +76,26 @@ public class NonBlockingNIO_UDPTest {
 
         //注册到选择器
         datagramChannel.register(selector, SelectionKey.OP_READ);
+
+        //复用同一个接收缓冲区和解码器，稳定状态下每个数据报不再分配内存
+        ByteBuffer buffer = BufferPool.DEFAULT.acquire(1024);
+        NonBlockingNIOTest.FramePrinter printer = new NonBlockingNIOTest.FramePrinter(buffer.capacity());
         while (selector.select() > 0) {
             Iterator<SelectionKey> it = selector.selectedKeys().iterator();
             while (it.hasNext()) {
                 SelectionKey sk = it.next();
+                //每个选择键处理完都要移除，必须放在内层循环中
+                it.remove();
                 if (sk.isReadable()) {
-                    ByteBuffer buffer = ByteBuffer.allocate(1024);
-                    datagramChannel.receive(buffer);
-                    buffer.flip();
-                    System.out.println(new String(buffer.array(), 0, buffer.limit()));
-                    buffer.clear();
+                    //一次就绪可能已经到达了多个数据报，取到 receive 返回 null 为止
+                    while (datagramChannel.receive(buffer) != null) {
+                        buffer.flip();
+                        printer.print(buffer);
+                        buffer.clear();
+                    }
                 }
             }
-            it.remove();
         }
+        BufferPool.DEFAULT.release(buffer);
     }
 }
\ No newline at end of file
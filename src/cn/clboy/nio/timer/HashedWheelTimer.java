@@ -0,0 +1,152 @@
+package cn.clboy.nio.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/21 上午9:40
+ * @Since 1.0.0
+ * <p>
+ * 单线程的哈希时间轮：wheelSize 个桶，每个桶代表一个 tick，到期时间落在第 n 个 tick 的节点放进 n & (wheelSize - 1) 号桶，
+ * 超过一圈的节点和当前圈的节点共用一个桶，推进到该桶时比较 deadlineTick 决定是否到期。
+ * <p>
+ * - schedule / cancel 都是 O(1) 的链表操作
+ * - 不自带线程，由事件循环在每轮 select 之后调用 {@link #advance(long)}，
+ * 并用 {@link #nextTickDelayMillis(long)} 作为 select 的超时时间
+ * - 精度为一个 tick，适合空闲检测这类不要求精确、但数量很大的超时
+ * <p>
+ * 非线程安全，只能在所属线程中使用
+ */
+public class HashedWheelTimer {
+
+    private final long tickNanos;
+    private final int mask;
+    private final TimerNode[] buckets;
+    private final long startTime;
+    /**
+     * 已经处理完的 tick
+     */
+    private long currentTick;
+    private int size;
+
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0 || wheelSize > 1 << 20) {
+            throw new IllegalArgumentException("tickDuration: " + tickDuration + ", wheelSize: " + wheelSize);
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = size - 1;
+        this.buckets = new TimerNode[size];
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * 调度（或重新调度）节点在 deadline（System.nanoTime()）到期
+     */
+    public void schedule(TimerNode node, long deadline) {
+        if (node.timer != null) {
+            unlink(node);
+        }
+        //向上取整到 tick，保证不会提前到期；已经过期的放到下一个 tick
+        long tick = (deadline - startTime + tickNanos - 1) / tickNanos;
+        if (tick <= currentTick) {
+            tick = currentTick + 1;
+        }
+        node.deadline = deadline;
+        node.deadlineTick = tick;
+        node.bucket = (int) (tick & mask);
+        node.timer = this;
+        //插到链表头部：推进时如果在 expire 中重新调度到同一个桶，不会在本轮被再次访问
+        TimerNode head = buckets[node.bucket];
+        node.prev = null;
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        buckets[node.bucket] = node;
+        size++;
+    }
+
+    public void schedule(TimerNode node, long delay, TimeUnit unit, long now) {
+        schedule(node, now + unit.toNanos(delay));
+    }
+
+    public void cancel(TimerNode node) {
+        if (node.timer == this) {
+            unlink(node);
+        }
+    }
+
+    private void unlink(TimerNode node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            buckets[node.bucket] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.timer = null;
+        size--;
+    }
+
+    /**
+     * 处理 now 之前所有已经走过的 tick，对到期的节点调用 expire
+     *
+     * @return 到期的节点数
+     */
+    public int advance(long now) {
+        long targetTick = (now - startTime) / tickNanos;
+        if (targetTick <= currentTick) {
+            return 0;
+        }
+        long fromTick = currentTick;
+        //先更新 currentTick，expire 中重新调度的节点一定落在 targetTick 之后，不会在本次推进中再次到期
+        currentTick = targetTick;
+        int expired = 0;
+        //落后超过一圈时每个桶只需要扫描一次
+        long ticks = Math.min(targetTick - fromTick, buckets.length);
+        for (long i = 1; i <= ticks; i++) {
+            int bucket = (int) ((fromTick + i) & mask);
+            TimerNode node = buckets[bucket];
+            while (node != null) {
+                TimerNode next = node.next;
+                if (node.deadlineTick <= targetTick) {
+                    unlink(node);
+                    expired++;
+                    node.expire(now);
+                    if (next != null && (next.timer != this || next.bucket != bucket)) {
+                        //expire 中取消或移走了下一个节点（例如关闭连接时取消了它的另一个定时），从桶头重新扫描
+                        next = buckets[bucket];
+                    }
+                }
+                node = next;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * 距离下一个 tick 的毫秒数，没有任何节点时返回 0（表示可以无限期等待），至少为 1
+     */
+    public long nextTickDelayMillis(long now) {
+        if (size == 0) {
+            return 0;
+        }
+        long nextTickTime = startTime + (currentTick + 1) * tickNanos;
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextTickTime - now + 999_999));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long tickNanos() {
+        return tickNanos;
+    }
+}
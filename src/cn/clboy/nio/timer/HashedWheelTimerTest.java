@@ -0,0 +1,92 @@
+package cn.clboy.nio.timer;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/21 上午11:30
+ * @Since 1.0.0
+ * <p>
+ * 哈希时间轮：大量定时的调度/重新调度开销，以及到期时间的误差
+ */
+public class HashedWheelTimerTest {
+
+    private static class Node extends TimerNode {
+
+        long expiredAt;
+
+        @Override
+        protected void expire(long now) {
+            expiredAt = now;
+        }
+    }
+
+    /**
+     * 50 万个定时：调度、每个重新调度 10 次（模拟每次读到数据都刷新截止时间），再全部推进到期
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testScale() throws Exception {
+        int count = 500_000;
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512);
+        Node[] nodes = new Node[count];
+        long now = System.nanoTime();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            nodes[i] = new Node();
+            timer.schedule(nodes[i], now + TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextInt(100, 2000)));
+        }
+        System.out.println("调度 " + count + " 个：" + (System.nanoTime() - start) / count + " ns/个");
+
+        start = System.nanoTime();
+        for (int round = 0; round < 10; round++) {
+            for (Node node : nodes) {
+                timer.schedule(node, node.deadline() + TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        System.out.println("重新调度：" + (System.nanoTime() - start) / (count * 10L) + " ns/次");
+
+        int expired = 0;
+        while (timer.size() > 0) {
+            Thread.sleep(10);
+            expired += timer.advance(System.nanoTime());
+        }
+        long maxLate = 0;
+        for (Node node : nodes) {
+            maxLate = Math.max(maxLate, node.expiredAt - node.deadline());
+        }
+        System.out.println("到期：" + expired + "，最大延后：" + TimeUnit.NANOSECONDS.toMillis(maxLate) + " ms");
+    }
+
+    /**
+     * 到期回调中重新调度自己：每 100ms 触发一次的周期任务
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPeriodic() throws Exception {
+        HashedWheelTimer wheel = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 64);
+        long begin = System.nanoTime();
+        int[] fired = new int[1];
+        TimerNode periodic = new TimerNode() {
+            @Override
+            protected void expire(long now) {
+                fired[0]++;
+                System.out.println("第 " + fired[0] + " 次：" + TimeUnit.NANOSECONDS.toMillis(now - begin) + " ms");
+                if (fired[0] < 5) {
+                    wheel.schedule(this, deadline() + TimeUnit.MILLISECONDS.toNanos(100));
+                }
+            }
+        };
+        wheel.schedule(periodic, begin + TimeUnit.MILLISECONDS.toNanos(100));
+        while (wheel.size() > 0) {
+            Thread.sleep(wheel.nextTickDelayMillis(System.nanoTime()));
+            wheel.advance(System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cn.clboy.nio.timer;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/21 上午9:30
+ * @Since 1.0.0
+ * <p>
+ * 时间轮中的一个定时任务。链表指针直接放在节点里（侵入式链表），
+ * 调度、取消、重新调度都只是改几个引用，不分配对象，也不需要每个连接一个 ScheduledFuture
+ */
+public abstract class TimerNode {
+
+    HashedWheelTimer timer;
+    TimerNode prev;
+    TimerNode next;
+    int bucket;
+    long deadlineTick;
+    long deadline;
+
+    /**
+     * 到期时在时间轮所属线程中调用，可以在这里重新调度自己
+     *
+     * @param now 本次推进时间轮时的 System.nanoTime()
+     */
+    protected abstract void expire(long now);
+
+    public boolean isScheduled() {
+        return timer != null;
+    }
+
+    /**
+     * 调度时指定的到期时间（System.nanoTime()）
+     */
+    public long deadline() {
+        return deadline;
+    }
+
+    /**
+     * 从所在的时间轮中移除，未调度时无副作用
+     */
+    public void cancel() {
+        if (timer != null) {
+            timer.cancel(this);
+        }
+    }
+}
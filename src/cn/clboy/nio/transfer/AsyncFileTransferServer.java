@@ -0,0 +1,604 @@
+package cn.clboy.nio.transfer;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/22 下午3:00
+ * @Since 1.0.0
+ * <p>
+ * NIO.2 异步通道模式的文件传输服务，协议与 {@link FileTransferServer}、{@link FileTransferChannelHandler} 相同（PUT/GET/STAT，不协商压缩）。
+ * 与选择器模式一样不支持分段上传（OP_RANGE_STATUS/OP_RANGE_PUT），收到后按未知请求关闭连接，分段上传请连接阻塞模式的 {@link FileTransferServer}。
+ * <p>
+ * 没有“就绪”事件，只有“完成”回调：发起 read/write 后立即返回，操作完成时由通道组的线程调用 CompletionHandler。
+ * 每个连接同一时刻最多只有一个网络读和一个文件写在进行中，回调里发起下一步操作，不占用任何线程等待。
+ * <p>
+ * 线程划分：
+ * <p>
+ * - 网络：固定大小的 {@link AsynchronousChannelGroup}，默认每个 CPU 一个线程，Linux 上由 epoll 驱动
+ * <p>
+ * - 文件：AsynchronousFileChannel 在 Linux 上其实是在给定的线程池里做阻塞的 pwrite/pread，
+ * 所以单独给它一个线程池，磁盘慢的时候不会拖住网络回调
+ * <p>
+ * 上传时两个缓冲区交替使用：一个在接收网络数据，另一个在写入文件，网络和磁盘同时工作；
+ * 文件还在写的时候，接收中的缓冲区会尽量读满再交出去，减少小块写入
+ * <p>
+ * 连接关闭时，进行中的读写要等到它的回调才算结束（内核或另一个线程可能还在用这块缓冲区），
+ * 所以池化的缓冲区都在最后一个回调里归还，而不是在 close 时
+ */
+public class AsyncFileTransferServer implements Closeable {
+
+    private static final Set<OpenOption> PUT_OPTIONS = Set.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    private static final Set<OpenOption> GET_OPTIONS = Set.of(StandardOpenOption.READ);
+
+    private final int port;
+    private final FileTransferHandler files;
+    private final int threads;
+    private final int fileThreads;
+
+    private AsynchronousChannelGroup group;
+    private ExecutorService fileExecutor;
+    private AsynchronousServerSocketChannel serverChannel;
+
+    public AsyncFileTransferServer(int port, Path root) {
+        this(port, root, Runtime.getRuntime().availableProcessors(), 4);
+    }
+
+    /**
+     * @param threads     通道组的线程数，执行所有网络完成回调
+     * @param fileThreads 文件读写的线程数
+     */
+    public AsyncFileTransferServer(int port, Path root, int threads, int fileThreads) {
+        this.port = port;
+        this.files = new FileTransferHandler(root);
+        this.threads = threads;
+        this.fileThreads = fileThreads;
+    }
+
+    public void start() throws IOException {
+        group = AsynchronousChannelGroup.withFixedThreadPool(threads, threadFactory("aio-io-"));
+        fileExecutor = Executors.newFixedThreadPool(fileThreads, threadFactory("aio-file-"));
+        serverChannel = AsynchronousServerSocketChannel.open(group);
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        accept();
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> new Thread(r, prefix + index.getAndIncrement());
+    }
+
+    /**
+     * 每次只挂一个 accept，完成后先挂下一个再处理这个连接
+     */
+    private void accept() {
+        serverChannel.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
+            @Override
+            public void completed(AsynchronousSocketChannel channel, Void attachment) {
+                accept();
+                try {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                } catch (IOException ignored) {
+                }
+                new Session(channel).nextRequest();
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                if (e instanceof AsynchronousCloseException || e instanceof ClosedChannelException) {
+                    return;
+                }
+                //例如文件描述符耗尽，连接留在 backlog 中，稍后重试
+                System.err.println("accept 失败：" + e);
+                accept();
+            }
+        });
+    }
+
+    /**
+     * 回调中的一步操作
+     */
+    private interface Step<V> {
+        void run(V result) throws IOException;
+    }
+
+    /**
+     * 一个连接上的请求处理，所有操作按顺序串行（上传时的网络读与文件写除外，见 {@link Upload}）
+     */
+    private class Session {
+
+        final AsynchronousSocketChannel channel;
+        /**
+         * 累积请求头，空闲时处于写模式
+         */
+        final ByteBuffer header = BufferPool.DEFAULT.acquire(TransferHeader.MAX_LENGTH);
+        final ByteBuffer response = BufferPool.DEFAULT.acquire(TransferHeader.RESPONSE_LENGTH);
+        /**
+         * 下载用的缓冲区，没有下载时为 null
+         */
+        ByteBuffer download;
+        AsynchronousFileChannel file;
+        boolean closed;
+        /**
+         * 进行中的、使用 header/response/download 的操作数（上传的缓冲区由 {@link Upload} 自己管理）
+         */
+        int pending;
+        boolean released;
+
+        Session(AsynchronousSocketChannel channel) {
+            this.channel = channel;
+        }
+
+        <V> CompletionHandler<V, Void> then(Step<V> step) {
+            return new CompletionHandler<V, Void>() {
+                @Override
+                public void completed(V result, Void attachment) {
+                    if (end()) {
+                        return;
+                    }
+                    try {
+                        step.run(result);
+                    } catch (IOException | RuntimeException e) {
+                        close(e);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    end();
+                    close(e);
+                }
+            };
+        }
+
+        /**
+         * 发起一个使用会话缓冲区的操作，回调中必须先调用 {@link #end()}
+         */
+        void issue(Runnable operation) {
+            synchronized (this) {
+                pending++;
+            }
+            try {
+                operation.run();
+            } catch (RuntimeException e) {
+                //例如通道组已经关闭，操作没有发起，也就不会有回调
+                end();
+                throw e;
+            }
+        }
+
+        /**
+         * 一个操作结束，连接已关闭时归还缓冲区
+         *
+         * @return 连接是否已经关闭，关闭了就不再继续
+         */
+        synchronized boolean end() {
+            pending--;
+            if (closed) {
+                releaseBuffers();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 从已累积的字节中解码下一个请求头，不够就继续读
+         */
+        void nextRequest() {
+            TransferHeader request;
+            header.flip();
+            try {
+                request = TransferHeader.tryDecode(header);
+            } catch (IOException e) {
+                close(e);
+                return;
+            } finally {
+                header.compact();
+            }
+            if (request == null) {
+                CompletionHandler<Integer, Void> handler = this.then(len -> {
+                    if (len == -1) {
+                        close(null);
+                    } else {
+                        nextRequest();
+                    }
+                });
+                issue(() -> channel.read(header, null, handler));
+                return;
+            }
+            try {
+                switch (request.op()) {
+                    case TransferHeader.OP_STAT:
+                        respond(TransferHeader.STATUS_OK, files.stat(request), this::nextRequest);
+                        break;
+                    case TransferHeader.OP_PUT:
+                        put(request);
+                        break;
+                    case TransferHeader.OP_GET:
+                        get(request);
+                        break;
+                    case TransferHeader.OP_HELLO:
+                        //不支持压缩，客户端会按原始字节传输
+                        respond(TransferHeader.STATUS_OK, 0, this::nextRequest);
+                        break;
+                    default:
+                        //包括 OP_RANGE_STATUS/OP_RANGE_PUT
+                        throw new IOException("unknown op: " + request.op());
+                }
+            } catch (IOException | RuntimeException e) {
+                close(e);
+            }
+        }
+
+        void respond(byte status, long value, Runnable next) {
+            response.clear();
+            response.put(status).putLong(value).flip();
+            writeFully(response, next);
+        }
+
+        void writeFully(ByteBuffer buffer, Runnable next) {
+            CompletionHandler<Integer, Void> handler = this.then(len -> {
+                if (buffer.hasRemaining()) {
+                    writeFully(buffer, next);
+                } else {
+                    next.run();
+                }
+            });
+            issue(() -> channel.write(buffer, null, handler));
+        }
+
+        void put(TransferHeader request) throws IOException {
+            Path path = files.resolve(request.name());
+            Files.createDirectories(path.getParent());
+            file = AsynchronousFileChannel.open(path, PUT_OPTIONS, fileExecutor);
+            //续传位置之前必须已经有数据
+            if (request.offset() < 0 || request.offset() > file.size() || request.size() < request.offset()) {
+                respond(TransferHeader.STATUS_ERROR, -1, () -> close(new IOException("invalid put request: " + request)));
+                return;
+            }
+            new Upload(request).start();
+        }
+
+        void get(TransferHeader request) throws IOException {
+            Path path = files.resolve(request.name());
+            if (!Files.isRegularFile(path)) {
+                respond(TransferHeader.STATUS_ERROR, -1, this::nextRequest);
+                return;
+            }
+            file = AsynchronousFileChannel.open(path, GET_OPTIONS, fileExecutor);
+            long size = file.size();
+            long offset = Math.min(Math.max(request.offset(), 0), size);
+            //挂在会话上：响应或文件内容写失败时由 close 之后的最后一个回调归还
+            download = BufferPool.DEFAULT.acquire(BufferPool.MAX_SIZE);
+            respond(TransferHeader.STATUS_OK, size, () -> send(offset, size));
+        }
+
+        /**
+         * 下载：读一块文件，写完再读下一块
+         */
+        void send(long position, long end) {
+            ByteBuffer buffer = download;
+            if (position >= end) {
+                synchronized (this) {
+                    download = null;
+                }
+                BufferPool.DEFAULT.release(buffer);
+                closeFile();
+                nextRequest();
+                return;
+            }
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int) (end - position));
+            }
+            CompletionHandler<Integer, Void> handler = this.then(len -> {
+                if (len == -1) {
+                    //文件在下载过程中被截短
+                    throw new EOFException();
+                }
+                buffer.flip();
+                writeFully(buffer, () -> send(position + len, end));
+            });
+            issue(() -> file.read(buffer, position, null, handler));
+        }
+
+        void closeFile() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                }
+                file = null;
+            }
+        }
+
+        /**
+         * 关闭连接，进行中的网络操作会以 AsynchronousCloseException 失败。
+         * 没有进行中的操作时立即归还缓冲区，否则由最后一个回调在 {@link #end()} 中归还
+         */
+        synchronized void close(Throwable cause) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (cause != null && !(cause instanceof AsynchronousCloseException) && !(cause instanceof ClosedChannelException)) {
+                System.err.println(channel + "：" + cause);
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            closeFile();
+            releaseBuffers();
+        }
+
+        private void releaseBuffers() {
+            if (pending > 0 || released) {
+                return;
+            }
+            released = true;
+            BufferPool.DEFAULT.release(header);
+            BufferPool.DEFAULT.release(response);
+            if (download != null) {
+                BufferPool.DEFAULT.release(download);
+                download = null;
+            }
+        }
+
+        /**
+         * 一个上传中的文件，两个缓冲区在“接收网络数据”和“写入文件”之间轮换
+         */
+        private class Upload {
+
+            final TransferHeader request;
+            final long end;
+            final ArrayDeque<Chunk> free = new ArrayDeque<>(2);
+            /**
+             * 正在接收网络数据、已收满等待写入、正在写入文件的缓冲区，同一时刻各最多一个
+             */
+            Chunk reading;
+            Chunk ready;
+            Chunk writing;
+            /**
+             * 已收到的文件字节的末尾位置
+             */
+            long received;
+            boolean aborted;
+
+            final CompletionHandler<Integer, Chunk> readHandler = new CompletionHandler<Integer, Chunk>() {
+                @Override
+                public void completed(Integer len, Chunk chunk) {
+                    if (len == -1) {
+                        failed(new EOFException(), chunk);
+                        return;
+                    }
+                    boolean more;
+                    synchronized (Upload.this) {
+                        if (aborted) {
+                            release(chunk);
+                            return;
+                        }
+                        received += len;
+                        //文件还在写，这个缓冲区也没满，继续往里读
+                        more = writing != null && chunk.buffer.hasRemaining();
+                        if (!more) {
+                            chunk.buffer.flip();
+                            ready = chunk;
+                            reading = null;
+                        }
+                    }
+                    if (more) {
+                        read(chunk);
+                    } else {
+                        pump();
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Chunk chunk) {
+                    abort(chunk, e);
+                }
+            };
+
+            final CompletionHandler<Integer, Chunk> writeHandler = new CompletionHandler<Integer, Chunk>() {
+                @Override
+                public void completed(Integer len, Chunk chunk) {
+                    chunk.position += len;
+                    synchronized (Upload.this) {
+                        if (aborted) {
+                            release(chunk);
+                            return;
+                        }
+                        if (!chunk.buffer.hasRemaining()) {
+                            writing = null;
+                            free.add(chunk);
+                        }
+                    }
+                    if (chunk.buffer.hasRemaining()) {
+                        write(chunk);
+                    } else {
+                        pump();
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Chunk chunk) {
+                    abort(chunk, e);
+                }
+            };
+
+            Upload(TransferHeader request) {
+                this.request = request;
+                this.end = request.size();
+                this.received = request.offset();
+            }
+
+            void start() {
+                free.add(new Chunk());
+                free.add(new Chunk());
+                //和请求头一起读进来的那部分文件内容
+                header.flip();
+                int len = (int) Math.min(header.remaining(), end - received);
+                if (len > 0) {
+                    Chunk chunk = free.poll();
+                    chunk.position = received;
+                    chunk.buffer.put(chunk.buffer.position(), header, header.position(), len);
+                    chunk.buffer.limit(len);
+                    header.position(header.position() + len);
+                    received += len;
+                    ready = chunk;
+                }
+                header.compact();
+                pump();
+            }
+
+            /**
+             * 能写就发起文件写，有空闲缓冲区就发起网络读，全部写完就结束
+             */
+            void pump() {
+                Chunk toWrite = null;
+                Chunk toRead = null;
+                boolean done = false;
+                synchronized (this) {
+                    if (aborted) {
+                        return;
+                    }
+                    if (writing == null && ready != null) {
+                        writing = toWrite = ready;
+                        ready = null;
+                    }
+                    if (reading == null && received < end && !free.isEmpty()) {
+                        reading = toRead = free.poll();
+                        toRead.position = received;
+                        toRead.buffer.clear();
+                        toRead.buffer.limit((int) Math.min(toRead.buffer.capacity(), end - received));
+                    }
+                    if (received == end && reading == null && ready == null && writing == null) {
+                        //只会到达一次：之后不会再有任何进行中的操作
+                        done = true;
+                        aborted = true;
+                    }
+                }
+                //先释放锁再发起操作：完成回调可能就在当前线程里直接执行
+                if (toWrite != null) {
+                    write(toWrite);
+                }
+                if (toRead != null) {
+                    read(toRead);
+                }
+                if (done) {
+                    finish();
+                }
+            }
+
+            /**
+             * 和 {@link Session#issue(Runnable)} 一样，发起失败（例如通道组已经关闭）时不会有回调，在这里中止
+             */
+            void read(Chunk chunk) {
+                try {
+                    channel.read(chunk.buffer, chunk, readHandler);
+                } catch (RuntimeException e) {
+                    abort(chunk, e);
+                }
+            }
+
+            void write(Chunk chunk) {
+                try {
+                    file.write(chunk.buffer, chunk.position, chunk, writeHandler);
+                } catch (RuntimeException e) {
+                    abort(chunk, e);
+                }
+            }
+
+            void finish() {
+                while (!free.isEmpty()) {
+                    release(free.poll());
+                }
+                try {
+                    file.truncate(end);
+                } catch (IOException e) {
+                    close(e);
+                    return;
+                }
+                closeFile();
+                respond(TransferHeader.STATUS_OK, request.size(), Session.this::nextRequest);
+            }
+
+            /**
+             * 出错时关闭连接。进行中的另一个操作的缓冲区由它自己的回调归还
+             */
+            void abort(Chunk chunk, Throwable e) {
+                synchronized (this) {
+                    release(chunk);
+                    if (!aborted) {
+                        aborted = true;
+                        if (ready != null) {
+                            release(ready);
+                        }
+                        while (!free.isEmpty()) {
+                            release(free.poll());
+                        }
+                    }
+                }
+                close(e);
+            }
+
+            void release(Chunk chunk) {
+                BufferPool.DEFAULT.release(chunk.buffer);
+            }
+        }
+    }
+
+    /**
+     * 上传用的缓冲区及其内容在文件中的位置
+     */
+    private static class Chunk {
+        final ByteBuffer buffer = BufferPool.DEFAULT.acquire(BufferPool.MAX_SIZE);
+        long position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        if (group != null) {
+            //关闭通道组里的所有连接，进行中的操作以失败回调结束
+            group.shutdownNow();
+            try {
+                group.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (fileExecutor != null) {
+            fileExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package cn.clboy.nio.transfer;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.reactor.ChannelHandler;
+import cn.clboy.nio.reactor.Connection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.file.Path;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 下午9:10
+ * @Since 1.0.0
+ * <p>
+ * 选择器模式的文件传输处理器，与 {@link cn.clboy.nio.reactor.ReactorServer} 配合使用，协议与阻塞模式相同。
+ * 非阻塞通道上的 transferFrom/transferTo 只搬运当前就绪的字节，剩下的等下一次读/写就绪再继续。
+ * 不支持分段上传（OP_RANGE_STATUS/OP_RANGE_PUT），收到后按未知请求关闭连接
+ */
+public class FileTransferChannelHandler implements ChannelHandler {
+
+    private final FileTransferHandler files;
+
+    public FileTransferChannelHandler(Path root) {
+        this.files = new FileTransferHandler(root);
+    }
+
+    /**
+     * 连接状态
+     */
+    private static class State {
+        /**
+         * 累积请求头，读模式/写模式之间来回切换，空闲时处于写模式
+         */
+        final ByteBuffer buffer = BufferPool.DEFAULT.acquire(TransferHeader.MAX_LENGTH);
+        TransferHeader header;
+        FileChannel file;
+        long position;
+        long end;
+    }
+
+    @Override
+    public void onConnected(Connection connection) {
+        connection.attach(new State());
+    }
+
+    @Override
+    public void onRead(Connection connection) throws IOException {
+        State state = (State) connection.attachment();
+        if (state.file != null) {
+            receive(connection, state);
+            return;
+        }
+        if (connection.read(state.buffer) == -1) {
+            connection.close();
+            return;
+        }
+        decodeBuffered(connection, state);
+    }
+
+    /**
+     * 处理 state.buffer 中已经收到的请求，直到开始一次上传/下载或者缓冲的数据不够一个请求头。
+     * 上传/下载结束时也要调用：客户端可能已经把下一个请求发过来了，不会再有读事件触发处理
+     */
+    private void decodeBuffered(Connection connection, State state) throws IOException {
+        state.buffer.flip();
+        try {
+            TransferHeader header;
+            while (state.file == null && !connection.isClosed()
+                    && (header = TransferHeader.tryDecode(state.buffer)) != null) {
+                handle(connection, state, header);
+            }
+        } finally {
+            state.buffer.compact();
+        }
+    }
+
+    private void handle(Connection connection, State state, TransferHeader header) throws IOException {
+        switch (header.op()) {
+            case TransferHeader.OP_STAT:
+                respond(connection, TransferHeader.STATUS_OK, files.stat(header));
+                break;
+            case TransferHeader.OP_PUT:
+                startPut(connection, state, header);
+                break;
+            case TransferHeader.OP_GET:
+                startGet(connection, state, header);
+                break;
+            case TransferHeader.OP_HELLO:
+                //选择器模式不支持压缩，客户端会按原始字节传输
+                respond(connection, TransferHeader.STATUS_OK, 0);
+                break;
+            default:
+                //包括 OP_RANGE_STATUS/OP_RANGE_PUT
+                throw new IOException("unknown op: " + header.op());
+        }
+    }
+
+    private void startPut(Connection connection, State state, TransferHeader header) throws IOException {
+        FileChannel file = files.openForPut(header);
+        if (file == null) {
+            respond(connection, TransferHeader.STATUS_ERROR, -1);
+            connection.close();
+            return;
+        }
+        state.header = header;
+        state.file = file;
+        state.position = header.offset();
+        state.end = header.size();
+        //和请求头一起读进来的那部分文件内容先写入文件
+        writeBuffered(state);
+        completePutIfDone(connection, state);
+    }
+
+    /**
+     * 把 state.buffer（读模式）中属于文件内容的字节写入文件
+     */
+    private static void writeBuffered(State state) throws IOException {
+        ByteBuffer buffer = state.buffer;
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + (int) Math.min(buffer.remaining(), state.end - state.position));
+        while (buffer.hasRemaining()) {
+            state.position += state.file.write(buffer, state.position);
+        }
+        buffer.limit(limit);
+    }
+
+    private void receive(Connection connection, State state) throws IOException {
+        long len = state.file.transferFrom(connection.channel(), state.position, state.end - state.position);
+        if (len == 0) {
+            //transferFrom 无法区分“暂无数据”和“对端关闭”，用一次普通 read 确认
+            int read = connection.read(state.buffer);
+            if (read == -1) {
+                connection.close();
+                return;
+            }
+            state.buffer.flip();
+            writeBuffered(state);
+            state.buffer.compact();
+        }
+        state.position += len;
+        completePutIfDone(connection, state);
+        if (state.file == null) {
+            decodeBuffered(connection, state);
+        }
+    }
+
+    private void completePutIfDone(Connection connection, State state) throws IOException {
+        if (state.position < state.end) {
+            return;
+        }
+        state.file.truncate(state.end);
+        state.file.close();
+        state.file = null;
+        respond(connection, TransferHeader.STATUS_OK, state.header.size());
+    }
+
+    private void startGet(Connection connection, State state, TransferHeader header) throws IOException {
+        FileChannel file = files.openForGet(header);
+        if (file == null) {
+            respond(connection, TransferHeader.STATUS_ERROR, -1);
+            return;
+        }
+        long size = file.size();
+        state.header = header;
+        state.file = file;
+        state.position = Math.min(Math.max(header.offset(), 0), size);
+        state.end = size;
+        respond(connection, TransferHeader.STATUS_OK, size);
+        //发送期间不再读取新的请求
+        connection.autoRead(false);
+        connection.interestOps(SelectionKey.OP_WRITE, true);
+    }
+
+    @Override
+    public void onWritable(Connection connection) throws IOException {
+        State state = (State) connection.attachment();
+        //响应头还在出站队列中时先等它写完
+        if (state.file == null || connection.pendingBytes() > 0) {
+            return;
+        }
+        //发送缓冲区满时返回已传输的部分，文件被截断时抛出 EOFException
+        state.position += ZeroCopy.transferTo(state.file, state.position, state.end - state.position, connection.channel());
+        if (state.position < state.end) {
+            connection.interestOps(SelectionKey.OP_WRITE, true);
+            return;
+        }
+        state.file.close();
+        state.file = null;
+        connection.interestOps(SelectionKey.OP_WRITE, false);
+        connection.autoRead(true);
+        decodeBuffered(connection, state);
+    }
+
+    private static void respond(Connection connection, byte status, long value) throws IOException {
+        ByteBuffer response = BufferPool.DEFAULT.acquire(TransferHeader.RESPONSE_LENGTH);
+        response.put(status).putLong(value).flip();
+        connection.write(response, BufferPool.DEFAULT);
+    }
+
+    @Override
+    public void onClosed(Connection connection) {
+        State state = (State) connection.attachment();
+        if (state == null) {
+            return;
+        }
+        BufferPool.DEFAULT.release(state.buffer);
+        if (state.file != null) {
+            try {
+                state.file.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
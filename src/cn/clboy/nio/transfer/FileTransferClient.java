@@ -0,0 +1,120 @@
+package cn.clboy.nio.transfer;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.codec.ChunkedCompressor;
+import cn.clboy.nio.codec.ChunkedDecompressor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 上午11:00
+ * @Since 1.0.0
+ * <p>
+ * 文件传输客户端，一个实例对应一条阻塞连接，支持断点续传和协商压缩
+ */
+public class FileTransferClient implements Closeable {
+
+    private final SocketChannel socketChannel;
+    private final ByteBuffer buffer = BufferPool.DEFAULT.acquire(TransferHeader.MAX_LENGTH);
+    private ChunkedCompressor compressor;
+    private ChunkedDecompressor decompressor;
+
+    public FileTransferClient(InetSocketAddress address) throws IOException {
+        this.socketChannel = SocketChannel.open(address);
+    }
+
+    /**
+     * 握手协商压缩，之后本连接上的上传和下载都按分块压缩传输
+     *
+     * @param executor 上传时并行压缩的线程池，null 表示在当前线程顺序压缩
+     * @return 服务端不支持压缩时返回 false，之后照常传输原始字节
+     * @throws IOException 不认识 HELLO 的旧服务端会关闭连接
+     */
+    public boolean negotiateCompression(ExecutorService executor, int parallelism) throws IOException {
+        new TransferHeader(TransferHeader.OP_HELLO, "", TransferHeader.COMPRESSION_DEFLATE, 0).write(socketChannel, buffer);
+        long agreed = TransferHeader.readResponse(socketChannel, buffer);
+        if ((agreed & TransferHeader.COMPRESSION_DEFLATE) == 0 || compressor != null) {
+            return compressor != null;
+        }
+        compressor = executor == null
+                ? new ChunkedCompressor(Deflater.BEST_SPEED)
+                : new ChunkedCompressor(Deflater.BEST_SPEED, executor, parallelism);
+        decompressor = new ChunkedDecompressor();
+        return true;
+    }
+
+    /**
+     * 压缩统计，没有启用压缩时返回 null
+     */
+    public ChunkedCompressor compressor() {
+        return compressor;
+    }
+
+    /**
+     * 查询服务端文件的当前大小
+     */
+    public long stat(String name) throws IOException {
+        new TransferHeader(TransferHeader.OP_STAT, name, 0, 0).write(socketChannel, buffer);
+        return TransferHeader.readResponse(socketChannel, buffer);
+    }
+
+    /**
+     * 上传文件，服务端已有的部分不再发送
+     */
+    public void upload(Path local, String name) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(local, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            long offset = Math.min(stat(name), size);
+            new TransferHeader(TransferHeader.OP_PUT, name, size, offset).write(socketChannel, buffer);
+            if (compressor != null) {
+                fileChannel.position(offset);
+                compressor.compress(fileChannel, size - offset, socketChannel);
+            } else {
+                ZeroCopy.transferTo(fileChannel, offset, size - offset, socketChannel);
+            }
+            TransferHeader.readResponse(socketChannel, buffer);
+        }
+    }
+
+    /**
+     * 下载文件，本地已有的部分不再接收
+     */
+    public void download(String name, Path local) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(local, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            long offset = fileChannel.size();
+            new TransferHeader(TransferHeader.OP_GET, name, 0, offset).write(socketChannel, buffer);
+            long size = TransferHeader.readResponse(socketChannel, buffer);
+            offset = Math.min(offset, size);
+            if (decompressor != null) {
+                fileChannel.position(offset);
+                long received = decompressor.decompress(socketChannel, fileChannel);
+                if (received != size - offset) {
+                    throw new IOException("expected " + (size - offset) + " bytes, received " + received);
+                }
+            } else {
+                ZeroCopy.transferFrom(socketChannel, fileChannel, offset, size - offset);
+            }
+            fileChannel.truncate(size);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compressor != null) {
+            compressor.close();
+            decompressor.close();
+        }
+        BufferPool.DEFAULT.release(buffer);
+        socketChannel.close();
+    }
+}
@@ -0,0 +1,262 @@
+package cn.clboy.nio.transfer;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.codec.ChunkedCompressor;
+import cn.clboy.nio.codec.ChunkedDecompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 上午10:30
+ * @Since 1.0.0
+ * <p>
+ * 处理一个阻塞模式连接上的全部请求，文件内容通过 transferTo/transferFrom 在内核中搬运，不经过 Java 堆。
+ * 每个连接独占一个线程（线程池中的平台线程或虚拟线程），选择器模式见 {@link FileTransferChannelHandler}。
+ * 客户端通过 OP_HELLO 协商启用压缩后，文件内容改为分块压缩传输，此时不再是零拷贝
+ */
+public class FileTransferHandler {
+
+    private final Path root;
+    private final RangeUpload.Registry rangeUploads = new RangeUpload.Registry();
+
+    public FileTransferHandler(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public void handle(SocketChannel socketChannel) {
+        ByteBuffer buffer = BufferPool.DEFAULT.acquire(TransferHeader.MAX_LENGTH);
+        Codec codec = null;
+        try {
+            TransferHeader header;
+            while ((header = TransferHeader.read(socketChannel, buffer)) != null) {
+                switch (header.op()) {
+                    case TransferHeader.OP_HELLO:
+                        long agreed = header.size() & TransferHeader.COMPRESSION_DEFLATE;
+                        if (agreed != 0 && codec == null) {
+                            codec = new Codec();
+                        }
+                        TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_OK, agreed);
+                        break;
+                    case TransferHeader.OP_PUT:
+                        if (codec != null) {
+                            putCompressed(socketChannel, header, buffer, codec);
+                        } else {
+                            put(socketChannel, header, buffer);
+                        }
+                        break;
+                    case TransferHeader.OP_GET:
+                        if (codec != null) {
+                            getCompressed(socketChannel, header, buffer, codec);
+                        } else {
+                            get(socketChannel, header, buffer);
+                        }
+                        break;
+                    case TransferHeader.OP_STAT:
+                        stat(socketChannel, header, buffer);
+                        break;
+                    case TransferHeader.OP_RANGE_STATUS:
+                        rangeStatus(socketChannel, header, buffer);
+                        break;
+                    case TransferHeader.OP_RANGE_PUT:
+                        rangePut(socketChannel, header, buffer);
+                        break;
+                    default:
+                        throw new IOException("unknown op: " + header.op());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(socketChannel + "：" + e);
+        } finally {
+            BufferPool.DEFAULT.release(buffer);
+            if (codec != null) {
+                codec.close();
+            }
+            try {
+                socketChannel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 握手启用压缩之后，连接上的压缩器和解压器
+     */
+    private static class Codec {
+        final ChunkedCompressor compressor = new ChunkedCompressor(Deflater.BEST_SPEED);
+        final ChunkedDecompressor decompressor = new ChunkedDecompressor();
+
+        void close() {
+            compressor.close();
+            decompressor.close();
+        }
+    }
+
+    /**
+     * 接收分块压缩的文件内容，解压后从续传位置开始写入
+     */
+    private void putCompressed(SocketChannel socketChannel, TransferHeader header, ByteBuffer buffer, Codec codec) throws IOException {
+        FileChannel fileChannel = openForPut(header);
+        if (fileChannel == null) {
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_ERROR, -1);
+            throw new IOException("invalid put request: " + header);
+        }
+        try (fileChannel) {
+            fileChannel.position(header.offset());
+            long received = codec.decompressor.decompress(socketChannel, fileChannel);
+            if (received != header.size() - header.offset()) {
+                throw new IOException("expected " + (header.size() - header.offset()) + " bytes, received " + received);
+            }
+            fileChannel.truncate(header.size());
+        }
+        TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_OK, header.size());
+    }
+
+    private void getCompressed(SocketChannel socketChannel, TransferHeader header, ByteBuffer buffer, Codec codec) throws IOException {
+        FileChannel fileChannel = openForGet(header);
+        if (fileChannel == null) {
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_ERROR, -1);
+            return;
+        }
+        try (fileChannel) {
+            long size = fileChannel.size();
+            long offset = Math.min(Math.max(header.offset(), 0), size);
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_OK, size);
+            fileChannel.position(offset);
+            codec.compressor.compress(fileChannel, size - offset, socketChannel);
+        }
+    }
+
+    private void put(SocketChannel socketChannel, TransferHeader header, ByteBuffer buffer) throws IOException {
+        FileChannel fileChannel = openForPut(header);
+        if (fileChannel == null) {
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_ERROR, -1);
+            throw new IOException("invalid put request: " + header);
+        }
+        try (fileChannel) {
+            ZeroCopy.transferFrom(socketChannel, fileChannel, header.offset(), header.size() - header.offset());
+            fileChannel.truncate(header.size());
+        }
+        TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_OK, header.size());
+    }
+
+    private void rangeStatus(SocketChannel socketChannel, TransferHeader header, ByteBuffer buffer) throws IOException {
+        RangeUpload upload = rangeUploads.open(resolve(header.name()), header.size(), header.offset());
+        try {
+            byte[] bitmap = upload.bitmap();
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_OK,
+                    (header.size() + header.offset() - 1) / header.offset());
+            TransferHeader.writeFully(socketChannel, ByteBuffer.wrap(bitmap));
+        } finally {
+            rangeUploads.close(upload);
+        }
+    }
+
+    /**
+     * 接收一个区间，用定位写入直接写到文件中的对应位置，多个连接可以同时写同一个文件
+     */
+    private void rangePut(SocketChannel socketChannel, TransferHeader header, ByteBuffer buffer) throws IOException {
+        RangeUpload upload = rangeUploads.lookup(resolve(header.name()));
+        if (upload == null) {
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_ERROR, -1);
+            throw new IOException("range upload not prepared: " + header);
+        }
+        try {
+            int index = upload.rangeIndex(header.offset(), header.size());
+            if (index < 0) {
+                TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_ERROR, -1);
+                throw new IOException("invalid range: " + header);
+            }
+            ByteBuffer data = BufferPool.DEFAULT.acquire(BufferPool.MAX_SIZE);
+            try {
+                long position = header.offset();
+                long end = position + header.size();
+                while (position < end) {
+                    data.clear();
+                    if (end - position < data.capacity()) {
+                        data.limit((int) (end - position));
+                    }
+                    TransferHeader.readFully(socketChannel, data, false);
+                    data.flip();
+                    while (data.hasRemaining()) {
+                        position += upload.file().write(data, position);
+                    }
+                }
+            } finally {
+                BufferPool.DEFAULT.release(data);
+            }
+            boolean done = upload.complete(index);
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_OK, done ? 1 : 0);
+        } finally {
+            rangeUploads.close(upload);
+        }
+    }
+
+    /**
+     * 打开上传的目标文件，阻塞模式与选择器模式共用
+     *
+     * @return 续传位置不合法时返回 null
+     */
+    FileChannel openForPut(TransferHeader header) throws IOException {
+        Path path = resolve(header.name());
+        Files.createDirectories(path.getParent());
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        //续传位置之前必须已经有数据，否则 transferFrom 什么也不会写
+        if (header.offset() < 0 || header.offset() > fileChannel.size() || header.size() < header.offset()) {
+            fileChannel.close();
+            return null;
+        }
+        return fileChannel;
+    }
+
+    /**
+     * 打开下载的源文件，阻塞模式与选择器模式共用
+     *
+     * @return 文件不存在时返回 null
+     */
+    FileChannel openForGet(TransferHeader header) throws IOException {
+        Path path = resolve(header.name());
+        return Files.isRegularFile(path) ? FileChannel.open(path, StandardOpenOption.READ) : null;
+    }
+
+    long stat(TransferHeader header) throws IOException {
+        Path path = resolve(header.name());
+        return Files.isRegularFile(path) ? Files.size(path) : 0;
+    }
+
+    private void get(SocketChannel socketChannel, TransferHeader header, ByteBuffer buffer) throws IOException {
+        FileChannel fileChannel = openForGet(header);
+        if (fileChannel == null) {
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_ERROR, -1);
+            return;
+        }
+        try (fileChannel) {
+            long size = fileChannel.size();
+            long offset = Math.min(Math.max(header.offset(), 0), size);
+            TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_OK, size);
+            ZeroCopy.transferTo(fileChannel, offset, size - offset, socketChannel);
+        }
+    }
+
+    private void stat(SocketChannel socketChannel, TransferHeader header, ByteBuffer buffer) throws IOException {
+        TransferHeader.writeResponse(socketChannel, buffer, TransferHeader.STATUS_OK, stat(header));
+    }
+
+    /**
+     * 文件名只能落在根目录之内，防止 ../ 越权
+     */
+    Path resolve(String name) throws IOException {
+        Path path = root.resolve(name).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IOException("illegal file name: " + name);
+        }
+        return path;
+    }
+}
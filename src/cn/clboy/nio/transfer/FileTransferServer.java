@@ -0,0 +1,101 @@
+package cn.clboy.nio.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 上午10:45
+ * @Since 1.0.0
+ * <p>
+ * 文件上传/下载服务：accept 线程只负责接收连接，每个连接交给线程池中的一个线程（或一个虚拟线程），
+ * 由 {@link FileTransferHandler} 以阻塞方式零拷贝收发文件
+ */
+public class FileTransferServer implements Closeable {
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final int port;
+    private final FileTransferHandler handler;
+    private final ExecutorService executor;
+
+    private ServerSocketChannel serverSocketChannel;
+    private Thread acceptThread;
+
+    public FileTransferServer(int port, Path root, int threads) {
+        this(port, root, Executors.newFixedThreadPool(threads));
+    }
+
+    /**
+     * 每个连接一个虚拟线程：仍然是阻塞式的写法，但上万个连接也不会占用上万个平台线程
+     */
+    public static FileTransferServer withVirtualThreads(int port, Path root) {
+        return new FileTransferServer(port, root, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public FileTransferServer(int port, Path root, ExecutorService executor) {
+        this.port = port;
+        this.handler = new FileTransferHandler(root);
+        this.executor = executor;
+    }
+
+    public void start() throws IOException {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverSocketChannel.bind(new InetSocketAddress(port), 1024);
+        acceptThread = new Thread(this::acceptLoop, "transfer-accept");
+        acceptThread.start();
+    }
+
+    private void acceptLoop() {
+        while (serverSocketChannel.isOpen()) {
+            try {
+                SocketChannel socketChannel = serverSocketChannel.accept();
+                executor.execute(() -> handler.handle(socketChannel));
+            } catch (AsynchronousCloseException ignored) {
+                return;
+            } catch (IOException e) {
+                //例如文件描述符耗尽：accept 线程退出的话，排队中的客户端会一直等下去，稍等之后继续接收
+                e.printStackTrace();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止接收新连接，等待正在处理的连接结束；超过 {@link #CLOSE_TIMEOUT_SECONDS} 秒仍未结束的中断掉，
+     * 阻塞在通道读写上的线程被中断时通道会随之关闭
+     */
+    @Override
+    public void close() throws IOException {
+        if (serverSocketChannel != null) {
+            serverSocketChannel.close();
+        }
+        try {
+            if (acceptThread != null) {
+                acceptThread.join();
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+                executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package cn.clboy.nio.transfer;
+
+import cn.clboy.nio.buffer.BufferPool;
+import cn.clboy.nio.codec.ChunkedCompressorTest;
+import cn.clboy.nio.reactor.ReactorServer;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 上午11:15
+ * @Since 1.0.0
+ * <p>
+ * 零拷贝文件传输：发送端 transferTo(socket)，接收端 transferFrom(socket)，文件内容不经过 Java 堆
+ */
+public class FileTransferTest {
+
+    /**
+     * 服务端，文件保存在 resources/server 下，可同时服务多个客户端
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServer() throws Exception {
+        try (FileTransferServer server = new FileTransferServer(7001, Paths.get("resources", "server"), 16)) {
+            server.start();
+            new CountDownLatch(1).await();
+        }
+    }
+
+    /**
+     * 虚拟线程模式（7001）、选择器模式（7002）与异步通道模式（7003）同时运行
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerModes() throws Exception {
+        Path root = Paths.get("resources", "server");
+        try (FileTransferServer virtualThreadServer = FileTransferServer.withVirtualThreads(7001, root);
+             ReactorServer selectorServer = new ReactorServer(7002, Runtime.getRuntime().availableProcessors(),
+                     new FileTransferChannelHandler(root));
+             AsyncFileTransferServer asyncServer = new AsyncFileTransferServer(7003, root)) {
+            virtualThreadServer.start();
+            selectorServer.start();
+            asyncServer.start();
+            new CountDownLatch(1).await();
+        }
+    }
+
+    /**
+     * 对比四种服务端模式在大量并发连接下的吞吐量和尾延迟：
+     * 平台线程池、每连接一个虚拟线程、选择器、NIO.2 异步通道
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCompareModes() throws Exception {
+        int connections = 10000;
+        Path root = Files.createTempDirectory("transfer");
+        Path payload = Files.createTempFile("payload", ".bin");
+        Files.write(payload, new byte[16 * 1024]);
+
+        try {
+            try (FileTransferServer server = new FileTransferServer(7005, root, 200)) {
+                server.start();
+                runClients("平台线程池", 7005, connections, payload);
+            }
+            try (FileTransferServer server = FileTransferServer.withVirtualThreads(7006, root)) {
+                server.start();
+                runClients("虚拟线程", 7006, connections, payload);
+            }
+            try (ReactorServer server = new ReactorServer(7007, Runtime.getRuntime().availableProcessors(),
+                    new FileTransferChannelHandler(root))) {
+                server.start();
+                runClients("选择器", 7007, connections, payload);
+            }
+            try (AsyncFileTransferServer server = new AsyncFileTransferServer(7009, root)) {
+                server.start();
+                runClients("异步通道", 7009, connections, payload);
+            }
+        } finally {
+            //每种模式都上传了 connections 个文件
+            delete(root);
+            Files.delete(payload);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * 每个客户端一个虚拟线程，所有连接先建立好再同时开始上传
+     */
+    private void runClients(String mode, int port, int connections, Path payload) throws Exception {
+        long[] latencies = new long[connections];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch connected = new CountDownLatch(connections);
+        CountDownLatch start = new CountDownLatch(1);
+        long begin;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                int index = i;
+                clients.execute(() -> {
+                    FileTransferClient client = null;
+                    try {
+                        client = new FileTransferClient(new InetSocketAddress("127.0.0.1", port));
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        latencies[index] = Long.MAX_VALUE;
+                        return;
+                    } finally {
+                        connected.countDown();
+                    }
+                    try (FileTransferClient c = client) {
+                        start.await();
+                        long t = System.nanoTime();
+                        c.upload(payload, Math.abs(mode.hashCode()) + "/" + index);
+                        latencies[index] = System.nanoTime() - t;
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        latencies[index] = Long.MAX_VALUE;
+                    }
+                });
+            }
+            connected.await();
+            begin = System.nanoTime();
+            start.countDown();
+        }
+        long elapsed = System.nanoTime() - begin;
+        Arrays.sort(latencies);
+        int ok = connections - failures.get();
+        System.out.println(mode + "：" + ok + " 次上传耗时 " + elapsed / 1000000 + "ms，"
+                + "p50=" + latencies[ok / 2] / 1000 + "us，"
+                + "p99=" + latencies[Math.max(0, (int) (ok * 0.99) - 1)] / 1000 + "us，"
+                + "失败 " + failures.get());
+    }
+
+    /**
+     * 上传
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUpload() throws Exception {
+        try (FileTransferClient client = new FileTransferClient(new InetSocketAddress("127.0.0.1", 7001))) {
+            client.upload(Paths.get("resources", "1.jpg"), "1.jpg");
+        }
+    }
+
+    /**
+     * 下载
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload() throws Exception {
+        try (FileTransferClient client = new FileTransferClient(new InetSocketAddress("127.0.0.1", 7001))) {
+            client.download("1.jpg", Paths.get("resources", "1_download.jpg"));
+        }
+    }
+
+    /**
+     * 多连接分段上传：第一次上传中途被打断，第二次只发送缺失的区间
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRangeUpload() throws Exception {
+        Path root = Files.createTempDirectory("transfer");
+        Path local = Files.createTempFile("range", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) (i * 31);
+        }
+        for (int i = 0; i < 64; i++) {
+            Files.write(local, block, StandardOpenOption.APPEND);
+        }
+
+        try (FileTransferServer server = new FileTransferServer(7008, root, 16)) {
+            server.start();
+            RangeUploadClient client = new RangeUploadClient(new InetSocketAddress("127.0.0.1", 7008), 4, 4 * 1024 * 1024);
+
+            Thread first = new Thread(() -> {
+                try {
+                    client.upload(local, "range.bin");
+                } catch (Exception e) {
+                    System.out.println("第一次上传被打断：" + e);
+                }
+            });
+            first.start();
+            Thread.sleep(50);
+            first.interrupt();
+            first.join();
+
+            System.out.println("第二次上传发送的区间数：" + client.upload(local, "range.bin"));
+        }
+        System.out.println(Files.mismatch(local, root.resolve("range.bin")) == -1);
+    }
+
+    /**
+     * 在同一进程内启动服务端，上传后再下载，并比较内容
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path root = Files.createTempDirectory("transfer");
+        Path downloaded = Files.createTempFile("download", ".jpg");
+        Files.delete(downloaded);
+        try (FileTransferServer server = new FileTransferServer(7004, root, 4)) {
+            server.start();
+            try (FileTransferClient client = new FileTransferClient(new InetSocketAddress("127.0.0.1", 7004))) {
+                client.upload(Paths.get("resources", "1.jpg"), "upload/1.jpg");
+                client.download("upload/1.jpg", downloaded);
+            }
+        }
+        System.out.println(Files.mismatch(Paths.get("resources", "1.jpg"), downloaded) == -1);
+    }
+
+    /**
+     * 协商压缩：可压缩的日志文本并行压缩上传后再下载；1.jpg 压不动，自动按原样发送；
+     * 选择器模式的服务端不支持压缩，握手后仍按原始字节传输
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCompression() throws Exception {
+        Path root = Files.createTempDirectory("transfer");
+        Path log = Files.createTempFile("access", ".log");
+        Path downloaded = Files.createTempFile("download", ".log");
+        Files.write(log, ChunkedCompressorTest.logLines(64 * 1024 * 1024));
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try (FileTransferServer server = new FileTransferServer(7011, root, 4);
+             ReactorServer selectorServer = new ReactorServer(7012, 1, new FileTransferChannelHandler(root))) {
+            server.start();
+            selectorServer.start();
+            try (FileTransferClient client = new FileTransferClient(new InetSocketAddress("127.0.0.1", 7011))) {
+                System.out.println("协商压缩：" + client.negotiateCompression(executor, 8));
+                long start = System.nanoTime();
+                client.upload(log, "access.log");
+                System.out.println("上传日志耗时 " + (System.nanoTime() - start) / 1000000 + "ms，" + client.compressor());
+                client.upload(Paths.get("resources", "1.jpg"), "1.jpg");
+                System.out.println("上传 1.jpg 后：" + client.compressor());
+                Files.delete(downloaded);
+                client.download("access.log", downloaded);
+            }
+            try (FileTransferClient client = new FileTransferClient(new InetSocketAddress("127.0.0.1", 7012))) {
+                System.out.println("选择器模式协商压缩：" + client.negotiateCompression(executor, 8));
+                client.upload(Paths.get("resources", "1.jpg"), "selector/1.jpg");
+            }
+        } finally {
+            executor.shutdown();
+        }
+        System.out.println(Files.mismatch(log, root.resolve("access.log")) == -1);
+        System.out.println(Files.mismatch(log, downloaded) == -1);
+        System.out.println(Files.mismatch(Paths.get("resources", "1.jpg"), root.resolve("1.jpg")) == -1);
+        System.out.println(Files.mismatch(Paths.get("resources", "1.jpg"), root.resolve("selector/1.jpg")) == -1);
+    }
+
+    /**
+     * 异步通道模式：上传一个 64MB 的文件后断点续传下载，并比较内容
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAsyncRoundTrip() throws Exception {
+        Path root = Files.createTempDirectory("transfer");
+        Path local = Files.createTempFile("async", ".bin");
+        Path downloaded = Files.createTempFile("download", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        for (int i = 0; i < 64; i++) {
+            ThreadLocalRandom.current().nextBytes(block);
+            Files.write(local, block, StandardOpenOption.APPEND);
+        }
+        //本地已有前 1MB，下载时只接收剩下的部分
+        Files.write(downloaded, Arrays.copyOf(Files.readAllBytes(local), 1024 * 1024));
+
+        try (AsyncFileTransferServer server = new AsyncFileTransferServer(7010, root)) {
+            server.start();
+            try (FileTransferClient client = new FileTransferClient(new InetSocketAddress("127.0.0.1", 7010))) {
+                long start = System.nanoTime();
+                client.upload(local, "async/64m.bin");
+                System.out.println("上传耗时 " + (System.nanoTime() - start) / 1000000 + "ms");
+                start = System.nanoTime();
+                client.download("async/64m.bin", downloaded);
+                System.out.println("下载耗时 " + (System.nanoTime() - start) / 1000000 + "ms");
+                System.out.println("再次上传只查询不发送：" + client.stat("async/64m.bin"));
+                client.upload(local, "async/64m.bin");
+            }
+        }
+        System.out.println(Files.mismatch(local, root.resolve("async/64m.bin")) == -1);
+        System.out.println(Files.mismatch(local, downloaded) == -1);
+    }
+    /**
+     * 异步模式下客户端中途断开：下载写到一半、请求头读到一半时断开连接，
+     * 服务端关闭后缓冲区池的占用应当回到开始时的值
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAsyncAbort() throws Exception {
+        Path root = Files.createTempDirectory("transfer");
+        byte[] block = new byte[1024 * 1024];
+        for (int i = 0; i < 16; i++) {
+            Files.write(root.resolve("16m.bin"), block, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        long inUse = BufferPool.DEFAULT.inUse();
+        try (AsyncFileTransferServer server = new AsyncFileTransferServer(7017, root)) {
+            server.start();
+            ByteBuffer buffer = ByteBuffer.allocate(TransferHeader.MAX_LENGTH);
+            for (int i = 0; i < 100; i++) {
+                try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7017))) {
+                    if (i % 2 == 0) {
+                        new TransferHeader(TransferHeader.OP_GET, "16m.bin", 0, 0).write(channel, buffer);
+                        channel.read(ByteBuffer.allocate(4096));
+                    } else {
+                        //只发请求头的第一个字节，服务端挂着一个读
+                        channel.write(ByteBuffer.wrap(new byte[]{TransferHeader.OP_GET}));
+                    }
+                }
+            }
+            Thread.sleep(500);
+        }
+        System.out.println("缓冲区池占用：开始 " + inUse + "，结束 " + BufferPool.DEFAULT.inUse());
+        Files.delete(root.resolve("16m.bin"));
+        Files.delete(root);
+    }
+
+    /**
+     * 选择器模式下客户端连续发出请求不等响应：GET 请求头后面紧跟 STAT 请求头，两个请求在一次读中收到。
+     * 下载结束后服务端要接着处理已经缓冲的 STAT，否则不会再有读事件，连接一直挂着
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPipelined() throws Exception {
+        Path root = Files.createTempDirectory("transfer");
+        byte[] block = new byte[1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(block);
+        Files.write(root.resolve("1m.bin"), block);
+        try (ReactorServer server = new ReactorServer(7025, 1, new FileTransferChannelHandler(root))) {
+            server.start();
+            try (Socket socket = new Socket("127.0.0.1", 7025)) {
+                socket.setSoTimeout(5000);
+                ByteBuffer requests = ByteBuffer.allocate(TransferHeader.MAX_LENGTH * 2);
+                new TransferHeader(TransferHeader.OP_GET, "1m.bin", 0, 0).encode(requests);
+                new TransferHeader(TransferHeader.OP_STAT, "1m.bin", 0, 0).encode(requests);
+                socket.getOutputStream().write(requests.array(), 0, requests.position());
+
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                in.readByte();
+                byte[] content = new byte[(int) in.readLong()];
+                in.readFully(content);
+                System.out.println("下载 " + content.length + " 字节，内容" + (Arrays.equals(block, content) ? "一致" : "不一致"));
+                try {
+                    in.readByte();
+                    System.out.println("紧跟的 STAT：" + in.readLong());
+                } catch (SocketTimeoutException e) {
+                    System.out.println("紧跟的 STAT 没有响应");
+                }
+            }
+        }
+        Files.delete(root.resolve("1m.bin"));
+        Files.delete(root);
+    }
+}
@@ -0,0 +1,208 @@
+package cn.clboy.nio.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/19 上午10:05
+ * @Since 1.0.0
+ * <p>
+ * 服务端一次多连接分段上传的状态。
+ * 目标文件预先扩展到完整大小，各个连接用 FileChannel.write(buffer, position) 直接写到自己区间的偏移处，互不干扰；
+ * 已完成的区间记录在旁路文件 name.ranges 中：
+ * <pre>
+ * | size (8) | rangeSize (8) | bitmap |
+ * </pre>
+ * 传输中断后重新上传时，客户端只需要发送位图中缺失的区间
+ */
+class RangeUpload {
+
+    static final String SUFFIX = ".ranges";
+    private static final int BITMAP_OFFSET = 16;
+
+    private final Path path;
+    private final Path bitmapPath;
+    private final long size;
+    private final long rangeSize;
+    private final int rangeCount;
+    private final BitSet completed;
+    private final FileChannel file;
+    private final FileChannel bitmapFile;
+    private int references;
+
+    private RangeUpload(Path path, long size, long rangeSize) throws IOException {
+        this.path = path;
+        this.bitmapPath = path.resolveSibling(path.getFileName() + SUFFIX);
+        this.size = size;
+        this.rangeSize = rangeSize;
+        this.rangeCount = (int) ((size + rangeSize - 1) / rangeSize);
+        this.completed = new BitSet(rangeCount);
+
+        Files.createDirectories(path.getParent());
+        this.file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        this.bitmapFile = FileChannel.open(bitmapPath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        if (!loadBitmap()) {
+            completed.clear();
+            ByteBuffer head = ByteBuffer.allocate(BITMAP_OFFSET + (rangeCount + 7) / 8);
+            head.putLong(size).putLong(rangeSize).clear();
+            bitmapFile.truncate(0);
+            TransferHeader.writeFully(bitmapFile, head);
+            bitmapFile.force(false);
+        }
+        preallocate();
+    }
+
+    /**
+     * 旁路文件存在且文件大小、区间大小都一致时才可以续传
+     */
+    private boolean loadBitmap() throws IOException {
+        int bitmapLength = (rangeCount + 7) / 8;
+        if (bitmapFile.size() != BITMAP_OFFSET + bitmapLength || file.size() != size) {
+            return false;
+        }
+        ByteBuffer head = ByteBuffer.allocate(BITMAP_OFFSET + bitmapLength);
+        while (head.hasRemaining() && bitmapFile.read(head, head.position()) > 0) {
+        }
+        head.flip();
+        if (head.getLong() != size || head.getLong() != rangeSize) {
+            return false;
+        }
+        completed.or(BitSet.valueOf(head));
+        return true;
+    }
+
+    /**
+     * 预先把文件扩展到完整大小，之后的定位写入不会再改变文件长度
+     */
+    private void preallocate() throws IOException {
+        if (file.size() > size) {
+            file.truncate(size);
+        } else if (file.size() < size) {
+            file.write(ByteBuffer.allocate(1), size - 1);
+        }
+    }
+
+    FileChannel file() {
+        return file;
+    }
+
+    long rangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * 返回区间编号，偏移和长度与初始化时的划分不一致时返回 -1
+     */
+    int rangeIndex(long offset, long length) {
+        if (offset < 0 || offset % rangeSize != 0 || offset >= size) {
+            return -1;
+        }
+        int index = (int) (offset / rangeSize);
+        return length == Math.min(rangeSize, size - offset) ? index : -1;
+    }
+
+    synchronized byte[] bitmap() {
+        byte[] bytes = new byte[(rangeCount + 7) / 8];
+        byte[] set = completed.toByteArray();
+        System.arraycopy(set, 0, bytes, 0, set.length);
+        return bytes;
+    }
+
+    /**
+     * 区间数据落盘之后才在位图中标记完成，保证崩溃后不会跳过没写完的区间
+     *
+     * @return 是否全部区间都已完成
+     */
+    synchronized boolean complete(int index) throws IOException {
+        file.force(false);
+        completed.set(index);
+        int byteIndex = index >>> 3;
+        byte b = 0;
+        for (int i = byteIndex << 3; i < Math.min((byteIndex + 1) << 3, rangeCount); i++) {
+            if (completed.get(i)) {
+                b = (byte) (b | 1 << (i & 7));
+            }
+        }
+        bitmapFile.write(ByteBuffer.wrap(new byte[]{b}), BITMAP_OFFSET + byteIndex);
+        bitmapFile.force(false);
+        return completed.cardinality() == rangeCount;
+    }
+
+    synchronized boolean isComplete() {
+        return completed.cardinality() == rangeCount;
+    }
+
+    /**
+     * 同一个文件的多个连接共享一个实例
+     */
+    static class Registry {
+
+        private final Map<Path, RangeUpload> uploads = new HashMap<>();
+
+        synchronized RangeUpload open(Path path, long size, long rangeSize) throws IOException {
+            RangeUpload upload = uploads.get(path);
+            if (upload != null && (upload.size != size || upload.rangeSize != rangeSize)) {
+                throw new IOException("upload of " + path + " already in progress with different ranges");
+            }
+            if (upload == null) {
+                if (size <= 0 || rangeSize <= 0 || (size + rangeSize - 1) / rangeSize > Integer.MAX_VALUE) {
+                    throw new IOException("invalid range upload: size " + size + ", rangeSize " + rangeSize);
+                }
+                upload = new RangeUpload(path, size, rangeSize);
+                uploads.put(path, upload);
+            }
+            upload.references++;
+            return upload;
+        }
+
+        /**
+         * 根据旁路文件中记录的划分打开一个已经准备好的分段上传
+         *
+         * @return 没有准备过（或已经完成）时返回 null
+         */
+        synchronized RangeUpload lookup(Path path) throws IOException {
+            RangeUpload upload = uploads.get(path);
+            if (upload != null) {
+                upload.references++;
+                return upload;
+            }
+            Path bitmapPath = path.resolveSibling(path.getFileName() + SUFFIX);
+            if (!Files.isRegularFile(bitmapPath)) {
+                return null;
+            }
+            ByteBuffer head = ByteBuffer.allocate(BITMAP_OFFSET);
+            try (FileChannel channel = FileChannel.open(bitmapPath, StandardOpenOption.READ)) {
+                while (head.hasRemaining() && channel.read(head) > 0) {
+                }
+            }
+            if (head.hasRemaining()) {
+                return null;
+            }
+            head.flip();
+            return open(path, head.getLong(), head.getLong());
+        }
+
+        /**
+         * 连接结束时调用，最后一个连接结束后关闭文件；全部完成时删除旁路文件
+         */
+        synchronized void close(RangeUpload upload) throws IOException {
+            if (--upload.references > 0) {
+                return;
+            }
+            uploads.remove(upload.path);
+            upload.file.close();
+            upload.bitmapFile.close();
+            if (upload.isComplete()) {
+                Files.deleteIfExists(upload.bitmapPath);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cn.clboy.nio.transfer;
+
+import cn.clboy.nio.buffer.BufferPool;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/19 上午10:40
+ * @Since 1.0.0
+ * <p>
+ * 多连接分段上传：把文件划分为固定大小的区间，N 条连接各自领取区间并用 transferTo 发送。
+ * 上传前先向服务端查询已完成区间的位图，中断后再次上传只发送缺失的区间
+ */
+public class RangeUploadClient {
+
+    private final InetSocketAddress address;
+    private final int streams;
+    private final long rangeSize;
+
+    public RangeUploadClient(InetSocketAddress address, int streams, long rangeSize) {
+        this.address = address;
+        this.streams = streams;
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * @return 本次实际发送的区间数量
+     */
+    public int upload(Path local, String name) throws IOException, InterruptedException {
+        try (FileChannel fileChannel = FileChannel.open(local, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            BitSet completed = status(name, size);
+            int rangeCount = (int) ((size + rangeSize - 1) / rangeSize);
+            //取反得到未完成的区间
+            completed.flip(0, rangeCount);
+            int[] missing = completed.stream().toArray();
+            if (missing.length == 0) {
+                return 0;
+            }
+
+            AtomicInteger next = new AtomicInteger();
+            AtomicLong sent = new AtomicLong();
+            int threads = Math.min(streams, missing.length);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                Future<?>[] futures = new Future<?>[threads];
+                for (int i = 0; i < futures.length; i++) {
+                    futures[i] = executor.submit(() -> {
+                        sendRanges(fileChannel, name, size, missing, next, sent);
+                        return null;
+                    });
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            return (int) sent.get();
+        }
+    }
+
+    private BitSet status(String name, long size) throws IOException {
+        ByteBuffer buffer = BufferPool.DEFAULT.acquire(TransferHeader.MAX_LENGTH);
+        try (SocketChannel socketChannel = SocketChannel.open(address)) {
+            new TransferHeader(TransferHeader.OP_RANGE_STATUS, name, size, rangeSize).write(socketChannel, buffer);
+            long rangeCount = TransferHeader.readResponse(socketChannel, buffer);
+            ByteBuffer bitmap = ByteBuffer.allocate((int) ((rangeCount + 7) / 8));
+            TransferHeader.readFully(socketChannel, bitmap, false);
+            bitmap.flip();
+            return BitSet.valueOf(bitmap);
+        } finally {
+            BufferPool.DEFAULT.release(buffer);
+        }
+    }
+
+    /**
+     * 一条连接依次领取区间并发送，FileChannel.transferTo(position, ...) 是定位读取，多个线程可以共享同一个文件通道
+     */
+    private void sendRanges(FileChannel fileChannel, String name, long size, int[] missing,
+                            AtomicInteger next, AtomicLong sent) throws IOException {
+        ByteBuffer buffer = BufferPool.DEFAULT.acquire(TransferHeader.MAX_LENGTH);
+        try (SocketChannel socketChannel = SocketChannel.open(address)) {
+            int i;
+            while ((i = next.getAndIncrement()) < missing.length) {
+                long offset = missing[i] * rangeSize;
+                long length = Math.min(rangeSize, size - offset);
+                new TransferHeader(TransferHeader.OP_RANGE_PUT, name, length, offset).write(socketChannel, buffer);
+                ZeroCopy.transferTo(fileChannel, offset, length, socketChannel);
+                TransferHeader.readResponse(socketChannel, buffer);
+                sent.incrementAndGet();
+            }
+        } finally {
+            BufferPool.DEFAULT.release(buffer);
+        }
+    }
+}
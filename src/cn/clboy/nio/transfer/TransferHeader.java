@@ -0,0 +1,204 @@
+package cn.clboy.nio.transfer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 上午10:05
+ * @Since 1.0.0
+ * <p>
+ * 文件传输协议的请求头：
+ * <pre>
+ * | op (1) | nameLength (2) | name (UTF-8) | size (8) | offset (8) |
+ * </pre>
+ * 响应：| status (1) | value (8) |
+ */
+public class TransferHeader {
+
+    /**
+     * 上传：请求头之后紧跟 size - offset 个字节
+     */
+    public static final byte OP_PUT = 1;
+    /**
+     * 下载：响应之后紧跟 value - offset 个字节（value 为文件大小）
+     */
+    public static final byte OP_GET = 2;
+    /**
+     * 查询服务端文件当前大小，用于断点续传
+     */
+    public static final byte OP_STAT = 3;
+
+    /**
+     * 分段上传的准备：size 为文件大小，offset 为区间大小。
+     * 响应的 value 为区间数量，之后紧跟 (value + 7) / 8 个字节的已完成区间位图。
+     * 分段上传（OP_RANGE_*）只有阻塞模式的 {@link FileTransferServer} 支持，
+     * 选择器模式（{@link FileTransferChannelHandler}）和异步模式（{@link AsyncFileTransferServer}）按未知请求关闭连接
+     */
+    public static final byte OP_RANGE_STATUS = 4;
+    /**
+     * 上传一个区间：offset 为区间在文件中的偏移，size 为区间长度，请求头之后紧跟 size 个字节。
+     * 响应的 value 为 1 表示整个文件已经完整
+     */
+    public static final byte OP_RANGE_PUT = 5;
+    /**
+     * 握手：size 为客户端支持的压缩方式（COMPRESSION_* 按位或），响应的 value 为双方都支持、本连接之后启用的压缩方式。
+     * 启用后 OP_PUT/OP_GET 的文件内容按 {@link cn.clboy.nio.codec.ChunkedCompressor} 的分块格式传输，
+     * 认识该请求但不支持压缩的服务端（例如 {@link AsyncFileTransferServer}）响应 0，客户端照常发送原始字节；
+     * 不认识该请求的旧服务端按未知请求关闭连接，客户端需要重新连接且不再发送 HELLO
+     */
+    public static final byte OP_HELLO = 6;
+
+    public static final long COMPRESSION_DEFLATE = 1;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+
+    public static final int MAX_NAME_LENGTH = 1024;
+    public static final int MAX_LENGTH = 1 + 2 + MAX_NAME_LENGTH + 8 + 8;
+    public static final int RESPONSE_LENGTH = 1 + 8;
+
+    private final byte op;
+    private final String name;
+    private final long size;
+    private final long offset;
+
+    public TransferHeader(byte op, String name, long size, long offset) {
+        this.op = op;
+        this.name = name;
+        this.size = size;
+        this.offset = offset;
+    }
+
+    public byte op() {
+        return op;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * @param buffer 写模式，至少有 {@link #MAX_LENGTH} 个字节空间
+     */
+    public void encode(ByteBuffer buffer) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("name too long: " + name);
+        }
+        buffer.put(op);
+        buffer.putShort((short) nameBytes.length);
+        buffer.put(nameBytes);
+        buffer.putLong(size);
+        buffer.putLong(offset);
+    }
+
+    public void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        encode(buffer);
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    /**
+     * 从阻塞通道读取一个请求头
+     *
+     * @return 对端在请求之间正常关闭时返回 null
+     */
+    public static TransferHeader read(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(3);
+        if (!readFully(channel, buffer, true)) {
+            return null;
+        }
+        byte op = buffer.get(0);
+        int nameLength = buffer.getShort(1) & 0xFFFF;
+        if (nameLength > MAX_NAME_LENGTH) {
+            throw new IOException("name too long: " + nameLength);
+        }
+        buffer.clear().limit(nameLength + 16);
+        readFully(channel, buffer, false);
+        buffer.flip();
+        byte[] nameBytes = new byte[nameLength];
+        buffer.get(nameBytes);
+        return new TransferHeader(op, new String(nameBytes, StandardCharsets.UTF_8), buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * 非阻塞模式下从累积的字节中解码请求头
+     *
+     * @param buffer 读模式，解码成功时 position 移动到请求头之后，否则保持不变
+     * @return 字节还不够一个完整的请求头时返回 null
+     */
+    public static TransferHeader tryDecode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 3) {
+            return null;
+        }
+        int nameLength = buffer.getShort(buffer.position() + 1) & 0xFFFF;
+        if (nameLength > MAX_NAME_LENGTH) {
+            throw new IOException("name too long: " + nameLength);
+        }
+        if (buffer.remaining() < 3 + nameLength + 16) {
+            return null;
+        }
+        byte op = buffer.get();
+        buffer.getShort();
+        byte[] nameBytes = new byte[nameLength];
+        buffer.get(nameBytes);
+        return new TransferHeader(op, new String(nameBytes, StandardCharsets.UTF_8), buffer.getLong(), buffer.getLong());
+    }
+
+    public static void writeResponse(WritableByteChannel channel, ByteBuffer buffer, byte status, long value) throws IOException {
+        buffer.clear();
+        buffer.put(status).putLong(value).flip();
+        writeFully(channel, buffer);
+    }
+
+    /**
+     * 读取响应，状态不是 OK 时抛出异常
+     *
+     * @return 响应中的 value
+     */
+    public static long readResponse(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(RESPONSE_LENGTH);
+        readFully(channel, buffer, false);
+        if (buffer.get(0) != STATUS_OK) {
+            throw new IOException("server returned error, code " + buffer.getLong(1));
+        }
+        return buffer.getLong(1);
+    }
+
+    static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer, boolean eofAllowed) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                if (eofAllowed && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException();
+            }
+        }
+        return true;
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TransferHeader{op=" + op + ", name='" + name + "', size=" + size + ", offset=" + offset + '}';
+    }
+}
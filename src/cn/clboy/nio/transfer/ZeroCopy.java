@@ -0,0 +1,62 @@
+package cn.clboy.nio.transfer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/18 上午10:20
+ * @Since 1.0.0
+ * <p>
+ * transferTo()/transferFrom() 一次调用不保证传完（Linux 上单次最多约 2GB，非阻塞通道还可能只传一部分），
+ * 所以都需要按 long 型的位置循环
+ */
+public final class ZeroCopy {
+
+    private ZeroCopy() {
+    }
+
+    /**
+     * 把文件 [position, position + count) 发送到通道。
+     * 阻塞通道会一直传完；非阻塞通道在发送缓冲区满（transferTo 返回 0）时立即返回，
+     * 由调用方等到 OP_WRITE 后从 position + 返回值 处继续，不在这里空转
+     *
+     * @return 实际传输的字节数
+     */
+    public static long transferTo(FileChannel file, long position, long count, WritableByteChannel target) throws IOException {
+        long start = position;
+        long end = position + count;
+        while (position < end) {
+            long n = file.transferTo(position, end - position, target);
+            if (n <= 0) {
+                if (position >= file.size()) {
+                    throw new EOFException("file truncated at " + position);
+                }
+                if (target instanceof SelectableChannel selectable && !selectable.isBlocking()) {
+                    break;
+                }
+            }
+            position += n;
+        }
+        return position - start;
+    }
+
+    /**
+     * 从阻塞通道接收 count 个字节写到文件的 position 处，position 不能大于文件当前大小
+     */
+    public static void transferFrom(ReadableByteChannel source, FileChannel file, long position, long count) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long n = file.transferFrom(source, position, end - position);
+            if (n <= 0) {
+                //阻塞通道只有在对端关闭时才会传输 0 个字节
+                throw new EOFException("connection closed, " + (end - position) + " bytes missing");
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package cn.clboy.nio.udp;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/19 下午2:05
+ * @Since 1.0.0
+ * <p>
+ * 数据报处理器，在分片自己的线程中回调
+ */
+public interface DatagramHandler {
+
+    /**
+     * @param datagram 读模式，只在回调期间有效，之后会被下一个数据报覆盖
+     */
+    void onDatagram(int shard, SocketAddress sender, ByteBuffer datagram);
+}
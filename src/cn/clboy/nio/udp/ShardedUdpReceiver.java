@@ -0,0 +1,253 @@
+package cn.clboy.nio.udp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/19 下午2:10
+ * @Since 1.0.0
+ * <p>
+ * 高速 UDP 接收：
+ * 1. 多个 DatagramChannel 通过 SO_REUSEPORT 绑定同一个端口，内核按四元组哈希把数据报分给不同的 socket，
+ * 每个 socket 一个分片，各自拥有选择器和线程
+ * 2. 每次“读就绪”把内核缓冲区里的数据报尽量取完，而不是一次只读一个，收到的数据报放进复用的直接缓冲区环中，
+ * 攒够一批（或取空）再统一交给处理器
+ * 3. 每个分片统计数据报数、字节数和被截断丢弃的数据报数
+ */
+public class ShardedUdpReceiver implements Closeable {
+
+    private final int port;
+    private final int batchSize;
+    private final int datagramSize;
+    private final DatagramHandler handler;
+    private final Shard[] shards;
+
+    /**
+     * @param shards       分片数，一般等于 CPU 核数
+     * @param batchSize    一批最多接收的数据报数量（缓冲区环的大小）
+     * @param datagramSize 单个数据报的最大长度（含），超过的会被截断并计为丢弃
+     */
+    public ShardedUdpReceiver(int port, int shards, int batchSize, int datagramSize, DatagramHandler handler) {
+        this.port = port;
+        this.batchSize = batchSize;
+        this.datagramSize = datagramSize;
+        this.handler = handler;
+        this.shards = new Shard[shards];
+    }
+
+    /**
+     * 任何一个分片绑定失败时关闭已经绑定的分片再抛出异常，不留下占着端口的 socket
+     */
+    public void start() throws IOException {
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new Shard(i);
+            }
+        } catch (IOException e) {
+            for (int i = 0; i < shards.length; i++) {
+                if (shards[i] != null) {
+                    try {
+                        shards[i].close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                    shards[i] = null;
+                }
+            }
+            throw e;
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * 一个分片：一个 socket、一个选择器、一个线程
+     */
+    private class Shard implements Runnable {
+
+        final int index;
+        final DatagramChannel channel;
+        final Selector selector;
+        final Thread thread;
+        final ByteBuffer[] ring = new ByteBuffer[batchSize];
+        final SocketAddress[] senders = new SocketAddress[batchSize];
+
+        final LongAdder packets = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder drops = new LongAdder();
+        final LongAdder wakeups = new LongAdder();
+
+        Shard(int index) throws IOException {
+            this.index = index;
+            channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            if (shards.length > 1) {
+                if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    channel.close();
+                    throw new IOException("SO_REUSEPORT is not supported on this platform, use a single shard");
+                }
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            try {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+                channel.bind(new InetSocketAddress(port));
+                channel.configureBlocking(false);
+                selector = Selector.open();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            channel.register(selector, SelectionKey.OP_READ);
+
+            //一整块直接内存切分成环中的各个槽位，每个槽位比最大长度多一个字节：
+            //只有超过 datagramSize 的数据报才会把槽位填满，正好 datagramSize 字节的数据报不算截断
+            int slotSize = datagramSize + 1;
+            ByteBuffer slab = ByteBuffer.allocateDirect(batchSize * slotSize);
+            for (int i = 0; i < batchSize; i++) {
+                slab.limit((i + 1) * slotSize).position(i * slotSize);
+                ring[i] = slab.slice();
+            }
+            thread = new Thread(this, "udp-shard-" + index);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (selector.select() >= 0 && channel.isOpen()) {
+                    selector.selectedKeys().clear();
+                    wakeups.increment();
+                    drain();
+                }
+            } catch (ClosedSelectorException ignored) {
+            } catch (IOException e) {
+                if (channel.isOpen()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * 一直接收到 receive() 返回 null（内核缓冲区已空）为止
+         */
+        private void drain() throws IOException {
+            int count;
+            do {
+                count = 0;
+                long batchBytes = 0;
+                while (count < batchSize) {
+                    ByteBuffer slot = ring[count];
+                    slot.clear();
+                    SocketAddress sender = channel.receive(slot);
+                    if (sender == null) {
+                        break;
+                    }
+                    if (!slot.hasRemaining()) {
+                        //数据报超过 datagramSize，已经被截断
+                        drops.increment();
+                        continue;
+                    }
+                    slot.flip();
+                    batchBytes += slot.remaining();
+                    senders[count++] = sender;
+                }
+                for (int i = 0; i < count; i++) {
+                    handler.onDatagram(index, senders[i], ring[i]);
+                    senders[i] = null;
+                }
+                packets.add(count);
+                bytes.add(batchBytes);
+            } while (count == batchSize);
+        }
+
+        void close() throws IOException {
+            channel.close();
+            selector.close();
+        }
+    }
+
+    /**
+     * 各分片计数，格式：分片 数据报数 字节数 丢弃数 唤醒次数
+     */
+    public String stats() {
+        StringBuilder sb = new StringBuilder();
+        long total = 0;
+        for (Shard shard : shards) {
+            long packets = shard.packets.sum();
+            total += packets;
+            long wakeups = shard.wakeups.sum();
+            sb.append("shard-").append(shard.index)
+                    .append(" packets=").append(packets)
+                    .append(" bytes=").append(shard.bytes.sum())
+                    .append(" drops=").append(shard.drops.sum())
+                    .append(" packets/wakeup=").append(wakeups == 0 ? 0 : packets / wakeups)
+                    .append('\n');
+        }
+        sb.append("total packets=").append(total).append(" kernel drops=").append(kernelDrops());
+        return sb.toString();
+    }
+
+    public long packets() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.packets.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Linux 下从 /proc/net/udp 读取绑定在该端口上的所有 socket 因接收缓冲区满而被内核丢弃的数据报数，其他平台返回 -1
+     */
+    public long kernelDrops() {
+        Path path = Paths.get("/proc/net/udp");
+        if (!Files.isReadable(path)) {
+            return -1;
+        }
+        try {
+            List<String> lines = Files.readAllLines(path);
+            String localPort = String.format(":%04X", port);
+            long drops = 0;
+            for (String line : lines.subList(1, lines.size())) {
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length > 12 && columns[1].endsWith(localPort)) {
+                    drops += Long.parseLong(columns[columns.length - 1]);
+                }
+            }
+            return drops;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Shard shard : shards) {
+            if (shard != null) {
+                shard.close();
+            }
+        }
+        for (Shard shard : shards) {
+            if (shard != null) {
+                try {
+                    shard.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package cn.clboy.nio.udp;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/19 下午2:50
+ * @Since 1.0.0
+ * <p>
+ * SO_REUSEPORT 分片 + 批量接收
+ */
+public class ShardedUdpReceiverTest {
+
+    /**
+     * 接收端，每秒输出一次各分片的计数
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReceive() throws Exception {
+        int shards = Runtime.getRuntime().availableProcessors();
+        try (ShardedUdpReceiver receiver = new ShardedUdpReceiver(7001, shards, 256, 2048, (shard, sender, datagram) -> {
+        })) {
+            receiver.start();
+            while (true) {
+                Thread.sleep(1000);
+                System.out.println(receiver.stats());
+            }
+        }
+    }
+
+    /**
+     * 回环地址上多个发送线程持续发送 32 字节的小数据报，统计每秒接收的数据报数
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFlood() throws Exception {
+        int shards = Runtime.getRuntime().availableProcessors();
+        int senders = shards * 2;
+        long millis = 3000;
+        try (ShardedUdpReceiver receiver = new ShardedUdpReceiver(7010, shards, 256, 2048, (shard, sender, datagram) -> {
+        })) {
+            receiver.start();
+            CountDownLatch done = new CountDownLatch(senders);
+            long deadline = System.currentTimeMillis() + millis;
+            for (int i = 0; i < senders; i++) {
+                new Thread(() -> {
+                    //每个发送端使用不同的源端口，内核据此把它们分散到不同的分片
+                    try (DatagramChannel channel = DatagramChannel.open()) {
+                        channel.connect(new InetSocketAddress("127.0.0.1", 7010));
+                        ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+                        while (System.currentTimeMillis() < deadline) {
+                            for (int j = 0; j < 1000; j++) {
+                                buffer.clear();
+                                channel.write(buffer);
+                            }
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }).start();
+            }
+            done.await();
+            Thread.sleep(200);
+            System.out.println(receiver.stats());
+            System.out.println("每秒接收数据报：" + receiver.packets() * 1000 / millis);
+        }
+    }
+
+    /**
+     * 最大长度 512：正好 512 字节的数据报正常交付，513 字节的被截断计为丢弃
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTruncation() throws Exception {
+        try (ShardedUdpReceiver receiver = new ShardedUdpReceiver(7014, 1, 16, 512, (shard, sender, datagram) ->
+                System.out.println("收到 " + datagram.remaining() + " 字节"))) {
+            receiver.start();
+            try (DatagramChannel channel = DatagramChannel.open()) {
+                channel.connect(new InetSocketAddress("127.0.0.1", 7014));
+                for (int size : new int[]{100, 512, 513}) {
+                    channel.write(ByteBuffer.allocate(size));
+                }
+            }
+            Thread.sleep(200);
+            System.out.println(receiver.stats());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package cn.clboy.nio.udp.reliable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/19 下午8:30
+ * @Since 1.0.0
+ * <p>
+ * 本地丢包/乱序模拟器：一个双向的 UDP 代理。
+ * 客户端发往 listenPort 的数据报转发给 target，target 的回复再转发回客户端；
+ * 每个数据报按 lossRate 的概率丢弃，其余的延迟 delay + [0, jitter) 后发出，抖动会造成乱序
+ */
+public class LossySimulator implements Closeable {
+
+    private volatile double lossRate;
+    private final long delayNanos;
+    private final long jitterNanos;
+    private final SocketAddress target;
+
+    private final DatagramChannel front;
+    private final DatagramChannel back;
+    private final Selector selector;
+    private final Thread thread;
+    private final PriorityQueue<Pending> pending = new PriorityQueue<>();
+    private SocketAddress client;
+    private long dropped;
+    private long forwarded;
+
+    private static class Pending implements Comparable<Pending> {
+        final long releaseAt;
+        final ByteBuffer data;
+        final boolean toTarget;
+
+        Pending(long releaseAt, ByteBuffer data, boolean toTarget) {
+            this.releaseAt = releaseAt;
+            this.data = data;
+            this.toTarget = toTarget;
+        }
+
+        @Override
+        public int compareTo(Pending o) {
+            return Long.compare(releaseAt, o.releaseAt);
+        }
+    }
+
+    public LossySimulator(int listenPort, SocketAddress target, double lossRate, long delayMicros, long jitterMicros) throws IOException {
+        this.target = target;
+        this.lossRate = lossRate;
+        this.delayNanos = TimeUnit.MICROSECONDS.toNanos(delayMicros);
+        this.jitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+        front = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", listenPort));
+        back = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        for (DatagramChannel channel : new DatagramChannel[]{front, back}) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, 4 * 1024 * 1024);
+            channel.configureBlocking(false);
+        }
+        selector = Selector.open();
+        front.register(selector, SelectionKey.OP_READ);
+        back.register(selector, SelectionKey.OP_READ);
+        thread = new Thread(this::loop, "lossy-simulator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+        try {
+            while (selector.isOpen()) {
+                Pending head = pending.peek();
+                long now = System.nanoTime();
+                if (head == null) {
+                    selector.select();
+                } else if (head.releaseAt - now >= TimeUnit.MILLISECONDS.toNanos(1)) {
+                    selector.select(TimeUnit.NANOSECONDS.toMillis(head.releaseAt - now));
+                } else {
+                    //select 的超时以毫秒为单位，不到 1ms 的延迟用 parkNanos 等待，否则几百微秒的延迟会变成 1ms 以上
+                    if (head.releaseAt > now) {
+                        LockSupport.parkNanos(head.releaseAt - now);
+                    }
+                    selector.selectNow();
+                }
+                selector.selectedKeys().clear();
+                receive(front, buffer, true);
+                receive(back, buffer, false);
+                release(System.nanoTime());
+            }
+        } catch (ClosedSelectorException ignored) {
+        } catch (IOException e) {
+            if (selector.isOpen()) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void receive(DatagramChannel channel, ByteBuffer buffer, boolean toTarget) throws IOException {
+        SocketAddress from;
+        buffer.clear();
+        while ((from = channel.receive(buffer)) != null) {
+            if (toTarget) {
+                client = from;
+            }
+            buffer.flip();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < lossRate) {
+                dropped++;
+            } else {
+                ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+                copy.put(buffer).flip();
+                long jitter = jitterNanos > 0 ? random.nextLong(jitterNanos) : 0;
+                pending.add(new Pending(System.nanoTime() + delayNanos + jitter, copy, toTarget));
+            }
+            buffer.clear();
+        }
+    }
+
+    private void release(long now) throws IOException {
+        Pending head;
+        while ((head = pending.peek()) != null && head.releaseAt <= now) {
+            pending.poll();
+            if (head.toTarget) {
+                back.send(head.data, target);
+            } else if (client != null) {
+                front.send(head.data, client);
+            }
+            forwarded++;
+        }
+    }
+
+    /**
+     * 运行中调整丢包率，例如设为 1 模拟一段时间的断网
+     */
+    public void setLossRate(double lossRate) {
+        this.lossRate = lossRate;
+    }
+
+    public String stats() {
+        return "forwarded=" + forwarded + " dropped=" + dropped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        selector.close();
+        front.close();
+        back.close();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,743 @@
+package cn.clboy.nio.udp.reliable;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/19 下午7:05
+ * @Since 1.0.0
+ * <p>
+ * 基于 DatagramChannel 的可靠有序传输（滑动窗口 ARQ），对外表现为阻塞的 ByteChannel：
+ * <pre>
+ * DATA/FIN | type (1) | seq (4) | length (2) | payload |
+ * ACK      | type (1) | cumAck (4) | sack (8) | window (4) |
+ * PROBE    | type (1) |
+ * </pre>
+ * - 发送端把数据切成不超过 {@link #MSS} 的段放进发送环，按 min(拥塞窗口, 对端接收窗口) 发送，
+ * 在途的段数不计已被选择确认的段（类似 RFC 6675 的 pipe），丢包恢复期间新数据随选择确认继续发出
+ * - 接收端按序交付，乱序到达的段先放在接收环中；ACK 携带累计确认号、之后 64 个段的选择确认位图和剩余接收窗口
+ * - 重传：晚发送的段已被确认而早发送的段超过乱序窗口仍未确认时快速重传；超时按 RFC 6298 估算 RTO，指数退避
+ * - 拥塞控制：慢启动 + 拥塞避免（AIMD），一个窗口内的丢包只减一次窗口（快速恢复），另外可以设置最大发送速率（令牌桶）
+ * - 零窗口：对端窗口为 0 且没有在途的段时启动坚持定时器，定时发送 PROBE，对端回复的 ACK 带回最新窗口，
+ * 不会因为窗口更新的 ACK 丢失而永远停住
+ * - 非阻塞 send 返回 0（socket 发送缓冲区已满）时该包没有发出，暂停发送并关注 OP_WRITE，可写后再继续
+ * <p>
+ * 收发都由一个内部 I/O 线程完成，应用线程的 read/write 只和两个环交换数据
+ */
+public class ReliableDatagramChannel implements ByteChannel {
+
+    public static final int MSS = 1200;
+    private static final int WINDOW = 4096;
+    private static final int MASK = WINDOW - 1;
+
+    private static final byte TYPE_DATA = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final byte TYPE_FIN = 3;
+    private static final byte TYPE_PROBE = 4;
+    private static final int DATA_HEADER = 1 + 4 + 2;
+
+    /**
+     * 乘性减的系数，取 CUBIC（RFC 9438）的 0.7：有损链路上的丢包多是随机的，减半会让窗口长期停在很小的值
+     */
+    private static final double BETA = 0.7;
+
+    private static final long MIN_RTO = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long MAX_RTO = TimeUnit.SECONDS.toNanos(2);
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private final Thread ioThread;
+    private volatile SocketAddress peer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition sendSpace = lock.newCondition();
+    private final Condition readable = lock.newCondition();
+    private final Condition allAcked = lock.newCondition();
+
+    //----------------- 发送端，seq 范围：[sndUna, sndNxt) 已发送未确认，[sndNxt, sndEnd) 待发送
+    private final ByteBuffer[] sendSlots = new ByteBuffer[WINDOW];
+    private final long[] sentAt = new long[WINDOW];
+    private final int[] transmissions = new int[WINDOW];
+    private final boolean[] sacked = new boolean[WINDOW];
+    /**
+     * [sndUna, sndNxt) 中已被选择确认的段数
+     */
+    private int sackedCount;
+    private int sndUna;
+    private int sndNxt;
+    private int sndEnd;
+    private int finSeq = -1;
+    private double cwnd = 4;
+    private double ssthresh = WINDOW;
+    private int peerWindow = WINDOW;
+    /**
+     * 已确认（累计或选择确认）的段中最晚的发送时间
+     */
+    private long deliveredSentAt;
+    private boolean recovery;
+    private int recoverySeq;
+    private long srtt = -1;
+    private long rttvar;
+    private long rto = TimeUnit.MILLISECONDS.toNanos(200);
+    private long rtoDeadline;
+    /**
+     * 坚持定时器：对端零窗口且没有在途的段时定时探测，间隔从 RTO 开始指数退避
+     */
+    private long persistDeadline;
+    private long persistInterval;
+
+    /**
+     * 速率限制（字节/秒），0 表示不限制
+     */
+    private long maxRate;
+    private double tokens;
+    private long tokensUpdatedAt = System.nanoTime();
+
+    //----------------- 接收端，[readSeq, rcvNxt) 已按序到达等待应用读取
+    private final ByteBuffer[] recvSlots = new ByteBuffer[WINDOW];
+    private final boolean[] received = new boolean[WINDOW];
+    private int rcvNxt;
+    private int readSeq;
+    private int remoteFinSeq = -1;
+    private boolean ackPending;
+    private long lastReceivedAt;
+
+    //----------------- 只在 I/O 线程中使用
+    private final ByteBuffer packetIn = ByteBuffer.allocateDirect(2048);
+    private final ByteBuffer packetOut = ByteBuffer.allocateDirect(2048);
+
+    /**
+     * socket 发送缓冲区已满，等待 OP_WRITE
+     */
+    private boolean writeBlocked;
+
+    private volatile boolean closed;
+    private long packetsSent;
+    private long retransmits;
+    private long timeouts;
+    private long lossEvents;
+    private long probes;
+
+    /**
+     * 主动连接对端
+     */
+    public static ReliableDatagramChannel connect(SocketAddress remote) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(0));
+        return new ReliableDatagramChannel(channel, remote);
+    }
+
+    /**
+     * 绑定本地地址，等待第一个对端发来数据
+     */
+    public static ReliableDatagramChannel bind(SocketAddress local) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(local);
+        return new ReliableDatagramChannel(channel, null);
+    }
+
+    private ReliableDatagramChannel(DatagramChannel channel, SocketAddress peer) throws IOException {
+        this.channel = channel;
+        this.peer = peer;
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, 4 * 1024 * 1024);
+        channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.key = channel.register(selector, SelectionKey.OP_READ);
+
+        ByteBuffer sendSlab = ByteBuffer.allocateDirect(WINDOW * MSS);
+        ByteBuffer recvSlab = ByteBuffer.allocateDirect(WINDOW * MSS);
+        for (int i = 0; i < WINDOW; i++) {
+            sendSlab.limit((i + 1) * MSS).position(i * MSS);
+            sendSlots[i] = sendSlab.slice();
+            recvSlab.limit((i + 1) * MSS).position(i * MSS);
+            recvSlots[i] = recvSlab.slice();
+            recvSlots[i].limit(0);
+        }
+        this.ioThread = new Thread(this::ioLoop, "reliable-udp-" + channel.getLocalAddress());
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    public SocketAddress localAddress() throws IOException {
+        return channel.getLocalAddress();
+    }
+
+    /**
+     * 设置最大发送速率（字节/秒），0 表示只受拥塞窗口限制
+     */
+    public void setMaxRate(long bytesPerSecond) {
+        lock.lock();
+        try {
+            this.maxRate = bytesPerSecond;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //==================================================== 应用线程
+
+    /**
+     * 阻塞直到 src 中的数据全部放入发送环
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int written = 0;
+        lock.lock();
+        try {
+            while (src.hasRemaining()) {
+                while (sndEnd - sndUna >= WINDOW && !closed) {
+                    awaitUninterruptibly(sendSpace);
+                }
+                if (closed || finSeq >= 0) {
+                    throw new ClosedChannelException();
+                }
+                ByteBuffer slot = sendSlots[sndEnd & MASK];
+                slot.clear();
+                int len = Math.min(MSS, src.remaining());
+                int limit = src.limit();
+                src.limit(src.position() + len);
+                slot.put(src);
+                src.limit(limit);
+                slot.flip();
+                sndEnd++;
+                written += len;
+            }
+        } finally {
+            lock.unlock();
+        }
+        selector.wakeup();
+        return written;
+    }
+
+    /**
+     * 阻塞直到有按序到达的数据，对端发送完毕后返回 -1
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int read = 0;
+        boolean windowOpened = false;
+        lock.lock();
+        try {
+            while (readSeq == rcvNxt && !closed) {
+                awaitUninterruptibly(readable);
+            }
+            if (readSeq == rcvNxt) {
+                throw new AsynchronousCloseException();
+            }
+            while (readSeq != rcvNxt && dst.hasRemaining()) {
+                if (readSeq == remoteFinSeq) {
+                    return read == 0 ? -1 : read;
+                }
+                ByteBuffer slot = recvSlots[readSeq & MASK];
+                int len = Math.min(slot.remaining(), dst.remaining());
+                int limit = slot.limit();
+                slot.limit(slot.position() + len);
+                dst.put(slot);
+                slot.limit(limit);
+                read += len;
+                if (!slot.hasRemaining()) {
+                    received[readSeq & MASK] = false;
+                    readSeq++;
+                    windowOpened = true;
+                }
+            }
+            if (windowOpened) {
+                //接收窗口打开后通知对端，否则对端可能一直停在零窗口
+                ackPending = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (windowOpened) {
+            selector.wakeup();
+        }
+        return read;
+    }
+
+    /**
+     * 发送 FIN，之后不能再写
+     */
+    public void shutdownOutput() throws IOException {
+        lock.lock();
+        try {
+            if (finSeq >= 0) {
+                return;
+            }
+            while (sndEnd - sndUna >= WINDOW && !closed) {
+                awaitUninterruptibly(sendSpace);
+            }
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            sendSlots[sndEnd & MASK].clear().limit(0);
+            finSeq = sndEnd++;
+        } finally {
+            lock.unlock();
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * 发送 FIN 并等待所有数据被确认（最多 10 秒），然后关闭。
+     * 如果对端已经发送完毕、本端也没有待确认的数据，则不再发 FIN，只像 TCP 的 TIME_WAIT 一样停留 2 个 RTO，
+     * 以便确认对端可能重传的 FIN
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (peer != null) {
+            lock.lock();
+            try {
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                if (remoteFinSeq < 0 || sndUna != sndEnd) {
+                    shutdownOutput();
+                    while (sndUna != sndEnd && System.nanoTime() < deadline) {
+                        allAcked.await(100, TimeUnit.MILLISECONDS);
+                    }
+                }
+                if (remoteFinSeq >= 0) {
+                    while (System.nanoTime() - lastReceivedAt < 2 * rto && System.nanoTime() < deadline) {
+                        allAcked.await(10, TimeUnit.MILLISECONDS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        }
+        lock.lock();
+        try {
+            closed = true;
+            sendSpace.signalAll();
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        selector.wakeup();
+        try {
+            ioThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        selector.close();
+        channel.close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    private void awaitUninterruptibly(Condition condition) {
+        try {
+            condition.await(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String stats() {
+        lock.lock();
+        try {
+            return "sent=" + packetsSent + " retransmits=" + retransmits + " timeouts=" + timeouts + " lossEvents=" + lossEvents
+                    + " probes=" + probes + " cwnd=" + (int) cwnd
+                    + " srtt=" + TimeUnit.NANOSECONDS.toMicros(Math.max(srtt, 0)) + "us"
+                    + " rto=" + TimeUnit.NANOSECONDS.toMillis(rto) + "ms";
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //==================================================== I/O 线程
+
+    private void ioLoop() {
+        try {
+            while (!closed) {
+                long timeout = nextTimeoutMillis();
+                if (timeout < 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select(timeout);
+                }
+                selector.selectedKeys().clear();
+                lock.lock();
+                try {
+                    if (writeBlocked) {
+                        //可写了（或者收到了数据），重新尝试发送，仍然写不进去时会再次关注 OP_WRITE
+                        writeBlocked = false;
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                    receivePackets();
+                    long now = System.nanoTime();
+                    if (ackPending) {
+                        sendAck();
+                    }
+                    onTimer(now);
+                    sendNewData(now);
+                    updatePersistTimer(now);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return 0 表示一直等待，负数表示立即返回
+     */
+    private long nextTimeoutMillis() {
+        lock.lock();
+        try {
+            if (writeBlocked) {
+                //等 OP_WRITE，超时的重传也要等到能写的时候
+                return 0;
+            }
+            long now = System.nanoTime();
+            long deadline = rtoDeadline;
+            if (persistDeadline != 0) {
+                deadline = deadline == 0 ? persistDeadline : Math.min(deadline, persistDeadline);
+            }
+            if (canSend() && maxRate > 0) {
+                //等令牌够一个段
+                long wait = (long) ((MSS - tokens) * 1e9 / maxRate);
+                deadline = deadline == 0 ? now + wait : Math.min(deadline, now + wait);
+            }
+            if (deadline == 0) {
+                return 0;
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(deadline - now);
+            return millis <= 0 ? -1 : millis;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void receivePackets() throws IOException {
+        for (; ; ) {
+            packetIn.clear();
+            SocketAddress from = channel.receive(packetIn);
+            if (from == null) {
+                return;
+            }
+            if (peer == null) {
+                peer = from;
+            } else if (!peer.equals(from)) {
+                continue;
+            }
+            lastReceivedAt = System.nanoTime();
+            packetIn.flip();
+            if (packetIn.remaining() < 1) {
+                continue;
+            }
+            byte type = packetIn.get();
+            if ((type == TYPE_DATA || type == TYPE_FIN) && packetIn.remaining() >= DATA_HEADER - 1) {
+                onData(type, packetIn.getInt(), packetIn.getShort() & 0xFFFF);
+            } else if (type == TYPE_ACK && packetIn.remaining() >= 16) {
+                onAck(packetIn.getInt(), packetIn.getLong(), packetIn.getInt());
+            } else if (type == TYPE_PROBE) {
+                //零窗口探测：回复当前窗口
+                ackPending = true;
+            }
+        }
+    }
+
+    private void onData(byte type, int seq, int length) {
+        ackPending = true;
+        if (seq - rcvNxt < 0 || seq - readSeq >= WINDOW || length > MSS || length > packetIn.remaining()) {
+            //重复的段只需要重新确认，超出窗口的直接丢弃
+            return;
+        }
+        int slot = seq & MASK;
+        if (received[slot]) {
+            return;
+        }
+        ByteBuffer buffer = recvSlots[slot];
+        buffer.clear();
+        packetIn.limit(packetIn.position() + length);
+        buffer.put(packetIn);
+        buffer.flip();
+        received[slot] = true;
+        if (type == TYPE_FIN) {
+            remoteFinSeq = seq;
+        }
+        int before = rcvNxt;
+        while (received[rcvNxt & MASK] && rcvNxt - readSeq < WINDOW) {
+            rcvNxt++;
+        }
+        if (rcvNxt != before) {
+            readable.signalAll();
+        }
+    }
+
+    private void sendAck() throws IOException {
+        if (peer == null) {
+            return;
+        }
+        long sack = 0;
+        for (int i = 0; i < 64; i++) {
+            int seq = rcvNxt + 1 + i;
+            if (seq - readSeq < WINDOW && received[seq & MASK]) {
+                sack |= 1L << i;
+            }
+        }
+        packetOut.clear();
+        packetOut.put(TYPE_ACK).putInt(rcvNxt).putLong(sack).putInt(WINDOW - (rcvNxt - readSeq));
+        packetOut.flip();
+        if (send()) {
+            ackPending = false;
+        }
+    }
+
+    private void onAck(int cumAck, long sack, int window) throws IOException {
+        if (cumAck - sndNxt > 0 || cumAck - sndUna < 0) {
+            //确认了还没发送的段，或者是乱序到达的旧 ACK（窗口信息已过时）
+            return;
+        }
+        peerWindow = window;
+        long now = System.nanoTime();
+        long delivered = deliveredSentAt;
+        if (cumAck - sndUna > 0) {
+            int acked = cumAck - sndUna;
+            for (int seq = sndUna; seq != cumAck; seq++) {
+                int slot = seq & MASK;
+                if (sacked[slot]) {
+                    sackedCount--;
+                } else {
+                    newlyDelivered(slot, now);
+                }
+                sacked[slot] = false;
+                transmissions[slot] = 0;
+            }
+            sndUna = cumAck;
+            if (recovery && cumAck - recoverySeq >= 0) {
+                recovery = false;
+            }
+            if (cwnd < ssthresh) {
+                //慢启动，包括超时之后从 1 开始的恢复
+                cwnd = Math.min(cwnd + acked, ssthresh);
+            } else if (!recovery) {
+                //拥塞避免；快速恢复期间窗口保持在 ssthresh
+                cwnd += (double) acked / cwnd;
+            }
+            cwnd = Math.min(cwnd, WINDOW);
+            rtoDeadline = sndUna == sndNxt ? 0 : now + rto;
+            sendSpace.signalAll();
+            if (sndUna == sndEnd) {
+                allAcked.signalAll();
+            }
+        }
+
+        for (int i = 0; i < 64 && sack != 0; i++) {
+            if ((sack & (1L << i)) != 0) {
+                int seq = cumAck + 1 + i;
+                if (seq - sndUna >= 0 && seq - sndNxt < 0) {
+                    int slot = seq & MASK;
+                    if (!sacked[slot]) {
+                        sacked[slot] = true;
+                        sackedCount++;
+                        newlyDelivered(slot, now);
+                    }
+                }
+            }
+        }
+        if (deliveredSentAt != delivered) {
+            detectLoss(now);
+        }
+    }
+
+    /**
+     * 段第一次被确认（累计或选择确认）时调用。
+     * RTT 只取本次新确认、且没有重传过的段（Karn 算法）：之前已被选择确认的段等到空洞补上才被累计确认，用它采样会把 RTT 算大
+     */
+    private void newlyDelivered(int slot, long now) {
+        if (transmissions[slot] == 1 && sentAt[slot] > deliveredSentAt) {
+            updateRtt(now - sentAt[slot]);
+        }
+        deliveredSentAt = Math.max(deliveredSentAt, sentAt[slot]);
+    }
+
+    /**
+     * 按时间判断丢包（类似 RACK）：比某个段晚发送超过一个乱序窗口的段已经到达，而它自己还没被确认，就认为它丢了。
+     * 相比“3 个重复 ACK”，轻微的乱序不会引起误重传；重传后 sentAt 被刷新，重传的段丢了也能被之后的确认再次发现，
+     * 而不用等退避后的 RTO
+     */
+    private void detectLoss(long now) throws IOException {
+        long reorderWindow = Math.max(srtt > 0 ? srtt / 4 : rto / 4, TimeUnit.MICROSECONDS.toNanos(500));
+        boolean lost = false;
+        for (int seq = sndUna; seq != sndNxt; seq++) {
+            int slot = seq & MASK;
+            if (!sacked[slot] && sentAt[slot] + reorderWindow < deliveredSentAt) {
+                lost = true;
+                if (!sendSegment(seq, now)) {
+                    //发送缓冲区已满，剩下的等下一个确认再检测
+                    break;
+                }
+                retransmits++;
+            }
+        }
+        if (lost && !recovery) {
+            //乘性减；进入快速恢复，直到这一刻之前发出的段都被确认，期间再发现的丢包不再减窗口
+            ssthresh = Math.max(cwnd * BETA, 2);
+            cwnd = ssthresh;
+            lossEvents++;
+            recovery = true;
+            recoverySeq = sndNxt;
+        }
+    }
+
+    private void updateRtt(long sample) {
+        if (srtt < 0) {
+            srtt = sample;
+            rttvar = sample / 2;
+        } else {
+            rttvar = (3 * rttvar + Math.abs(srtt - sample)) / 4;
+            srtt = (7 * srtt + sample) / 8;
+        }
+        rto = Math.max(MIN_RTO, Math.min(MAX_RTO, srtt + 4 * rttvar));
+    }
+
+    /**
+     * 重传超时：拥塞窗口降为 1（ssthresh 在同一个窗口内只减一次），RTO 指数退避，重传最早的未确认段；
+     * 坚持定时器到期：发送零窗口探测
+     */
+    private void onTimer(long now) throws IOException {
+        if (persistDeadline != 0 && now >= persistDeadline) {
+            sendProbe(now);
+        }
+        if (rtoDeadline == 0 || now < rtoDeadline || writeBlocked) {
+            return;
+        }
+        for (int seq = sndUna; seq != sndNxt; seq++) {
+            if (!sacked[seq & MASK]) {
+                if (!sendSegment(seq, now)) {
+                    return;
+                }
+                retransmits++;
+                break;
+            }
+        }
+        timeouts++;
+        if (!recovery) {
+            ssthresh = Math.max(cwnd * BETA, 2);
+        }
+        cwnd = 1;
+        //超时前发出的段之后被判定丢失时不再重复减窗口
+        recovery = true;
+        recoverySeq = sndNxt;
+        rto = Math.min(rto * 2, MAX_RTO);
+        rtoDeadline = now + rto;
+    }
+
+    /**
+     * 对端零窗口、没有在途的段、却还有数据要发时启动坚持定时器，否则停止
+     */
+    private void updatePersistTimer(long now) {
+        if (peer != null && peerWindow <= 0 && sndUna == sndNxt && sndNxt != sndEnd) {
+            if (persistDeadline == 0) {
+                persistInterval = rto;
+                persistDeadline = now + persistInterval;
+            }
+        } else {
+            persistDeadline = 0;
+        }
+    }
+
+    private void sendProbe(long now) throws IOException {
+        packetOut.clear();
+        packetOut.put(TYPE_PROBE);
+        packetOut.flip();
+        if (!send()) {
+            return;
+        }
+        probes++;
+        persistInterval = Math.min(persistInterval * 2, MAX_RTO);
+        persistDeadline = now + persistInterval;
+    }
+
+    /**
+     * 对端窗口限制的是 [sndUna, sndNxt) 整个区间（对端要为其中的空洞留出位置），
+     * 拥塞窗口限制的是在途的段：已发送未确认、且没有被选择确认的段
+     */
+    private boolean canSend() {
+        int inFlight = sndNxt - sndUna - sackedCount;
+        return peer != null && sndNxt != sndEnd && sndNxt - sndUna < peerWindow && inFlight < (int) cwnd;
+    }
+
+    private void sendNewData(long now) throws IOException {
+        while (!writeBlocked && canSend()) {
+            if (maxRate > 0) {
+                tokens = Math.min(tokens + (now - tokensUpdatedAt) * maxRate / 1e9, Math.max(MSS, maxRate / 100.0));
+                tokensUpdatedAt = now;
+                if (tokens < MSS) {
+                    return;
+                }
+                tokens -= MSS;
+            }
+            if (!sendSegment(sndNxt, now)) {
+                if (maxRate > 0) {
+                    tokens += MSS;
+                }
+                return;
+            }
+            sndNxt++;
+            if (rtoDeadline == 0) {
+                rtoDeadline = now + rto;
+            }
+        }
+    }
+
+    /**
+     * @return false 表示发送缓冲区已满，段没有发出
+     */
+    private boolean sendSegment(int seq, long now) throws IOException {
+        int slot = seq & MASK;
+        ByteBuffer data = sendSlots[slot];
+        data.rewind();
+        packetOut.clear();
+        packetOut.put(seq == finSeq ? TYPE_FIN : TYPE_DATA).putInt(seq).putShort((short) data.remaining());
+        packetOut.put(data);
+        packetOut.flip();
+        if (!send()) {
+            return false;
+        }
+        sentAt[slot] = now;
+        transmissions[slot]++;
+        packetsSent++;
+        return true;
+    }
+
+    /**
+     * 发送 packetOut。非阻塞的 send 返回 0 表示 socket 发送缓冲区放不下，数据报没有发出：
+     * 暂停发送并关注 OP_WRITE，由调用方保留状态稍后重发
+     */
+    private boolean send() throws IOException {
+        if (channel.send(packetOut, peer) > 0) {
+            return true;
+        }
+        writeBlocked = true;
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return false;
+    }
+}
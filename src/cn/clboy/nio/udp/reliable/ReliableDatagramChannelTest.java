@@ -0,0 +1,194 @@
+package cn.clboy.nio.udp.reliable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * @Author cloudlandboy
+ * @Date 2026/10/19 下午9:00
+ * @Since 1.0.0
+ * <p>
+ * UDP 上的可靠有序传输：在 0% ~ 5% 丢包下的吞吐量，并与回环 TCP 对比
+ */
+public class ReliableDatagramChannelTest {
+
+    private static final int TOTAL = 16 * 1024 * 1024;
+
+    /**
+     * 经过丢包/乱序模拟器传输 16MB，校验内容并统计吞吐量
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTransfer() throws Exception {
+        for (double lossRate : new double[]{0, 0.01, 0.03, 0.05}) {
+            transfer(lossRate);
+        }
+    }
+
+    /**
+     * 丢包恢复：1% ~ 5% 的随机丢包下的吞吐量，一般在 10 MB/s 左右（与机器负载有关，只输出不断言）。
+     * 每次丢包都减半窗口、或者恢复期间不再发送新数据时，5% 丢包下只有 1 ~ 2 MB/s
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLossRecovery() throws Exception {
+        for (double lossRate : new double[]{0.01, 0.03, 0.05}) {
+            transfer(lossRate);
+        }
+    }
+
+    /**
+     * 零窗口：接收端先不读取，发送端填满对端窗口后停下；接收端读取时链路完全丢包，窗口更新的 ACK 丢失。
+     * 链路恢复后发送端靠坚持定时器的探测得知窗口已经打开，继续发送
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testZeroWindow() throws Exception {
+        //读取卡住时由看门狗关闭，所以不放在 try-with-resources 中
+        ReliableDatagramChannel receiver = ReliableDatagramChannel.bind(new InetSocketAddress("127.0.0.1", 7020));
+        try (LossySimulator simulator = new LossySimulator(7021, new InetSocketAddress("127.0.0.1", 7020), 0, 200, 0)) {
+            ReliableDatagramChannel sender = ReliableDatagramChannel.connect(new InetSocketAddress("127.0.0.1", 7021));
+            Thread writer = new Thread(() -> {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+                try {
+                    for (int sent = 0; sent < TOTAL; sent += buffer.capacity()) {
+                        buffer.clear();
+                        sender.write(buffer);
+                    }
+                    sender.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            writer.start();
+            //发送端填满接收窗口
+            Thread.sleep(500);
+            simulator.setLossRate(1);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            long total = 0;
+            //读出接收环中已有的数据，窗口打开，但这期间的 ACK 全部丢失
+            while (total < 4 * 1024 * 1024) {
+                total += receiver.read(buffer.clear());
+            }
+            Thread.sleep(200);
+            simulator.setLossRate(0);
+            long start = System.nanoTime();
+            //读取卡住时由看门狗关闭通道，read 抛出异常
+            Thread watchdog = new Thread(() -> {
+                try {
+                    Thread.sleep(10000);
+                    receiver.close();
+                } catch (Exception ignored) {
+                }
+            });
+            watchdog.setDaemon(true);
+            watchdog.start();
+            int len;
+            while ((len = receiver.read(buffer.clear())) != -1) {
+                total += len;
+            }
+            writer.join();
+            System.out.println("链路恢复后 " + (System.nanoTime() - start) / 1000000 + " ms 收完 " + total + " 字节，"
+                    + sender.stats());
+            Assert.assertEquals(TOTAL, total);
+        } finally {
+            receiver.close();
+        }
+    }
+
+    /**
+     * 输出吞吐量，内容校验不一致时失败
+     */
+    private void transfer(double lossRate) throws Exception {
+        try (ReliableDatagramChannel receiver = ReliableDatagramChannel.bind(new InetSocketAddress("127.0.0.1", 7020));
+             LossySimulator simulator = new LossySimulator(7021, new InetSocketAddress("127.0.0.1", 7020), lossRate, 200, 300)) {
+            ReliableDatagramChannel sender = ReliableDatagramChannel.connect(new InetSocketAddress("127.0.0.1", 7021));
+            long[] sentCrc = new long[1];
+            Thread writer = new Thread(() -> {
+                CRC32C crc = new CRC32C();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+                try {
+                    for (int sent = 0; sent < TOTAL; sent += buffer.capacity()) {
+                        buffer.clear();
+                        while (buffer.hasRemaining()) {
+                            buffer.putInt(sent + buffer.position());
+                        }
+                        buffer.flip();
+                        crc.update(buffer.duplicate());
+                        sender.write(buffer);
+                    }
+                    sender.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                sentCrc[0] = crc.getValue();
+            });
+
+            long start = System.nanoTime();
+            writer.start();
+            CRC32C crc = new CRC32C();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            long total = 0;
+            int len;
+            while ((len = receiver.read(buffer)) != -1) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+                total += len;
+            }
+            long elapsed = System.nanoTime() - start;
+            writer.join();
+            long throughput = total * 1000 / elapsed;
+            System.out.println("丢包率 " + lossRate * 100 + "%：" + throughput + " MB/s，校验"
+                    + (crc.getValue() == sentCrc[0] ? "一致" : "不一致") + "，" + sender.stats() + "，" + simulator.stats());
+            Assert.assertEquals(TOTAL, total);
+            Assert.assertEquals(sentCrc[0], crc.getValue());
+        }
+    }
+
+    /**
+     * 对照：回环地址上的 TCP 传输同样的数据量
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTcpBaseline() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 7022))) {
+            Thread writer = new Thread(() -> {
+                try (SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7022))) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+                    for (int sent = 0; sent < TOTAL; sent += buffer.capacity()) {
+                        buffer.clear();
+                        while (buffer.hasRemaining()) {
+                            socketChannel.write(buffer);
+                        }
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            long start = System.nanoTime();
+            writer.start();
+            try (SocketChannel socketChannel = server.accept()) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+                long total = 0;
+                int len;
+                while ((len = socketChannel.read(buffer)) != -1) {
+                    total += len;
+                    buffer.clear();
+                }
+                System.out.println("TCP：" + total * 1000 / (System.nanoTime() - start) + " MB/s");
+            }
+            writer.join();
+        }
+    }
+}